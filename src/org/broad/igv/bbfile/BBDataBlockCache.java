@@ -0,0 +1,170 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.bbfile;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.util.CompressionUtils;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decompressed data blocks of a single BBFile,  keyed by file offset.  Blocks are shared by all iterators over the
+ * file -- bigWig, bigBed, and zoom level data alike -- and are bounded by total size,  least-recently used first.
+ * <p/>
+ * Only the read of the compressed bytes is serialized on the file stream;  lookups and decompression do not hold
+ * the stream,  so concurrent iterators over the same file do not wait on each other for cached blocks.
+ */
+public class BBDataBlockCache {
+
+    /**
+     * Default budget per file.  Many bigWig tracks may be open at once,  so this is kept to a small fraction of the
+     * heap.
+     */
+    static final long DEFAULT_MAX_MEMORY = Math.min(16 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 200);
+
+    /**
+     * Estimated cost of a cache entry, excluding block data
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private static final ThreadLocal<CompressionUtils> compressionUtils = ThreadLocal.withInitial(CompressionUtils::new);
+
+    private final SeekableStream fis;
+    private final int uncompressBufSize;
+    private long maxMemory;
+    private long currentMemory = 0;
+    private final LinkedHashMap<Long, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public BBDataBlockCache(SeekableStream fis, int uncompressBufSize) {
+        this(fis, uncompressBufSize, DEFAULT_MAX_MEMORY);
+    }
+
+    BBDataBlockCache(SeekableStream fis, int uncompressBufSize, long maxMemory) {
+        this.fis = fis;
+        this.uncompressBufSize = uncompressBufSize;
+        this.maxMemory = maxMemory;
+    }
+
+    public SeekableStream getStream() {
+        return fis;
+    }
+
+    /**
+     * Return the decompressed data block referenced by the leaf item,  reading it if it is not cached.  The returned
+     * array is shared and must not be modified.
+     *
+     * @param leafItem
+     * @return
+     * @throws IOException
+     */
+    public byte[] getBlock(RPTreeLeafNodeItem leafItem) throws IOException {
+
+        Long key = leafItem.getDataOffset();
+
+        synchronized (this) {
+            byte[] block = blocks.get(key);
+            if (block != null) {
+                hitCount++;
+                return block;
+            }
+            missCount++;
+        }
+
+        byte[] block = readBlock(fis, leafItem, uncompressBufSize);
+
+        synchronized (this) {
+            byte[] previous = blocks.put(key, block);
+            if (previous != null) {
+                currentMemory -= ENTRY_OVERHEAD + previous.length;
+            }
+            currentMemory += ENTRY_OVERHEAD + block.length;
+            evict();
+        }
+        return block;
+    }
+
+    /**
+     * Read and,  if the file is compressed,  decompress the data block referenced by the leaf item.  The stream is
+     * locked only while the compressed bytes are read.
+     *
+     * @param fis
+     * @param leafItem
+     * @param uncompressBufSize decompression buffer size, or 0 for uncompressed data
+     * @return
+     * @throws IOException
+     */
+    static byte[] readBlock(SeekableStream fis, RPTreeLeafNodeItem leafItem, int uncompressBufSize) throws IOException {
+        byte[] buffer = new byte[(int) leafItem.geDataSize()];
+        synchronized (fis) {
+            fis.seek(leafItem.getDataOffset());
+            fis.readFully(buffer);
+        }
+        // Note:  BBFile Table C specifies a decompression buffer size
+        return uncompressBufSize > 0 ? compressionUtils.get().decompress(buffer, uncompressBufSize) : buffer;
+    }
+
+    public synchronized void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+        evict();
+    }
+
+    public synchronized void clear() {
+        blocks.clear();
+        currentMemory = 0;
+    }
+
+    public synchronized int size() {
+        return blocks.size();
+    }
+
+    public synchronized long getMemoryEstimate() {
+        return currentMemory;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private void evict() {
+        // Iteration order is least-recently accessed first.  Always keep the most recent block.
+        Iterator<Map.Entry<Long, byte[]>> iter = blocks.entrySet().iterator();
+        while (currentMemory > maxMemory && blocks.size() > 1 && iter.hasNext()) {
+            Map.Entry<Long, byte[]> e = iter.next();
+            currentMemory -= ENTRY_OVERHEAD + e.getValue().length;
+            iter.remove();
+        }
+    }
+}
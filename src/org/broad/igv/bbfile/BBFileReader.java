@@ -27,6 +27,8 @@ package org.broad.igv.bbfile;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
 import org.broad.igv.util.stream.IGVSeekableBufferedStream;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
@@ -119,6 +121,9 @@ public class BBFileReader {
     // R+ tree
     private long chromDataTreeOffset;  // file offset to mChromosome data R+ tree
     private RPTree chromosomeDataTree;     // Container for the mChromosome data R+ tree
+
+    // Decompressed data blocks, shared by all iterators
+    private BBDataBlockCache blockCache;
     private String autoSql;
 
 
@@ -141,6 +146,7 @@ public class BBFileReader {
         // get data characteristics
         isLowToHigh = fileHeader.isLowToHigh();
         uncompressBufSize = fileHeader.getUncompressBuffSize();
+        blockCache = new BBDataBlockCache(fis, uncompressBufSize);
 
         // update file offset past BBFile header
         fileOffset += BBFileHeader.BBFILE_HEADER_SIZE;
@@ -195,6 +201,7 @@ public class BBFileReader {
 
 
     public void close() {
+        blockCache.clear();
         try {
             fis.close();
         } catch (IOException e) {
@@ -202,6 +209,13 @@ public class BBFileReader {
         }
     }
 
+    /**
+     * Returns the cache of decompressed data blocks shared by this file's iterators.
+     */
+    public BBDataBlockCache getBlockCache() {
+        return blockCache;
+    }
+
     /*
     *   Method returns the Big Binary File header which identifies
     *   the file type and content.
@@ -314,7 +328,7 @@ public class BBFileReader {
      * 1) An empty iterator is returned if region has no data available
      * 2) A null object is returned if the file is not BigBed.(see isBigBedFile method)
      */
-    synchronized public BigBedIterator getBigBedIterator(String startChromosome, int startBase,
+    public BigBedIterator getBigBedIterator(String startChromosome, int startBase,
                                                          String endChromosome, int endBase, boolean contained) {
 
         if (!isBigBedFile())
@@ -330,7 +344,7 @@ public class BBFileReader {
             return new BigBedIterator();  // an empty iterator
 
         // compose an iterator
-        BigBedIterator bedIterator = new BigBedIterator(fis, chromosomeIDTree, chromosomeDataTree,
+        BigBedIterator bedIterator = new BigBedIterator(blockCache, chromosomeIDTree, chromosomeDataTree,
                 selectionRegion, contained);
 
         return bedIterator;
@@ -356,7 +370,7 @@ public class BBFileReader {
      * 1) An empty iterator is returned if region has no data available
      * 2) A null object is returned if the file is not BigWig.(see isBigWigFile method)
      */
-    synchronized public BigWigIterator getBigWigIterator(String startChromosome, int startBase,
+    public BigWigIterator getBigWigIterator(String startChromosome, int startBase,
                                                          String endChromosome, int endBase, boolean contained) {
 
 
@@ -372,7 +386,7 @@ public class BBFileReader {
             return new BigWigIterator();
 
         // compose an iterator
-        BigWigIterator wigIterator = new BigWigIterator(fis, chromosomeIDTree, chromosomeDataTree,
+        BigWigIterator wigIterator = new BigWigIterator(blockCache, chromosomeIDTree, chromosomeDataTree,
                 selectionRegion, contained);
 
         return wigIterator;
@@ -398,7 +412,7 @@ public class BBFileReader {
      * Error conditions:
      * 1) An empty iterator is returned if region has no data available
      */
-    synchronized public ZoomLevelIterator getZoomLevelIterator(int zoomLevel, String startChromosome, int startBase,
+    public ZoomLevelIterator getZoomLevelIterator(int zoomLevel, String startChromosome, int startBase,
                                                                String endChromosome, int endBase, boolean contained) {
         // check for valid zoom level
         if (zoomLevel < 1 || zoomLevel > zoomLevelCount)
@@ -417,7 +431,7 @@ public class BBFileReader {
         }
 
         /// compose an iterator
-        ZoomLevelIterator zoomIterator = new ZoomLevelIterator(fis, chromosomeIDTree,
+        ZoomLevelIterator zoomIterator = new ZoomLevelIterator(blockCache, chromosomeIDTree,
                 zoomDataTree, zoomLevel, selectionRegion, contained);
 
         return zoomIterator;
@@ -436,7 +450,7 @@ public class BBFileReader {
      * Error conditions:
      * 1) An empty iterator is returned if region has no data available
      */
-    synchronized public ZoomLevelIterator getZoomLevelIterator(int zoomLevel) {
+    public ZoomLevelIterator getZoomLevelIterator(int zoomLevel) {
 
         // check for valid zoom level
         if (zoomLevel < 1 || zoomLevel > zoomLevelCount)
@@ -450,12 +464,92 @@ public class BBFileReader {
 
         // compose an iterator
         boolean contained = true;   //all regions are contained
-        ZoomLevelIterator zoomIterator = new ZoomLevelIterator(fis, chromosomeIDTree,
+        ZoomLevelIterator zoomIterator = new ZoomLevelIterator(blockCache, chromosomeIDTree,
                 zoomDataTree, zoomLevel, selectionRegion, contained);
 
         return zoomIterator;
     }
 
+    /**
+     * Decodes the BigWig values for a region of a single chromosome directly into primitive lists.  This selects
+     * the same values as getBigWigIterator,  without creating a WigItem per value.
+     * <p/>
+     * Parameters:
+     * chromosome - chromosome name
+     * startBase - starting base position for values
+     * endBase - ending base position for values
+     * contained - flag specifies values must be contained in the specified base region if true; else can
+     * intersect the region if false
+     * starts, ends, values - lists the values are appended to
+     * <p/>
+     * Returns:
+     * Number of values appended;  0 if the file is not BigWig or the chromosome is not in the file
+     */
+    public int readBigWigData(String chromosome, int startBase, int endBase, boolean contained,
+                              IntArrayList starts, IntArrayList ends, FloatArrayList values) {
+
+        if (!isBigWigFile())
+            return 0;
+
+        RPChromosomeRegion selectionRegion = getChromosomeBounds(chromosome, startBase, chromosome, endBase);
+        if (selectionRegion == null)
+            return 0;
+
+        int count = 0;
+        for (RPTreeLeafNodeItem leafItem : chromosomeDataTree.getChromosomeDataHits(selectionRegion, contained)) {
+            BigWigDataBlock block = new BigWigDataBlock(getBlock(leafItem), leafItem, null, isLowToHigh);
+            count += block.decodeWigData(selectionRegion, contained, starts, ends, values);
+        }
+        return count;
+    }
+
+    /**
+     * Decodes zoom level records for a region of a single chromosome directly into primitive lists.  This selects
+     * the same records as getZoomLevelIterator,  without creating a ZoomDataRecord per record.
+     * <p/>
+     * Parameters:
+     * zoomLevel - zoom level for data extraction; levels start at 1
+     * chromosome - chromosome name
+     * startBase - starting base position for records
+     * endBase - ending base position for records
+     * contained - flag specifies records must be contained in the specified base region if true; else can
+     * intersect the region if false
+     * starts, ends - lists the record bounds are appended to
+     * mins, maxs, means - lists the record values are appended to; any may be null
+     * <p/>
+     * Returns:
+     * Number of records appended;  0 if the chromosome is not in the file
+     */
+    public int readZoomData(int zoomLevel, String chromosome, int startBase, int endBase, boolean contained,
+                            IntArrayList starts, IntArrayList ends,
+                            FloatArrayList mins, FloatArrayList maxs, FloatArrayList means) {
+
+        if (zoomLevel < 1 || zoomLevel > zoomLevelCount)
+            throw new RuntimeException("Error: zoom level is out of range\n");
+
+        RPTree zoomDataTree = zoomLevels.getZoomLevelRPTree(zoomLevel);
+
+        RPChromosomeRegion selectionRegion = getChromosomeBounds(chromosome, startBase, chromosome, endBase);
+        if (selectionRegion == null)
+            return 0;
+
+        int count = 0;
+        for (RPTreeLeafNodeItem leafItem : zoomDataTree.getChromosomeDataHits(selectionRegion, contained)) {
+            ZoomDataBlock block = new ZoomDataBlock(zoomLevel, getBlock(leafItem), leafItem, null, isLowToHigh);
+            count += block.decodeZoomData(selectionRegion, contained, starts, ends, mins, maxs, means);
+        }
+        return count;
+    }
+
+    private byte[] getBlock(RPTreeLeafNodeItem leafItem) {
+        try {
+            return blockCache.getBlock(leafItem);
+        } catch (IOException ex) {
+            log.error("Error reading data block for leaf item ", ex);
+            throw new RuntimeException("Error reading data block for leaf item", ex);
+        }
+    }
+
     /*
     *   Method generates a chromosome bounds region for the supplied chromosome region name.
     *
@@ -27,7 +27,6 @@ package org.broad.igv.bbfile;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
-import org.broad.igv.util.CompressionUtils;
 import org.broad.igv.util.LittleEndianInputStream;
 
 import java.io.ByteArrayOutputStream;
@@ -84,34 +83,29 @@ public class BigBedDataBlock {
     * */
     public BigBedDataBlock(SeekableStream fis, RPTreeLeafNodeItem leafHitItem,
                            HashMap<Integer, String> chromosomeMap, boolean isLowToHigh, int uncompressBufSize) {
+        this(readBlock(fis, leafHitItem, uncompressBufSize), leafHitItem, chromosomeMap, isLowToHigh);
+    }
+
+    /*
+    *   Constructor for a Bed data block which has already been read and decompressed.
+    *
+    *   Parameters:
+    *       bedBuffer - decompressed data block, e.g. from a BBDataBlockCache.  The buffer is not modified.
+    *       leafItem - R+ tree leaf item containing chromosome region and file data location
+    *       chromosomeMap - map of chromosome ID's and corresponding names
+    *       isLowToHigh - byte order is low to high if true; else high to low
+    * */
+    public BigBedDataBlock(byte[] bedBuffer, RPTreeLeafNodeItem leafHitItem,
+                           HashMap<Integer, String> chromosomeMap, boolean isLowToHigh) {
 
+        this.bedBuffer = bedBuffer;
         this.leafHitItem = leafHitItem;
         this.chromosomeMap = chromosomeMap;
         this.isLowToHigh = isLowToHigh;
 
         dataBlockSize = this.leafHitItem.geDataSize();
-        byte[] buffer = new byte[(int) dataBlockSize];
-
         fileOffset = this.leafHitItem.getDataOffset();
 
-        // read Bed data block into a buffer
-        try {
-            fis.seek(fileOffset);
-            fis.readFully(buffer);
-
-            // decompress if necessary - the buffer size is 0 for uncompressed data
-            // Note:  BBFile Table C specifies a decompression buffer size
-            if (uncompressBufSize > 0)
-                bedBuffer = (new CompressionUtils()).decompress(buffer, uncompressBufSize);
-            else
-                bedBuffer = buffer;    // use uncompressed read buffer directly
-
-        } catch (IOException ex) {
-            String error = String.format("Error reading Bed data for leaf item %d \n");
-            log.error(error, ex);
-            throw new RuntimeException(error, ex);
-        }
-
         // wrap the bed buffer as an input stream
         if (this.isLowToHigh)
             lbdis = new LittleEndianInputStream(new ByteArrayInputStream(bedBuffer));
@@ -124,6 +118,16 @@ public class BigBedDataBlock {
         // use methods getBedData or getNextFeature to extract block data
     }
 
+    private static byte[] readBlock(SeekableStream fis, RPTreeLeafNodeItem leafHitItem, int uncompressBufSize) {
+        try {
+            return BBDataBlockCache.readBlock(fis, leafHitItem, uncompressBufSize);
+        } catch (IOException ex) {
+            String error = "Error reading Bed data for leaf item";
+            log.error(error, ex);
+            throw new RuntimeException(error, ex);
+        }
+    }
+
     /*
     *   Method returns all Bed features within the decompressed block buffer
     *
@@ -27,8 +27,12 @@ package org.broad.igv.bbfile;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
-import org.broad.igv.util.CompressionUtils;
 
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.io.IOException;
 import java.util.HashMap;
@@ -78,30 +82,27 @@ public class BigWigDataBlock {
     * */
     public BigWigDataBlock(SeekableStream fis, RPTreeLeafNodeItem leafHitItem,
                            HashMap<Integer, String> chromosomeMap, boolean isLowToHigh, int uncompressBufSize){
+        this(readBlock(fis, leafHitItem, uncompressBufSize), leafHitItem, chromosomeMap, isLowToHigh);
+    }
+
+    /*
+    *   Constructor for a Wig data block which has already been read and decompressed.
+    *
+    *   Parameters:
+    *       wigBuffer - decompressed data block, e.g. from a BBDataBlockCache.  The buffer is not modified.
+    *       leafHitItem - R+ tree leaf item containing data block file location and hit status
+    *       chromosomeMap - map of chromosome ID's and corresponding names
+    *       isLowToHigh - byte order is low to high if true; else high to low
+    * */
+    public BigWigDataBlock(byte[] wigBuffer, RPTreeLeafNodeItem leafHitItem,
+                           HashMap<Integer, String> chromosomeMap, boolean isLowToHigh){
+        this.wigBuffer = wigBuffer;
         this.leafHitItem = leafHitItem;
         this.chromosomeMap = chromosomeMap;
         this.isLowToHigh = isLowToHigh;
 
         fileOffset = this.leafHitItem.getDataOffset();
         leafDataSize = this.leafHitItem.geDataSize();
-        byte[] buffer = new byte[(int) leafDataSize];
-
-        // read Wig data block into a buffer
-        try {
-            fis.seek(fileOffset);
-            fis.readFully(buffer);
-
-            // decompress if necessary - the buffer size is 0 for uncompressed data
-            // Note:  BBFile Table C specifies a decompression buffer size
-            if(uncompressBufSize > 0)
-                wigBuffer = (new CompressionUtils()).decompress(buffer, uncompressBufSize);
-            else
-                wigBuffer = buffer;    // use uncompressed read buffer directly
-        }catch(IOException ex) {
-            log.error("Error reading Wig section for leaf item ", ex);
-            String error = String.format("Error reading Wig section for leaf item %d\n");
-            throw new RuntimeException(error, ex);
-        }
 
         // initialize unread data size
         remDataSize = wigBuffer.length;
@@ -109,6 +110,15 @@ public class BigWigDataBlock {
         // use getWigData to extract data block items
     }
 
+    private static byte[] readBlock(SeekableStream fis, RPTreeLeafNodeItem leafHitItem, int uncompressBufSize) {
+        try {
+            return BBDataBlockCache.readBlock(fis, leafHitItem, uncompressBufSize);
+        }catch(IOException ex) {
+            log.error("Error reading Wig section for leaf item ", ex);
+            throw new RuntimeException("Error reading Wig section for leaf item", ex);
+        }
+    }
+
     /*
     *   Method reads all Wig data sections within the decompressed block buffer
     *   and returns those items in the chromosome selection region.
@@ -143,6 +153,90 @@ public class BigWigDataBlock {
         return wigItemList;
     }
 
+    /*
+    *   Method decodes all Wig data sections within the decompressed block buffer directly into
+    *   primitive lists,  without creating WigItem objects.  Items are selected as for getWigData.
+    *
+    *   Parameters:
+    *       selectionRegion - chromosome region for selecting Wig values
+    *       contained - indicates selected data must be contained in selection region
+    *           if true, else may intersect selection region
+    *       starts, ends, values - lists the selected items are appended to
+    *
+    *   Returns:
+    *      number of items appended
+    * */
+    public int decodeWigData(RPChromosomeRegion selectionRegion, boolean contained,
+                             IntArrayList starts, IntArrayList ends, FloatArrayList values) {
+
+        ByteBuffer bb = ByteBuffer.wrap(wigBuffer).order(isLowToHigh ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int count = 0;
+        int offset = 0;
+
+        while (offset + BigWigSectionHeader.SECTION_HEADER_SIZE <= wigBuffer.length) {
+
+            // BBFile Table J section header
+            int chromID = bb.getInt(offset);
+            int chromStart = bb.getInt(offset + 4);
+            int chromEnd = bb.getInt(offset + 8);
+            int itemStep = bb.getInt(offset + 12);
+            int itemSpan = bb.getInt(offset + 16);
+            byte type = bb.get(offset + 20);
+            int itemCount = bb.getShort(offset + 22) & 0xffff;
+            offset += BigWigSectionHeader.SECTION_HEADER_SIZE;
+
+            int itemSize;
+            if (type == 1) {
+                itemSize = BED_GRAPH_ITEM_SIZE;
+            } else if (type == 2) {
+                itemSize = VAR_STEP_ITEM_SIZE;
+            } else if (type == 3) {
+                itemSize = FIXED_STEP_ITEM_SIZE;
+            } else {
+                throw new RuntimeException("Read error on wig section leaf index ");
+            }
+            if (offset + itemCount * itemSize > wigBuffer.length) {
+                throw new RuntimeException("Read error for Wig section, item count " + itemCount + " exceeds block");
+            }
+
+            // contained section items are always added - otherwise test each item
+            boolean allHits = selectionRegion.containsItem(chromID, chromStart, chromEnd);
+
+            int start = chromStart;
+            for (int i = 0; i < itemCount; i++) {
+                int end;
+                float value;
+                if (type == 3) {
+                    end = start + itemSpan;
+                    value = bb.getFloat(offset);
+                } else if (type == 2) {
+                    start = bb.getInt(offset);
+                    end = start + itemSpan;
+                    value = bb.getFloat(offset + 4);
+                } else {
+                    start = bb.getInt(offset);
+                    end = bb.getInt(offset + 4);
+                    value = bb.getFloat(offset + 8);
+                }
+                offset += itemSize;
+
+                if (allHits || selectionRegion.containsItem(chromID, start, end) ||
+                        (!contained && selectionRegion.intersectsItem(chromID, start, end))) {
+                    starts.add(start);
+                    ends.add(end);
+                    values.add(value);
+                    count++;
+                }
+
+                if (type == 3) {
+                    start += itemStep;
+                }
+            }
+        }
+
+        return count;
+    }
+
     public void print() {
 
         log.debug("Wig section data referenced by leaf item ");
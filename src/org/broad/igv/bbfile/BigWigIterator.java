@@ -29,6 +29,7 @@ import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
 import org.broad.igv.util.CompressionUtils;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -52,6 +53,7 @@ public class BigWigIterator implements Iterator<WigItem> {
 
     // File access variables for reading Bed data block
     private SeekableStream fis;  // file input stream handle
+    private BBDataBlockCache blockCache;  // decompressed data blocks of the file
     private BPTree chromIDTree;    // B+ chromosome index tree
     private RPTree chromDataTree;  // R+ chromosome data location tree
 
@@ -74,7 +76,7 @@ public class BigWigIterator implements Iterator<WigItem> {
      * Constructor for a BigWig iterator over the specified chromosome region
      * <p/>
      * Parameters:
-     * fis - file input stream handle
+     * blockCache - decompressed data blocks of the file
      * chromIDTree - B+ chromosome index tree provides chromosome ID's for chromosome names
      * chromDataTree - R+ chromosome data locations tree
      * selectionRegion - chromosome region for selection of Wig feature extraction
@@ -87,7 +89,7 @@ public class BigWigIterator implements Iterator<WigItem> {
      * else return any intersecting region values
      */
 
-    public BigWigIterator(SeekableStream fis, BPTree chromIDTree, RPTree chromDataTree,
+    public BigWigIterator(BBDataBlockCache blockCache, BPTree chromIDTree, RPTree chromDataTree,
                           RPChromosomeRegion selectionRegion, boolean contained) {
 
         // check for valid selection region
@@ -95,7 +97,8 @@ public class BigWigIterator implements Iterator<WigItem> {
             throw new RuntimeException("Error: BigWigIterator selection region is null\n");
 
 
-        this.fis = fis;
+        this.blockCache = blockCache;
+        this.fis = blockCache.getStream();
         this.chromIDTree = chromIDTree;
         this.chromDataTree = chromDataTree;
         this.selectionRegion = new RPChromosomeRegion(selectionRegion);
@@ -379,11 +382,14 @@ public class BigWigIterator implements Iterator<WigItem> {
         chromosomeMap = chromIDTree.getChromosomeIDMap(startChromID, endChromID);
 
         boolean isLowToHigh = chromDataTree.isIsLowToHigh();
-        int uncompressBufSize = chromDataTree.getUncompressBuffSize();
 
-        // decompress leaf item data block for feature extraction
-
-        wigDataBlock = new BigWigDataBlock(fis, leafHitItem, chromosomeMap, isLowToHigh, uncompressBufSize);
+        // decompressed leaf item data block for feature extraction
+        try {
+            wigDataBlock = new BigWigDataBlock(blockCache.getBlock(leafHitItem), leafHitItem, chromosomeMap, isLowToHigh);
+        } catch (IOException ex) {
+            log.error("Error reading Wig section for leaf item ", ex);
+            throw new RuntimeException("Error reading Wig section for leaf item", ex);
+        }
 
         // get section Wig item list and set next index to first item
         wigItemList = wigDataBlock.getWigData(selectionRegion, isContained);
@@ -266,6 +266,26 @@ public class RPChromosomeRegion {
             return false;
     }
 
+    /**
+     * Method checks if a single chromosome item is contained in this region.  Equivalent to
+     * new RPChromosomeRegion(chromID, start, chromID, end).compareRegions(this) == 0,  without creating a region
+     * for the item.
+     */
+    public boolean containsItem(int chromID, int start, int end) {
+        return (chromID > startChromID || (chromID == startChromID && start >= startBase)) &&
+                (chromID < endChromID || (chromID == endChromID && end <= endBase));
+    }
+
+    /**
+     * Method checks if a single chromosome item is contained in or intersects this region.  Equivalent to
+     * Math.abs(new RPChromosomeRegion(chromID, start, chromID, end).compareRegions(this)) < 2.
+     */
+    public boolean intersectsItem(int chromID, int start, int end) {
+        boolean below = chromID < startChromID || (chromID == startChromID && end <= startBase);
+        boolean above = chromID > endChromID || (chromID == endChromID && start >= endBase);
+        return !below && !above;
+    }
+
     /**
      * Method computes the extremes between this region and the test region
      * <p/>
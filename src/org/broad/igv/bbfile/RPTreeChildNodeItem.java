@@ -71,11 +71,14 @@ public class RPTreeChildNodeItem extends RPTreeNodeItem {
         this.childNodeProxy = childNodeProxy;
     }
 
-    public RPTreeNode getChildNode() {
+    // Nodes are loaded on first use,  possibly by concurrent iterators.  The stream is shared with data block reads.
+    public synchronized RPTreeNode getChildNode() {
 
         if (childNode == null) {
             RPTreeNodeProxy proxy = childNodeProxy;
-            childNode = RPTree.readRPTreeNode(proxy.fis, proxy.fileOffset, proxy.isLowToHigh, true);
+            synchronized (proxy.fis) {
+                childNode = RPTree.readRPTreeNode(proxy.fis, proxy.fileOffset, proxy.isLowToHigh, true);
+            }
         }
 
         return childNode;
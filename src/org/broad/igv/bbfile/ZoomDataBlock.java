@@ -27,10 +27,14 @@ package org.broad.igv.bbfile;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
-import org.broad.igv.util.CompressionUtils;
 import org.broad.igv.util.LittleEndianInputStream;
 
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -85,33 +89,30 @@ public class ZoomDataBlock {
 
     public ZoomDataBlock(int zoomLevel, SeekableStream fis, RPTreeLeafNodeItem leafHitItem,
                          HashMap<Integer, String> chromosomeMap, boolean isLowToHigh, int uncompressBufSize) {
+        this(zoomLevel, readBlock(zoomLevel, fis, leafHitItem, uncompressBufSize), leafHitItem, chromosomeMap, isLowToHigh);
+    }
+
+    /*
+    *   Constructor for a zoom data block which has already been read and decompressed.
+    *
+    *   Parameters:
+    *       zoomLevel - zoom level for data block
+    *       zoomBuffer - decompressed data block, e.g. from a BBDataBlockCache.  The buffer is not modified.
+    *       leafItem - R+ tree leaf item containing block data file location
+    *       chromosomeMap - map of chromosome ID's and corresponding names
+    *       isLowToHigh - byte order is low to high if true; else high to low
+    * */
+    public ZoomDataBlock(int zoomLevel, byte[] zoomBuffer, RPTreeLeafNodeItem leafHitItem,
+                         HashMap<Integer, String> chromosomeMap, boolean isLowToHigh) {
 
         this.zoomLevel = zoomLevel;
+        this.zoomBuffer = zoomBuffer;
         this.leafHitItem = leafHitItem;
         this.chromosomeMap = chromosomeMap;
         this.isLowToHigh = isLowToHigh;
 
         fileOffset = this.leafHitItem.getDataOffset();
         dataBlockSize = this.leafHitItem.geDataSize();
-        byte[] buffer = new byte[(int) dataBlockSize];
-
-        // read Bed data block into a buffer
-        try {
-            fis.seek(fileOffset);
-            fis.readFully(buffer);
-
-            // decompress if necessary - the buffer size is 0 for uncomressed data
-            // Note:  BBFile Table C specifies a decompression buffer size
-            if (uncompressBufSize > 0)
-                zoomBuffer = (new CompressionUtils()).decompress(buffer, uncompressBufSize);
-            else
-                zoomBuffer = buffer;    // use uncompressed read buffer directly
-
-        } catch (IOException ex) {
-            log.error("Error reading Zoom level " + this.zoomLevel + " data for leaf item ",  ex);
-            String error = String.format("Error reading zoom level %d data for leaf item %d\n", this.zoomLevel);
-            throw new RuntimeException(error, ex);
-        }
 
         // wrap the bed buffer as an input stream
         if (this.isLowToHigh)
@@ -125,6 +126,16 @@ public class ZoomDataBlock {
         // use method getZoomData to extract block data
     }
 
+    private static byte[] readBlock(int zoomLevel, SeekableStream fis, RPTreeLeafNodeItem leafHitItem,
+                                    int uncompressBufSize) {
+        try {
+            return BBDataBlockCache.readBlock(fis, leafHitItem, uncompressBufSize);
+        } catch (IOException ex) {
+            log.error("Error reading Zoom level " + zoomLevel + " data for leaf item ", ex);
+            throw new RuntimeException("Error reading zoom level " + zoomLevel + " data for leaf item", ex);
+        }
+    }
+
     /*
     *   Method returns all zoom level data within the decompressed block buffer
     *
@@ -213,6 +224,57 @@ public class ZoomDataBlock {
         return zoomDataList;
     }
 
+    /*
+    *   Method decodes the zoom level records within the decompressed block buffer directly into
+    *   primitive lists,  without creating ZoomDataRecord objects.  Records are selected as for getZoomData.
+    *
+    *   Parameters:
+    *       selectionRegion - chromosome region for selecting zoom level data records
+    *       contained - indicates selected data must be contained in selection region
+    *           if true, else may intersect selection region
+    *       starts, ends - lists the selected record bounds are appended to
+    *       mins, maxs, means - lists the selected record values are appended to;  any may be null
+    *
+    *   Returns:
+    *      number of records appended
+    * */
+    public int decodeZoomData(RPChromosomeRegion selectionRegion, boolean contained,
+                              IntArrayList starts, IntArrayList ends,
+                              FloatArrayList mins, FloatArrayList maxs, FloatArrayList means) {
+
+        ByteBuffer bb = ByteBuffer.wrap(zoomBuffer).order(isLowToHigh ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+        // check if all leaf items are selection hits
+        boolean allHits = leafHitItem.getChromosomeBounds().compareRegions(selectionRegion) == 0;
+
+        int count = 0;
+        for (int offset = 0; offset + ZoomDataRecord.RECORD_SIZE <= zoomBuffer.length; offset += ZoomDataRecord.RECORD_SIZE) {
+
+            // BBFile Table O zoom record
+            int chromID = bb.getInt(offset);
+            int chromStart = bb.getInt(offset + 4);
+            int chromEnd = bb.getInt(offset + 8);
+
+            if (allHits || selectionRegion.containsItem(chromID, chromStart, chromEnd) ||
+                    (!contained && selectionRegion.intersectsItem(chromID, chromStart, chromEnd))) {
+                starts.add(chromStart);
+                ends.add(chromEnd);
+                if (mins != null) {
+                    mins.add(bb.getFloat(offset + 16));
+                }
+                if (maxs != null) {
+                    maxs.add(bb.getFloat(offset + 20));
+                }
+                if (means != null) {
+                    int validCount = bb.getInt(offset + 12);
+                    means.add(validCount == 0 ? 0 : bb.getFloat(offset + 24) / validCount);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
     public void print() {
         log.debug("Zoom Level " + zoomLevel + "data for leaf item :");
 
@@ -28,6 +28,7 @@ package org.broad.igv.bbfile;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -48,6 +49,7 @@ public class ZoomLevelIterator {
 
     // File access variables for reading zoom level data block
     private SeekableStream fis;  // file input stream handle
+    private BBDataBlockCache blockCache;  // decompressed data blocks of the file
     private BPTree chromIDTree;    // B+ chromosome index tree
     private RPTree zoomDataTree;  // R+ zoom data locations tree
 
@@ -74,7 +76,7 @@ public class ZoomLevelIterator {
      * Constructs a zoom level iterator over the specified chromosome region
      * <p/>
      * Parameters:
-     * fis - file input stream handle
+     * blockCache - decompressed data blocks of the file
      * chromIDTree - B+ index tree returns chromId for chromosome name key
      * zoomLevelTree - zoom level R+ chromosome index tree
      * zoomLevel - zoom level represented by the R+ tree
@@ -87,14 +89,15 @@ public class ZoomLevelIterator {
      * contained - specifies bed features must be contained by region, if true;
      * else return any intersecting region features
      */
-    public ZoomLevelIterator(SeekableStream fis, BPTree chromIDTree, RPTree zoomDataTree,
+    public ZoomLevelIterator(BBDataBlockCache blockCache, BPTree chromIDTree, RPTree zoomDataTree,
                              int zoomLevel, RPChromosomeRegion selectionRegion, boolean contained) {
 
         // check for valid selection region
         if (selectionRegion == null)
             throw new RuntimeException("Error: ZoomLevelIterator selection region is null\n");
 
-        this.fis = fis;
+        this.blockCache = blockCache;
+        this.fis = blockCache.getStream();
         this.chromIDTree = chromIDTree;
         this.zoomDataTree = zoomDataTree;
         this.zoomLevel = zoomLevel;
@@ -386,11 +389,15 @@ public class ZoomLevelIterator {
         chromosomeMap = chromIDTree.getChromosomeIDMap(startChromID, endChromID);
 
         boolean isLowToHigh = zoomDataTree.isIsLowToHigh();
-        int uncompressBufSize = zoomDataTree.getUncompressBuffSize();
 
-        // decompress leaf item data block for feature extraction
-        zoomDataBlock = new ZoomDataBlock(zoomLevel, fis, leafHitItem, chromosomeMap,
-                isLowToHigh, uncompressBufSize);
+        // decompressed leaf item data block for feature extraction
+        try {
+            zoomDataBlock = new ZoomDataBlock(zoomLevel, blockCache.getBlock(leafHitItem), leafHitItem, chromosomeMap,
+                    isLowToHigh);
+        } catch (IOException ex) {
+            log.error("Error reading Zoom level " + zoomLevel + " data for leaf item ", ex);
+            throw new RuntimeException("Error reading zoom level " + zoomLevel + " data for leaf item", ex);
+        }
 
         // get data block zoom data record list and set next index to first item
         zoomRecordList = zoomDataBlock.getZoomData(selectionRegion, isContained);
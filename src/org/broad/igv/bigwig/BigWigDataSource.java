@@ -30,6 +30,7 @@ import org.broad.igv.Globals;
 import org.broad.igv.bbfile.*;
 import org.broad.igv.data.AbstractDataSource;
 import org.broad.igv.data.BasicScore;
+import org.broad.igv.data.CompactScoreList;
 import org.broad.igv.data.DataTile;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
@@ -69,7 +70,11 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
     // Lookup table to support chromosome aliasing.
     private Map<String, String> chrNameMap = new HashMap();
 
-    private RawDataInterval currentInterval = null;
+    private volatile RawDataInterval currentInterval = null;
+
+    // Decode buffers,  reused across queries.  Results are copied out of these to exact size arrays.  Buffers grown
+    // by a large query are dropped afterwards,  so each thread retains at most the initial capacity.
+    private static final ThreadLocal<DecodeBuffers> decodeBuffers = ThreadLocal.withInitial(DecodeBuffers::new);
 
     private double dataMin = 0;
     private double dataMax = 100;
@@ -242,16 +247,24 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
         String querySeq = tmp == null ? chr : tmp;
 
         if (reader.isBigBedFile() || bbLevel > 1 || (bbLevel == 1 && (reductionLevel / scale) < 2)) {
-            ArrayList<LocusScore> scores = new ArrayList(1000);
-            ZoomLevelIterator zlIter = reader.getZoomLevelIterator(bbLevel, querySeq, start, querySeq, end, false);
-            while (zlIter.hasNext()) {
-                ZoomDataRecord rec = zlIter.next();
-
-                float v = getValue(rec);
-                BasicScore bs = new BasicScore(rec.getChromStart(), rec.getChromEnd(), v);
-                scores.add(bs);
+            DecodeBuffers buffers = decodeBuffers.get();
+            buffers.clear();
+            FloatArrayList values = buffers.values;
+            try {
+                switch (windowFunction) {
+                    case min:
+                        reader.readZoomData(bbLevel, querySeq, start, end, false, buffers.starts, buffers.ends, values, null, null);
+                        break;
+                    case max:
+                        reader.readZoomData(bbLevel, querySeq, start, end, false, buffers.starts, buffers.ends, null, values, null);
+                        break;
+                    default:
+                        reader.readZoomData(bbLevel, querySeq, start, end, false, buffers.starts, buffers.ends, null, null, values);
+                }
+                return new CompactScoreList(buffers.starts.copyToArray(), buffers.ends.copyToArray(), values.copyToArray());
+            } finally {
+                releaseDecodeBuffers(buffers);
             }
-            return scores;
 
         } else {
             // No precomputed scores for this resolution level
@@ -281,33 +294,29 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
 
 
     @Override
-    protected synchronized DataTile getRawData(String chr, int start, int end) {
+    protected DataTile getRawData(String chr, int start, int end) {
 
         if (chr.equals(Globals.CHR_ALL)) {
             return null;
         }
 
-
-        if (currentInterval != null && currentInterval.contains(chr, start, end)) {
-            return currentInterval.tile;
+        RawDataInterval interval = currentInterval;
+        if (interval != null && interval.contains(chr, start, end)) {
+            return interval.tile;
         }
 
-        // TODO -- fetch data directly in arrays to avoid creation of multiple "WigItem" objects?
-        IntArrayList startsList = new IntArrayList(100000);
-        IntArrayList endsList = new IntArrayList(100000);
-        FloatArrayList valuesList = new FloatArrayList(100000);
-
         String chrAlias = chrNameMap.containsKey(chr) ? chrNameMap.get(chr) : chr;
-        Iterator<WigItem> iter = reader.getBigWigIterator(chrAlias, start, chrAlias, end, false);
 
-        while (iter.hasNext()) {
-            WigItem wi = iter.next();
-            startsList.add(wi.getStartBase());
-            endsList.add(wi.getEndBase());
-            valuesList.add(wi.getWigValue());
+        DecodeBuffers buffers = decodeBuffers.get();
+        buffers.clear();
+        DataTile tile;
+        try {
+            reader.readBigWigData(chrAlias, start, end, false, buffers.starts, buffers.ends, buffers.values);
+            tile = new DataTile(buffers.starts.copyToArray(), buffers.ends.copyToArray(),
+                    buffers.values.copyToArray(), null);
+        } finally {
+            releaseDecodeBuffers(buffers);
         }
-
-        DataTile tile = new DataTile(startsList.toArray(), endsList.toArray(), valuesList.toArray(), null);
         currentInterval = new RawDataInterval(chr, start, end, tile);
 
         return tile;
@@ -440,6 +449,35 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
 
     //  End FeatureSource interface ----------------------------------------------------------------------
 
+    /**
+     * Drop the calling thread's decode buffers if the last query grew them past their initial capacity.
+     */
+    static void releaseDecodeBuffers(DecodeBuffers buffers) {
+        if (buffers.isOversized()) {
+            decodeBuffers.remove();
+        } else {
+            buffers.clear();
+        }
+    }
+
+    static class DecodeBuffers {
+        static final int CAPACITY = 100000;
+
+        IntArrayList starts = new IntArrayList(CAPACITY);
+        IntArrayList ends = new IntArrayList(CAPACITY);
+        FloatArrayList values = new FloatArrayList(CAPACITY);
+
+        boolean isOversized() {
+            return starts.size() > CAPACITY || ends.size() > CAPACITY || values.size() > CAPACITY;
+        }
+
+        void clear() {
+            starts.clear();
+            ends.clear();
+            values.clear();
+        }
+    }
+
     static class RawDataInterval {
         String chr;
         int start;
@@ -37,6 +37,7 @@ import org.broad.igv.feature.NamedFeature;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.RegionScoreType;
+import org.broad.igv.track.RegionScorer;
 import org.broad.igv.track.Track;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
@@ -769,31 +770,33 @@ public class GeneNetwork extends DirectedMultigraph<Node, Node> {
             samplesForType.clear();
             alteredSamplesForType.clear();
 
-
+            // Score each track over each feature once,  in parallel across tracks
+            List<RegionScorer.Region> regions = new ArrayList<RegionScorer.Region>();
             for (NamedFeature feat : features) {
-                if (!name.equalsIgnoreCase(feat.getName())) {
-                    continue;
+                if (name.equalsIgnoreCase(feat.getName())) {
+                    regions.add(new RegionScorer.Region(feat.getChr(), feat.getStart(), feat.getEnd(), zoom, frameName));
                 }
-                int featStart = feat.getStart();
-                int featEnd = feat.getEnd();
-                for (Track track : tracks) {
-                    if (!track.isVisible()) {
-                        continue;
-                    }
-                    String sample = track.getSample();
+            }
+            List<Track> typeTracks = new ArrayList<Track>();
+            for (Track track : tracks) {
+                if (track.isVisible() && track.isRegionScoreType(type)) {
+                    typeTracks.add(track);
+                }
+            }
+            float[][] scores = new RegionScorer().score(typeTracks, regions, type, tracks, null);
 
-                    //If track is wrong type, or if sample has already been marked altered,
-                    //no further information can be gained
-                    if (!track.isRegionScoreType(type) || alteredSamplesForType.contains(sample)) {
-                        //if(alteredSamplesForType.contains(sample)) assert samplesForType.contains(sample);
+            for (int r = 0; r < regions.size(); r++) {
+                for (int t = 0; t < typeTracks.size(); t++) {
+                    String sample = typeTracks.get(t).getSample();
+
+                    //If sample has already been marked altered, no further information can be gained
+                    if (alteredSamplesForType.contains(sample)) {
                         continue;
                     }
 
                     samplesForType.add(sample);
 
-                    float score = track.getRegionScore(feat.getChr(), featStart, featEnd, zoom,
-                            type, frameName, tracks);
-
+                    float score = scores[t][r];
                     if (score >= curBounds[0] && score <= curBounds[1] && !Float.isNaN(score)) {
                         alteredSamplesForType.add(sample);
                     }
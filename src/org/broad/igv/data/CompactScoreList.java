@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.feature.LocusScore;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of scores backed by primitive arrays.  Score objects are created only as elements are accessed,
+ * so a large list holds three arrays rather than an object per score.  The most recently created score is kept,  so
+ * repeated access to the same index (e.g. a binary search followed by a get) does not allocate again.  Callers that
+ * only need positions and values can use the indexed accessors and avoid creating scores altogether.
+ */
+public class CompactScoreList extends AbstractList<LocusScore> implements RandomAccess {
+
+    private final int[] starts;
+    private final int[] ends;
+    private final float[] values;
+    private volatile CachedScore last;
+
+    public CompactScoreList(int[] starts, int[] ends, float[] values) {
+        this.starts = starts;
+        this.ends = ends;
+        this.values = values;
+    }
+
+    @Override
+    public LocusScore get(int index) {
+        CachedScore cached = last;
+        if (cached == null || cached.index != index) {
+            cached = new CachedScore(index, new BasicScore(starts[index], ends[index], values[index]));
+            last = cached;
+        }
+        return cached.score;
+    }
+
+    @Override
+    public int size() {
+        return starts.length;
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    public float getScore(int index) {
+        return values[index];
+    }
+
+    /**
+     * Pairs a score with its index so the cache is read and replaced as a unit.
+     */
+    private static final class CachedScore {
+
+        final int index;
+        final LocusScore score;
+
+        CachedScore(int index, LocusScore score) {
+            this.index = index;
+            this.score = score;
+        }
+    }
+}
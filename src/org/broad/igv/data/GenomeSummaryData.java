@@ -95,7 +95,7 @@ public class GenomeSummaryData {
         this.samples = samples;
         scale = (genome.getNominalLength() / locationUnit) / nPixels;
 
-        List<String> chrNames = genome.getLongChromosomeNames();
+        List<String> chrNames = genome.getWholeGenomeSummaryChromosomeNames();
         locationMap = new HashMap<String, IntArrayList>();
         dataMap = new HashMap<String, Map<String, FloatArrayList>>();
         for (String chr : chrNames) {
@@ -213,7 +213,7 @@ public class GenomeSummaryData {
     private synchronized void createDataArrays() {
         locations = new int[nDataPts];
         int offset = 0;
-        List<String> chrNames = genome.getLongChromosomeNames();
+        List<String> chrNames = genome.getWholeGenomeSummaryChromosomeNames();
         for (String chr : chrNames) {
             int[] chrLocs = locationMap.get(chr).toArray();
             System.arraycopy(chrLocs, 0, locations, offset, chrLocs.length);
@@ -32,11 +32,17 @@ import org.broad.igv.Globals;
 import org.broad.igv.exceptions.DataLoadException;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.TrackType;
+import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.ResourceLocator;
 import htsjdk.tribble.readers.AsciiLineReader;
 
+import java.io.File;
+
+import static org.broad.igv.prefs.Constants.SEG_BINARY_CACHE;
+
 /**
  * Example
  * CCLE_name	chrom	loc.start	loc.end	num.mark	seg.mean
@@ -127,6 +133,12 @@ public class SegmentFileParser implements SegFileParser {
                 dataColumn = headings.length - 1;
             }
 
+            SegmentStore cachedStore = readCache(locator, genome);
+            if (cachedStore != null) {
+                dataset.setStore(cachedStore);
+                return dataset;
+            }
+
             while ((nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
                 lineNumber++;
 
@@ -203,10 +215,63 @@ public class SegmentFileParser implements SegFileParser {
         }
 
         dataset.sortLists();
+        writeCache(locator, genome, dataset.getStore());
         return dataset;
     }
 
 
+    /**
+     * Return the segments saved in the binary cache file for a local SEG file,  or null if caching is disabled,  there
+     * is no cache file,  or it is older than the SEG file.
+     *
+     * @param locator
+     * @param genome
+     * @return
+     */
+    private SegmentStore readCache(ResourceLocator locator, Genome genome) {
+
+        if (!PreferencesManager.getPreferences().getAsBoolean(SEG_BINARY_CACHE) ||
+                FileUtils.isRemote(locator.getPath())) {
+            return null;
+        }
+
+        File file = new File(locator.getPath());
+        File cacheFile = new File(locator.getPath() + SegmentStore.EXTENSION);
+        if (!cacheFile.exists() || cacheFile.lastModified() < file.lastModified()) return null;
+
+        try {
+            return SegmentStore.read(cacheFile, genome == null ? null : genome.getId());
+        } catch (Exception e) {
+            log.error("Error reading binary segment file " + cacheFile.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Save the segments of a large local SEG file to a binary cache file,  if enabled.
+     *
+     * @param locator
+     * @param genome
+     * @param store
+     */
+    private void writeCache(ResourceLocator locator, Genome genome, SegmentStore store) {
+
+        if (!PreferencesManager.getPreferences().getAsBoolean(SEG_BINARY_CACHE) ||
+                FileUtils.isRemote(locator.getPath()) ||
+                store.getSegmentCount() < SegmentStore.MIN_CACHED_SEGMENTS) {
+            return;
+        }
+
+        File cacheFile = new File(locator.getPath() + SegmentStore.EXTENSION);
+        try {
+            store.write(cacheFile, genome == null ? null : genome.getId());
+        } catch (Exception e) {
+            log.error("Error writing binary segment file " + cacheFile.getAbsolutePath(), e);
+            cacheFile.delete();
+        }
+    }
+
+
     /**
      * Note:  This is an exact copy of the method in ExpressionFileParser.  Refactor to merge these
      * two parsers, or share a common base class.
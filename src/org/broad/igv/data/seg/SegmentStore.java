@@ -0,0 +1,579 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package org.broad.igv.data.seg;
+
+import htsjdk.tribble.util.LittleEndianInputStream;
+import htsjdk.tribble.util.LittleEndianOutputStream;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Columnar storage for segmented data.  The segments of each chromosome are held in primitive columns of start,  end,
+ * value,  and description index,  grouped by sample and sorted by start within a sample.  An offset table gives the
+ * rows of each sample.  Descriptions are interned while segments are added.  Descriptions usually include per-row
+ * columns and are mostly unique,  so the intern map is released once the columns are built.
+ * <p/>
+ * Segment lists returned are views which create {@link Segment} objects as elements are accessed.  Whole genome lists
+ * hold only the indexes of the rows they include.
+ * <p/>
+ * A store can be saved to a binary file,  whose columns are memory-mapped when it is read.  File layout (little
+ * endian):
+ * <pre>
+ *     header     magic, version
+ *     blocks     per chromosome:  start, end, value, and description columns
+ *     directory  genome id, value range, samples, descriptions, and per chromosome:  name, row count, block
+ *                offset, sample offsets
+ *     footer     offset of the directory
+ * </pre>
+ */
+class SegmentStore {
+
+    public static final String EXTENSION = ".segc";
+
+    static final int MAGIC = 0x43474553;   // "SEGC"
+    static final int VERSION = 1;
+
+    /**
+     * Files with fewer segments are not cached in binary form
+     */
+    static final int MIN_CACHED_SEGMENTS = 100000;
+
+    private final List<String> samples;
+    private final Map<String, Integer> sampleIndexes;
+    private final List<String> descriptions;
+    private Map<String, Integer> descriptionIndexes;     // Null once the columns are built,  see finish()
+    private final Map<String, Columns> columns;
+    private final Map<String, ColumnBuilder> builders;
+    private float dataMin = Float.MAX_VALUE;
+    private float dataMax = -Float.MAX_VALUE;
+
+    SegmentStore() {
+        this.samples = new ArrayList<>();
+        this.sampleIndexes = new HashMap<>();
+        this.descriptions = new ArrayList<>();
+        this.columns = new LinkedHashMap<>();
+        this.builders = new LinkedHashMap<>();
+    }
+
+    synchronized void add(String sample, String chr, int start, int end, float value, String description) {
+
+        Integer sampleIndex = sampleIndexes.get(sample);
+        if (sampleIndex == null) {
+            sampleIndex = samples.size();
+            samples.add(sample);
+            sampleIndexes.put(sample, sampleIndex);
+        }
+
+        int descriptionIndex = -1;
+        if (description != null) {
+            if (descriptionIndexes == null) {
+                descriptionIndexes = new HashMap<>();
+                for (int i = 0; i < descriptions.size(); i++) {
+                    descriptionIndexes.put(descriptions.get(i), i);
+                }
+            }
+            Integer idx = descriptionIndexes.get(description);
+            if (idx == null) {
+                idx = descriptions.size();
+                descriptions.add(description);
+                descriptionIndexes.put(description, idx);
+            }
+            descriptionIndex = idx;
+        }
+
+        ColumnBuilder builder = builders.get(chr);
+        if (builder == null) {
+            builder = new ColumnBuilder();
+            Columns existing = columns.remove(chr);
+            if (existing != null) {
+                builder.addAll(existing);
+            }
+            builders.put(chr, builder);
+        }
+        builder.add(sampleIndex, start, end, value, descriptionIndex);
+
+        dataMin = Math.min(dataMin, value);
+        dataMax = Math.max(dataMax, value);
+    }
+
+    /**
+     * Sort segments added since the last call into columns,  and release the description intern map.  It is rebuilt
+     * if more segments are added.
+     */
+    synchronized void finish() {
+        descriptionIndexes = null;
+        if (builders.isEmpty()) return;
+        for (Map.Entry<String, ColumnBuilder> entry : builders.entrySet()) {
+            columns.put(entry.getKey(), entry.getValue().build(samples.size()));
+        }
+        builders.clear();
+    }
+
+    List<String> getSamples() {
+        return samples;
+    }
+
+    synchronized Set<String> getChromosomes() {
+        Set<String> chromosomes = new LinkedHashSet<>(columns.keySet());
+        chromosomes.addAll(builders.keySet());
+        return chromosomes;
+    }
+
+    float getDataMin() {
+        return dataMin;
+    }
+
+    float getDataMax() {
+        return dataMax;
+    }
+
+    synchronized int getSegmentCount() {
+        finish();
+        int count = 0;
+        for (Columns c : columns.values()) {
+            count += c.size;
+        }
+        return count;
+    }
+
+    /**
+     * @return the segments of the sample on the chromosome,  ordered by start,  or null if there are none
+     */
+    List<LocusScore> getSegments(String sample, String chr) {
+        Columns c;
+        synchronized (this) {
+            finish();
+            c = columns.get(chr);
+        }
+        Integer sampleIndex = sampleIndexes.get(sample);
+        if (c == null || sampleIndex == null || sampleIndex >= c.getSampleCount()) {
+            return null;
+        }
+        int from = c.sampleOffsets[sampleIndex];
+        int to = c.sampleOffsets[sampleIndex + 1];
+        return from == to ? null : new SegmentList(c, from, to - from);
+    }
+
+    /**
+     * Return the segments of the sample in whole genome coordinates,  in the order of the genome's whole genome
+     * chromosomes.  Segments shorter than the whole genome resolution,  1 kb,  are omitted.
+     */
+    List<LocusScore> getWholeGenomeSegments(String sample, Genome genome) {
+
+        Integer sampleIndex = sampleIndexes.get(sample);
+        List<Columns> parts = new ArrayList<>();
+        IntArrayList partOffsets = new IntArrayList();
+        List<Long> chrOffsets = new ArrayList<>();
+        IntArrayList rows = new IntArrayList();
+
+        if (sampleIndex != null) {
+            for (String chr : genome.getLongChromosomeNames()) {
+                Columns c;
+                synchronized (this) {
+                    finish();
+                    c = columns.get(chr);
+                }
+                if (c == null || sampleIndex >= c.getSampleCount()) continue;
+
+                long chrOffset = genome.getCumulativeOffset(chr);
+                int partStart = rows.size();
+                for (int row = c.sampleOffsets[sampleIndex]; row < c.sampleOffsets[sampleIndex + 1]; row++) {
+                    int gStart = (int) ((chrOffset + c.starts.get(row)) / 1000);
+                    int gEnd = (int) ((chrOffset + c.ends.get(row)) / 1000);
+                    if (gEnd > gStart) {
+                        rows.add(row);
+                    }
+                }
+                if (rows.size() > partStart) {
+                    parts.add(c);
+                    partOffsets.add(partStart);
+                    chrOffsets.add(chrOffset);
+                }
+            }
+        }
+        partOffsets.add(rows.size());
+
+        long[] offsets = new long[chrOffsets.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = chrOffsets.get(i);
+        }
+        return new WholeGenomeList(parts.toArray(new Columns[parts.size()]), partOffsets.toArray(), offsets,
+                rows.toArray());
+    }
+
+    private Segment createSegment(Columns c, int row, int start, int end) {
+        int d = c.descriptions.get(row);
+        return new Segment(start, start, end, end, c.values.get(row), d < 0 ? null : descriptions.get(d));
+    }
+
+
+    /**
+     * Write the store to a binary file.
+     *
+     * @param file
+     * @param genomeId id of the genome used to resolve chromosome names
+     */
+    synchronized void write(File file, String genomeId) throws IOException {
+
+        finish();
+
+        try (LittleEndianOutputStream out = new LittleEndianOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            Map<String, Long> blockOffsets = new HashMap<>();
+            for (Map.Entry<String, Columns> entry : columns.entrySet()) {
+                blockOffsets.put(entry.getKey(), out.getWrittenCount());
+                Columns c = entry.getValue();
+                for (int i = 0; i < c.size; i++) out.writeInt(c.starts.get(i));
+                for (int i = 0; i < c.size; i++) out.writeInt(c.ends.get(i));
+                for (int i = 0; i < c.size; i++) out.writeFloat(c.values.get(i));
+                for (int i = 0; i < c.size; i++) out.writeInt(c.descriptions.get(i));
+            }
+
+            long directoryOffset = out.getWrittenCount();
+            writeString(out, genomeId == null ? "" : genomeId);
+            out.writeFloat(dataMin);
+            out.writeFloat(dataMax);
+            out.writeInt(samples.size());
+            for (String sample : samples) {
+                writeString(out, sample);
+            }
+            out.writeInt(descriptions.size());
+            for (String description : descriptions) {
+                writeString(out, description);
+            }
+            out.writeInt(columns.size());
+            for (Map.Entry<String, Columns> entry : columns.entrySet()) {
+                Columns c = entry.getValue();
+                writeString(out, entry.getKey());
+                out.writeInt(c.size);
+                out.writeLong(blockOffsets.get(entry.getKey()));
+                out.writeInt(c.sampleOffsets.length);
+                for (int offset : c.sampleOffsets) {
+                    out.writeInt(offset);
+                }
+            }
+            out.writeLong(directoryOffset);
+        }
+    }
+
+    /**
+     * Read a store written by {@link #write(File, String)}.  Columns are memory-mapped.
+     *
+     * @param file
+     * @param genomeId id of the current genome
+     * @return the store,  or null if the file was written for a different genome
+     * @throws IOException
+     */
+    static SegmentStore read(File file, String genomeId) throws IOException {
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(buffer, 0);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary segment file: " + file);
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary segment file version: " + version);
+            }
+
+            buffer.clear();
+            channel.read(buffer, channel.size() - 8);
+            long directoryOffset = buffer.getLong(0);
+
+            channel.position(directoryOffset);
+            LittleEndianInputStream in = new LittleEndianInputStream(
+                    new BufferedInputStream(Channels.newInputStream(channel)));
+
+            if (!readString(in).equals(genomeId == null ? "" : genomeId)) {
+                return null;
+            }
+
+            SegmentStore store = new SegmentStore();
+            store.dataMin = in.readFloat();
+            store.dataMax = in.readFloat();
+            int nSamples = in.readInt();
+            for (int i = 0; i < nSamples; i++) {
+                String sample = readString(in);
+                store.sampleIndexes.put(sample, i);
+                store.samples.add(sample);
+            }
+            int nDescriptions = in.readInt();
+            for (int i = 0; i < nDescriptions; i++) {
+                store.descriptions.add(readString(in));
+            }
+            int nChrs = in.readInt();
+            for (int i = 0; i < nChrs; i++) {
+                String chr = readString(in);
+                int size = in.readInt();
+                long blockOffset = in.readLong();
+                int[] sampleOffsets = new int[in.readInt()];
+                for (int s = 0; s < sampleOffsets.length; s++) {
+                    sampleOffsets[s] = in.readInt();
+                }
+                MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, blockOffset, 16L * size);
+                int columnLength = 4 * size;
+                store.columns.put(chr, new Columns(sampleOffsets, size,
+                        getColumn(block, 0, columnLength).asIntBuffer(),
+                        getColumn(block, 1, columnLength).asIntBuffer(),
+                        getColumn(block, 2, columnLength).asFloatBuffer(),
+                        getColumn(block, 3, columnLength).asIntBuffer()));
+            }
+            return store;
+        }
+    }
+
+    private static ByteBuffer getColumn(ByteBuffer block, int index, int columnLength) {
+        ByteBuffer column = block.duplicate();
+        column.position(index * columnLength);
+        column.limit((index + 1) * columnLength);
+        return column.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeString(LittleEndianOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(LittleEndianInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        int n = 0;
+        while (n < bytes.length) {
+            int count = in.read(bytes, n, bytes.length - n);
+            if (count < 0) throw new EOFException();
+            n += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * The segments of one chromosome
+     */
+    static class Columns {
+
+        /**
+         * Rows of sample i are sampleOffsets[i] (inclusive) to sampleOffsets[i + 1] (exclusive).  Samples added after
+         * the columns were built have no rows.
+         */
+        final int[] sampleOffsets;
+        final int size;
+        final IntBuffer starts;
+        final IntBuffer ends;
+        final FloatBuffer values;
+        final IntBuffer descriptions;
+
+        Columns(int[] sampleOffsets, int size, IntBuffer starts, IntBuffer ends, FloatBuffer values,
+                IntBuffer descriptions) {
+            this.sampleOffsets = sampleOffsets;
+            this.size = size;
+            this.starts = starts;
+            this.ends = ends;
+            this.values = values;
+            this.descriptions = descriptions;
+        }
+
+        int getSampleCount() {
+            return sampleOffsets.length - 1;
+        }
+    }
+
+
+    /**
+     * Accumulates the segments of one chromosome in file order
+     */
+    private static class ColumnBuilder {
+
+        IntArrayList samples = new IntArrayList();
+        IntArrayList starts = new IntArrayList();
+        IntArrayList ends = new IntArrayList();
+        FloatArrayList values = new FloatArrayList();
+        IntArrayList descriptions = new IntArrayList();
+
+        void add(int sample, int start, int end, float value, int description) {
+            samples.add(sample);
+            starts.add(start);
+            ends.add(end);
+            values.add(value);
+            descriptions.add(description);
+        }
+
+        void addAll(Columns c) {
+            for (int s = 0; s < c.getSampleCount(); s++) {
+                for (int row = c.sampleOffsets[s]; row < c.sampleOffsets[s + 1]; row++) {
+                    add(s, c.starts.get(row), c.ends.get(row), c.values.get(row), c.descriptions.get(row));
+                }
+            }
+        }
+
+        /**
+         * Group rows by sample,  keeping file order within a sample,  then sort each sample's rows by start.
+         */
+        Columns build(int sampleCount) {
+
+            int size = samples.size();
+            int[] sampleOffsets = new int[sampleCount + 1];
+            for (int i = 0; i < size; i++) {
+                sampleOffsets[samples.get(i) + 1]++;
+            }
+            for (int s = 0; s < sampleCount; s++) {
+                sampleOffsets[s + 1] += sampleOffsets[s];
+            }
+
+            int[] order = new int[size];
+            int[] next = Arrays.copyOf(sampleOffsets, sampleCount);
+            for (int i = 0; i < size; i++) {
+                order[next[samples.get(i)]++] = i;
+            }
+
+            for (int s = 0; s < sampleCount; s++) {
+                sortByStart(order, sampleOffsets[s], sampleOffsets[s + 1]);
+            }
+
+            int[] sortedStarts = new int[size];
+            int[] sortedEnds = new int[size];
+            float[] sortedValues = new float[size];
+            int[] sortedDescriptions = new int[size];
+            for (int i = 0; i < size; i++) {
+                int row = order[i];
+                sortedStarts[i] = starts.get(row);
+                sortedEnds[i] = ends.get(row);
+                sortedValues[i] = values.get(row);
+                sortedDescriptions[i] = descriptions.get(row);
+            }
+
+            return new Columns(sampleOffsets, size, IntBuffer.wrap(sortedStarts), IntBuffer.wrap(sortedEnds),
+                    FloatBuffer.wrap(sortedValues), IntBuffer.wrap(sortedDescriptions));
+        }
+
+        private void sortByStart(int[] order, int from, int to) {
+            boolean sorted = true;
+            for (int i = from + 1; i < to && sorted; i++) {
+                sorted = starts.get(order[i - 1]) <= starts.get(order[i]);
+            }
+            if (sorted) return;
+
+            Integer[] range = new Integer[to - from];
+            for (int i = from; i < to; i++) {
+                range[i - from] = order[i];
+            }
+            Arrays.sort(range, (r1, r2) -> Integer.compare(starts.get(r1), starts.get(r2)));
+            for (int i = from; i < to; i++) {
+                order[i] = range[i - from];
+            }
+        }
+    }
+
+
+    /**
+     * The segments of a sample on one chromosome
+     */
+    private class SegmentList extends AbstractList<LocusScore> implements RandomAccess {
+
+        private final Columns c;
+        private final int from;
+        private final int size;
+
+        SegmentList(Columns c, int from, int size) {
+            this.c = c;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        public LocusScore get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index);
+            int row = from + index;
+            return createSegment(c, row, c.starts.get(row), c.ends.get(row));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+
+    /**
+     * The segments of a sample in whole genome coordinates.  Rows are grouped in parts,  one per chromosome.
+     */
+    private class WholeGenomeList extends AbstractList<LocusScore> implements RandomAccess {
+
+        private final Columns[] parts;
+        private final int[] partOffsets;
+        private final long[] chrOffsets;
+        private final int[] rows;
+
+        WholeGenomeList(Columns[] parts, int[] partOffsets, long[] chrOffsets, int[] rows) {
+            this.parts = parts;
+            this.partOffsets = partOffsets;
+            this.chrOffsets = chrOffsets;
+            this.rows = rows;
+        }
+
+        @Override
+        public LocusScore get(int index) {
+            if (index < 0 || index >= rows.length) throw new IndexOutOfBoundsException("Index: " + index);
+
+            // The last part starting at or before index
+            int p = Arrays.binarySearch(partOffsets, 0, parts.length, index);
+            if (p < 0) p = -p - 2;
+            while (p + 1 < parts.length && partOffsets[p + 1] == index) p++;
+
+            Columns c = parts[p];
+            int row = rows[index];
+            int gStart = (int) ((chrOffsets[p] + c.starts.get(row)) / 1000);
+            int gEnd = (int) ((chrOffsets[p] + c.ends.get(row)) / 1000);
+            return createSegment(c, row, gStart, gEnd);
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+}
@@ -32,7 +32,6 @@ package org.broad.igv.data.seg;
 
 //~--- non-JDK imports --------------------------------------------------------
 
-import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackProperties;
@@ -49,23 +48,17 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
 
     //SegFileParser parser;
     TrackType trackType = TrackType.COPY_NUMBER;
-    float dataMax = -Float.MAX_VALUE;
-    float dataMin = Float.MAX_VALUE;
     /**
-     * Assume data is non-log value until suggested otherwise by the precense
-     * of negative numbers.  TODO This is a fragile assumption, the user should
-     * input this information directly.
+     * Segments by sample and chromosome
      */
-    private boolean logNormalized = false;
-    /**
-     * Map of [heading ->  [chr -> [list of chrSegments]]]
-     */
-    private Map<String, Map<String, List<LocusScore>>> segments = new HashMap();
+    private SegmentStore store = new SegmentStore();
     /**
      * Set of chromosomes represented in this dataset
      */
     private Set<String> chromosomes = new HashSet();
-    private List<String> headings = new ArrayList();
+    /**
+     * Whole genome views,  by heading.  Views share the store's columns.
+     */
     private Map<String, List<LocusScore>> wholeGenomeScoresCache = new HashMap();
     private long lastRefreshTime = 0;
     private TrackProperties trackProperties;
@@ -87,12 +80,7 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
 
 
     public void sortLists() {
-        for (Map.Entry<String, Map<String, List<LocusScore>>> sampleEntry : segments.entrySet()) {
-            for (Map.Entry<String, List<LocusScore>> chrEntry : sampleEntry.getValue().entrySet()) {
-                List<LocusScore> tmp = chrEntry.getValue();
-                FeatureUtils.sortFeatureList(tmp);
-            }
-        }
+        store.finish();
     }
 
 
@@ -103,26 +91,9 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
 
         String chr = genome == null ? c : genome.getCanonicalChrName(c);
 
-        Map<String, List<LocusScore>> chrSegments = segments.get(heading);
-        if (chrSegments == null) {
-            headings.add(heading);
-            chrSegments = new HashMap();
-            segments.put(heading, chrSegments);
-        }
-
-        List<LocusScore> segmentList = chrSegments.get(chr);
-        if (segmentList == null) {
-            segmentList = new ArrayList<LocusScore>();
-            chrSegments.put(chr, segmentList);
-        }
-        segmentList.add(new Segment(start, start, end, end, value, desc));
-        dataMax = Math.max(dataMax, value);
-        dataMin = Math.min(dataMin, value);
-        if (value < 0) {
-            logNormalized = true;
-        }
-
+        store.add(heading, chr, start, end, value, desc);
         chromosomes.add(chr);
+        wholeGenomeScoresCache.clear();
 
     }
 
@@ -144,12 +115,26 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
      * @return
      */
     public List<LocusScore> getSegments(String heading, String chr) {
-        Map<String, List<LocusScore>> chrSegments = segments.get(heading);
-        return (chrSegments == null) ? null : chrSegments.get(chr);
+        return store.getSegments(heading, chr);
     }
 
     public List<String> getSampleNames() {
-        return headings;
+        return store.getSamples();
+    }
+
+    SegmentStore getStore() {
+        return store;
+    }
+
+    /**
+     * Replace the segments of this dataset,  for example with a store read from a binary file.
+     *
+     * @param store
+     */
+    void setStore(SegmentStore store) {
+        this.store = store;
+        this.chromosomes = new HashSet(store.getChromosomes());
+        wholeGenomeScoresCache.clear();
     }
 
     /**
@@ -162,12 +147,14 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
     }
 
     /**
-     * Method description
+     * Assume data is non-log value until suggested otherwise by the precense
+     * of negative numbers.  TODO This is a fragile assumption, the user should
+     * input this information directly.
      *
      * @return
      */
     public boolean isLogNormalized() {
-        return logNormalized;
+        return store.getDataMin() < 0;
     }
 
     /**
@@ -177,7 +164,7 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
      * @return
      */
     public double getDataMax(String chr) {
-        return dataMax;
+        return store.getDataMax();
     }
 
     /**
@@ -187,7 +174,7 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
      * @return
      */
     public double getDataMin(String chr) {
-        return dataMin;
+        return store.getDataMin();
     }
 
     /**
@@ -198,34 +185,9 @@ public class SegmentedAsciiDataSet implements SegmentedDataSet {
      */
     public List<LocusScore> getWholeGenomeScores(String heading) {
 
-
         List<LocusScore> wholeGenomeScores = wholeGenomeScoresCache.get(heading);
         if ((wholeGenomeScores == null) || wholeGenomeScores.isEmpty()) {
-
-            // Compute the smallest concievable feature that could be viewed on the
-            // largest screen.  Be conservative.   The smallest feature is one at
-            // the screen resolution scale in <chr units> / <pixel>
-            double minFeatureSize = 0; // ((double) genome.getLength()) / (maxScreenSize * locationUnit);
-
-            long offset = 0;
-            wholeGenomeScores = new ArrayList(1000);
-            for (String chr : genome.getLongChromosomeNames()) {
-                List<LocusScore> chrSegments = getSegments(heading, chr);
-                if (chrSegments != null) {
-                    int lastgEnd = -1;
-                    for (LocusScore score : chrSegments) {
-                        Segment seg = (Segment) score;
-                        int gStart = genome.getGenomeCoordinate(chr, seg.getStart());
-                        int gEnd = genome.getGenomeCoordinate(chr, seg.getEnd());
-                         if ((gEnd - gStart) > minFeatureSize) {
-                            wholeGenomeScores.add(new Segment(gStart, gStart, gEnd,
-                                    gEnd, seg.getScore(), seg.getDescription()));
-                        }
-                    }
-
-                }
-                offset += genome.getChromosome(chr).getLength();
-            }
+            wholeGenomeScores = store.getWholeGenomeSegments(heading, genome);
             wholeGenomeScoresCache.put(heading, wholeGenomeScores);
         }
         return wholeGenomeScores;
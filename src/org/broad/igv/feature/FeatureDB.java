@@ -27,20 +27,30 @@ package org.broad.igv.feature;
 
 //~--- non-JDK imports --------------------------------------------------------
 
-import com.jidesoft.utils.SortedList;
 import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
 import org.broad.igv.Globals;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
+import org.broad.igv.track.FeatureSource;
 import org.broad.igv.track.SequenceTrack;
 import org.broad.igv.util.collections.MultiMap;
 import htsjdk.tribble.Feature;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This is a placeholder class for a true "feature database" wrapper.  Its purpose
  * is to return a feature given a name.  Used to support the "search" box.
+ * <p/>
+ * Names from feature files loaded in full,  including genome annotations,  are held in compact
+ * {@link FeatureNameIndex} tables rather than the feature map.  A file's table is built while the file is loaded
+ * (see {@link #beginNameIndex(String, File)}),  and for large local files written to the genome cache directory and
+ * memory-mapped on later loads.  Features are looked up in the file's feature source when a name is found.  Reads
+ * take no locks.
  *
  * @author jrobinso
  */
@@ -51,9 +61,24 @@ public class FeatureDB {
      * Map for all features other than genes.
      */
     //private static Map<String, NamedFeature> featureMap = new HashMap(10000);
-    private static Map<String, List<NamedFeature>> featureMap = Collections.synchronizedSortedMap(new TreeMap<String, List<NamedFeature>>());
+    private static ConcurrentSkipListMap<String, List<NamedFeature>> featureMap = new ConcurrentSkipListMap<>();
     private static final int MAX_DUPLICATE_COUNT = 20;
 
+    /**
+     * Name tables of loaded feature files,  with the sources used to look up their features
+     */
+    private static List<NameIndexSource> nameIndexes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Name table being built by the feature file loading on this thread,  if any
+     */
+    private static ThreadLocal<NameIndexLoad> currentLoad = new ThreadLocal<>();
+
+    /**
+     * Name tables with fewer entries than this are not written to disk
+     */
+    static final int MIN_PERSISTED_NAMES = 10000;
+
     public static void addFeature(NamedFeature feature, Genome genome) {
 
         final String name = feature.getName();
@@ -142,26 +167,34 @@ public class FeatureDB {
             }
         }
 
-        synchronized (featureMap) {
-            List<NamedFeature> currentList = featureMap.get(key);
-            if (currentList == null) {
-                List<NamedFeature> newList = new SortedList<NamedFeature>(
-                        new ArrayList<>(), FeatureComparator.get(true));
-                boolean added = newList.add(feature);
-                if (added) {
-                    featureMap.put(key, newList);
-                }
-                return added;
-            } else {
-                // Don't let list grow without bounds
-                if (currentList.size() > MAX_DUPLICATE_COUNT) {
-                    return false;
-                }
-
-                return currentList.add(feature);
-
+        NameIndexLoad load = currentLoad.get();
+        if (load != null) {
+            // Names from a mapped table are already present
+            if (load.index == null) {
+                load.builder.add(key, feature.getChr(), feature.getStart(), feature.getEnd());
             }
+            return true;
         }
+
+        // Lists are replaced rather than modified so readers see a consistent list without locking
+        final boolean[] added = {false};
+        featureMap.compute(key, (k, currentList) -> {
+            if (currentList == null) {
+                added[0] = true;
+                return Collections.singletonList(feature);
+            }
+            // Don't let list grow without bounds
+            if (currentList.size() > MAX_DUPLICATE_COUNT) {
+                return currentList;
+            }
+            List<NamedFeature> newList = new ArrayList<>(currentList.size() + 1);
+            newList.addAll(currentList);
+            newList.add(feature);
+            newList.sort(FeatureComparator.get(true));
+            added[0] = true;
+            return Collections.unmodifiableList(newList);
+        });
+        return added[0];
     }
 
     /*
@@ -218,10 +251,79 @@ public class FeatureDB {
 
     public static void clearFeatures() {
         featureMap.clear();
+        nameIndexes.clear();
     }
 
     static int size() {
-        return featureMap.size();
+        int size = featureMap.size();
+        for (NameIndexSource s : nameIndexes) {
+            size += s.index.getNameCount();
+        }
+        return size;
+    }
+
+    /**
+     * Start collecting the names of features added on this thread into a name table,  rather than the feature map.
+     * If a table for the source file was written by an earlier load and is still current it is mapped instead,  and
+     * names added are ignored.  Must be followed by {@link #endNameIndex(FeatureSource)} on the same thread.
+     *
+     * @param name       identifies the feature file,  and the genome if chromosome names are canonicalized
+     * @param sourceFile the local feature file,  or null if it is remote.  Tables of remote files are not written.
+     */
+    public static void beginNameIndex(String name, File sourceFile) {
+        NameIndexLoad load = new NameIndexLoad();
+        if (sourceFile != null && sourceFile.isFile()) {
+            load.file = getNameIndexFile(name);
+            load.sourceFile = sourceFile;
+            load.index = FeatureNameIndex.load(load.file, sourceFile);
+        }
+        if (load.index == null) {
+            load.builder = new FeatureNameIndex.Builder(MAX_DUPLICATE_COUNT + 1);
+        }
+        currentLoad.set(load);
+    }
+
+    /**
+     * Finish the name table started by {@link #beginNameIndex(String, File)} and make its names searchable.
+     *
+     * @param source source of the loaded features,  used to look up features by name.  If null,  for example because
+     *               loading failed,  the names are discarded.
+     */
+    public static void endNameIndex(FeatureSource source) {
+
+        NameIndexLoad load = currentLoad.get();
+        currentLoad.remove();
+        if (load == null || source == null) return;
+
+        FeatureNameIndex index = load.index;
+        if (index == null) {
+            if (load.builder.size() == 0) return;
+            File file = null;
+            if (load.file != null && load.builder.size() >= MIN_PERSISTED_NAMES) {
+                File dir = load.file.getParentFile();
+                if (dir.exists() || dir.mkdirs()) {
+                    file = load.file;
+                }
+            }
+            index = load.builder.build(file, load.sourceFile);
+        }
+        nameIndexes.add(new NameIndexSource(index, source));
+    }
+
+    /**
+     * Remove the names of features from the source,  when it is no longer loaded
+     *
+     * @param source
+     */
+    public static void removeNameIndex(FeatureSource source) {
+        nameIndexes.removeIf(s -> s.source == source);
+    }
+
+    static File getNameIndexFile(String name) {
+        File dir = new File(DirectoryManager.getGenomeCacheDirectory(), "names");
+        String fileName = new File(name).getName().replaceAll("[^\\w.-]", "_") + "_" +
+                Integer.toHexString(name.hashCode()) + ".names";
+        return new File(dir, fileName);
     }
 
     /**
@@ -229,36 +331,77 @@ public class FeatureDB {
      */
     public static NamedFeature getFeature(String name) {
         String nm = name.trim().toUpperCase();
-        List<NamedFeature> features = featureMap.get(nm);
+        List<NamedFeature> features = getFeatures(nm);
+        return features.isEmpty() ? null : features.get(0);
+    }
 
-        if (features != null) {
-            return features.get(0);
-        } else {
-            return null;
+    /**
+     * Return all features with the name,  most preferred first
+     *
+     * @param key upper case name
+     * @return
+     */
+    private static List<NamedFeature> getFeatures(String key) {
+
+        List<NamedFeature> mapped = featureMap.get(key);
+        List<NamedFeature> features = mapped == null ? new ArrayList<>() : new ArrayList<>(mapped);
+
+        boolean merge = false;
+        for (NameIndexSource s : nameIndexes) {
+            List<FeatureNameIndex.Entry> entries = s.index.getEntries(key);
+            if (entries.isEmpty()) continue;
+            merge |= !features.isEmpty();
+            for (FeatureNameIndex.Entry entry : entries) {
+                features.add(s.resolve(entry));
+            }
+        }
+        if (merge) {
+            features.sort(FeatureComparator.get(true));
         }
+        return features;
     }
 
     /**
      * Get all features which match nm. Not necessarily
      * an exact match. Current implementation will match anything
      * for which name is at the beginning, including but not limited to
-     * exact matches.
-     * <p/>
-     * NOTE: "It is imperative that the user manually synchronize
-     * on [this sorted map] when iterating over any of its
-     * collection views, or the collections views of any of its
-     * subMap, headMap or tailMap views". See
-     * <a href="http://docs.oracle.com/javase/6/docs/api/java/util/Collections.html#synchronizedSortedMap%28java.util.SortedMap%29> here</a>
+     * exact matches.  The map returned is a copy.
      *
      * @param name : Search string. Features which begin with this
      *             string will be found.
      * @return
      */
     static Map<String, List<NamedFeature>> getFeaturesMap(String name) {
+        return getFeaturesMap(name, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Return the first {@code limit} names beginning with the given name,  and their features
+     */
+    private static SortedMap<String, List<NamedFeature>> getFeaturesMap(String name, int limit) {
+
         String nm = name.trim().toUpperCase();
-        SortedMap<String, List<NamedFeature>> treeMap = (SortedMap) featureMap;
+
+        // Each source contributes its first names, the first of the union are the first overall
+        SortedSet<String> names = new TreeSet<>();
         //Search is inclusive to first argument, exclusive to second
-        return treeMap.subMap(nm, nm + Character.MAX_VALUE);
+        for (String key : featureMap.subMap(nm, nm + Character.MAX_VALUE).keySet()) {
+            if (names.size() >= limit) break;
+            names.add(key);
+        }
+        for (NameIndexSource s : nameIndexes) {
+            s.index.getNames(nm, limit, names);
+        }
+
+        SortedMap<String, List<NamedFeature>> result = new TreeMap<>();
+        for (String key : names) {
+            if (result.size() >= limit) break;
+            List<NamedFeature> features = getFeatures(key);
+            if (!features.isEmpty()) {
+                result.put(key, features);
+            }
+        }
+        return result;
     }
 
     /**
@@ -284,25 +427,16 @@ public class FeatureDB {
      */
     public static List<NamedFeature> getFeaturesList(String name, int limit, boolean longestOnly) {
 
-        //Note: We are iterating over submap, this needs
-        //to be synchronized over the main map.
-        synchronized (featureMap) {
-            Map<String, List<NamedFeature>> resultMap = getFeaturesMap(name);
-            Set<String> names = resultMap.keySet();
-            Iterator<String> nameIter = names.iterator();
-            ArrayList<NamedFeature> features = new ArrayList<NamedFeature>((Math.min(limit, names.size())));
-            int ii = 0;
-            while (nameIter.hasNext() && ii < limit) {
-                List<NamedFeature> subFeats = resultMap.get(nameIter.next());
-                if (longestOnly) {
-                    features.add(subFeats.get(0));
-                } else {
-                    features.addAll(subFeats);
-                }
-                ii++;
+        Map<String, List<NamedFeature>> resultMap = getFeaturesMap(name, limit);
+        ArrayList<NamedFeature> features = new ArrayList<NamedFeature>(resultMap.size());
+        for (List<NamedFeature> subFeats : resultMap.values()) {
+            if (longestOnly) {
+                features.add(subFeats.get(0));
+            } else {
+                features.addAll(subFeats);
             }
-            return features;
         }
+        return features;
     }
 
 
@@ -327,29 +461,24 @@ public class FeatureDB {
         }
 
         Map<Integer, BasicFeature> results = new HashMap<Integer, BasicFeature>();
-        List<NamedFeature> possibles = featureMap.get(nm);
+        List<NamedFeature> possibles = getFeatures(nm);
 
-        if (possibles != null) {
-            synchronized (featureMap) {
-                for (NamedFeature f : possibles) {
-                    if (!(f instanceof BasicFeature)) {
-                        continue;
-                    }
+        for (NamedFeature f : possibles) {
+            if (!(f instanceof BasicFeature)) {
+                continue;
+            }
 
-                    BasicFeature bf = (BasicFeature) f;
-                    Codon c = bf.getCodon(currentGenome, proteinPosition);
-                    if (c == null) {
-                        continue;
-                    }
-                    if (c.getAminoAcid().equalsByName(refAA)) {
-                        Set<String> snps = AminoAcidManager.getInstance().getMappingSNPs(c.getSequence(),
-                                AminoAcidManager.getAminoAcidByName(mutAA));
-                        if (snps.size() >= 1) {
-                            results.put(c.getGenomePositions()[0], bf);
-                        }
-                    }
+            BasicFeature bf = (BasicFeature) f;
+            Codon c = bf.getCodon(currentGenome, proteinPosition);
+            if (c == null) {
+                continue;
+            }
+            if (c.getAminoAcid().equalsByName(refAA)) {
+                Set<String> snps = AminoAcidManager.getInstance().getMappingSNPs(c.getSequence(),
+                        AminoAcidManager.getAminoAcidByName(mutAA));
+                if (snps.size() >= 1) {
+                    results.put(c.getGenomePositions()[0], bf);
                 }
-
             }
         }
 
@@ -376,41 +505,104 @@ public class FeatureDB {
         }
 
         Map<Integer, BasicFeature> results = new HashMap<Integer, BasicFeature>();
-        List<NamedFeature> possibles = featureMap.get(nm);
+        List<NamedFeature> possibles = getFeatures(nm);
         String tempNT;
         String brefNT = refNT.toUpperCase();
 
-        if (possibles != null) {
-            synchronized (featureMap) {
-                for (NamedFeature f : possibles) {
-                    if (!(f instanceof BasicFeature)) {
-                        continue;
-                    }
+        for (NamedFeature f : possibles) {
+            if (!(f instanceof BasicFeature)) {
+                continue;
+            }
+
+            BasicFeature bf = (BasicFeature) f;
+
+            int genomePosition = bf.featureToGenomePosition(new int[]{startPosition - 1})[0];
+            if (genomePosition < 0) {
+                continue;
+            }
+            final byte[] nuclSequence = currentGenome.getSequence(bf.getChr(), genomePosition, genomePosition + 1);
+            if (nuclSequence == null) {
+                continue;
+            }
+            tempNT = new String(nuclSequence);
+            if (bf.getStrand() == Strand.NEGATIVE) {
+                tempNT = SequenceTrack.getReverseComplement(tempNT);
+            }
 
-                    BasicFeature bf = (BasicFeature) f;
+            if (tempNT.toUpperCase().equals(brefNT)) {
+                results.put(genomePosition, bf);
+            }
+        }
 
-                    int genomePosition = bf.featureToGenomePosition(new int[]{startPosition - 1})[0];
-                    if (genomePosition < 0) {
+        return results;
+    }
+
+    /**
+     * State of a name table being built while a feature file is loaded
+     */
+    private static class NameIndexLoad {
+        File file;
+        File sourceFile;
+        FeatureNameIndex index;
+        FeatureNameIndex.Builder builder;
+    }
+
+    /**
+     * A name table and the source of its features
+     */
+    private static class NameIndexSource {
+
+        final FeatureNameIndex index;
+        final FeatureSource source;
+
+        NameIndexSource(FeatureNameIndex index, FeatureSource source) {
+            this.index = index;
+            this.source = source;
+        }
+
+        /**
+         * Return the feature the entry refers to.  The entry itself is returned if the feature is not found, for
+         * example if the name belongs to an exon.
+         */
+        NamedFeature resolve(FeatureNameIndex.Entry entry) {
+
+            NamedFeature found = null;
+            try {
+                Iterator<Feature> iter = source.getFeatures(entry.getChr(), entry.getStart(), entry.getEnd());
+                while (iter != null && iter.hasNext()) {
+                    Feature f = iter.next();
+                    if (!(f instanceof NamedFeature) || f.getStart() != entry.getStart() || f.getEnd() != entry.getEnd()) {
                         continue;
                     }
-                    final byte[] nuclSequence = currentGenome.getSequence(bf.getChr(), genomePosition, genomePosition + 1);
-                    if (nuclSequence == null) {
-                        continue;
+                    if (hasName(f, entry.getName())) {
+                        return (NamedFeature) f;
                     }
-                    tempNT = new String(nuclSequence);
-                    if (bf.getStrand() == Strand.NEGATIVE) {
-                        tempNT = SequenceTrack.getReverseComplement(tempNT);
+                    if (found == null) {
+                        found = (NamedFeature) f;
                     }
+                }
+            } catch (Exception e) {
+                log.error("Error looking up feature " + entry.getName(), e);
+            }
+            return found != null ? found : entry;
+        }
 
-                    if (tempNT.toUpperCase().equals(brefNT)) {
-                        results.put(genomePosition, bf);
+        private static boolean hasName(Feature f, String key) {
+            String name = ((NamedFeature) f).getName();
+            if (name != null && name.equalsIgnoreCase(key)) return true;
+            if (f instanceof IGVFeature) {
+                IGVFeature igvFeature = (IGVFeature) f;
+                String id = igvFeature.getIdentifier();
+                if (id != null && id.equalsIgnoreCase(key)) return true;
+                MultiMap<String, String> attributes = igvFeature.getAttributes();
+                if (attributes != null) {
+                    for (String value : attributes.values()) {
+                        if (value.equalsIgnoreCase(key)) return true;
                     }
                 }
-
             }
+            return false;
         }
-
-        return results;
     }
 
     /**
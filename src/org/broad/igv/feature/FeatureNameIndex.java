@@ -0,0 +1,434 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * An immutable table of feature names,  used for the search box in place of holding references to features.
+ * <p/>
+ * Names are stored upper case as UTF-8 bytes in a single sorted block,  with the chromosome, start and end of each
+ * entry in parallel int arrays.  Lookups are binary searches over the block.  The table can be written to a file and
+ * memory-mapped when the file is reloaded,  so it is not rebuilt or held on the heap.  As nothing is modified after
+ * construction reads need no locking.
+ * <p/>
+ * A name can have several entries,  ordered by preference:  shortest chromosome name first,  then longest feature.
+ */
+public class FeatureNameIndex {
+
+    private static Logger log = Logger.getLogger(FeatureNameIndex.class);
+
+    private static final int MAGIC = 0x49474e58;   // "IGNX"
+    private static final int VERSION = 1;
+
+    private final long sourceLength;
+    private final long sourceModified;
+    private final int nameCount;
+    private final String[] chrNames;
+    private final int size;
+    private final IntBuffer nameOffsets;
+    private final IntBuffer chrs;
+    private final IntBuffer starts;
+    private final IntBuffer ends;
+    private final ByteBuffer names;
+
+    private FeatureNameIndex(ByteBuffer buffer) throws IOException {
+
+        ByteBuffer buf = buffer.duplicate();
+        if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            throw new IOException("Not a feature name index");
+        }
+        sourceLength = buf.getLong();
+        sourceModified = buf.getLong();
+        nameCount = buf.getInt();
+
+        chrNames = new String[buf.getInt()];
+        for (int i = 0; i < chrNames.length; i++) {
+            byte[] bytes = new byte[buf.getShort() & 0xffff];
+            buf.get(bytes);
+            chrNames[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        size = buf.getInt();
+        int namesLength = buf.getInt();
+        nameOffsets = slice(buf, 4 * (size + 1)).asIntBuffer();
+        chrs = slice(buf, 4 * size).asIntBuffer();
+        starts = slice(buf, 4 * size).asIntBuffer();
+        ends = slice(buf, 4 * size).asIntBuffer();
+        names = slice(buf, namesLength);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buf, int length) throws IOException {
+        if (buf.remaining() < length) {
+            throw new IOException("Truncated feature name index");
+        }
+        ByteBuffer s = buf.slice();
+        s.limit(length);
+        buf.position(buf.position() + length);
+        return s;
+    }
+
+    /**
+     * Memory-map an index written by {@link Builder#build(File, File)}.  Returns null if the file does not exist,
+     * cannot be read, or was built from a different version of the source file.
+     *
+     * @param file
+     * @param sourceFile the file the index was built from
+     * @return
+     */
+    public static FeatureNameIndex load(File file, File sourceFile) {
+
+        if (!file.exists()) return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            FeatureNameIndex index = new FeatureNameIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (index.sourceLength != sourceFile.length() || index.sourceModified != sourceFile.lastModified()) {
+                log.info("Feature name index " + file.getName() + " is out of date");
+                return null;
+            }
+            return index;
+        } catch (IOException e) {
+            log.error("Error reading feature name index " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of distinct names
+     */
+    public int getNameCount() {
+        return nameCount;
+    }
+
+    /**
+     * Return the entries for the name,  most preferred first.
+     *
+     * @param name upper case name
+     * @return
+     */
+    public List<Entry> getEntries(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        List<Entry> entries = new ArrayList<>(1);
+        for (int i = lowerBound(key); i < size && compare(i, key, false) == 0; i++) {
+            entries.add(new Entry(name, chrNames[chrs.get(i)], starts.get(i), ends.get(i)));
+        }
+        return entries;
+    }
+
+    /**
+     * Add up to {@code limit} distinct names beginning with the prefix to the collection,  in sorted order.
+     *
+     * @param prefix upper case prefix
+     * @param limit
+     * @param result
+     */
+    public void getNames(String prefix, int limit, Collection<String> result) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (int i = lowerBound(key); i < size && count < limit && compare(i, key, true) == 0; i++) {
+            if (i == 0 || !sameName(i - 1, i)) {
+                result.add(getName(i));
+                count++;
+            }
+        }
+    }
+
+    private String getName(int i) {
+        int offset = nameOffsets.get(i);
+        byte[] bytes = new byte[nameOffsets.get(i + 1) - offset];
+        ByteBuffer buf = names.duplicate();
+        buf.position(offset);
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Index of the first entry whose name is not less than the key
+     */
+    private int lowerBound(byte[] key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, key, false) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Compare the name of entry i to the key,  as unsigned bytes.  If {@code prefix} is true names beginning with the
+     * key compare equal.
+     */
+    private int compare(int i, byte[] key, boolean prefix) {
+        int offset = nameOffsets.get(i);
+        int length = nameOffsets.get(i + 1) - offset;
+        int n = Math.min(length, key.length);
+        for (int k = 0; k < n; k++) {
+            int diff = (names.get(offset + k) & 0xff) - (key[k] & 0xff);
+            if (diff != 0) return diff;
+        }
+        return (prefix && length >= key.length) ? 0 : length - key.length;
+    }
+
+    private boolean sameName(int i, int j) {
+        int offset1 = nameOffsets.get(i);
+        int offset2 = nameOffsets.get(j);
+        int length = nameOffsets.get(i + 1) - offset1;
+        if (length != nameOffsets.get(j + 1) - offset2) return false;
+        for (int k = 0; k < length; k++) {
+            if (names.get(offset1 + k) != names.get(offset2 + k)) return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * A name and the location of the feature it refers to.
+     */
+    public static class Entry implements NamedFeature {
+
+        private final String name;
+        private final String chr;
+        private final int start;
+        private final int end;
+
+        Entry(String name, String chr, int start, int end) {
+            this.name = name;
+            this.chr = chr;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getContig() {
+            return chr;
+        }
+
+        public String getChr() {
+            return chr;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+
+
+    /**
+     * Collects names while a feature file is loaded.
+     */
+    public static class Builder {
+
+        private final int maxEntriesPerName;
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> chrIndices = new LinkedHashMap<>();
+        private final IntArrayList chrs = new IntArrayList();
+        private final IntArrayList starts = new IntArrayList();
+        private final IntArrayList ends = new IntArrayList();
+
+        /**
+         * @param maxEntriesPerName entries beyond this number for a name are dropped,  keeping the most preferred
+         */
+        public Builder(int maxEntriesPerName) {
+            this.maxEntriesPerName = maxEntriesPerName;
+        }
+
+        /**
+         * @param name upper case name
+         * @param chr
+         * @param start
+         * @param end
+         */
+        public void add(String name, String chr, int start, int end) {
+            Integer chrIdx = chrIndices.get(chr);
+            if (chrIdx == null) {
+                chrIdx = chrIndices.size();
+                chrIndices.put(chr, chrIdx);
+            }
+            names.add(name);
+            chrs.add(chrIdx);
+            starts.add(start);
+            ends.add(end);
+        }
+
+        public int size() {
+            return names.size();
+        }
+
+        /**
+         * Build the index.  If a file is given the index is written to it and mapped,  recording the length and
+         * modification time of the source file.  If the file cannot be written the index is held in memory.
+         *
+         * @param file       file to write,  or null
+         * @param sourceFile the file the names were read from,  or null
+         * @return
+         */
+        public FeatureNameIndex build(File file, File sourceFile) {
+
+            long sourceLength = sourceFile == null ? 0 : sourceFile.length();
+            long sourceModified = sourceFile == null ? 0 : sourceFile.lastModified();
+
+            if (file != null) {
+                try (OutputStream os = new FileOutputStream(file)) {
+                    write(os, sourceLength, sourceModified);
+                } catch (IOException e) {
+                    log.error("Error writing feature name index " + file.getAbsolutePath(), e);
+                    file.delete();
+                    file = null;
+                }
+            }
+
+            FeatureNameIndex index = file == null ? null : load(file, sourceFile);
+            if (index == null) {
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    write(bytes, sourceLength, sourceModified);
+                    index = new FeatureNameIndex(ByteBuffer.wrap(bytes.toByteArray()));
+                } catch (IOException e) {
+                    // Not expected for an in-memory stream
+                    throw new RuntimeException(e);
+                }
+            }
+            return index;
+        }
+
+        private void write(OutputStream os, long sourceLength, long sourceModified) throws IOException {
+
+            int[] order = sortedOrder();
+
+            byte[][] nameBytes = new byte[order.length][];
+            int nameCount = 0;
+            for (int i = 0; i < order.length; i++) {
+                String name = names.get(order[i]);
+                if (i == 0 || !name.equals(names.get(order[i - 1]))) {
+                    nameCount++;
+                }
+                nameBytes[i] = name.getBytes(StandardCharsets.UTF_8);
+            }
+
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeLong(sourceLength);
+            dos.writeLong(sourceModified);
+            dos.writeInt(nameCount);
+
+            dos.writeInt(chrIndices.size());
+            for (String chr : chrIndices.keySet()) {
+                byte[] bytes = chr.getBytes(StandardCharsets.UTF_8);
+                dos.writeShort(bytes.length);
+                dos.write(bytes);
+            }
+
+            dos.writeInt(order.length);
+            int namesLength = 0;
+            for (byte[] b : nameBytes) namesLength += b.length;
+            dos.writeInt(namesLength);
+
+            int offset = 0;
+            dos.writeInt(offset);
+            for (byte[] b : nameBytes) {
+                offset += b.length;
+                dos.writeInt(offset);
+            }
+            for (int i : order) dos.writeInt(chrs.get(i));
+            for (int i : order) dos.writeInt(starts.get(i));
+            for (int i : order) dos.writeInt(ends.get(i));
+            for (byte[] b : nameBytes) dos.write(b);
+            dos.flush();
+        }
+
+        /**
+         * Order entries by name and preference,  dropping duplicates and entries beyond the per-name limit
+         */
+        private int[] sortedOrder() {
+
+            final String[] chrNames = chrIndices.keySet().toArray(new String[chrIndices.size()]);
+            Integer[] order = new Integer[names.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+
+            Arrays.sort(order, (i, j) -> {
+                int cmp = names.get(i).compareTo(names.get(j));
+                if (cmp != 0) return cmp;
+                cmp = chrNames[chrs.get(i)].length() - chrNames[chrs.get(j)].length();
+                if (cmp != 0) return cmp;
+                cmp = (ends.get(j) - starts.get(j)) - (ends.get(i) - starts.get(i));
+                if (cmp != 0) return cmp;
+                cmp = Integer.compare(chrs.get(i), chrs.get(j));
+                return cmp != 0 ? cmp : Integer.compare(starts.get(i), starts.get(j));
+            });
+
+            IntArrayList result = new IntArrayList(order.length);
+            int count = 0;
+            for (int k = 0; k < order.length; k++) {
+                int i = order[k];
+                if (k > 0) {
+                    int prev = order[k - 1];
+                    if (names.get(i).equals(names.get(prev))) {
+                        if (chrs.get(i) == chrs.get(prev) && starts.get(i) == starts.get(prev) &&
+                                ends.get(i) == ends.get(prev)) {
+                            continue;
+                        }
+                        if (count >= maxEntriesPerName) continue;
+                    } else {
+                        count = 0;
+                    }
+                }
+                result.add(i);
+                count++;
+            }
+            return result.toArray();
+        }
+    }
+}
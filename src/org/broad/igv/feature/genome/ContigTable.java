@@ -0,0 +1,346 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.genome;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contig names and lengths of a genome,  and their layout in the whole genome view,  held in primitive arrays so
+ * that memory and lookup cost stay flat for assemblies with hundreds of thousands of scaffolds.
+ * <p/>
+ * Names are found with an open addressing hash of contig indices.  The whole genome view is described by the prefix
+ * sums of the lengths of its contigs,  genome coordinates are mapped back to contigs by binary search.
+ * <p/>
+ * Small contigs are left out of the whole genome view when they make up only a small part of the genome,  as is the
+ * case for unplaced and alternate contigs of finished assemblies.  Otherwise every contig is included and
+ * consecutive runs of small contigs are drawn as a single pseudo-chromosome,  a {@link Bin}.
+ */
+public class ContigTable {
+
+    /**
+     * Contigs shorter than this fraction of the genome are "small"
+     */
+    static final int SMALL_CONTIG_DIVISOR = 3000;
+
+    /**
+     * Small contigs are dropped from the whole genome view if together they are less than this fraction of the genome
+     */
+    static final double MAX_DROPPED_FRACTION = 0.1;
+
+    /**
+     * Approximate number of bins small contigs are grouped into
+     */
+    static final int BIN_COUNT = 200;
+
+    /**
+     * Maximum number of contigs whose data is summarized for the whole genome view
+     */
+    static final int MAX_SUMMARY_CONTIGS = 10000;
+
+    private final String[] names;
+    private final int[] lengths;
+    private final int[] hashSlots;     // contig index + 1,  0 for an empty slot
+    private final int hashMask;
+    private final long totalLength;
+
+    private final int[] wgContigs;     // indices of the contigs in the whole genome view,  in order
+    private final int[] wgPositions;   // position of each contig in the whole genome view,  or -1
+    private final long[] wgOffsets;    // start of each whole genome contig,  followed by the end of the last
+    private final List<Bin> bins;
+    private int[] summaryContigs;      // indices of the contigs summarized in the whole genome view,  in order
+
+    public ContigTable(List<String> names, int[] lengths) {
+
+        int n = names.size();
+        this.names = names.toArray(new String[n]);
+        this.lengths = lengths;
+
+        long total = 0;
+        for (int len : lengths) total += len;
+        this.totalLength = total;
+
+        int capacity = Integer.highestOneBit(Math.max(2, 2 * n - 1)) << 1;
+        hashSlots = new int[capacity];
+        hashMask = capacity - 1;
+        for (int i = 0; i < n; i++) {
+            int slot = hash(this.names[i]);
+            while (hashSlots[slot] != 0) slot = (slot + 1) & hashMask;
+            hashSlots[slot] = i + 1;
+        }
+
+        // Whole genome layout
+        long smallThreshold = total / SMALL_CONTIG_DIVISOR;
+        long smallTotal = 0;
+        for (int len : lengths) {
+            if (len <= smallThreshold) smallTotal += len;
+        }
+        boolean dropSmall = smallTotal < MAX_DROPPED_FRACTION * total;
+
+        int nWg = 0;
+        int[] wg = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (!dropSmall || lengths[i] > smallThreshold) wg[nWg++] = i;
+        }
+        wgContigs = Arrays.copyOf(wg, nWg);
+
+        wgPositions = new int[n];
+        Arrays.fill(wgPositions, -1);
+        wgOffsets = new long[nWg + 1];
+        for (int i = 0; i < nWg; i++) {
+            wgPositions[wgContigs[i]] = i;
+            wgOffsets[i + 1] = wgOffsets[i] + lengths[wgContigs[i]];
+        }
+
+        bins = Collections.unmodifiableList(dropSmall ? createContigBins() : createBins(Math.max(1, total / BIN_COUNT)));
+    }
+
+    private List<Bin> createContigBins() {
+        List<Bin> bins = new ArrayList<>(wgContigs.length);
+        for (int i = 0; i < wgContigs.length; i++) {
+            bins.add(new Bin(i, 1));
+        }
+        return bins;
+    }
+
+    /**
+     * Group runs of contigs shorter than {@code binLength} into bins of about that length.  Longer contigs get a bin
+     * of their own.
+     */
+    private List<Bin> createBins(long binLength) {
+        List<Bin> bins = new ArrayList<>();
+        int first = -1;
+        for (int i = 0; i < wgContigs.length; i++) {
+            if (lengths[wgContigs[i]] >= binLength) {
+                if (first >= 0) bins.add(new Bin(first, i - first));
+                bins.add(new Bin(i, 1));
+                first = -1;
+            } else {
+                if (first < 0) first = i;
+                if (wgOffsets[i + 1] - wgOffsets[first] >= binLength) {
+                    bins.add(new Bin(first, i - first + 1));
+                    first = -1;
+                }
+            }
+        }
+        if (first >= 0) bins.add(new Bin(first, wgContigs.length - first));
+        return bins;
+    }
+
+    private int hash(String name) {
+        int h = name.hashCode();
+        return (h ^ (h >>> 16)) & hashMask;
+    }
+
+    /**
+     * Return the index of the named contig,  or -1 if there is no such contig
+     */
+    public int indexOf(String name) {
+        if (name == null) return -1;
+        int slot = hash(name);
+        int s;
+        while ((s = hashSlots[slot]) != 0) {
+            if (names[s - 1].equals(name)) return s - 1;
+            slot = (slot + 1) & hashMask;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * @return the names of the contigs in the whole genome view,  in order
+     */
+    public List<String> getWholeGenomeNames() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return names[wgContigs[index]];
+            }
+
+            @Override
+            public int size() {
+                return wgContigs.length;
+            }
+        };
+    }
+
+    /**
+     * Return the names of the contigs whose data is summarized in the whole genome view,  in order.  These are the
+     * whole genome contigs,  or the longest {@link #MAX_SUMMARY_CONTIGS} of them for assemblies with more,  so that
+     * the cost of whole genome summaries is bounded.
+     */
+    public List<String> getSummaryNames() {
+        final int[] contigs = getSummaryContigs();
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return names[contigs[index]];
+            }
+
+            @Override
+            public int size() {
+                return contigs.length;
+            }
+        };
+    }
+
+    private synchronized int[] getSummaryContigs() {
+        if (summaryContigs == null) {
+            if (wgContigs.length <= MAX_SUMMARY_CONTIGS) {
+                summaryContigs = wgContigs;
+            } else {
+                // Length of the shortest contig kept.  Ties at that length are kept in order until the limit.
+                int[] wgLengths = new int[wgContigs.length];
+                for (int i = 0; i < wgContigs.length; i++) wgLengths[i] = lengths[wgContigs[i]];
+                Arrays.sort(wgLengths);
+                int threshold = wgLengths[wgLengths.length - MAX_SUMMARY_CONTIGS];
+                int nTies = MAX_SUMMARY_CONTIGS;
+                for (int len : wgLengths) {
+                    if (len > threshold) nTies--;
+                }
+                int[] contigs = new int[MAX_SUMMARY_CONTIGS];
+                int n = 0;
+                for (int idx : wgContigs) {
+                    int len = lengths[idx];
+                    if (len > threshold || (len == threshold && nTies-- > 0)) contigs[n++] = idx;
+                }
+                summaryContigs = contigs;
+            }
+        }
+        return summaryContigs;
+    }
+
+    /**
+     * @return the length of the whole genome view
+     */
+    public long getWholeGenomeLength() {
+        return wgOffsets[wgContigs.length];
+    }
+
+    public boolean isInWholeGenome(String name) {
+        int idx = indexOf(name);
+        return idx >= 0 && wgPositions[idx] >= 0;
+    }
+
+    /**
+     * Return the offset of the contig in the whole genome view.  Contigs that are not part of the view,  including
+     * unknown contigs,  are placed at its end.
+     */
+    public long getOffset(String name) {
+        int idx = indexOf(name);
+        int pos = idx < 0 ? -1 : wgPositions[idx];
+        return pos < 0 ? wgOffsets[wgContigs.length] : wgOffsets[pos];
+    }
+
+    /**
+     * Return the position of the whole genome view contig containing the genome coordinate {@code position},  that
+     * is the first contig whose end is beyond {@code position}.  Positions past the end map to the last contig.
+     */
+    public int getWholeGenomePosition(long position) {
+        int lo = 0;
+        int hi = wgContigs.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (wgOffsets[mid + 1] > position) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    public String getWholeGenomeName(int position) {
+        return names[wgContigs[position]];
+    }
+
+    public long getWholeGenomeOffset(int position) {
+        return wgOffsets[position];
+    }
+
+    /**
+     * @return the pseudo-chromosomes of the whole genome view,  in order
+     */
+    public List<Bin> getBins() {
+        return bins;
+    }
+
+    /**
+     * A run of consecutive contigs in the whole genome view,  drawn as a single pseudo-chromosome.  Large contigs
+     * are a bin of their own.
+     */
+    public class Bin {
+
+        private final int first;
+        private final int count;
+
+        Bin(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        public String getFirstContig() {
+            return getWholeGenomeName(first);
+        }
+
+        public String getLastContig() {
+            return getWholeGenomeName(first + count - 1);
+        }
+
+        public int getContigCount() {
+            return count;
+        }
+
+        /**
+         * @return the start of the bin in the whole genome view,  in base pairs
+         */
+        public long getOffset() {
+            return wgOffsets[first];
+        }
+
+        public long getLength() {
+            return wgOffsets[first + count] - wgOffsets[first];
+        }
+    }
+}
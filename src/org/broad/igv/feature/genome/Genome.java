@@ -52,16 +52,12 @@ import java.util.*;
 public class Genome {
 
     private static Logger log = Logger.getLogger(Genome.class);
-    public static final int MAX_WHOLE_GENOME = 10000;
 
     private String id;
     private String displayName;
     private List<String> chromosomeNames;
-    private ArrayList<String> longChromosomeNames;
     private LinkedHashMap<String, Chromosome> chromosomeMap;
-    private long totalLength = -1;
-    private long nominalLength = -1;
-    private Map<String, Long> cumulativeOffsets = new HashMap();
+    private ContigTable contigTable;
     private Map<String, String> chrAliasTable;
     private Sequence sequence;
     private FeatureTrack geneTrack;
@@ -111,7 +107,7 @@ public class Genome {
             chromosomeNames = new ArrayList<String>(chromosomeMap.keySet());
         }
 
-
+        initializeContigTable();
         initializeChromosomeAliases();
     }
 
@@ -134,11 +130,21 @@ public class Genome {
             chromosomeNames.add(chromosome.getName());
             chromosomeMap.put(chromosome.getName(), chromosome);
         }
+        initializeContigTable();
         initializeChromosomeAliases();
 
     }
 
 
+    private void initializeContigTable() {
+        int[] lengths = new int[chromosomeNames.size()];
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = chromosomeMap.get(chromosomeNames.get(i)).getLength();
+        }
+        contigTable = new ContigTable(chromosomeNames, lengths);
+    }
+
+
     public String getCanonicalChrName(String str) {
         if (str == null) {
             return str;
@@ -171,15 +177,12 @@ public class Genome {
 
         if (chrAliasTable == null) chrAliasTable = new HashMap<String, String>();
 
-        // Convert names to a set for fast "contains" testing.
-        Set<String> chrNameSet = new HashSet<String>(chromosomeNames);
-
         for (Collection<String> synonyms : synonymsList) {
 
             // Find the chromosome name as used in this genome
             String chr = null;
             for (String syn : synonyms) {
-                if (chrNameSet.contains(syn)) {
+                if (contigTable.indexOf(syn) >= 0) {
                     chr = syn;
                     break;
                 }
@@ -288,7 +291,7 @@ public class Genome {
      * @return
      */
     public String getHomeChromosome() {
-        if (chromosomeNames.size() == 1 || chromosomeNames.size() > MAX_WHOLE_GENOME) {
+        if (chromosomeNames.size() == 1) {
             return chromosomeNames.get(0);
         } else {
             return Globals.CHR_ALL;
@@ -312,31 +315,19 @@ public class Genome {
 
 
     public long getTotalLength() {
-        if (totalLength < 0) {
-            totalLength = 0;
-            for (Chromosome chr : chromosomeMap.values()) {
-                totalLength += chr.getLength();
-            }
-        }
-        return totalLength;
+        return contigTable.getTotalLength();
     }
 
 
+    /**
+     * Return the offset of the chromosome in the whole genome view,  in base pairs.  Chromosomes that are not part of
+     * the whole genome view are placed at its end.
+     *
+     * @param chr
+     * @return
+     */
     public long getCumulativeOffset(String chr) {
-
-        Long cumOffset = cumulativeOffsets.get(chr);
-        if (cumOffset == null) {
-            long offset = 0;
-            for (String c : getLongChromosomeNames()) {
-                if (chr.equals(c)) {
-                    break;
-                }
-                offset += getChromosome(c).getLength();
-            }
-            cumOffset = new Long(offset);
-            cumulativeOffsets.put(chr, cumOffset);
-        }
-        return cumOffset.longValue();
+        return contigTable.getOffset(chr);
     }
 
     /**
@@ -359,21 +350,21 @@ public class Genome {
      */
     public ChromosomeCoordinate getChromosomeCoordinate(int genomeKBP) {
 
-        long cumOffset = 0;
-        List<String> wgChrNames = getLongChromosomeNames();
-        for (String c : wgChrNames) {
-            int chrLen = getChromosome(c).getLength();
-            if ((cumOffset + chrLen) / 1000 > genomeKBP) {
-                int bp = (int) (genomeKBP * 1000 - cumOffset);
-                return new ChromosomeCoordinate(c, bp);
-            }
-            cumOffset += chrLen;
-        }
-
+        // The first chromosome whose end,  in kbp,  is beyond the coordinate
+        long bp = genomeKBP * 1000L;
+        int position = contigTable.getWholeGenomePosition(bp + 999);
+        String c = contigTable.getWholeGenomeName(position);
+        return new ChromosomeCoordinate(c, (int) (bp - contigTable.getWholeGenomeOffset(position)));
+    }
 
-        String c = wgChrNames.get(wgChrNames.size() - 1);
-        int bp = (int) (genomeKBP - cumOffset) * 1000;
-        return new ChromosomeCoordinate(c, bp);
+    /**
+     * Return the pseudo-chromosomes of the whole genome view.  Long chromosomes are drawn individually,  runs of small
+     * contigs of draft assemblies are grouped.
+     *
+     * @return
+     */
+    public List<ContigTable.Bin> getWholeGenomeBins() {
+        return contigTable.getBins();
     }
 
 
@@ -393,23 +384,13 @@ public class Genome {
     }
 
     public String getNextChrName(String chr) {
-        List<String> chrList = getAllChromosomeNames();
-        for (int i = 0; i < chrList.size() - 1; i++) {
-            if (chrList.get(i).equals(chr)) {
-                return chrList.get(i + 1);
-            }
-        }
-        return null;
+        int idx = contigTable.indexOf(chr);
+        return idx >= 0 && idx < contigTable.size() - 1 ? contigTable.getName(idx + 1) : null;
     }
 
     public String getPrevChrName(String chr) {
-        List<String> chrList = getAllChromosomeNames();
-        for (int i = chrList.size() - 1; i > 0; i--) {
-            if (chrList.get(i).equals(chr)) {
-                return chrList.get(i - 1);
-            }
-        }
-        return null;
+        int idx = contigTable.indexOf(chr);
+        return idx > 0 ? contigTable.getName(idx - 1) : null;
     }
 
     /**
@@ -497,52 +478,31 @@ public class Genome {
     }
 
     /**
-     * Return "getChromosomeNames()" with small chromosomes removed.
+     * Return the names of the chromosomes in the whole genome view,  that is "getChromosomeNames()" with small
+     * chromosomes removed.  Small contigs are kept if they make up a significant part of the genome.
      *
      * @return
      */
     public List<String> getLongChromosomeNames() {
-        if (longChromosomeNames == null) {
-            longChromosomeNames = new ArrayList<String>(getAllChromosomeNames().size());
-            long genomeLength = getTotalLength();
-            int maxChromoLength = -1;
-            for (String chrName : getAllChromosomeNames()) {
-                Chromosome chr = getChromosome(chrName);
-                int length = chr.getLength();
-                maxChromoLength = Math.max(maxChromoLength, length);
-                if (length > (genomeLength / 3000)) {
-                    longChromosomeNames.add(chrName);
-                }
-            }
+        return contigTable.getWholeGenomeNames();
+    }
 
-            /**
-             * At this point, we should have some long chromosome names.
-             * However, some genomes (draft ones perhaps) maybe have many small ones
-             * which aren't big enough. We arbitrarily take those which are above
-             * half the size of the max, only if the first method didn't work.
-             */
-            if (longChromosomeNames.size() == 0) {
-                for (String chrName : getAllChromosomeNames()) {
-                    Chromosome chr = getChromosome(chrName);
-                    int length = chr.getLength();
-                    if (length > maxChromoLength / 2) {
-                        longChromosomeNames.add(chrName);
-                    }
-                }
-            }
-        }
-        return longChromosomeNames;
+    /**
+     * Return the names of the chromosomes whose data is summarized in the whole genome view.  For draft assemblies
+     * with very many contigs this is a subset of "getLongChromosomeNames()",  the longest contigs,  so that whole
+     * genome summaries do not visit every contig.
+     *
+     * @return
+     */
+    public List<String> getWholeGenomeSummaryChromosomeNames() {
+        return contigTable.getSummaryNames();
     }
 
+    /**
+     * @return the length of the whole genome view,  in base pairs
+     */
     public long getNominalLength() {
-        if (nominalLength < 0) {
-            nominalLength = 0;
-            for (String chrName : getLongChromosomeNames()) {
-                Chromosome chr = getChromosome(chrName);
-                nominalLength += chr.getLength();
-            }
-        }
-        return nominalLength;
+        return contigTable.getWholeGenomeLength();
     }
 
 
@@ -209,6 +209,9 @@ public class GenomeManager {
             } else if (genomePath.endsWith(".json")) {
                 altGenomePath = genomePath;
                 newGenome = loadJsonFile(genomePath);
+            } else if (genomePath.endsWith(".2bit")) {
+                altGenomePath = genomePath;
+                newGenome = loadTwoBitFile(genomePath);
             } else {
 
                 // Assume a fasta file
@@ -385,6 +388,26 @@ public class GenomeManager {
         return newGenome;
     }
 
+    /**
+     * Create a Genome from a single .2bit file.
+     *
+     * @param genomePath
+     * @return
+     * @throws IOException
+     */
+    private Genome loadTwoBitFile(String genomePath) throws IOException {
+
+        GenomeListItem item = genomeListManager.buildItemFromPath(genomePath);
+        if (item == null) {
+            throw new IOException(genomePath + " does not exist, could not load genome");
+        }
+
+        Sequence sequence = new SequenceWrapper(new TwoBitSequence(genomePath));
+        Genome newGenome = new Genome(item.getId(), item.getDisplayableName(), sequence, true);
+        setCurrentGenome(newGenome);
+        return newGenome;
+    }
+
     private Genome loadJsonFile(String genomePath) throws IOException {
 
         Genome newGenome = null;
@@ -399,9 +422,14 @@ public class GenomeManager {
         JsonElement indexPathObject = json.get("indexURL");
         String indexPath = indexPathObject == null ? null : indexPathObject.getAsString();
 
-        FastaIndexedSequence sequence = fastaPath.endsWith(".gz") ?
-                new FastaBlockCompressedSequence(fastaPath, indexPath) :
-                new FastaIndexedSequence(fastaPath, indexPath);
+        Sequence sequence;
+        if (fastaPath.endsWith(".2bit")) {
+            sequence = new SequenceWrapper(new TwoBitSequence(fastaPath));
+        } else {
+            sequence = fastaPath.endsWith(".gz") ?
+                    new FastaBlockCompressedSequence(fastaPath, indexPath) :
+                    new FastaIndexedSequence(fastaPath, indexPath);
+        }
 
 
         ArrayList<ResourceLocator> tracks = new ArrayList<>();
@@ -549,7 +577,7 @@ public class GenomeManager {
                     BufferedReader reader = new BufferedReader(new InputStreamReader(geneStream));
                     FeatureTrack geneFeatureTrack = createGeneTrack(newGenome, reader,
                             geneFileName, genomeDescriptor.getGeneTrackName(),
-                            genomeDescriptor.getUrl());
+                            genomeDescriptor.getUrl(), archiveFile);
 
                     newGenome.setGeneTrack(geneFeatureTrack);
                 }
@@ -981,9 +1009,10 @@ public class GenomeManager {
      * @param genome
      * @param geneFileName
      * @param geneTrackName
+     * @param sourceFile    local file the gene file is read from,  used to validate a persisted name index.  Can be null.
      */
     public FeatureTrack createGeneTrack(Genome genome, BufferedReader reader, String geneFileName, String geneTrackName,
-                                        String annotationURL) {
+                                        String annotationURL, File sourceFile) {
 
         FeatureDB.clearFeatures();
         FeatureTrack geneFeatureTrack = null;
@@ -1001,12 +1030,19 @@ public class GenomeManager {
                 MessageUtils.showMessage("ERROR: Unrecognized annotation file format: " + geneFileName +
                         "<br>Annotations for genome: " + genome.getId() + " will not be loaded.");
             } else {
-                List<htsjdk.tribble.Feature> genes = parser.loadFeatures(reader, genome);
+                FeatureCollectionSource source = null;
+                FeatureDB.beginNameIndex(genome.getId() + "_" + geneFileName, sourceFile);
+                try {
+                    List<htsjdk.tribble.Feature> genes = parser.loadFeatures(reader, genome);
+                    source = new FeatureCollectionSource(genes, genome);
+                } finally {
+                    FeatureDB.endNameIndex(source);
+                }
                 String name = geneTrackName;
                 if (name == null) name = "Genes";
 
                 String id = genome.getId() + "_genes";
-                geneFeatureTrack = new FeatureTrack(id, name, new FeatureCollectionSource(genes, genome));
+                geneFeatureTrack = new FeatureTrack(id, name, source);
                 geneFeatureTrack.setMinimumHeight(5);
                 geneFeatureTrack.setHeight(35);
                 geneFeatureTrack.setTrackType(TrackType.GENE);
@@ -1,25 +1,40 @@
 package org.broad.igv.feature.genome;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
 import org.broad.igv.util.FileUtils;
-import org.broad.igv.util.LittleEndianInputStream;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
+ * Implementation of Sequence backed by a UCSC .2bit file.
+ * <p/>
+ * The header and the sequence index are read on construction.  The N-block and mask-block tables of a sequence are
+ * read the first time the sequence is queried.  Queries read only the packed bytes (4 bases per byte) overlapping
+ * the query interval.  Both byte orders are supported,  as are version 1 files with 64-bit offsets.
+ * <p/>
  * Created by jrobinso on 6/13/17.
  */
 public class TwoBitSequence implements Sequence {
 
+    private static Logger log = Logger.getLogger(TwoBitSequence.class);
+
     static int SIGNATURE_LE = 0x1a412743;
     static int SIGNATURE_BE = 0x4327411a;
     static int HEADER_BLOCK_SIZE = 12500;
 
+    /**
+     * Bases for each 2-bit code
+     */
+    private static final byte[] BASES = {'T', 'C', 'A', 'G'};
+
     String path;
+    boolean littleEndian;
+    private final Map<String, SequenceRecord> records = new LinkedHashMap<>();
+    private final List<String> chromosomeNames = new ArrayList<>();
 
     public TwoBitSequence(String path) throws IOException {
         this.path = path;
@@ -32,91 +47,217 @@ public class TwoBitSequence implements Sequence {
 
         SeekableStream is = null;
 
-        is = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+        try {
+            is = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+
+            SeekableStream bis = IGVSeekableStreamFactory.getInstance().getBufferedStream(is, HEADER_BLOCK_SIZE);
+
+            DataInputStream dis = new DataInputStream(bis);
+
+            // The signature is written in the byte order of the file
+            int signature = dis.readInt();
+            if (signature == SIGNATURE_BE) {
+                littleEndian = true;
+            } else if (signature == SIGNATURE_LE) {
+                littleEndian = false;
+            } else {
+                throw new IOException("Not a 2bit file: " + path);
+            }
 
-        SeekableStream bis = IGVSeekableStreamFactory.getInstance().getBufferedStream(is, 1000);
+            int version = readInt(dis);   // 0, or 1 for 64-bit offsets
+            if (version != 0 && version != 1) {
+                throw new IOException("Unsupported 2bit version " + version + ": " + path);
+            }
 
-        LittleEndianInputStream lis = new LittleEndianInputStream(bis);
+            int seqCount = readInt(dis);
 
-        int signature = lis.readInt();
+            int reserved = readInt(dis);    // Should be zero
 
-        boolean littleEndian = SIGNATURE_LE == signature;
-        // TODO -- handle big endian
+            for (int i = 0; i < seqCount; i++) {
 
-        int version = lis.readInt();   // Should be zero
+                int nameSize = dis.readUnsignedByte();
 
-        int seqCount = lis.readInt();
+                byte[] seqNameBytes = new byte[nameSize];
+                dis.readFully(seqNameBytes);
+                String seqName = new String(seqNameBytes);
 
-        int reserved = lis.readInt();    // Should be zero
+                long offset = version == 1 ? readLong(dis) : readInt(dis) & 0xffffffffL;
 
-        Map<String, Integer> offsets = new LinkedHashMap<>();
+                records.put(seqName, new SequenceRecord(offset));
+                chromosomeNames.add(seqName);
+            }
 
-        for (int i = 0; i < seqCount; i++) {
+            // Sequence sizes are needed up front to define the genome
+            for (SequenceRecord record : records.values()) {
+                bis.seek(record.offset);
+                record.dnaSize = readInt(dis);
+            }
 
-            byte nameSize = lis.readByte();
+        } finally {
+            if (is != null) {
+                is.close();
+            }
+        }
 
-            byte[] seqNameBytes = new byte[nameSize];
-            lis.readFully(seqNameBytes);
-            String seqName = new String(seqNameBytes);
+    }
 
-            int offset = lis.readInt();
+    private int readInt(DataInputStream dis) throws IOException {
+        int value = dis.readInt();
+        return littleEndian ? Integer.reverseBytes(value) : value;
+    }
 
-            offsets.put(seqName, offset);
+    private long readLong(DataInputStream dis) throws IOException {
+        long value = dis.readLong();
+        return littleEndian ? Long.reverseBytes(value) : value;
+    }
 
+    private int[] readInts(DataInputStream dis, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = readInt(dis);
         }
+        return values;
+    }
 
-        for (Integer offset : offsets.values()) {
+    /**
+     * Return the sequence for the query interval.  Coordinates are "ucsc" style (0 based,  end exclusive).  Bases in
+     * N blocks are returned as 'N' and masked bases as lower case.
+     */
+    @Override
+    public byte[] getSequence(String chr, int qstart, int qend, boolean useCache) {
 
-            bis.seek(offset);
-            int dnaSize = lis.readInt();
+        SequenceRecord record = records.get(chr);
+        if (record == null) {
+            log.info("No 2bit sequence entry for: " + chr);
+            return null;
+        }
 
-            int nBlockCount = lis.readInt();
-            int [] nBlockStarts = new int[nBlockCount];
-            for(int i=0; i<nBlockCount; i++) {
-                nBlockStarts[i] = lis.readInt();
-            }
-            int [] nBlockSizes = new int[nBlockCount];
-            for(int i=0; i<nBlockCount; i++) {
-                nBlockSizes[i] = lis.readInt();
-            }
+        final int start = Math.max(0, qstart);
+        final int end = Math.min(record.dnaSize, qend);
+        if (start >= end) {
+            return null;
+        }
 
-            int maskBlockCount = lis.readInt();
-            int [] maskBlockStarts = new int[maskBlockCount];
-            for(int i=0; i<maskBlockCount; i++) {
-                maskBlockStarts[i] = lis.readInt();
-            }
-            int [] maskBlockSizes = new int[maskBlockCount];
-            for(int i=0; i<maskBlockCount; i++) {
-                maskBlockSizes[i] = lis.readInt();
+        SeekableStream is = null;
+        try {
+            is = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+
+            record.loadBlocks(is);
+
+            // Read only the packed bytes overlapping the interval
+            int firstByte = start / 4;
+            int lastByte = (end - 1) / 4;
+            byte[] packed = new byte[lastByte - firstByte + 1];
+            is.seek(record.packedDnaOffset + firstByte);
+            is.readFully(packed);
+
+            byte[] bases = new byte[end - start];
+            for (int i = start; i < end; i++) {
+                int b = packed[(i >> 2) - firstByte];
+                int shift = 6 - 2 * (i & 3);
+                bases[i - start] = BASES[(b >> shift) & 3];
             }
 
+            applyBlocks(record.nBlockStarts, record.nBlockSizes, start, end, bases, false);
+            applyBlocks(record.maskBlockStarts, record.maskBlockSizes, start, end, bases, true);
+
+            return bases;
+
+        } catch (IOException e) {
+            log.error("Error loading sequence " + chr + ":" + qstart + "-" + qend, e);
+            return null;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    log.error("Error closing " + path, e);
+                }
+            }
         }
+    }
 
+    /**
+     * Replace bases covered by the blocks with 'N',  or with lower case if {@code mask} is true.  Blocks are sorted
+     * by start and do not overlap.
+     */
+    private static void applyBlocks(int[] blockStarts, int[] blockSizes, int start, int end, byte[] bases, boolean mask) {
 
-    }
+        // First block that could end after the start of the interval
+        int idx = Arrays.binarySearch(blockStarts, start);
+        if (idx < 0) {
+            idx = Math.max(0, -idx - 2);
+        }
 
-    @Override
-    public byte[] getSequence(String chr, int start, int end, boolean useCache) {
-        return new byte[0];
+        for (int i = idx; i < blockStarts.length && blockStarts[i] < end; i++) {
+            int blockStart = Math.max(start, blockStarts[i]);
+            int blockEnd = Math.min(end, blockStarts[i] + blockSizes[i]);
+            for (int p = blockStart; p < blockEnd; p++) {
+                bases[p - start] = mask ? (byte) Character.toLowerCase(bases[p - start]) : (byte) 'N';
+            }
+        }
     }
 
     @Override
     public byte getBase(String chr, int position) {
-        return 0;
+        byte[] bases = getSequence(chr, position, position + 1, false);
+        return bases == null || bases.length == 0 ? 0 : bases[0];
     }
 
     @Override
     public List<String> getChromosomeNames() {
-        return null;
+        return chromosomeNames;
     }
 
     @Override
     public int getChromosomeLength(String chrname) {
-        return 0;
+        SequenceRecord record = records.get(chrname);
+        return record == null ? -1 : record.dnaSize;
     }
 
     @Override
     public boolean isRemote() {
         return FileUtils.isRemote(path);
     }
+
+    /**
+     * Location and size of a sequence.  The N and mask block tables are read on first use.
+     */
+    private class SequenceRecord {
+
+        final long offset;
+        int dnaSize;
+        long packedDnaOffset;
+        int[] nBlockStarts;
+        int[] nBlockSizes;
+        int[] maskBlockStarts;
+        int[] maskBlockSizes;
+        volatile boolean blocksLoaded = false;
+
+        SequenceRecord(long offset) {
+            this.offset = offset;
+        }
+
+        synchronized void loadBlocks(SeekableStream is) throws IOException {
+
+            if (blocksLoaded) return;
+
+            SeekableStream bis = IGVSeekableStreamFactory.getInstance().getBufferedStream(is, HEADER_BLOCK_SIZE);
+            bis.seek(offset + 4);    // Skip dnaSize
+            DataInputStream dis = new DataInputStream(bis);
+
+            int nBlockCount = readInt(dis);
+            nBlockStarts = readInts(dis, nBlockCount);
+            nBlockSizes = readInts(dis, nBlockCount);
+
+            int maskBlockCount = readInt(dis);
+            maskBlockStarts = readInts(dis, maskBlockCount);
+            maskBlockSizes = readInts(dis, maskBlockCount);
+
+            int reserved = readInt(dis);
+
+            packedDnaOffset = offset + 4 + 4 + 8L * nBlockCount + 4 + 8L * maskBlockCount + 4;
+            blocksLoaded = true;
+        }
+    }
 }
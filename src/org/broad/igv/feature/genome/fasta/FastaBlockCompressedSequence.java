@@ -8,9 +8,9 @@ import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
 import java.io.BufferedInputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Created by jrobinso on 6/23/17.
@@ -34,13 +34,14 @@ public class FastaBlockCompressedSequence extends FastaIndexedSequence {
         readGziMappings(indexPath);
     }
 
-    @Override
     /**
-     * Read the bytes between VIRTUAL file position posStart and posEnd
+     * Read the bases between VIRTUAL file position posStart and posEnd into dest,  skipping line terminators.
      *
      * @throws IOException
      */
-    protected byte[] readBytes(long posStart, long posEnd) throws IOException {
+    @Override
+    protected int readBases(long posStart, long posEnd, int lineOffset, int basesPerLine, int bytesPerLine,
+                            byte[] dest) throws IOException {
 
         Mapping m1 = findBlockContaining(posStart);
         int d1 = (int) (posStart - m1.uncompressedOffset);
@@ -48,20 +49,21 @@ public class FastaBlockCompressedSequence extends FastaIndexedSequence {
 
         SeekableStream ss = null;
         try {
-            int nBytes = (int) (posEnd - posStart);
+            long nBytes = posEnd - posStart;
 
-            int bufferSize = Math.max(512000, nBytes / 8);
+            int bufferSize = (int) Math.max(512000, nBytes / 8);
 
             ss = new SeekableBufferedStream(IGVSeekableStreamFactory.getInstance().getStreamFor(path), bufferSize);
 
             BlockCompressedInputStream bis = new BlockCompressedInputStream(ss);
 
-            byte[] bytes = new byte[nBytes];
+            byte[] bytes = new byte[(int) nBytes];
 
             bis.seek(vp1);
-            readFully(bytes, bis);
+            int n = readFully(bis, bytes);
+
+            return copyBases(ByteBuffer.wrap(bytes, 0, n), lineOffset, basesPerLine, bytesPerLine, dest);
 
-            return bytes;
         } finally {
             if (ss != null) {
                 ss.close();
@@ -102,22 +104,6 @@ public class FastaBlockCompressedSequence extends FastaIndexedSequence {
 
     }
 
-    private void readFully(byte[] b, InputStream is) throws IOException {
-        int len = b.length;
-        if (len < 0) {
-            throw new IndexOutOfBoundsException();
-        } else {
-            int count;
-            for (int n = 0; n < len; n += count) {
-                count = is.read(b, n, len - n);
-                if (count < 0) {
-                    throw new EOFException();
-                }
-            }
-
-        }
-    }
-
     public static class Mapping {
 
         long compressedOffset;
@@ -31,10 +31,13 @@ import org.broad.igv.feature.genome.Sequence;
 import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.igv.util.stream.SeekableMappedStream;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -84,6 +87,9 @@ public class FastaIndexedSequence implements Sequence {
      * offset     = (9 - 5) = 4
      * start byte = (1*6) + 3 = 10
      * end   line = 2
+     * <p/>
+     * The bases are copied into an array of the exact size of the interval,  skipping line terminators.  If the file
+     * ends before the interval does the bases that could be read are returned.
      *
      * @param chr
      * @param qstart
@@ -108,7 +114,6 @@ public class FastaIndexedSequence implements Sequence {
 
             final int bytesPerLine = idxEntry.getBytesPerLine();
             final int basesPerLine = idxEntry.getBasesPerLine();
-            int nEndBytes = bytesPerLine - basesPerLine;
 
             int startLine = start / basesPerLine;
             int endLine = end / basesPerLine;
@@ -127,29 +132,9 @@ public class FastaIndexedSequence implements Sequence {
                 return null;
             }
 
-            // Read all the bytes in the range.  This will include endline characters
-            byte[] allBytes = readBytes(startByte, endByte);
-
-            // Create the array for the sequence -- this will be "allBytes" without the endline characters.
-            ByteArrayOutputStream bos = new ByteArrayOutputStream(end - start);
-
-            int srcPos = 0;
-
-            // Copy first line
-            final int allBytesLength = allBytes.length;
-            if (offset > 0) {
-                int nBases = Math.min(end - start, basesPerLine - offset);
-                bos.write(allBytes, srcPos, nBases);
-                srcPos += (nBases + nEndBytes);
-            }
-
-            while (srcPos < allBytesLength) {
-                int nBases = Math.min(basesPerLine, allBytesLength - srcPos);
-                bos.write(allBytes, srcPos, nBases);
-                srcPos += (nBases + nEndBytes);
-            }
-
-            return bos.toByteArray();
+            byte[] bases = new byte[end - start];
+            int nBases = readBases(startByte, endByte, offset, basesPerLine, bytesPerLine, bases);
+            return nBases == bases.length ? bases : Arrays.copyOf(bases, nBases);
 
         } catch (IOException e) {
             log.error("Error loading sequence " + chr + ":" + qstart + "-" + qend, e);
@@ -165,20 +150,35 @@ public class FastaIndexedSequence implements Sequence {
 
 
     /**
-     * Read the bytes between file position posStart and posEnd
+     * Read the bases between file position posStart and posEnd into dest,  skipping line terminators.  Memory-mapped
+     * files are copied straight from the mapping,  other files are read with a single request for the whole range.
      *
+     * @param posStart
+     * @param posEnd
+     * @param lineOffset   position of posStart within its line
+     * @param basesPerLine
+     * @param bytesPerLine
+     * @param dest         destination
+     * @return the number of bases read,  less than the length of dest if the file ends before posEnd
      * @throws IOException
      */
-    protected byte[] readBytes(long posStart, long posEnd) throws IOException {
+    protected int readBases(long posStart, long posEnd, int lineOffset, int basesPerLine, int bytesPerLine,
+                            byte[] dest) throws IOException {
 
         SeekableStream ss = null;
         try {
             ss = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
-            int nBytes = (int) (posEnd - posStart);
-            byte[] bytes = new byte[nBytes];
-            ss.seek(posStart);
-            ss.readFully(bytes);
-            return bytes;
+            ByteBuffer buffer;
+            if (ss instanceof SeekableMappedStream) {
+                int nBytes = (int) (Math.min(posEnd, ss.length()) - posStart);
+                buffer = ((SeekableMappedStream) ss).slice(posStart, Math.max(0, nBytes));
+            } else {
+                byte[] bytes = new byte[(int) (posEnd - posStart)];
+                ss.seek(posStart);
+                int nBytes = readFully(ss, bytes);
+                buffer = ByteBuffer.wrap(bytes, 0, nBytes);
+            }
+            return copyBases(buffer, lineOffset, basesPerLine, bytesPerLine, dest);
         } finally {
             if (ss != null) {
                 ss.close();
@@ -186,6 +186,50 @@ public class FastaIndexedSequence implements Sequence {
         }
     }
 
+    /**
+     * Read bytes from the stream until b is full or the stream ends.
+     *
+     * @return the number of bytes read
+     */
+    static int readFully(InputStream is, byte[] b) throws IOException {
+        int n = 0;
+        while (n < b.length) {
+            int count = is.read(b, n, b.length - n);
+            if (count < 0) {
+                break;
+            }
+            n += count;
+        }
+        return n;
+    }
+
+    /**
+     * Copy bases from the buffer,  starting at its position,  to dest,  skipping line terminators.  Copying stops when
+     * dest is full or the buffer is exhausted.  If the buffer ends first the terminator of a final short line is
+     * dropped.
+     *
+     * @return the number of bases copied
+     */
+    static int copyBases(ByteBuffer buffer, int lineOffset, int basesPerLine, int bytesPerLine, byte[] dest) {
+        int column = lineOffset;
+        int destPos = 0;
+        while (destPos < dest.length && buffer.hasRemaining()) {
+            if (column >= basesPerLine) {
+                buffer.position(Math.min(buffer.limit(), buffer.position() + bytesPerLine - column));
+                column = 0;
+                continue;
+            }
+            int n = Math.min(Math.min(basesPerLine - column, dest.length - destPos), buffer.remaining());
+            buffer.get(dest, destPos, n);
+            destPos += n;
+            column += n;
+        }
+        if (destPos < dest.length) {
+            while (destPos > 0 && (dest[destPos - 1] == '\n' || dest[destPos - 1] == '\r')) destPos--;
+        }
+        return destPos;
+    }
+
     @Override
     public List<String> getChromosomeNames() {
         return chromoNamesList;
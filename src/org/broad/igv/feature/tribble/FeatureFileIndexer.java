@@ -0,0 +1,255 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.tribble;
+
+import htsjdk.samtools.util.LocationAware;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.FeatureCodec;
+import htsjdk.tribble.Tribble;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.linear.LinearIndexCreator;
+import htsjdk.tribble.readers.PositionalBufferedStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.data.BasicScore;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.tools.IgvTools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Builds a tribble linear index for a local, uncompressed feature file in a single streaming pass,  without holding
+ * features in memory.  The whole-genome feature coverage is computed in the same pass and stored as index
+ * properties,  so it is available when the index is reloaded.
+ * <p/>
+ * Indexes are written next to the feature file.  If that directory is not writable they are written to a sidecar
+ * directory in the IGV directory,  and found there on subsequent loads as long as they are newer than the file.
+ */
+public class FeatureFileIndexer {
+
+    private static Logger log = Logger.getLogger(FeatureFileIndexer.class);
+
+    static final String COVERAGE_GENOME_PROPERTY = "IGV.coverage.genome";
+    static final String COVERAGE_PROPERTY = "IGV.coverage";
+
+    /**
+     * Number of bins of the whole-genome coverage
+     */
+    static final int COVERAGE_BINS = 1000;
+
+    /**
+     * Index the file.  Returns null if the file is not sorted by chromosome and start position, and so cannot be
+     * indexed.
+     *
+     * @param path   path to a local, uncompressed feature file
+     * @param codec
+     * @param genome optional,  if null coverage is not computed
+     * @return
+     * @throws IOException
+     */
+    public static Index createIndex(String path, FeatureCodec codec, Genome genome) throws IOException {
+
+        File file = new File(path);
+        LinearIndexCreator creator = new LinearIndexCreator(file, IgvTools.LINEAR_BIN_SIZE);
+        GenomeCoverage coverage = (genome == null || genome.getId() == null) ? null : new GenomeCoverage(genome);
+
+        LocationAware source = codec.makeIndexableSourceFromStream(new PositionalBufferedStream(new FileInputStream(file)));
+        try {
+            codec.readHeader(source);
+
+            Set<String> seenChrs = new HashSet<>();
+            String lastChr = null;
+            int lastStart = -1;
+            while (!codec.isDone(source)) {
+                long position = source.getPosition();
+                Feature f = codec.decode(source);
+                if (f == null) continue;
+
+                String chr = f.getChr();
+                if (!chr.equals(lastChr)) {
+                    if (!seenChrs.add(chr)) {
+                        log.info(path + " is not sorted by chromosome and cannot be indexed");
+                        return null;
+                    }
+                    lastChr = chr;
+                    lastStart = -1;
+                }
+                if (f.getStart() < lastStart) {
+                    log.info(path + " is not sorted by start position and cannot be indexed");
+                    return null;
+                }
+                lastStart = f.getStart();
+
+                creator.addFeature(f, position);
+                if (coverage != null) {
+                    coverage.add(f);
+                }
+            }
+
+            if (coverage != null) {
+                creator.addProperty(COVERAGE_GENOME_PROPERTY, genome.getId());
+                creator.addProperty(COVERAGE_PROPERTY, coverage.encode());
+            }
+            return creator.finalizeIndex(source.getPosition());
+
+        } finally {
+            codec.close(source);
+        }
+    }
+
+    /**
+     * Write the index next to the feature file,  or to the sidecar directory if that is not possible.
+     *
+     * @param index
+     * @param path  path to the feature file
+     * @return the path of the index written,  or null if it could not be written
+     */
+    public static String writeIndex(Index index, String path) {
+
+        File file = new File(path);
+        File dir = file.getAbsoluteFile().getParentFile();
+        File idxFile = (dir != null && dir.canWrite()) ?
+                new File(path + Tribble.STANDARD_INDEX_EXTENSION) :
+                getSidecarIndexFile(path);
+
+        try {
+            File idxDir = idxFile.getParentFile();
+            if (idxDir != null && !idxDir.exists()) {
+                idxDir.mkdirs();
+            }
+            IgvTools.writeTribbleIndex(index, idxFile.getAbsolutePath());
+            return idxFile.exists() ? idxFile.getAbsolutePath() : null;
+        } catch (IOException e) {
+            log.error("Error writing index for " + path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Return the path of a sidecar index for the feature file,  or null if there is none or it is older than the file.
+     *
+     * @param path
+     * @return
+     */
+    public static String findSidecarIndex(String path) {
+        File idxFile = getSidecarIndexFile(path);
+        return idxFile.exists() && idxFile.lastModified() >= new File(path).lastModified() ?
+                idxFile.getAbsolutePath() : null;
+    }
+
+    static File getSidecarIndexFile(String path) {
+        File file = new File(path).getAbsoluteFile();
+        File dir = new File(DirectoryManager.getIgvDirectory(), "index");
+        String name = file.getName() + "_" + Integer.toHexString(file.getPath().hashCode()) + Tribble.STANDARD_INDEX_EXTENSION;
+        return new File(dir, name);
+    }
+
+    /**
+     * Return the whole-genome coverage stored in the index,  or null if the index has none for the genome.
+     *
+     * @param index
+     * @param genome
+     * @return
+     */
+    public static List<LocusScore> getGenomeCoverage(Index index, Genome genome) {
+
+        if (genome == null || genome.getId() == null) return null;
+        Map<String, String> properties = index.getProperties();
+        if (properties == null || !genome.getId().equals(properties.get(COVERAGE_GENOME_PROPERTY))) {
+            return null;
+        }
+        String value = properties.get(COVERAGE_PROPERTY);
+        if (value == null) return null;
+
+        String[] tokens = value.split(",");
+        if (tokens.length != COVERAGE_BINS) return null;
+
+        double step = GenomeCoverage.getStep(genome);
+        List<LocusScore> scores = new ArrayList<>();
+        for (int i = 0; i < tokens.length; i++) {
+            int count = Integer.parseInt(tokens[i]);
+            if (count > 0) {
+                scores.add(new BasicScore((int) (i * step), (int) ((i + 1) * step), count));
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Feature counts in bins spanning the genome,  in the whole-genome coordinates (kb) of {@link Genome#getCumulativeOffset}
+     */
+    static class GenomeCoverage {
+
+        final Genome genome;
+        final double step;
+        final int[] counts = new int[COVERAGE_BINS];
+        final Set<String> chrNames;
+
+        String lastChr;
+        String lastGenomeChr;
+
+        GenomeCoverage(Genome genome) {
+            this.genome = genome;
+            this.step = getStep(genome);
+            this.chrNames = new HashSet<>(genome.getLongChromosomeNames());
+        }
+
+        static double getStep(Genome genome) {
+            return ((double) genome.getNominalLength() / 1000) / COVERAGE_BINS;
+        }
+
+        void add(Feature f) {
+            if (!f.getChr().equals(lastChr)) {
+                lastChr = f.getChr();
+                String chr = genome.getCanonicalChrName(lastChr);
+                lastGenomeChr = chrNames.contains(chr) ? chr : null;
+            }
+            if (lastGenomeChr == null) return;
+
+            long offset = genome.getCumulativeOffset(lastGenomeChr);
+            int genStart = (int) ((offset + f.getStart()) / 1000);
+            int genEnd = (int) ((offset + f.getEnd()) / 1000);
+            int binStart = Math.min(counts.length - 1, (int) (genStart / step));
+            int binEnd = Math.min(counts.length - 1, (int) (genEnd / step));
+            for (int i = binStart; i <= binEnd; i++) {
+                counts[i]++;
+            }
+        }
+
+        String encode() {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 0; i < counts.length; i++) {
+                if (i > 0) buf.append(',');
+                buf.append(counts[i]);
+            }
+            return buf.toString();
+        }
+    }
+}
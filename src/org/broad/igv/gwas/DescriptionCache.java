@@ -96,6 +96,7 @@ public class DescriptionCache {
 
         this.chrs = new ArrayList<String>();
         this.locations = new ArrayList<Integer>();
+        this.values = new ArrayList<Double>();
         this.descriptions = new ArrayList<String>();
     }
 
@@ -30,7 +30,9 @@ import org.broad.igv.util.collections.DoubleArrayList;
 import org.broad.igv.util.collections.FloatArrayList;
 import org.broad.igv.util.collections.IntArrayList;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 
 /**
@@ -51,18 +53,15 @@ public class GWASData {
     private LinkedHashMap<String, DoubleArrayList> values = new LinkedHashMap();
     // Cache containing descriptions i.e. original rows from the parsed result file
     private DescriptionCache descriptionCache = new DescriptionCache();
-    private IntArrayList fileIndex = new IntArrayList(100);
     private double maxValue = 0;
+    // Multi-resolution summaries of the data points,  by chr
+    private Map<String, GWASSummary> summaries = new HashMap<>();
 
     public DescriptionCache getDescriptionCache() {
         return descriptionCache;
     }
 
 
-    public IntArrayList getFileIndex() {
-        return fileIndex;
-    }
-
     public double getMaxValue() {
         return maxValue;
     }
@@ -201,6 +200,54 @@ public class GWASData {
     }
 
 
+    /**
+     * Build the multi-resolution summaries of all chromosomes.  Called once all data points have been added.
+     */
+    public synchronized void computeSummaries() {
+        summaries.clear();
+        for (String chr : locations.keySet()) {
+            getSummary(chr);
+        }
+    }
+
+    /**
+     * Return the multi-resolution summary of the chromosome's data points,  building it if necessary.
+     *
+     * @param chr
+     * @return the summary,  or null if there is no data for chr
+     */
+    synchronized GWASSummary getSummary(String chr) {
+        GWASSummary summary = summaries.get(chr);
+        if (summary == null && locations.containsKey(chr) && values.containsKey(chr)) {
+            IntArrayList locList = locations.get(chr);
+            summary = new GWASSummary(locList.toArray(), values.get(chr).toArray(), locList.size(), maxValue);
+            summaries.put(chr, summary);
+        }
+        return summary;
+    }
+
+    /**
+     * Return the index of the first data point of the chromosome at or after {@code location}.  Locations are sorted,
+     * so this is a binary search.
+     *
+     * @param locations sorted data point locations of a chromosome
+     * @param location
+     * @return
+     */
+    static int getStartIndex(int[] locations, double location) {
+        int low = 0;
+        int high = locations.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (locations[mid] < location) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     public LinkedHashMap<String, IntArrayList> getLocations() {
         return locations;
     }
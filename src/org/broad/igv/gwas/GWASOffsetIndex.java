@@ -0,0 +1,350 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.broad.igv.gwas;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.util.LittleEndianInputStream;
+import htsjdk.tribble.util.LittleEndianOutputStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.ParsingUtils;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * File offsets of the data rows of a GWAS result file,  sampled every {@link #SAMPLE_INTERVAL} data points of each
+ * chromosome,  so the rows around a data point can be read with a single seek.  For bgzipped files the offsets are
+ * virtual file pointers.  Plain gzipped files cannot be indexed.
+ * <p/>
+ * The index is recorded while the file is parsed.  For large local files it is also saved next to the file with the
+ * extension ".gwi" and read by later sessions instead of being recorded again.
+ * <p/>
+ * File layout (little endian):  magic, version, block compressed flag, sample interval, chromosome count, and per
+ * chromosome:  name, data point count, offset count, offsets.
+ */
+class GWASOffsetIndex {
+
+    private static final Logger log = Logger.getLogger(GWASOffsetIndex.class);
+
+    static final String EXTENSION = ".gwi";
+
+    static final int MAGIC = 0x49415747;   // "GWAI"
+    static final int VERSION = 1;
+    static final int SAMPLE_INTERVAL = 100;
+
+    /**
+     * Indexes of files with fewer data points are not saved
+     */
+    static final int MIN_SAVED_POINTS = 1000000;
+
+    private final String path;
+    private final boolean blockCompressed;
+    private final Map<String, long[]> offsets;
+    private final Map<String, Integer> pointCounts;
+
+    private GWASOffsetIndex(String path, boolean blockCompressed, Map<String, long[]> offsets,
+                            Map<String, Integer> pointCounts) {
+        this.path = path;
+        this.blockCompressed = blockCompressed;
+        this.offsets = offsets;
+        this.pointCounts = pointCounts;
+    }
+
+    /**
+     * Return the offset of the row of the data point at or before {@code index} which starts a sample.  Reading
+     * from this offset,  the data point is {@code index - getSampleStart(index)} data rows later.
+     *
+     * @param chr
+     * @param index index of the data point within the chromosome
+     * @return the offset,  or -1 if the data point is not in the index
+     */
+    long getOffset(String chr, int index) {
+        long[] chrOffsets = offsets.get(chr);
+        if (chrOffsets == null || index < 0 || index >= pointCounts.get(chr)) {
+            return -1;
+        }
+        return chrOffsets[index / SAMPLE_INTERVAL];
+    }
+
+    static int getSampleStart(int index) {
+        return index - index % SAMPLE_INTERVAL;
+    }
+
+    /**
+     * @return true if the index has the same number of data points per chromosome as the parsed data
+     */
+    boolean isConsistent(GWASData gData) {
+        if (pointCounts.size() != gData.getLocations().size()) return false;
+        for (Map.Entry<String, IntArrayList> entry : gData.getLocations().entrySet()) {
+            Integer count = pointCounts.get(entry.getKey());
+            if (count == null || count != entry.getValue().size()) return false;
+        }
+        return true;
+    }
+
+    int getPointCount() {
+        int count = 0;
+        for (Integer n : pointCounts.values()) {
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Open a reader on the data file positioned at {@code offset}.
+     */
+    LineReader openReader(long offset) throws IOException {
+        SeekableStream ss = IGVSeekableStreamFactory.getInstance().getBufferedStream(
+                IGVSeekableStreamFactory.getInstance().getStreamFor(path));
+        if (blockCompressed) {
+            BlockCompressedInputStream bgzf = new BlockCompressedInputStream(ss);
+            bgzf.seek(offset);
+            return new LineReader(bgzf);
+        } else {
+            ss.seek(offset);
+            return new LineReader(new AsciiLineReader(ss), offset);
+        }
+    }
+
+    /**
+     * Read the saved index of a data file,  if there is one.
+     *
+     * @param path
+     * @param blockCompressed true if the data file is bgzipped
+     * @return the index,  or null if there is no saved index,  or it is out of date or unreadable
+     */
+    static GWASOffsetIndex load(String path, boolean blockCompressed) {
+
+        String indexPath = path + EXTENSION;
+        try {
+            if (!FileUtils.resourceExists(indexPath)) {
+                return null;
+            }
+            if (!FileUtils.isRemote(path) && new File(indexPath).lastModified() < new File(path).lastModified()) {
+                log.info("GWAS index is older than " + path + ",  ignoring it");
+                return null;
+            }
+
+            try (SeekableStream ss = IGVSeekableStreamFactory.getInstance().getBufferedStream(
+                    IGVSeekableStreamFactory.getInstance().getStreamFor(indexPath))) {
+
+                LittleEndianInputStream in = new LittleEndianInputStream(ss);
+                if (in.readInt() != MAGIC || in.readInt() != VERSION ||
+                        (in.readByte() != 0) != blockCompressed || in.readInt() != SAMPLE_INTERVAL) {
+                    log.info("Incompatible GWAS index " + indexPath + ",  ignoring it");
+                    return null;
+                }
+                int nChrs = in.readInt();
+                Map<String, long[]> offsets = new LinkedHashMap<>();
+                Map<String, Integer> pointCounts = new LinkedHashMap<>();
+                for (int i = 0; i < nChrs; i++) {
+                    String chr = in.readString();
+                    int pointCount = in.readInt();
+                    long[] chrOffsets = new long[in.readInt()];
+                    for (int j = 0; j < chrOffsets.length; j++) {
+                        chrOffsets[j] = in.readLong();
+                    }
+                    offsets.put(chr, chrOffsets);
+                    pointCounts.put(chr, pointCount);
+                }
+                return new GWASOffsetIndex(path, blockCompressed, offsets, pointCounts);
+            }
+        } catch (IOException e) {
+            log.error("Error reading GWAS index " + indexPath, e);
+            return null;
+        }
+    }
+
+    void write(String indexPath) throws IOException {
+
+        try (LittleEndianOutputStream out = new LittleEndianOutputStream(
+                new BufferedOutputStream(new FileOutputStream(indexPath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(blockCompressed ? 1 : 0);
+            out.writeInt(SAMPLE_INTERVAL);
+            out.writeInt(offsets.size());
+            for (Map.Entry<String, long[]> entry : offsets.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeInt(pointCounts.get(entry.getKey()));
+                long[] chrOffsets = entry.getValue();
+                out.writeInt(chrOffsets.length);
+                for (long offset : chrOffsets) {
+                    out.writeLong(offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Save the index next to a local data file,  if the file is large enough to warrant it.  Failure to save,  for
+     * example to a read-only directory,  is not an error.
+     */
+    void save() {
+        if (FileUtils.isRemote(path) || getPointCount() < MIN_SAVED_POINTS) return;
+        String indexPath = path + EXTENSION;
+        try {
+            write(indexPath);
+        } catch (IOException e) {
+            log.info("Could not save GWAS index " + indexPath + ": " + e.getMessage());
+            new File(indexPath).delete();
+        }
+    }
+
+
+    /**
+     * Records the offset of every data row while a file is parsed.  Rows must be added in file order,  with the rows
+     * of each chromosome contiguous.
+     */
+    static class Builder {
+
+        private final String path;
+        private final boolean blockCompressed;
+        private final Map<String, long[]> offsets = new LinkedHashMap<>();
+        private final Map<String, Integer> pointCounts = new LinkedHashMap<>();
+
+        private String chr;
+        private long[] chrOffsets;
+        private int count;
+
+        Builder(String path, boolean blockCompressed) {
+            this.path = path;
+            this.blockCompressed = blockCompressed;
+        }
+
+        void add(String chr, long offset) {
+            if (!chr.equals(this.chr)) {
+                finishChr();
+                this.chr = chr;
+                this.chrOffsets = new long[16];
+                this.count = 0;
+            }
+            if (count % SAMPLE_INTERVAL == 0) {
+                int n = count / SAMPLE_INTERVAL;
+                if (n == chrOffsets.length) {
+                    chrOffsets = Arrays.copyOf(chrOffsets, 2 * n);
+                }
+                chrOffsets[n] = offset;
+            }
+            count++;
+        }
+
+        private void finishChr() {
+            if (chr != null) {
+                offsets.put(chr, Arrays.copyOf(chrOffsets, (count + SAMPLE_INTERVAL - 1) / SAMPLE_INTERVAL));
+                pointCounts.put(chr, count);
+            }
+        }
+
+        GWASOffsetIndex build() {
+            finishChr();
+            chr = null;
+            return new GWASOffsetIndex(path, blockCompressed, offsets, pointCounts);
+        }
+    }
+
+
+    /**
+     * Reads the lines of a GWAS file,  reporting the offset of each line.  Offsets are virtual file pointers for
+     * bgzipped files and -1 for gzipped files,  which can't be indexed.
+     */
+    static class LineReader implements Closeable {
+
+        private AsciiLineReader reader;
+        private long start;
+        private BlockCompressedInputStream bgzf;
+
+        private LineReader(AsciiLineReader reader, long start) {
+            this.reader = reader;
+            this.start = start;
+        }
+
+        private LineReader(BlockCompressedInputStream bgzf) {
+            this.bgzf = bgzf;
+        }
+
+        /**
+         * Open a reader at the start of the file.
+         */
+        static LineReader open(ResourceLocator locator) throws IOException {
+            String path = locator.getPath();
+            if (isBlockCompressed(path)) {
+                return new LineReader(new BlockCompressedInputStream(IGVSeekableStreamFactory.getInstance()
+                        .getBufferedStream(IGVSeekableStreamFactory.getInstance().getStreamFor(path))));
+            } else {
+                return new LineReader(ParsingUtils.openAsciiReader(locator), path.endsWith("gz") ? -1 : 0);
+            }
+        }
+
+        private static boolean isBlockCompressed(String path) throws IOException {
+            if (!path.endsWith("gz")) return false;
+            try (InputStream is = new BufferedInputStream(IGVSeekableStreamFactory.getInstance().getStreamFor(path))) {
+                return BlockCompressedInputStream.isValidFile(is);
+            }
+        }
+
+        boolean isBlockCompressed() {
+            return bgzf != null;
+        }
+
+        /**
+         * @return true if line offsets can be recorded
+         */
+        boolean isIndexable() {
+            return bgzf != null || start >= 0;
+        }
+
+        /**
+         * @return the offset of the next line
+         */
+        long getPosition() {
+            if (bgzf != null) {
+                return bgzf.getFilePointer();
+            } else {
+                return start < 0 ? -1 : start + reader.getPosition();
+            }
+        }
+
+        String readLine() throws IOException {
+            return bgzf != null ? bgzf.readLine() : reader.readLine();
+        }
+
+        public void close() throws IOException {
+            if (bgzf != null) {
+                bgzf.close();
+            } else {
+                reader.close();
+            }
+        }
+    }
+}
@@ -56,6 +56,8 @@ public class GWASParser {
 
     private GWASColumns columns;
 
+    private GWASOffsetIndex offsetIndex;
+
     public static boolean isGWASFile(String typeString) {
         return typeString.endsWith(".logistic") || typeString.endsWith(".linear") || typeString.endsWith(".assoc") ||
                 typeString.endsWith(".qassoc") || typeString.endsWith(".gwas");
@@ -142,9 +144,51 @@ public class GWASParser {
 
     }
 
+    /**
+     * @return true if descriptions can be read with {@link #parseDescriptions(GWASData, String, int)}
+     */
+    public boolean isIndexed() {
+        return offsetIndex != null;
+    }
+
+    /**
+     * Populate the description cache with the rows around a data point,  reading from the nearest indexed row.
+     * Rows of other chromosomes are not read.
+     *
+     * @param gData    GWASData object
+     * @param hitChr   Chromosome of the query data point
+     * @param hitIndex Index of the query data point within the chromosome
+     * @return
+     * @throws IOException
+     */
+    public GWASData parseDescriptions(GWASData gData, String hitChr, int hitIndex) throws IOException {
+
+        long offset = offsetIndex.getOffset(hitChr, hitIndex);
+        if (offset < 0) return gData;
+
+        DescriptionCache cache = gData.getDescriptionCache();
+        int lastIndex = hitIndex + cache.getMaxSize() / 2;
+        int index = GWASOffsetIndex.getSampleStart(hitIndex);
+        String nextLine = null;
+
+        try (GWASOffsetIndex.LineReader reader = offsetIndex.openReader(offset)) {
+            while (index <= lastIndex && (nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
+
+                nextLine = nextLine.trim();
+                GWASEntry entry = parseLine(nextLine, index);
+                if (entry == null) continue;
+                if (!entry.chr.equals(hitChr)) break;
+
+                cache.add(entry.chr, entry.start, entry.p, nextLine);
+                index++;
+            }
+        }
+        return gData;
+    }
+
     public GWASData parse() throws IOException {
 
-        AsciiLineReader reader = null;
+        GWASOffsetIndex.LineReader reader = null;
         String nextLine = null;
         int rowCounter = 0;
 
@@ -152,18 +196,30 @@ public class GWASParser {
         GWASEntry lastEntry = null;
 
         try {
-            reader = ParsingUtils.openAsciiReader(locator);
+            reader = GWASOffsetIndex.LineReader.open(locator);
+
+            // Use a saved index if there is one,  otherwise record row offsets while parsing
+            GWASOffsetIndex.Builder indexBuilder = null;
+            if (reader.isIndexable()) {
+                offsetIndex = GWASOffsetIndex.load(locator.getPath(), reader.isBlockCompressed());
+                if (offsetIndex == null) {
+                    indexBuilder = new GWASOffsetIndex.Builder(locator.getPath(), reader.isBlockCompressed());
+                }
+            }
 
             String headerLine = reader.readLine();
             if (!this.columns.parseHeader(headerLine))
                 throw new ParserException("Error while parsing columns line.", 0, nextLine);
 
             GWASData gData = new GWASData();
+            gData.getDescriptionCache().setHeaderTokens(headerLine);
 
-            int indexCounter = 0;
-
+            long position = reader.getPosition();
             while ((nextLine = reader.readLine()) != null && (nextLine.trim().length() > 0)) {
 
+                long linePosition = position;
+                position = reader.getPosition();
+
                 nextLine = nextLine.trim();
                 rowCounter++;
 
@@ -172,6 +228,9 @@ public class GWASParser {
 
                 gData.addLocation(entry.chr, entry.start);
                 gData.addValue(entry.chr, entry.p);
+                if (indexBuilder != null) {
+                    indexBuilder.add(entry.chr, linePosition);
+                }
 
                 //Check that file is sorted
                 if(lastEntry != null){
@@ -187,16 +246,16 @@ public class GWASParser {
                     }
                 }
 
-                indexCounter++;
-
-                int indexSize = 10000;
-                if (indexCounter == indexSize) {
-                    gData.getFileIndex().add((int) reader.getPosition());
-                    indexCounter = 0;
-                }
-
                 lastEntry = entry;
             }
+            if (indexBuilder != null) {
+                offsetIndex = indexBuilder.build();
+                offsetIndex.save();
+            } else if (offsetIndex != null && !offsetIndex.isConsistent(gData)) {
+                log.info("GWAS index does not match " + locator.getPath() + ",  ignoring it");
+                offsetIndex = null;
+            }
+            gData.computeSummaries();
             return gData;
 
         } catch (Exception e) {
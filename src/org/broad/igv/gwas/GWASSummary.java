@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.broad.igv.gwas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-resolution summary of the data points of one chromosome,  used to draw zoomed out views without visiting
+ * every point.  Each level divides the chromosome into fixed size bins,  4 times larger than the bins of the level
+ * below,  and records for each non-empty bin the maximum value and a mask of the value bands occupied by its points.
+ * Value bands divide the range [0, maxValue] into 64 equal parts.  Only non-empty bins are stored.
+ */
+class GWASSummary {
+
+    static final int MIN_BIN_SIZE = 4096;
+    static final int BAND_COUNT = 64;
+    private static final int LEVEL_FACTOR = 4;
+
+    private final double bandWidth;
+    private final List<Level> levels;
+
+    /**
+     * @param locations sorted point locations
+     * @param values    point values
+     * @param maxValue  the maximum value of the data set,  defining the range of the value bands
+     */
+    GWASSummary(int[] locations, double[] values, int size, double maxValue) {
+
+        this.bandWidth = maxValue > 0 ? maxValue / BAND_COUNT : 1;
+        this.levels = new ArrayList<>();
+
+        Level level = new Level(locations, values, size, MIN_BIN_SIZE, bandWidth);
+        levels.add(level);
+        while (level.bins.length > 1) {
+            level = new Level(level, LEVEL_FACTOR);
+            levels.add(level);
+        }
+    }
+
+    /**
+     * Return the coarsest level whose bins are no larger than {@code bpPerPixel},  or null if the finest level's
+     * bins are larger.
+     */
+    Level getLevel(double bpPerPixel) {
+        Level result = null;
+        for (Level level : levels) {
+            if (level.binSize > bpPerPixel) break;
+            result = level;
+        }
+        return result;
+    }
+
+    /**
+     * @return the value at the center of the band
+     */
+    double getBandValue(int band) {
+        return (band + 0.5) * bandWidth;
+    }
+
+
+    static class Level {
+
+        final int binSize;
+        final int[] bins;
+        final float[] max;
+        final long[] bands;
+
+        Level(int[] locations, double[] values, int size, int binSize, double bandWidth) {
+
+            this.binSize = binSize;
+
+            int binCount = 0;
+            int lastBin = -1;
+            for (int i = 0; i < size; i++) {
+                if (Double.isNaN(values[i])) continue;
+                int bin = locations[i] / binSize;
+                if (bin != lastBin) {
+                    binCount++;
+                    lastBin = bin;
+                }
+            }
+
+            bins = new int[binCount];
+            max = new float[binCount];
+            bands = new long[binCount];
+
+            int idx = -1;
+            lastBin = -1;
+            for (int i = 0; i < size; i++) {
+                double value = values[i];
+                if (Double.isNaN(value)) continue;
+                int bin = locations[i] / binSize;
+                if (bin != lastBin) {
+                    idx++;
+                    bins[idx] = bin;
+                    max[idx] = (float) value;
+                    lastBin = bin;
+                } else if (value > max[idx]) {
+                    max[idx] = (float) value;
+                }
+                int band = (int) Math.max(0, Math.min(BAND_COUNT - 1, value / bandWidth));
+                bands[idx] |= 1L << band;
+            }
+        }
+
+        /**
+         * Create a level by merging groups of {@code factor} bins of the level below.
+         */
+        Level(Level lower, int factor) {
+
+            this.binSize = lower.binSize * factor;
+
+            int binCount = 0;
+            int lastBin = -1;
+            for (int b : lower.bins) {
+                if (b / factor != lastBin) {
+                    binCount++;
+                    lastBin = b / factor;
+                }
+            }
+
+            bins = new int[binCount];
+            max = new float[binCount];
+            bands = new long[binCount];
+
+            int idx = -1;
+            lastBin = -1;
+            for (int i = 0; i < lower.bins.length; i++) {
+                int bin = lower.bins[i] / factor;
+                if (bin != lastBin) {
+                    idx++;
+                    bins[idx] = bin;
+                    max[idx] = lower.max[i];
+                    lastBin = bin;
+                } else {
+                    max[idx] = Math.max(max[idx], lower.max[i]);
+                }
+                bands[idx] |= lower.bands[i];
+            }
+        }
+
+        /**
+         * @return the index of the first non-empty bin at or after the bin containing {@code location}
+         */
+        int indexOf(double location) {
+            int bin = (int) Math.max(0, Math.min(Integer.MAX_VALUE, Math.floor(location / binSize)));
+            int low = 0;
+            int high = bins.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (bins[mid] < bin) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
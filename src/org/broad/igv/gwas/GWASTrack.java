@@ -46,8 +46,6 @@ import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.util.UIUtilities;
 import org.broad.igv.util.ChromosomeColors;
 import org.broad.igv.util.ResourceLocator;
-import org.broad.igv.util.collections.DoubleArrayList;
-import org.broad.igv.util.collections.IntArrayList;
 
 import javax.swing.*;
 import javax.xml.bind.annotation.XmlAttribute;
@@ -56,6 +54,8 @@ import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -92,6 +92,8 @@ public class GWASTrack extends AbstractTrack {
     private static final Logger log = Logger.getLogger(GWASTrack.class);
 
     private static final int AXIS_AREA_WIDTH = 60;
+    // Above this density points are drawn from the multi-resolution summary
+    private static final int MAX_POINTS_PER_PIXEL = 4;
     @XmlAttribute
     private double trackMinY;
     @XmlAttribute
@@ -176,12 +178,17 @@ public class GWASTrack extends AbstractTrack {
         double adjustedRectY = adjustedRect.getY();
         this.maxY = adjustedRectMaxY;
         this.scale = context.getScale();
-        int bufferX = (int) adjustedRectMaxX;
-        int bufferY = (int) adjustedRectMaxY;
-        Color[][] drawBuffer = new Color[bufferX + 1][bufferY + 1];
         double origin = context.getOrigin();
         double locScale = context.getScale();
 
+        // Points are rasterized into an ARGB image covering the track,  which is drawn in one call
+        int bufferX = (int) adjustedRectMaxX;
+        int bufferY = (int) adjustedRectMaxY;
+        int imageY = Math.max(0, arect.y);
+        if (bufferX <= 0 || bufferY <= imageY) return;
+        BufferedImage image = new BufferedImage(bufferX, bufferY - imageY, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
         // Get the Y axis definition, consisting of minimum, maximum, and base value.  Often
         // the base value is == min value which is == 0.
 
@@ -194,8 +201,9 @@ public class GWASTrack extends AbstractTrack {
 
         //int lastPx = 0;
         String chrName = context.getChr();
+        boolean isWholeGenome = chrName.equals("All");
         ArrayList<String> chrList = new ArrayList();
-        if (chrName.equals("All")) {
+        if (isWholeGenome) {
             for (String key : gData.getLocations().keySet()) {
                 chrList.add(key);
             }
@@ -204,7 +212,6 @@ public class GWASTrack extends AbstractTrack {
             chrList.add(chrName);
 
         }
-        double dx = Math.ceil(1 / locScale) + 1;
         double rangeMaxValue = Math.ceil(gData.getMaxValue());
 
         double pointSizeScale = rangeMaxValue / maxPointSize;
@@ -212,7 +219,14 @@ public class GWASTrack extends AbstractTrack {
         Color drawColor = this.primaryColor;
         Object[] chrs = this.gData.getLocations().keySet().toArray();
 
-        int xMinPointSize = (int) (1 / locScale);
+        // If x minimum size is smaller than point minimum size, use minimum point size
+        int xMinPointSize = Math.max(minPointSize, (int) (1 / locScale));
+
+        PointRasterizer rasterizer = new PointRasterizer(pixels, bufferX, imageY, bufferY, pointSizeScale,
+                minPointSize, xMinPointSize, adjustedRectY, maxValue, yScaleFactor);
+
+        // Points may extend this far,  in pixels,  beyond their location
+        int margin = Math.max(maxPointSize, xMinPointSize) + 1;
 
         // Loop through data points, chromosome by chromosome
 
@@ -238,68 +252,50 @@ public class GWASTrack extends AbstractTrack {
                         drawColor = this.primaryColor;
 
                 }
+                rasterizer.argb = drawColor.getRGB();
+
+                // Chromosome location of the left edge of the view,  and the number of nucleotides per pixel.
+                // Whole genome coordinates are in kilo-basepairs.
+                double chrOrigin;
+                double bpPerPixel;
+                if (isWholeGenome) {
+                    chrOrigin = origin * 1000 - genome.getCumulativeOffset(chr);
+                    bpPerPixel = locScale * 1000;
+                } else {
+                    chrOrigin = origin;
+                    bpPerPixel = locScale;
+                }
+                double startLocation = chrOrigin - margin * bpPerPixel;
+                double endLocation = chrOrigin + (adjustedRectMaxX + margin) * bpPerPixel;
+
+                int[] locations = this.gData.getLocations().get(chr).toArray();
+                double[] values = this.gData.getValues().get(chr).toArray();
+                int startIndex = GWASData.getStartIndex(locations, startLocation);
+                int endIndex = GWASData.getStartIndex(locations, endLocation);
+
+                // Draw individual points unless there are many more than pixels,  in which case draw the summary
+                GWASSummary summary = null;
+                GWASSummary.Level level = null;
+                if (endIndex - startIndex > MAX_POINTS_PER_PIXEL * bufferX) {
+                    summary = gData.getSummary(chr);
+                    level = summary == null ? null : summary.getLevel(bpPerPixel);
+                }
 
-                IntArrayList locations = this.gData.getLocations().get(chr);
-                DoubleArrayList values = this.gData.getValues().get(chr);
-
-                int size = locations.size();
-
-                // Loop through data points in a chromosome
-                for (int j = 0; j < size; j++) {
-
-                    // Get location, e.g. start for the data point
-                    int start;
-                    if (chrName.equals("All"))
-                        start = genome.getGenomeCoordinate(chr, locations.get(j));
-                    else
-                        start = locations.get(j);
-
-                    // Based on location, calculate X-coordinate, or break if outside of the view
-                    double pX = ((start - origin) / locScale);
-                    if ((pX + dx < 0))
-                        continue;
-                    else if (pX > adjustedRectMaxX)
-                        break;
-
-                    // Based on value of the data point, calculate Y-coordinate
-                    double dataY = values.get(j);
-
-                    if (!Double.isNaN(dataY)) {
-
-                        int xPointSize = (int) Math.ceil(dataY / pointSizeScale);
-
-                        // Scale y size based on the used range, data value and max point size
-                        int yPointSize = xPointSize;
-                        if (yPointSize < minPointSize)
-                            yPointSize = minPointSize;
-
-                        // If x minimum size is smaller than point minimum size, use minimum point size
-                        if (xMinPointSize < minPointSize)
-                            xMinPointSize = minPointSize;
-
-                        if (xPointSize < xMinPointSize)
-                            xPointSize = xMinPointSize;
-
-                        // Point sizes divided by two to center locations of large points
-                        int x = (int) pX - (xPointSize / 2);
-                        int y = ((int) Math.min(adjustedRectMaxY, adjustedRectY + (maxValue - dataY) * yScaleFactor)) - (yPointSize / 2);
-
-                        int maxDrawX = x + xPointSize;
-                        int maxDrawY = y + yPointSize;
-                        if (x < 0)
-                            x = 0;
-                        if (y < 0)
-                            y = 0;
-
-                        if (maxDrawX > adjustedRectMaxX)
-                            maxDrawX = (int) adjustedRectMaxX;
-                        if (maxDrawY > adjustedRectMaxY)
-                            maxDrawY = (int) adjustedRectMaxY;
-
-                        // Loop through all the pixels of the data point and fill in drawing buffer
-                        for (int drawX = x; drawX < maxDrawX; drawX++)
-                            for (int drawY = y; drawY < maxDrawY; drawY++)
-                                drawBuffer[drawX][drawY] = drawColor;
+                if (level == null) {
+                    for (int j = startIndex; j < endIndex; j++) {
+                        rasterizer.drawPoint((locations[j] - chrOrigin) / bpPerPixel, values[j]);
+                    }
+                } else {
+                    int binEnd = level.indexOf(endLocation + level.binSize);
+                    for (int b = level.indexOf(startLocation); b < binEnd; b++) {
+                        double pX = ((level.bins[b] + 0.5) * level.binSize - chrOrigin) / bpPerPixel;
+                        long bands = level.bands[b];
+                        while (bands != 0) {
+                            int band = Long.numberOfTrailingZeros(bands);
+                            bands &= bands - 1;
+                            rasterizer.drawPoint(pX, Math.min(level.max[b], summary.getBandValue(band)));
+                        }
+                        rasterizer.drawPoint(pX, level.max[b]);
                     }
                 }
             }
@@ -308,20 +304,7 @@ public class GWASTrack extends AbstractTrack {
         // Draw the pixels from the drawing buffer to the canvas
 
         Graphics2D g = context.getGraphics();
-        Color color;
-        Color prevColor = null;
-
-        for (int x = 0; x < bufferX; x++)
-            for (int y = 0; y < bufferY; y++) {
-                color = drawBuffer[x][y];
-                if (color != null) {
-                    if (!color.equals(prevColor)) {
-                        g.setColor(color);
-                        prevColor = color;
-                    }
-                    g.fillRect(x, y, 1, 1);
-                }
-            }
+        g.drawImage(image, 0, imageY, null);
 
         // Draw the legend axis
         if (showAxis) {
@@ -331,6 +314,70 @@ public class GWASTrack extends AbstractTrack {
     }
 
 
+    /**
+     * Fills the pixels of data points into an ARGB buffer
+     */
+    private static class PointRasterizer {
+
+        final int[] pixels;
+        final int width;
+        final int minY;
+        final int maxY;
+        final double pointSizeScale;
+        final int minPointSize;
+        final int xMinPointSize;
+        final double rectY;
+        final double maxValue;
+        final double yScaleFactor;
+        int argb;
+
+        PointRasterizer(int[] pixels, int width, int minY, int maxY, double pointSizeScale, int minPointSize,
+                        int xMinPointSize, double rectY, double maxValue, double yScaleFactor) {
+            this.pixels = pixels;
+            this.width = width;
+            this.minY = minY;
+            this.maxY = maxY;
+            this.pointSizeScale = pointSizeScale;
+            this.minPointSize = minPointSize;
+            this.xMinPointSize = xMinPointSize;
+            this.rectY = rectY;
+            this.maxValue = maxValue;
+            this.yScaleFactor = yScaleFactor;
+        }
+
+        void drawPoint(double pX, double dataY) {
+
+            if (Double.isNaN(dataY)) return;
+
+            int xPointSize = (int) Math.ceil(dataY / pointSizeScale);
+
+            // Scale y size based on the used range, data value and max point size
+            int yPointSize = xPointSize;
+            if (yPointSize < minPointSize)
+                yPointSize = minPointSize;
+
+            if (xPointSize < xMinPointSize)
+                xPointSize = xMinPointSize;
+
+            // Point sizes divided by two to center locations of large points
+            int x = (int) pX - (xPointSize / 2);
+            int y = ((int) Math.min(maxY, rectY + (maxValue - dataY) * yScaleFactor)) - (yPointSize / 2);
+
+            int maxDrawX = Math.min(x + xPointSize, width);
+            int maxDrawY = Math.min(y + yPointSize, maxY);
+            x = Math.max(x, 0);
+            y = Math.max(y, minY);
+
+            for (int drawY = y; drawY < maxDrawY; drawY++) {
+                int offset = (drawY - minY) * width;
+                for (int drawX = x; drawX < maxDrawX; drawX++) {
+                    pixels[offset + drawX] = argb;
+                }
+            }
+        }
+    }
+
+
     void renderAxis(RenderContext context, Rectangle arect) {
 
         Rectangle drawingRect = calculateDrawingRect(arect);
@@ -490,12 +537,16 @@ public class GWASTrack extends AbstractTrack {
 
             // If no description found, populate cache with the description
             if (tmpDescription == null) {
-                // Calculate starting row based on the cache size, i.e. cache descriptions before and after estimated hit location
-                int tmpRow = rowIndex - (gData.getDescriptionCache().getMaxSize() / 2);
-                if (tmpRow < 0)
-                    tmpRow = 0;
+                if (parser.isIndexed()) {
+                    this.gData = parser.parseDescriptions(gData, chr, index);
+                } else {
+                    // Calculate starting row based on the cache size, i.e. cache descriptions before and after estimated hit location
+                    int tmpRow = rowIndex - (gData.getDescriptionCache().getMaxSize() / 2);
+                    if (tmpRow < 0)
+                        tmpRow = 0;
 
-                this.gData = parser.parseDescriptions(gData, chr, hitLocation, tmpRow);
+                    this.gData = parser.parseDescriptions(gData, chr, hitLocation, tmpRow);
+                }
                 tmpDescription = gData.getDescriptionCache().getDescriptionString(chr, hitLocation, value);
 
             }
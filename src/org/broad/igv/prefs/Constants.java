@@ -23,6 +23,7 @@ final public class Constants {
     public static final String DEFAULT_FONT_FAMILY = "DEFAULT_FONT_FAMILY";
     public static final String DEFAULT_FONT_ATTRIBUTE = "DEFAULT_FONT_ATTRIBUTE";
     public static final String ENABLE_ANTIALISING = "ENABLE_ANTIALIASING";
+    public static final String CACHE_TRACK_TILES = "CACHE_TRACK_TILES";
     public static final String SCALE_FONTS = "SCALE_FONTS";
     public static final String NAME_PANEL_WIDTH = "NAME_PANEL_WIDTH";
     public static final String BACKGROUND_COLOR = "BACKGROUND_COLOR";
@@ -62,6 +63,8 @@ final public class Constants {
 
     // Generic track options
     public static final String BYPASS_FILE_AUTO_DISCOVERY = "BYPASS_FILE_AUTO_DISCOVERY";
+    public static final String MEMORY_MAP_LOCAL_FILES = "MEMORY_MAP_LOCAL_FILES";
+    public static final String SEG_BINARY_CACHE = "SEG.BINARY_CACHE";
     public static final String TRACK_ATTRIBUTE_NAME_KEY = "TRACK_ATTRIBUTE_NAME_KEY";
     public static final String INITIAL_TRACK_HEIGHT = "15";
     public static final String COLOR_SCALE_KEY = "COLOR_SCALE_";
@@ -75,6 +78,8 @@ final public class Constants {
     public static final String SASHIMI_SHOW_COVERAGE = "SASHIMI.SHOW_COVERAGE";
     public static final String GENE_LIST_BED_FORMAT = "GENE_LIST_BED_FORMAT";
     public static final String SESSION_RELATIVE_PATH = "SESSION.RELATIVE_PATH";
+    public static final String SESSION_LOAD_THREADS = "SESSION.LOAD_THREADS";
+    public static final String SESSION_LOAD_HOST_THREADS = "SESSION.LOAD_HOST_THREADS";
     public static final String SHOW_SIZE_WARNING = "SHOW_SIZE_WARNING";
 
     // Chart (bar, heatmap, plots) options
@@ -145,6 +150,9 @@ final public class Constants {
     public static final String SAM_SHOW_GROUP_SEPARATOR = "SAM.SHOW_GROUP_SEPARATOR";
     public static final String SAM_COMPLETE_READS_ONLY = "SAM.COMPLETE_READS_ONLY";
     public static final String SAM_REDUCED_MEMORY_MODE = "SAM.REDUCED_MEMORY_MODE";
+    public static final String SAM_COLUMNAR_STORE = "SAM.COLUMNAR_STORE";
+    public static final String SAM_PREFETCH = "SAM.PREFETCH";
+    public static final String SAM_REMOTE_JUNCTION_INDEX = "SAM.REMOTE_JUNCTION_INDEX";
     public static final String SAM_HIDE_SMALL_INDEL = "SAM.HIDE_SMALL_INDEL";
     public static final String SAM_SMALL_INDEL_BP_THRESHOLD = "SAM.SMALL_INDEL_BP_THRESHOLD";
     public static final String SAM_LINK_READS = "SAM.LINK_READS";
@@ -277,8 +277,8 @@ public class SashimiJunctionRenderer extends IGVFeatureRenderer {
                     int pixelYend = 0;
 
                     if(coverageTrack != null && showCoverage){
-                        pixelYstart = getYOffset(coverageRectangle, coverageTrack.getDataRange() ,getCoverage(junctionStart));
-                        pixelYend = getYOffset(coverageRectangle, coverageTrack.getDataRange() ,getCoverage(junctionEnd));
+                        pixelYstart = getYOffset(coverageRectangle, coverageTrack.getDataRange() ,getCoverage(context.getChr(), junctionStart));
+                        pixelYend = getYOffset(coverageRectangle, coverageTrack.getDataRange() ,getCoverage(context.getChr(), junctionEnd));
                     }
 
 
@@ -302,10 +302,11 @@ public class SashimiJunctionRenderer extends IGVFeatureRenderer {
      * Get the coverage around this approximate genome position. We actually look
      * for a maximum around a certain window. This is intended for plotting, we just
      * want the arc to look like it's coming from the top
+     * @param chr
      * @param genomePos
      * @return
      */
-    private int getCoverage(int genomePos) {
+    private int getCoverage(String chr, int genomePos) {
 //        Integer yOffset = yOffsetMap.get(genomePos);
 //        if(yOffset != null) return yOffset;
 
@@ -316,7 +317,7 @@ public class SashimiJunctionRenderer extends IGVFeatureRenderer {
         int buffer = 4;
         int coverage = 0;
         for(AlignmentInterval interval: intervals){
-            if(interval.contains(interval.getChr(), genomePos - buffer, genomePos + buffer)){
+            if(interval.contains(chr, genomePos - buffer, genomePos + buffer)){
                 for(int loc= genomePos - buffer; loc < genomePos + buffer; loc++){
                     coverage = Math.max(coverage, interval.getTotalCount(loc));
                 }
@@ -41,9 +41,11 @@ import org.broad.igv.track.Track;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.RuntimeUtils;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.broad.igv.prefs.Constants.*;
 
@@ -57,7 +59,7 @@ public class AlignmentDataManager implements IGVEventObserver {
     private static Logger log = Logger.getLogger(AlignmentDataManager.class);
 
 
-    private Collection<AlignmentInterval> intervalCache;
+    private IntervalCache intervalCache;
     private ResourceLocator locator;
     private HashMap<String, String> chrMappings = new HashMap();
     private Set<Range> isLoading = new HashSet<>();
@@ -69,6 +71,8 @@ public class AlignmentDataManager implements IGVEventObserver {
     private boolean showAlignments = true;
     private AlignmentTrack.ExperimentType inferredExperimentType;
     private Set<Track> subscribedTracks;
+    private AlignmentPrefetcher prefetcher;
+    private SpliceJunctionIndex junctionIndex;
 
     public AlignmentDataManager(ResourceLocator locator, Genome genome) throws IOException {
         this.locator = locator;
@@ -76,8 +80,12 @@ public class AlignmentDataManager implements IGVEventObserver {
         peStats = new HashMap();
         initLoadOptions();
         initChrMap(genome);
-        intervalCache = Collections.synchronizedList(new ArrayList<>());
+        junctionIndex = SpliceJunctionIndex.open(locator.getPath());
+        intervalCache = new IntervalCache();
         subscribedTracks = Collections.synchronizedSet(new HashSet<>());
+        if (!Globals.isHeadless() && !Globals.isBatch() && PreferencesManager.getPreferences().getAsBoolean(SAM_PREFETCH)) {
+            prefetcher = new AlignmentPrefetcher(this);
+        }
 
         IGVEventBus.getInstance().subscribe(FrameManager.ChangeEvent.class, this);
         IGVEventBus.getInstance().subscribe(RefreshEvent.class, this);
@@ -87,19 +95,11 @@ public class AlignmentDataManager implements IGVEventObserver {
 
         if (event instanceof FrameManager.ChangeEvent) {
 
-            Collection<ReferenceFrame> frames = ((FrameManager.ChangeEvent) event).getFrames();
-            Collection<AlignmentInterval> newCache = Collections.synchronizedList(new ArrayList<>());
-
-            // Trim cache to include only current frames
-
-            for (ReferenceFrame f : frames) {
-                AlignmentInterval i = getLoadedInterval(f);
-                if (i != null) {
-                    newCache.add(i);
-                }
+            // Intervals are retained for return visits,  subject to the cache memory budget.  Intervals covering the
+            // new frames are touched so they are the last to be evicted.
+            for (ReferenceFrame f : ((FrameManager.ChangeEvent) event).getFrames()) {
+                getLoadedInterval(f);
             }
-            intervalCache = newCache;
-
 
         } else if (event instanceof RefreshEvent) {
             clear();
@@ -115,8 +115,14 @@ public class AlignmentDataManager implements IGVEventObserver {
     public void unsubscribe(Track track) {
         subscribedTracks.remove(track);
         if (subscribedTracks.isEmpty()) {
-            dumpAlignments();
+            // Clearing the cache also withdraws the insertions of its intervals from the InsertionManager
+            clear();
+            intervalCache.release();
             IGVEventBus.getInstance().unsubscribe(this);
+            if (prefetcher != null) {
+                prefetcher.cancel();
+                IGVEventBus.getInstance().unsubscribe(prefetcher);
+            }
         }
     }
 
@@ -199,15 +205,7 @@ public class AlignmentDataManager implements IGVEventObserver {
 
 
     public AlignmentInterval getLoadedInterval(ReferenceFrame frame) {
-
-        for (AlignmentInterval interval : intervalCache) {
-            if (interval.contains(frame.getCurrentRange())) {
-                return interval;
-            }
-        }
-
-
-        return null;
+        return intervalCache.getIntervalForRange(frame.getCurrentRange());
     }
 
     /**
@@ -246,15 +244,19 @@ public class AlignmentDataManager implements IGVEventObserver {
     }
 
     /**
-     * Repack currently loaded alignments across frames
-     * All relevant intervals must be loaded
+     * Repack currently loaded alignments across frames.  Intervals not covering a current frame are repacked
+     * lazily, when next accessed.
      *
      * @param renderOptions
-     * @return Whether repacking was performed
      */
     void packAlignments(AlignmentTrack.RenderOptions renderOptions) {
-        for (AlignmentInterval interval : intervalCache) {
-            interval.packAlignments(renderOptions);
+        List<ReferenceFrame> frames = FrameManager.getFrames();
+        for (AlignmentInterval interval : intervalCache.values()) {
+            if (IntervalCache.coversFrame(interval, frames)) {
+                interval.packAlignments(renderOptions);
+            } else {
+                interval.invalidatePacking(renderOptions);
+            }
         }
     }
 
@@ -263,6 +265,10 @@ public class AlignmentDataManager implements IGVEventObserver {
         return getLoadedInterval(frame) != null;
     }
 
+    boolean isLoaded(Range range) {
+        return intervalCache.getIntervalForRange(range) != null;
+    }
+
     public boolean isLoading(ReferenceFrame frame) {
 
         Range range = frame.getCurrentRange();
@@ -277,11 +283,24 @@ public class AlignmentDataManager implements IGVEventObserver {
                      AlignmentTrack.RenderOptions renderOptions,
                      boolean expandEnds) {
 
-        if (isLoaded(referenceFrame)) return;  // Already loaded
+        if (isLoaded(referenceFrame)) {
+            intervalCache.recordHit();
+            if (prefetcher != null) prefetcher.update(referenceFrame, renderOptions);
+            return;  // Already loaded
+        }
 
         if (isLoading(referenceFrame)) return;   // Already oading
 
+        if (prefetcher != null) {
+            prefetcher.awaitOrCancel(referenceFrame.getCurrentRange());
+        }
+
         synchronized (loadLock) {
+
+            if (isLoaded(referenceFrame)) return;  // Loaded while waiting for lock
+
+            intervalCache.recordMiss();
+
             Range range = referenceFrame.getCurrentRange();
 
             isLoading.add(range);
@@ -303,22 +322,57 @@ public class AlignmentDataManager implements IGVEventObserver {
                 adjustedEnd = Math.max(end, center + expand);
             }
 
+            // Extend over overlapping cached intervals, within limits, so they are consolidated into one interval
+            // rather than accumulating overlapping copies of the same alignments.
+            Range union = intervalCache.getOverlapUnion(chr, adjustedStart, adjustedEnd);
+            if (union.getLength() <= 2 * (adjustedEnd - adjustedStart)) {
+                adjustedStart = union.getStart();
+                adjustedEnd = union.getEnd();
+            }
+
 
             log.debug("Loading alignments: " + chr + ":" + adjustedStart + "-" + adjustedEnd + " for " + AlignmentDataManager.this);
 
             AlignmentInterval loadedInterval = loadInterval(chr, adjustedStart, adjustedEnd, renderOptions);
-            intervalCache.add(loadedInterval);
+            intervalCache.add(loadedInterval, FrameManager.getFrames());
 
-            packAlignments(renderOptions);
+            loadedInterval.packAlignments(renderOptions);
             isLoading.remove(range);
 
+            if (log.isDebugEnabled()) {
+                log.debug(intervalCache.toString());
+            }
+
             //  IGVEventBus.getInstance().post(new DataLoadedEvent(referenceFrame));
 
         }
+
+        if (prefetcher != null) prefetcher.update(referenceFrame, renderOptions);
+    }
+
+    /**
+     * Add an interval loaded by the prefetcher to the cache.
+     */
+    void addPrefetchedInterval(AlignmentInterval interval) {
+        intervalCache.add(interval, FrameManager.getFrames());
+    }
+
+    Object getLoadLock() {
+        return loadLock;
     }
 
 
     AlignmentInterval loadInterval(String chr, int start, int end, AlignmentTrack.RenderOptions renderOptions) {
+        return loadInterval(chr, start, end, renderOptions, null);
+    }
+
+    /**
+     * Load an interval.  If {@code cancelled} is set during the load the interval returned is incomplete.
+     *
+     * @param cancelled cancellation flag for this load,  may be null
+     */
+    AlignmentInterval loadInterval(String chr, int start, int end, AlignmentTrack.RenderOptions renderOptions,
+                                   AtomicBoolean cancelled) {
 
         String sequence = chrMappings.containsKey(chr) ? chrMappings.get(chr) : chr;
 
@@ -329,19 +383,34 @@ public class AlignmentDataManager implements IGVEventObserver {
 
         SpliceJunctionHelper spliceJunctionHelper = new SpliceJunctionHelper(this.loadOptions);
 
+        // Use precomputed junctions if available,  otherwise count them as alignments are loaded
+        boolean junctionsLoaded = false;
+        if (junctionIndex != null && junctionIndex.isCompatible(loadOptions)) {
+            try {
+                junctionIndex.load(sequence, start, end, spliceJunctionHelper);
+                junctionsLoaded = true;
+            } catch (IOException e) {
+                log.error("Error reading junction index", e);
+                spliceJunctionHelper = new SpliceJunctionHelper(this.loadOptions);
+            }
+        }
+
         ReadStats readStats = new ReadStats();
 
-        AlignmentTileLoader.AlignmentTile t = reader.loadTile(sequence, start, end, spliceJunctionHelper,
-                downsampleOptions, readStats, peStats, bisulfiteContext, showAlignments);
+        AlignmentTileLoader.AlignmentTile t = reader.loadTile(sequence, start, end,
+                junctionsLoaded ? null : spliceJunctionHelper,
+                downsampleOptions, readStats, peStats, bisulfiteContext, showAlignments, cancelled);
 
-        if (inferredExperimentType == null && !Globals.VERSION.contains("2.4")) {
+        boolean complete = cancelled == null || !cancelled.get();
+        if (complete && inferredExperimentType == null && !Globals.VERSION.contains("2.4")) {
             readStats.compute();
             inferType(readStats);
         }
 
         List<Alignment> alignments = t.getAlignments();
         List<DownsampledInterval> downsampledIntervals = t.getDownsampledIntervals();
-        return new AlignmentInterval(chr, start, end, alignments, t.getCounts(), spliceJunctionHelper, downsampledIntervals);
+        return new AlignmentInterval(chr, start, end, alignments, t.getCounts(), spliceJunctionHelper,
+                downsampledIntervals, t.getInsertions());
     }
 
     /**
@@ -378,7 +447,7 @@ public class AlignmentDataManager implements IGVEventObserver {
     }
 
     public void dumpAlignments() {
-        for (AlignmentInterval interval : intervalCache) {
+        for (AlignmentInterval interval : intervalCache.values()) {
             interval.dumpAlignments();
         }
     }
@@ -412,7 +481,7 @@ public class AlignmentDataManager implements IGVEventObserver {
     public int getNLevels() {
         int nLevels = 0;
 
-        for (AlignmentInterval interval : intervalCache) {
+        for (AlignmentInterval interval : getFrameIntervals()) {
             PackedAlignments packedAlignments = interval.getPackedAlignments();
             if (packedAlignments != null) {
                 int intervalNLevels = packedAlignments.getNLevels();
@@ -429,7 +498,7 @@ public class AlignmentDataManager implements IGVEventObserver {
     public int getMaxGroupCount() {
         int groupCount = 0;
 
-        for (AlignmentInterval interval : intervalCache) {
+        for (AlignmentInterval interval : getFrameIntervals()) {
             if (interval != null) {  // Not sure how this happens but it does
                 PackedAlignments packedAlignments = interval.getPackedAlignments();
                 if (packedAlignments != null) {
@@ -440,6 +509,20 @@ public class AlignmentDataManager implements IGVEventObserver {
         return groupCount;
     }
 
+    /**
+     * @return loaded intervals covering the current reference frames
+     */
+    private List<AlignmentInterval> getFrameIntervals() {
+        List<AlignmentInterval> frameIntervals = new ArrayList<>();
+        for (ReferenceFrame frame : FrameManager.getFrames()) {
+            AlignmentInterval interval = getLoadedInterval(frame);
+            if (interval != null && !frameIntervals.contains(interval)) {
+                frameIntervals.add(interval);
+            }
+        }
+        return frameIntervals;
+    }
+
     @Override
     protected void finalize() throws Throwable {
         super.finalize();
@@ -467,7 +550,7 @@ public class AlignmentDataManager implements IGVEventObserver {
 
     public void setMinJunctionCoverage(int minJunctionCoverage) {
         this.loadOptions = new SpliceJunctionHelper.LoadOptions(minJunctionCoverage, this.loadOptions.minReadFlankingWidth);
-        for (AlignmentInterval interval : intervalCache) {
+        for (AlignmentInterval interval : intervalCache.values()) {
             interval.getSpliceJunctionHelper().setLoadOptions(this.loadOptions);
         }
     }
@@ -502,6 +585,13 @@ public class AlignmentDataManager implements IGVEventObserver {
     }
 
     public Collection<AlignmentInterval> getLoadedIntervals() {
+        return intervalCache.values();
+    }
+
+    /**
+     * @return the interval cache,  exposed for its hit, miss, and eviction counters
+     */
+    public IntervalCache getIntervalCache() {
         return intervalCache;
     }
 
@@ -542,70 +632,227 @@ public class AlignmentDataManager implements IGVEventObserver {
 
     }
 
-    static class IntervalCache {
+    /**
+     * Cache of loaded intervals.  Intervals are evicted in least-recently-used order when their estimated memory
+     * cost exceeds the budget, or when available memory is low.  Intervals covering a current reference frame are
+     * never evicted.  Insertions of cached intervals are registered with the {@link InsertionManager}.
+     * <p/>
+     * The default budget is shared by all caches created with it,  and divided equally among them,  so the caches of
+     * all open alignment files together stay within it.
+     */
+    public static class IntervalCache {
+
+        private static final double DEFAULT_MEMORY_FRACTION = 0.25;
+        private static final double LOW_MEMORY_FRACTION = 0.3;
+
+        private long maxMemory;
+        private long currentMemory = 0;
+        private LinkedHashMap<AlignmentInterval, Long> intervals;
+
+        private long hitCount = 0;
+        private long missCount = 0;
+        private long evictionCount = 0;
 
-        private int maxSize;
-        ArrayList<AlignmentInterval> intervals;
+        /**
+         * Caches sharing the default budget.  Weakly held,  so caches of managers never unsubscribed are dropped.
+         */
+        private static final Set<IntervalCache> sharedCaches = Collections.newSetFromMap(new WeakHashMap<>());
 
+        /**
+         * Create a cache sharing the default budget with the other caches of open alignment files
+         */
         public IntervalCache() {
-            this(1);
-        }
-
-        public IntervalCache(int ms) {
-            this.maxSize = Math.max(1, ms);
-            intervals = new ArrayList<>(maxSize);
-        }
-
-        void setMaxSize(int ms, List<ReferenceFrame> frames) {
-            this.maxSize = Math.max(1, ms);
-            if (intervals.size() > maxSize) {
-                // Reduce size.  Try to keep intervals that cover frame ranges.  This involves a linear search
-                // of potentially (intervals.size X frames.size) elements.  Don't attempt if this number is too large
-                if (frames.size() * intervals.size() < 25) {
-                    ArrayList<AlignmentInterval> tmp = new ArrayList<>(maxSize);
-                    for (AlignmentInterval interval : intervals) {
-                        if (tmp.size() == maxSize) break;
-                        for (ReferenceFrame frame : frames) {
-                            Range range = frame.getCurrentRange();
-                            if (interval.contains(range.getChr(), range.getStart(), range.getEnd())) {
-                                tmp.add(interval);
-                                break;
-                            }
-                        }
-                    }
-                    intervals = tmp;
-                } else {
-                    intervals = new ArrayList(intervals.subList(0, maxSize));
-                    intervals.trimToSize();
+            this(0);
+            synchronized (sharedCaches) {
+                sharedCaches.add(this);
+                divideSharedBudget();
+            }
+        }
+
+        public IntervalCache(long maxMemory) {
+            this.maxMemory = maxMemory;
+            this.intervals = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        synchronized void setMaxMemory(long maxMemory, List<ReferenceFrame> frames) {
+            this.maxMemory = maxMemory;
+            evict(null, frames);
+        }
+
+        synchronized long getMaxMemory() {
+            return maxMemory;
+        }
+
+        /**
+         * Stop sharing the default budget.  The remaining caches are given larger shares.
+         */
+        void release() {
+            synchronized (sharedCaches) {
+                if (sharedCaches.remove(this)) {
+                    divideSharedBudget();
                 }
             }
         }
 
-        public void add(AlignmentInterval interval) {
-            if (intervals.size() >= maxSize) {
-                intervals.remove(0);
+        /**
+         * Divide the default budget among the shared caches,  evicting from caches whose share has shrunk.  Called
+         * holding the sharedCaches lock.  Cache locks are never held while acquiring it.
+         */
+        private static void divideSharedBudget() {
+            if (sharedCaches.isEmpty()) return;
+            long share = (long) (DEFAULT_MEMORY_FRACTION * Runtime.getRuntime().maxMemory()) / sharedCaches.size();
+            List<ReferenceFrame> frames = FrameManager.getFrames();
+            for (IntervalCache cache : new ArrayList<>(sharedCaches)) {
+                cache.setMaxMemory(share, frames);
             }
-            intervals.add(interval);
         }
 
-        public AlignmentInterval getIntervalForRange(Range range) {
+        /**
+         * Add an interval to the cache,  replacing any cached intervals it covers.
+         *
+         * @param interval
+         * @param frames   the current reference frames.  Intervals covering these are retained.
+         */
+        public synchronized void add(AlignmentInterval interval, List<ReferenceFrame> frames) {
+
+            Iterator<Map.Entry<AlignmentInterval, Long>> iter = intervals.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<AlignmentInterval, Long> entry = iter.next();
+                AlignmentInterval i = entry.getKey();
+                if (interval.contains(i.getChr(), i.getStart(), i.getEnd())) {
+                    currentMemory -= entry.getValue();
+                    iter.remove();
+                    InsertionManager.getInstance().removeInterval(i);
+                }
+            }
 
-            for (AlignmentInterval interval : intervals) {
+            long cost = interval.getMemoryEstimate();
+            intervals.put(interval, cost);
+            currentMemory += cost;
+            InsertionManager.getInstance().addInterval(interval);
+
+            evict(interval, frames);
+        }
+
+        private void evict(AlignmentInterval newInterval, List<ReferenceFrame> frames) {
+
+            boolean lowMemory = RuntimeUtils.getAvailableMemoryFraction() < LOW_MEMORY_FRACTION;
+            if (currentMemory <= maxMemory && !lowMemory) {
+                return;
+            }
+
+            // Iteration order is least-recently accessed first
+            Iterator<Map.Entry<AlignmentInterval, Long>> iter = intervals.entrySet().iterator();
+            while (iter.hasNext() && (currentMemory > maxMemory || lowMemory)) {
+                Map.Entry<AlignmentInterval, Long> entry = iter.next();
+                AlignmentInterval interval = entry.getKey();
+                if (interval == newInterval || coversFrame(interval, frames)) {
+                    continue;
+                }
+                currentMemory -= entry.getValue();
+                iter.remove();
+                InsertionManager.getInstance().removeInterval(interval);
+                evictionCount++;
+                log.debug("Evicted " + interval.getChr() + ":" + interval.getStart() + "-" + interval.getEnd());
+                lowMemory = lowMemory && RuntimeUtils.getAvailableMemoryFraction() < LOW_MEMORY_FRACTION;
+            }
+        }
+
+        private static boolean coversFrame(AlignmentInterval interval, List<ReferenceFrame> frames) {
+            if (frames != null) {
+                for (ReferenceFrame frame : frames) {
+                    Range range = frame.getCurrentRange();
+                    if (range != null && interval.contains(range.getChr(), range.getStart(), range.getEnd())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Return a cached interval containing the range,  or null if there is none.  The interval returned,  if any,
+         * becomes the most recently used.
+         */
+        public synchronized AlignmentInterval getIntervalForRange(Range range) {
+
+            if (range == null) return null;
+
+            AlignmentInterval found = null;
+            for (AlignmentInterval interval : intervals.keySet()) {
                 if (interval.contains(range.getChr(), range.getStart(), range.getEnd())) {
-                    return interval;
+                    found = interval;
+                    break;
                 }
             }
+            if (found != null) {
+                intervals.get(found);   // Update access order
+            }
+            return found;
+        }
+
+        /**
+         * Return the union of the given range and all cached intervals on the same chromosome which overlap it.
+         */
+        public synchronized Range getOverlapUnion(String chr, int start, int end) {
+            int unionStart = start;
+            int unionEnd = end;
+            for (AlignmentInterval interval : intervals.keySet()) {
+                if (interval.overlaps(chr, start, end)) {
+                    unionStart = Math.min(unionStart, interval.getStart());
+                    unionEnd = Math.max(unionEnd, interval.getEnd());
+                }
+            }
+            return new Range(chr, unionStart, unionEnd);
+        }
 
-            return null;
+        synchronized void recordHit() {
+            hitCount++;
+        }
 
+        synchronized void recordMiss() {
+            missCount++;
         }
 
-        public Collection<AlignmentInterval> values() {
-            return intervals;
+        public synchronized long getHitCount() {
+            return hitCount;
         }
 
-        public void clear() {
+        public synchronized long getMissCount() {
+            return missCount;
+        }
+
+        public synchronized long getEvictionCount() {
+            return evictionCount;
+        }
+
+        public synchronized long getMemoryEstimate() {
+            return currentMemory;
+        }
+
+        /**
+         * @return a snapshot of the cached intervals
+         */
+        public synchronized Collection<AlignmentInterval> values() {
+            return new ArrayList<>(intervals.keySet());
+        }
+
+        public synchronized int size() {
+            return intervals.size();
+        }
+
+        public synchronized void clear() {
+            for (AlignmentInterval interval : intervals.keySet()) {
+                InsertionManager.getInstance().removeInterval(interval);
+            }
             intervals.clear();
+            currentMemory = 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "IntervalCache{intervals=" + intervals.size() + ", memory=" + currentMemory +
+                    ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "}";
         }
     }
 }
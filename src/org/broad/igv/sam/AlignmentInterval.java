@@ -45,13 +45,34 @@ public class AlignmentInterval extends Locus {
     private List<Alignment> alignments;
     private SpliceJunctionHelper spliceJunctionHelper;
     private List<DownsampledInterval> downsampledIntervals;
+    private InsertionManager.Insertions insertions;
     private PackedAlignments packedAlignments;
+    private AlignmentTrack.RenderOptions pendingRenderOptions;
+
+    /**
+     * Rough per-object costs used to estimate the memory held by an interval
+     */
+    private static final int ESTIMATED_BYTES_PER_ALIGNMENT = 1000;
+    private static final int ESTIMATED_BYTES_PER_COUNT_POSITION = 80;
 
     public AlignmentInterval(String chr, int start, int end,
                              List<Alignment> alignments,
                              AlignmentCounts counts,
                              SpliceJunctionHelper spliceJunctionHelper,
                              List<DownsampledInterval> downsampledIntervals) {
+        this(chr, start, end, alignments, counts, spliceJunctionHelper, downsampledIntervals, null);
+    }
+
+    /**
+     * @param insertions insertions in the alignments,  registered with the {@link InsertionManager} while this
+     *                   interval is cached
+     */
+    AlignmentInterval(String chr, int start, int end,
+                      List<Alignment> alignments,
+                      AlignmentCounts counts,
+                      SpliceJunctionHelper spliceJunctionHelper,
+                      List<DownsampledInterval> downsampledIntervals,
+                      InsertionManager.Insertions insertions) {
 
         super(chr, start, end);
         this.alignments = alignments;
@@ -60,6 +81,7 @@ public class AlignmentInterval extends Locus {
 
         this.spliceJunctionHelper = spliceJunctionHelper;
         this.downsampledIntervals = downsampledIntervals;
+        this.insertions = insertions;
     }
 
     static Alignment getFeatureContaining(List<Alignment> features, int right) {
@@ -148,6 +170,14 @@ public class AlignmentInterval extends Locus {
         return alignments == null ? Collections.<Alignment>emptyList() : Collections.unmodifiableList(alignments);
     }
 
+    /**
+     * Return true if the alignments are held in a {@link ColumnarAlignmentStore},  and so are not backed by the
+     * records read from the file.
+     */
+    public boolean isColumnar() {
+        return alignments instanceof ColumnarAlignmentStore;
+    }
+
     public Iterator<Alignment> getAlignmentIterator() {
         return alignments == null ? Collections.<Alignment>emptyList().iterator() : alignments.iterator();
     }
@@ -156,6 +186,10 @@ public class AlignmentInterval extends Locus {
         return downsampledIntervals;
     }
 
+    InsertionManager.Insertions getInsertions() {
+        return insertions;
+    }
+
     public SpliceJunctionHelper getSpliceJunctionHelper() {
         return this.spliceJunctionHelper;
     }
@@ -164,19 +198,49 @@ public class AlignmentInterval extends Locus {
         return new Range(getChr(), getStart(), getEnd());
     }
 
-    public void packAlignments(AlignmentTrack.RenderOptions renderOptions) {
+    public synchronized void packAlignments(AlignmentTrack.RenderOptions renderOptions) {
 
         final AlignmentPacker alignmentPacker = new AlignmentPacker();
         this.packedAlignments = alignmentPacker.packAlignments(this, renderOptions);
+        this.pendingRenderOptions = null;
     }
 
-    public PackedAlignments getPackedAlignments() {
+    /**
+     * Mark the packed alignments out of date.  Alignments are repacked with the given options when next requested.
+     *
+     * @param renderOptions
+     */
+    public synchronized void invalidatePacking(AlignmentTrack.RenderOptions renderOptions) {
+        this.pendingRenderOptions = renderOptions;
+    }
+
+    public synchronized PackedAlignments getPackedAlignments() {
+        if (pendingRenderOptions != null) {
+            packAlignments(pendingRenderOptions);
+        }
         return packedAlignments;
     }
 
-    public void dumpAlignments() {
+    public synchronized void dumpAlignments() {
         if (this.alignments != null) this.alignments.clear();
         this.packedAlignments = null;
+        this.pendingRenderOptions = null;
+    }
+
+    /**
+     * Estimate the memory,  in bytes,  held by the alignments and counts of this interval.
+     */
+    public long getMemoryEstimate() {
+        long estimate = 0;
+        if (alignments instanceof ColumnarAlignmentStore) {
+            estimate += ((ColumnarAlignmentStore) alignments).getMemoryEstimate();
+        } else if (alignments != null) {
+            estimate += (long) ESTIMATED_BYTES_PER_ALIGNMENT * alignments.size();
+        }
+        if (counts != null) {
+            estimate += (long) ESTIMATED_BYTES_PER_COUNT_POSITION * counts.getNumberOfPoints();
+        }
+        return estimate;
     }
 
 
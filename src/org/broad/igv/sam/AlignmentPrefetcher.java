@@ -0,0 +1,278 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.event.IGVEventBus;
+import org.broad.igv.event.IGVEventObserver;
+import org.broad.igv.event.StopEvent;
+import org.broad.igv.feature.Range;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.util.RuntimeUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.broad.igv.prefs.Constants.SAM_MAX_VISIBLE_RANGE;
+
+/**
+ * Loads alignments ahead of the user.  Pan direction and velocity are tracked per reference frame;  when a frame
+ * moves the neighbouring window in the direction of travel is loaded and packed in the background and added to the
+ * data manager's interval cache.  When a frame has not moved both neighbouring windows are loaded.
+ * <p/>
+ * Prefetch windows overlap the interval they extend by the width of the frame,  so that a frame panning across the
+ * boundary is always contained in a single cached interval.  At most one prefetch per data manager is pending at a
+ * time,  and prefetches run on a small pool shared by all data managers.
+ * <p/>
+ * Readers are not thread safe,  so a prefetch holds the data manager's load lock while it loads.  Each prefetch has
+ * its own cancellation flag,  checked as alignments are read,  so a foreground load that cancels a prefetch waits only
+ * until the prefetch stops.  Cancelling a prefetch does not affect other loads on the same reader.
+ */
+class AlignmentPrefetcher implements IGVEventObserver {
+
+    private static Logger log = Logger.getLogger(AlignmentPrefetcher.class);
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "Alignment prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Time, in milliseconds, over which the pan velocity is projected to size the prefetch window
+     */
+    private static final long PREDICTION_TIME = 2000;
+
+    /**
+     * Movements older than this are not considered part of the current pan
+     */
+    private static final long PAN_TIMEOUT = 5000;
+
+    /**
+     * Prefetching is skipped when less than this fraction of memory is available
+     */
+    private static final double MIN_MEMORY_FRACTION = 0.5;
+
+    private final AlignmentDataManager dataManager;
+    private final Map<String, PanState> panStates = new HashMap<>();
+    private PrefetchTask pending;
+
+    AlignmentPrefetcher(AlignmentDataManager dataManager) {
+        this.dataManager = dataManager;
+        IGVEventBus.getInstance().subscribe(StopEvent.class, this);
+    }
+
+    /**
+     * Record the current position of the frame and, if warranted, start loading the next window.
+     *
+     * @param frame
+     * @param renderOptions
+     */
+    synchronized void update(ReferenceFrame frame, AlignmentTrack.RenderOptions renderOptions) {
+
+        Range range = frame.getCurrentRange();
+        if (range == null || range.getChr() == null) return;
+
+        PanState state = panStates.get(frame.getName());
+        if (state == null) {
+            state = new PanState();
+            panStates.put(frame.getName(), state);
+        }
+        boolean moved = state.update(range);
+        if (!moved && state.prefetched) return;
+
+        AlignmentInterval interval = dataManager.getLoadedInterval(frame);
+        if (interval == null) return;
+
+        if (pending != null && !pending.isDone()) return;
+
+        if (RuntimeUtils.getAvailableMemoryFraction() < MIN_MEMORY_FRACTION) return;
+
+        int frameWidth = range.getLength();
+        int baseWidth = Math.max(interval.getLength(), frameWidth);
+        int maxWidth = Math.max(baseWidth, 2 * PreferencesManager.getPreferences().getAsInt(SAM_MAX_VISIBLE_RANGE) * 1000);
+        int width = (int) Math.min(maxWidth, baseWidth + Math.abs(state.velocity) * PREDICTION_TIME);
+
+        Range right = new Range(range.getChr(), interval.getEnd() - frameWidth, interval.getEnd() - frameWidth + width);
+        Range left = new Range(range.getChr(), Math.max(0, interval.getStart() + frameWidth - width), interval.getStart() + frameWidth);
+
+        Range[] targets;
+        if (state.velocity > 0) {
+            targets = new Range[]{right};
+        } else if (state.velocity < 0) {
+            targets = new Range[]{left};
+        } else {
+            targets = new Range[]{right, left};
+        }
+
+        prefetch(targets, renderOptions);
+        state.prefetched = true;
+    }
+
+    /**
+     * Start loading the target ranges in the background.
+     *
+     * @param targets
+     * @param renderOptions
+     * @return the prefetch task
+     */
+    synchronized PrefetchTask prefetch(Range[] targets, AlignmentTrack.RenderOptions renderOptions) {
+        pending = new PrefetchTask(targets, renderOptions);
+        pending.future = executor.submit(pending);
+        return pending;
+    }
+
+    /**
+     * Called before a foreground load of {@code range}.  If a pending prefetch will cover the range wait for it,
+     * otherwise cancel it and wait for it to stop,  so the foreground load is not delayed by the rest of the prefetch.
+     *
+     * @param range
+     */
+    void awaitOrCancel(Range range) {
+
+        PrefetchTask task;
+        synchronized (this) {
+            task = pending;
+        }
+        if (task == null || task.isDone()) return;
+
+        if (!task.covers(range)) {
+            task.cancel();
+        }
+        try {
+            task.future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            log.error("Error waiting for prefetch", e);
+        }
+    }
+
+    synchronized void cancel() {
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+        panStates.clear();
+    }
+
+    @Override
+    public void receiveEvent(Object event) {
+        if (event instanceof StopEvent) {
+            cancel();
+        }
+    }
+
+    /**
+     * Position and velocity (bp / ms) of a frame's center
+     */
+    private static class PanState {
+
+        String chr;
+        double center;
+        long time;
+        double velocity;
+        boolean prefetched;
+
+        boolean update(Range range) {
+            long now = System.currentTimeMillis();
+            double newCenter = (range.getStart() + range.getEnd()) / 2.0;
+
+            if (chr == null || !chr.equals(range.getChr())) {
+                velocity = 0;
+            } else if (newCenter == center) {
+                return false;
+            } else {
+                long dt = Math.max(1, now - time);
+                double v = (newCenter - center) / dt;
+                // Continue a pan in the same direction,  smoothing the velocity,  otherwise start over
+                velocity = (dt < PAN_TIMEOUT && Math.signum(v) == Math.signum(velocity)) ? (velocity + v) / 2 : v;
+            }
+            chr = range.getChr();
+            center = newCenter;
+            time = now;
+            prefetched = false;
+            return true;
+        }
+    }
+
+
+    class PrefetchTask implements Runnable {
+
+        final Range[] targets;
+        final AlignmentTrack.RenderOptions renderOptions;
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        Future<?> future;
+
+        PrefetchTask(Range[] targets, AlignmentTrack.RenderOptions renderOptions) {
+            this.targets = targets;
+            this.renderOptions = renderOptions;
+        }
+
+        boolean covers(Range range) {
+            for (Range r : targets) {
+                if (r.contains(range)) return true;
+            }
+            return false;
+        }
+
+        boolean isDone() {
+            return future == null || future.isDone();
+        }
+
+        /**
+         * Stop the prefetch.  The task completes,  without caching a partial interval,  once the load in progress
+         * notices the flag.
+         */
+        void cancel() {
+            cancelled.set(true);
+        }
+
+        public void run() {
+            for (Range target : targets) {
+                if (cancelled.get()) return;
+                synchronized (dataManager.getLoadLock()) {
+                    if (cancelled.get() || dataManager.isLoaded(target)) continue;
+                    try {
+                        log.debug("Prefetching " + target.getChr() + ":" + target.getStart() + "-" + target.getEnd());
+                        AlignmentInterval interval = dataManager.loadInterval(target.getChr(), target.getStart(),
+                                target.getEnd(), renderOptions, cancelled);
+                        if (!cancelled.get()) {
+                            interval.packAlignments(renderOptions);
+                            dataManager.addPrefetchedInterval(interval);
+                        }
+                    } catch (Exception e) {
+                        log.error("Error prefetching alignments", e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -45,6 +45,7 @@ import javax.swing.*;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.broad.igv.prefs.Constants.*;
 
@@ -123,6 +124,25 @@ public class AlignmentTileLoader implements IGVEventObserver {
                            ReadStats readStats, Map<String, PEStats> peStats,
                            AlignmentTrack.BisulfiteContext bisulfiteContext,
                            boolean showAlignments) {
+        return loadTile(chr, start, end, spliceJunctionHelper, downsampleOptions, readStats, peStats,
+                bisulfiteContext, showAlignments, null);
+    }
+
+    /**
+     * Load a tile.  The load stops early if {@code cancelled} is set,  which unlike {@link StopEvent} affects only
+     * this load.
+     *
+     * @param cancelled cancellation flag for this load,  may be null
+     */
+    AlignmentTile loadTile(String chr,
+                           int start,
+                           int end,
+                           SpliceJunctionHelper spliceJunctionHelper,
+                           AlignmentDataManager.DownsampleOptions downsampleOptions,
+                           ReadStats readStats, Map<String, PEStats> peStats,
+                           AlignmentTrack.BisulfiteContext bisulfiteContext,
+                           boolean showAlignments,
+                           AtomicBoolean cancelled) {
 
         final IGVPreferences prefMgr = PreferencesManager.getPreferences();
         boolean filterFailedReads = prefMgr.getAsBoolean(SAM_FILTER_FAILED_READS);
@@ -133,8 +153,10 @@ public class AlignmentTileLoader implements IGVEventObserver {
         int qualityThreshold = prefMgr.getAsInt(SAM_QUALITY_THRESHOLD);
 
         boolean reducedMemory = prefMgr.getAsBoolean(SAM_REDUCED_MEMORY_MODE);
+        boolean columnar = !reducedMemory && prefMgr.getAsBoolean(SAM_COLUMNAR_STORE);
 
-        AlignmentTile t = new AlignmentTile(start, end, spliceJunctionHelper, downsampleOptions, bisulfiteContext, showAlignments, reducedMemory);
+        AlignmentTile t = new AlignmentTile(start, end, spliceJunctionHelper, downsampleOptions, bisulfiteContext,
+                showAlignments, reducedMemory, columnar);
 
 
         //assert (tiles.size() > 0);
@@ -163,7 +185,7 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
             while (iter != null && iter.hasNext()) {
 
-                if (cancel) {
+                if (cancel || (cancelled != null && cancelled.get())) {
                     break;
                 }
 
@@ -284,7 +306,7 @@ public class AlignmentTileLoader implements IGVEventObserver {
             t.finish();
 
             // TODO -- make this optional (on a preference)
-            InsertionManager.getInstance().processAlignments(chr, t.alignments);
+            t.insertions = InsertionManager.collectInsertions(t.alignments);
 
 
         } catch (java.nio.BufferUnderflowException e) {
@@ -388,11 +410,13 @@ public class AlignmentTileLoader implements IGVEventObserver {
         private List<Alignment> alignments;
         private List<DownsampledInterval> downsampledIntervals;
         private SpliceJunctionHelper spliceJunctionHelper;
+        private InsertionManager.Insertions insertions;
 
         private static final Random RAND = new Random();
 
         private boolean downsample;
         private boolean showAlignments;
+        private boolean columnar;
         private int samplingWindowSize;
         private int samplingDepth;
 
@@ -419,12 +443,28 @@ public class AlignmentTileLoader implements IGVEventObserver {
                       AlignmentTrack.BisulfiteContext bisulfiteContext,
                       boolean showAlignments,
                       boolean reducedMemory) {
+            this(start, end, spliceJunctionHelper, downsampleOptions, bisulfiteContext, showAlignments, reducedMemory, false);
+        }
+
+        /**
+         * @param columnar if true alignments are copied into a {@link ColumnarAlignmentStore} rather than retained
+         *                 as individual objects.
+         */
+        AlignmentTile(int start,
+                      int end,
+                      SpliceJunctionHelper spliceJunctionHelper,
+                      AlignmentDataManager.DownsampleOptions downsampleOptions,
+                      AlignmentTrack.BisulfiteContext bisulfiteContext,
+                      boolean showAlignments,
+                      boolean reducedMemory,
+                      boolean columnar) {
             this.start = start;
             this.end = end;
             this.downsampledIntervals = new ArrayList<DownsampledInterval>();
 
             this.indelLimit = PreferencesManager.getPreferences().getAsInt(SAM_SMALL_INDEL_BP_THRESHOLD);
             this.showAlignments = showAlignments;
+            this.columnar = columnar;
 
             long seed = System.currentTimeMillis();
             //System.out.println("seed: " + seed);
@@ -453,6 +493,8 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
             if (this.downsample) {
                 imAlignments = new IndexableMap<String, Alignment>(8000);
+            } else if (columnar) {
+                alignments = new ColumnarAlignmentStore(16000);
             } else {
                 alignments = new ArrayList<Alignment>(16000);
             }
@@ -621,6 +663,11 @@ public class AlignmentTileLoader implements IGVEventObserver {
             };
             Collections.sort(this.alignments, alignmentSorter);
 
+            // Downsampling requires random replacement, so alignments are not copied to the columnar store until now
+            if (columnar && !(this.alignments instanceof ColumnarAlignmentStore)) {
+                this.alignments = ColumnarAlignmentStore.copyOf(this.alignments);
+            }
+
             //Only keep the intervals for which count > 0
             List<DownsampledInterval> tmp = new ArrayList<DownsampledInterval>(this.downsampledIntervals.size());
             for (DownsampledInterval interval : this.downsampledIntervals) {
@@ -648,6 +695,9 @@ public class AlignmentTileLoader implements IGVEventObserver {
             if (downsample) {
                 sortFilterDownsampled();
             }
+            if (alignments instanceof ColumnarAlignmentStore) {
+                ((ColumnarAlignmentStore) alignments).resolveMateSequences();
+            }
             finalizeSpliceJunctions();
             counts.finish();
         }
@@ -656,6 +706,10 @@ public class AlignmentTileLoader implements IGVEventObserver {
             return counts;
         }
 
+        InsertionManager.Insertions getInsertions() {
+            return insertions;
+        }
+
 
         private void finalizeSpliceJunctions() {
             if (spliceJunctionHelper != null) {
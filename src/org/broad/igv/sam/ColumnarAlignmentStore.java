@@ -0,0 +1,1018 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import htsjdk.samtools.BinaryTagCodec;
+import htsjdk.samtools.SAMBinaryTagAndValue;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTagUtil;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.BinaryCodec;
+import org.broad.igv.Globals;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.collections.IntArrayList;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.List;
+
+/**
+ * A column oriented, primitive backed store for the alignments of a single tile.  Alignment fields are copied into
+ * parallel arrays when added,  and strings which repeat heavily (read names, cigars, read groups, pair orientations)
+ * are interned into per-store tables.  Alignment objects returned by {@link #get(int)} are lightweight views over a
+ * row of the store,  created on first access;  alignment blocks, insertions, and gaps are materialized only when
+ * requested (typically by the renderer or popup text) and are held by a soft reference so they can be reclaimed
+ * under memory pressure.
+ * <p/>
+ * Optional tags of {@link PicardAlignment}s are kept in their BAM binary encoding and decoded when first requested,
+ * with the blocks.  Other alignment types do not expose their tags,  these alignments are retained as is and returned
+ * by {@link #get(int)}.  Mate sequences of unmapped mates are kept in a sparse map by row.  As the loader may set them
+ * after an alignment is added,  alignments whose mate is unmapped are retained until {@link #resolveMateSequences()}.
+ */
+public class ColumnarAlignmentStore extends AbstractList<Alignment> {
+
+    // Flag bits.  Strand values (Strand.ordinal()) are packed above the boolean flags
+    private static final int PAIRED = 0x1;
+    private static final int PROPER_PAIR = 0x2;
+    private static final int MAPPED = 0x4;
+    private static final int MATE_MAPPED = 0x8;
+    private static final int NEGATIVE_STRAND = 0x10;
+    private static final int MATE_NEGATIVE_STRAND = 0x20;
+    private static final int FIRST_OF_PAIR = 0x40;
+    private static final int SECOND_OF_PAIR = 0x80;
+    private static final int PRIMARY = 0x100;
+    private static final int VENDOR_FAILED = 0x200;
+    private static final int DUPLICATE = 0x400;
+    private static final int SUPPLEMENTARY = 0x800;
+    private static final int FOP_STRAND_SHIFT = 16;
+    private static final int SOP_STRAND_SHIFT = 18;
+
+    // Block types
+    private static final byte MATCH_BLOCK = 0;
+    private static final byte SOFT_CLIPPED_BLOCK = 1;
+    private static final byte INSERTION_BLOCK = 2;
+
+    private static final Strand[] STRANDS = Strand.values();
+
+    private String chr;
+    private int size = 0;
+
+    // Row columns
+    private IntArrayList starts;
+    private IntArrayList ends;
+    private IntArrayList alignmentStarts;
+    private IntArrayList alignmentEnds;
+    private IntArrayList flags;
+    private IntArrayList mappingQualities;
+    private IntArrayList insertSizes;
+    private IntArrayList mateStarts;
+    private IntArrayList mateChrs;
+    private IntArrayList readNames;
+    private IntArrayList cigars;
+    private IntArrayList readGroups;
+    private IntArrayList pairOrientations;
+    private IntArrayList ycColors;
+    private IntArrayList readLengths;
+    private IntArrayList tagOffsets;
+    private IntArrayList blockOffsets;
+    private IntArrayList gapOffsets;
+
+    // Block columns,  indexed by blockOffsets.  Insertions are stored with the alignment blocks, marked by type
+    private IntArrayList blockStarts;
+    private IntArrayList blockLengths;
+    private IntArrayList blockPaddings;
+    private IntArrayList blockBaseOffsets;
+    private ByteBuffer blockTypes;
+
+    // Gap columns,  indexed by gapOffsets.  Flanking widths are 0 for non-splice gaps
+    private IntArrayList gapStarts;
+    private IntArrayList gapLengths;
+    private IntArrayList gapFlankingLeft;
+    private IntArrayList gapFlankingRight;
+    private ByteBuffer gapTypes;
+
+    // Base and quality pools,  shared by all blocks
+    private ByteBuffer bases;
+    private ByteBuffer qualities;
+
+    // BAM encoded optional tags,  indexed by tagOffsets
+    private ByteBuffer tags;
+
+    // Views,  created on first access,  and alignments which are not stored in columns (null unless any)
+    private ColumnarAlignment[] views;
+    private HashMap<Integer, Alignment> records;
+
+    // Mate sequences by row,  and alignments whose mate sequence may yet be set by the loader (null unless any)
+    private HashMap<Integer, String> mateSequences;
+    private HashMap<Integer, SAMAlignment> pendingMates;
+
+    // Tag encoder,  reused by add
+    private ByteArrayOutputStream tagStream;
+    private BinaryTagCodec tagCodec;
+
+    // Intern tables
+    private InternTable<String> nameTable;
+    private InternTable<String> cigarTable;
+    private InternTable<String> chrTable;
+    private InternTable<ReadGroupInfo> readGroupTable;
+    private InternTable<String> pairOrientationTable;
+    private InternTable<Color> colorTable;
+
+    public ColumnarAlignmentStore() {
+        this(1000);
+    }
+
+    public ColumnarAlignmentStore(int initialCapacity) {
+        starts = new IntArrayList(initialCapacity);
+        ends = new IntArrayList(initialCapacity);
+        alignmentStarts = new IntArrayList(initialCapacity);
+        alignmentEnds = new IntArrayList(initialCapacity);
+        flags = new IntArrayList(initialCapacity);
+        mappingQualities = new IntArrayList(initialCapacity);
+        insertSizes = new IntArrayList(initialCapacity);
+        mateStarts = new IntArrayList(initialCapacity);
+        mateChrs = new IntArrayList(initialCapacity);
+        readNames = new IntArrayList(initialCapacity);
+        cigars = new IntArrayList(initialCapacity);
+        readGroups = new IntArrayList(initialCapacity);
+        pairOrientations = new IntArrayList(initialCapacity);
+        ycColors = new IntArrayList(initialCapacity);
+        readLengths = new IntArrayList(initialCapacity);
+        tagOffsets = new IntArrayList(initialCapacity + 1);
+        blockOffsets = new IntArrayList(initialCapacity + 1);
+        gapOffsets = new IntArrayList(initialCapacity + 1);
+        tagOffsets.add(0);
+        blockOffsets.add(0);
+        gapOffsets.add(0);
+
+        blockStarts = new IntArrayList(initialCapacity);
+        blockLengths = new IntArrayList(initialCapacity);
+        blockPaddings = new IntArrayList(initialCapacity);
+        blockBaseOffsets = new IntArrayList(initialCapacity);
+        blockTypes = new ByteBuffer(initialCapacity);
+
+        gapStarts = new IntArrayList();
+        gapLengths = new IntArrayList();
+        gapFlankingLeft = new IntArrayList();
+        gapFlankingRight = new IntArrayList();
+        gapTypes = new ByteBuffer(100);
+
+        bases = new ByteBuffer(initialCapacity * 100);
+        qualities = new ByteBuffer(initialCapacity * 100);
+        tags = new ByteBuffer(initialCapacity * 20);
+        views = new ColumnarAlignment[Math.max(10, initialCapacity)];
+
+        nameTable = new InternTable<String>();
+        cigarTable = new InternTable<String>();
+        chrTable = new InternTable<String>();
+        readGroupTable = new InternTable<ReadGroupInfo>();
+        pairOrientationTable = new InternTable<String>();
+        colorTable = new InternTable<Color>();
+    }
+
+    /**
+     * Create a store containing copies of all alignments in the list.
+     */
+    public static ColumnarAlignmentStore copyOf(List<Alignment> alignments) {
+        ColumnarAlignmentStore store = new ColumnarAlignmentStore(Math.max(10, alignments.size()));
+        for (Alignment a : alignments) {
+            store.add(a);
+        }
+        return store;
+    }
+
+    /**
+     * Copy the alignment into the store.  The alignment object itself is not retained unless it is not a
+     * {@link PicardAlignment}.
+     *
+     * @param alignment
+     * @return true
+     */
+    @Override
+    public boolean add(Alignment alignment) {
+
+        if (chr == null) {
+            chr = alignment.getChr();
+        }
+
+        if (alignment instanceof PicardAlignment) {
+            PicardAlignment picardAlignment = (PicardAlignment) alignment;
+            addTags(picardAlignment.getRecord());
+            String mateSequence = picardAlignment.getMateSequence();
+            if (mateSequence != null) {
+                setMateSequence(size, mateSequence);
+            } else if (alignment.isPaired() && alignment.isMapped() &&
+                    alignment.getMate() != null && !alignment.getMate().isMapped()) {
+                if (pendingMates == null) {
+                    pendingMates = new HashMap<Integer, SAMAlignment>();
+                }
+                pendingMates.put(size, picardAlignment);
+            }
+        } else {
+            if (records == null) {
+                records = new HashMap<Integer, Alignment>();
+            }
+            records.put(size, alignment);
+        }
+        tagOffsets.add(tags.size());
+        if (size == views.length) {
+            views = Arrays.copyOf(views, (int) Math.min(Integer.MAX_VALUE - 8, size * 3L / 2));
+        }
+
+        starts.add(alignment.getStart());
+        ends.add(alignment.getEnd());
+        alignmentStarts.add(alignment.getAlignmentStart());
+        alignmentEnds.add(alignment.getAlignmentEnd());
+        mappingQualities.add(alignment.getMappingQuality());
+        insertSizes.add(alignment.getInferredInsertSize());
+        readNames.add(nameTable.intern(alignment.getReadName()));
+        cigars.add(cigarTable.intern(alignment.getCigarString()));
+        readGroups.add(readGroupTable.intern(
+                new ReadGroupInfo(alignment.getSample(), alignment.getLibrary(), alignment.getReadGroup())));
+        pairOrientations.add(pairOrientationTable.intern(alignment.getPairOrientation()));
+        ycColors.add(colorTable.intern(alignment.getYcColor()));
+
+        int f = 0;
+        if (alignment.isPaired()) f |= PAIRED;
+        if (alignment.isProperPair()) f |= PROPER_PAIR;
+        if (alignment.isMapped()) f |= MAPPED;
+        if (alignment.isNegativeStrand()) f |= NEGATIVE_STRAND;
+        if (alignment.isFirstOfPair()) f |= FIRST_OF_PAIR;
+        if (alignment.isSecondOfPair()) f |= SECOND_OF_PAIR;
+        if (alignment.isPrimary()) f |= PRIMARY;
+        if (alignment.isVendorFailedRead()) f |= VENDOR_FAILED;
+        if (alignment.isDuplicate()) f |= DUPLICATE;
+        if (alignment.isSupplementary()) f |= SUPPLEMENTARY;
+
+        ReadMate mate = alignment.getMate();
+        if (mate != null) {
+            if (mate.isMapped()) f |= MATE_MAPPED;
+            if (mate.isNegativeStrand()) f |= MATE_NEGATIVE_STRAND;
+            mateStarts.add(mate.getStart());
+            mateChrs.add(chrTable.intern(mate.getChr()));
+        } else {
+            mateStarts.add(-1);
+            mateChrs.add(-1);
+        }
+
+        Strand fopStrand = alignment.getFirstOfPairStrand();
+        Strand sopStrand = alignment.getSecondOfPairStrand();
+        f |= (fopStrand == null ? Strand.NONE : fopStrand).ordinal() << FOP_STRAND_SHIFT;
+        f |= (sopStrand == null ? Strand.NONE : sopStrand).ordinal() << SOP_STRAND_SHIFT;
+        flags.add(f);
+
+        // Blocks and insertions,  merged in read order.  An insertion precedes the block that starts at its position.
+        int readLength = 0;
+        AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+        AlignmentBlock[] insertions = alignment.getInsertions();
+        int nBlocks = blocks == null ? 0 : blocks.length;
+        int nInsertions = insertions == null ? 0 : insertions.length;
+        int b = 0;
+        int i = 0;
+        while (b < nBlocks || i < nInsertions) {
+            if (i < nInsertions && (b == nBlocks || insertions[i].getStart() <= blocks[b].getStart())) {
+                readLength += addBlock(insertions[i++], INSERTION_BLOCK);
+            } else {
+                AlignmentBlock block = blocks[b++];
+                readLength += addBlock(block, block.isSoftClipped() ? SOFT_CLIPPED_BLOCK : MATCH_BLOCK);
+            }
+        }
+        blockOffsets.add(blockStarts.size());
+        readLengths.add(readLength);
+
+        List<Gap> gaps = alignment.getGaps();
+        if (gaps != null) {
+            for (Gap gap : gaps) {
+                gapStarts.add(gap.getStart());
+                gapLengths.add(gap.getnBases());
+                gapTypes.add((byte) gap.getType());
+                if (gap instanceof SpliceGap) {
+                    gapFlankingLeft.add(((SpliceGap) gap).getFlankingLeft());
+                    gapFlankingRight.add(((SpliceGap) gap).getFlankingRight());
+                } else {
+                    gapFlankingLeft.add(0);
+                    gapFlankingRight.add(0);
+                }
+            }
+        }
+        gapOffsets.add(gapStarts.size());
+
+        size++;
+        return true;
+    }
+
+    private void addTags(SAMRecord record) {
+        List<SAMRecord.SAMTagAndValue> attributes = record.getAttributes();
+        if (attributes == null || attributes.isEmpty()) {
+            return;
+        }
+        if (tagCodec == null) {
+            tagStream = new ByteArrayOutputStream();
+            tagCodec = new BinaryTagCodec(new BinaryCodec(tagStream));
+        }
+        tagStream.reset();
+        SAMTagUtil tagUtil = SAMTagUtil.getSingleton();
+        for (SAMRecord.SAMTagAndValue attribute : attributes) {
+            tagCodec.writeTag(tagUtil.makeBinaryTag(attribute.tag), attribute.value,
+                    record.isUnsignedArrayAttribute(attribute.tag));
+        }
+        byte[] encoded = tagStream.toByteArray();
+        tags.addAll(encoded, encoded.length);
+    }
+
+    private int addBlock(AlignmentBlock block, byte type) {
+        blockStarts.add(block.getStart());
+        blockTypes.add(type);
+        blockPaddings.add(block.getPadding());
+        byte[] blockBases = block.getBases();
+        if (blockBases == null) {
+            blockLengths.add(block.getLength() - block.getPadding());
+            blockBaseOffsets.add(-1);
+            return 0;
+        } else {
+            blockLengths.add(blockBases.length);
+            blockBaseOffsets.add(bases.size());
+            bases.addAll(blockBases, blockBases.length);
+            byte[] blockQualities = block.getQualities();
+            if (blockQualities == null || blockQualities.length < blockBases.length) {
+                for (int q = 0; q < blockBases.length; q++) {
+                    qualities.add(blockQualities != null && q < blockQualities.length ? blockQualities[q] : (byte) 126);
+                }
+            } else {
+                qualities.addAll(blockQualities, blockBases.length);
+            }
+            return blockBases.length;
+        }
+    }
+
+    /**
+     * Copy mate sequences set on alignments after they were added,  and release those alignments.  Call once the
+     * loader has finished setting mate sequences.
+     */
+    public synchronized void resolveMateSequences() {
+        if (pendingMates == null) return;
+        for (Map.Entry<Integer, SAMAlignment> entry : pendingMates.entrySet()) {
+            String mateSequence = entry.getValue().getMateSequence();
+            if (mateSequence != null) {
+                setMateSequence(entry.getKey(), mateSequence);
+            }
+        }
+        pendingMates = null;
+    }
+
+    private synchronized void setMateSequence(int row, String mateSequence) {
+        if (mateSequences == null) {
+            mateSequences = new HashMap<Integer, String>();
+        }
+        mateSequences.put(row, mateSequence);
+        if (pendingMates != null) {
+            pendingMates.remove(row);
+        }
+    }
+
+    private synchronized String getMateSequence(int row) {
+        String mateSequence = mateSequences == null ? null : mateSequences.get(row);
+        if (mateSequence == null && pendingMates != null) {
+            SAMAlignment pending = pendingMates.get(row);
+            mateSequence = pending == null ? null : pending.getMateSequence();
+        }
+        return mateSequence;
+    }
+
+    @Override
+    public Alignment get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (records != null) {
+            Alignment record = records.get(index);
+            if (record != null) return record;
+        }
+        ColumnarAlignment view = views[index];
+        if (view == null) {
+            synchronized (this) {
+                view = views[index];
+                if (view == null) {
+                    view = new ColumnarAlignment(index);
+                    views[index] = view;
+                }
+            }
+        }
+        return view;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Release all data held by this store.
+     */
+    @Override
+    public void clear() {
+        ColumnarAlignmentStore empty = new ColumnarAlignmentStore(10);
+        this.size = 0;
+        this.starts = empty.starts;
+        this.ends = empty.ends;
+        this.alignmentStarts = empty.alignmentStarts;
+        this.alignmentEnds = empty.alignmentEnds;
+        this.flags = empty.flags;
+        this.mappingQualities = empty.mappingQualities;
+        this.insertSizes = empty.insertSizes;
+        this.mateStarts = empty.mateStarts;
+        this.mateChrs = empty.mateChrs;
+        this.readNames = empty.readNames;
+        this.cigars = empty.cigars;
+        this.readGroups = empty.readGroups;
+        this.pairOrientations = empty.pairOrientations;
+        this.ycColors = empty.ycColors;
+        this.readLengths = empty.readLengths;
+        this.tagOffsets = empty.tagOffsets;
+        this.blockOffsets = empty.blockOffsets;
+        this.gapOffsets = empty.gapOffsets;
+        this.blockStarts = empty.blockStarts;
+        this.blockLengths = empty.blockLengths;
+        this.blockPaddings = empty.blockPaddings;
+        this.blockBaseOffsets = empty.blockBaseOffsets;
+        this.blockTypes = empty.blockTypes;
+        this.gapStarts = empty.gapStarts;
+        this.gapLengths = empty.gapLengths;
+        this.gapFlankingLeft = empty.gapFlankingLeft;
+        this.gapFlankingRight = empty.gapFlankingRight;
+        this.gapTypes = empty.gapTypes;
+        this.bases = empty.bases;
+        this.qualities = empty.qualities;
+        this.tags = empty.tags;
+        this.views = empty.views;
+        this.records = null;
+        this.mateSequences = null;
+        this.pendingMates = null;
+        this.nameTable = empty.nameTable;
+        this.cigarTable = empty.cigarTable;
+        this.chrTable = empty.chrTable;
+        this.readGroupTable = empty.readGroupTable;
+        this.pairOrientationTable = empty.pairOrientationTable;
+        this.colorTable = empty.colorTable;
+        modCount++;
+    }
+
+    /**
+     * Approximate size in bytes of the data held by this store.
+     */
+    public long getMemoryEstimate() {
+        long nInts = 15L * size + 3L * (size + 1) + 4L * blockStarts.size() + 4L * gapStarts.size();
+        return 4 * nInts + 8L * views.length + blockTypes.size() + gapTypes.size() + bases.size() + qualities.size() +
+                tags.size() + nameTable.memoryEstimate() + cigarTable.memoryEstimate();
+    }
+
+
+    /**
+     * Materialized alignment blocks,  insertions, and gaps for a single row,  and its tags once decoded.
+     */
+    private static class Blocks {
+        AlignmentBlock[] alignmentBlocks;
+        AlignmentBlock[] insertions;
+        List<Gap> gaps;
+        boolean tagsDecoded;
+        SAMBinaryTagAndValue tags;
+    }
+
+    /**
+     * A view on a single row of the store.
+     */
+    private class ColumnarAlignment implements Alignment {
+
+        private final int index;
+        private SoftReference<Blocks> blocksRef;
+
+        ColumnarAlignment(int index) {
+            this.index = index;
+        }
+
+        private int flag(int mask) {
+            return flags.get(index) & mask;
+        }
+
+        private synchronized Blocks getBlocks() {
+            Blocks blocks = blocksRef == null ? null : blocksRef.get();
+            if (blocks == null) {
+                blocks = materialize();
+                blocksRef = new SoftReference<Blocks>(blocks);
+            }
+            return blocks;
+        }
+
+        private Blocks materialize() {
+
+            int from = blockOffsets.get(index);
+            int to = blockOffsets.get(index + 1);
+            int nInsertions = 0;
+            for (int b = from; b < to; b++) {
+                if (blockTypes.get(b) == INSERTION_BLOCK) nInsertions++;
+            }
+
+            Blocks blocks = new Blocks();
+            blocks.alignmentBlocks = new AlignmentBlock[to - from - nInsertions];
+            blocks.insertions = new AlignmentBlock[nInsertions];
+            int blockIdx = 0;
+            int insertionIdx = 0;
+            for (int b = from; b < to; b++) {
+                byte type = blockTypes.get(b);
+                int baseOffset = blockBaseOffsets.get(b);
+                int length = blockLengths.get(b);
+                byte[] blockBases;
+                byte[] blockQualities;
+                if (baseOffset < 0) {
+                    blockBases = new byte[length];
+                    Arrays.fill(blockBases, (byte) '=');
+                    blockQualities = new byte[length];
+                    Arrays.fill(blockQualities, (byte) 126);
+                } else {
+                    blockBases = bases.copyOfRange(baseOffset, length);
+                    blockQualities = qualities.copyOfRange(baseOffset, length);
+                }
+                AlignmentBlockImpl block = new AlignmentBlockImpl(blockStarts.get(b), blockBases, blockQualities);
+                if (type == INSERTION_BLOCK) {
+                    block.setPadding(blockPaddings.get(b));
+                    blocks.insertions[insertionIdx++] = block;
+                } else {
+                    block.setSoftClipped(type == SOFT_CLIPPED_BLOCK);
+                    blocks.alignmentBlocks[blockIdx++] = block;
+                }
+            }
+
+            int gapFrom = gapOffsets.get(index);
+            int gapTo = gapOffsets.get(index + 1);
+            if (gapTo > gapFrom) {
+                blocks.gaps = new ArrayList<Gap>(gapTo - gapFrom);
+                for (int g = gapFrom; g < gapTo; g++) {
+                    char type = (char) gapTypes.get(g);
+                    if (type == SAMAlignment.SKIPPED_REGION) {
+                        blocks.gaps.add(new SpliceGap(gapStarts.get(g), gapLengths.get(g), type,
+                                gapFlankingLeft.get(g), gapFlankingRight.get(g)));
+                    } else {
+                        blocks.gaps.add(new Gap(gapStarts.get(g), gapLengths.get(g), type));
+                    }
+                }
+            }
+            return blocks;
+        }
+
+        public String getReadName() {
+            return nameTable.get(readNames.get(index));
+        }
+
+        /**
+         * Reconstruct the read sequence from the alignment blocks and insertions.  Hard clipped bases are not
+         * recoverable,  nor are soft clipped bases unless soft clips were shown when the alignment was loaded.
+         */
+        public String getReadSequence() {
+            int from = blockOffsets.get(index);
+            int to = blockOffsets.get(index + 1);
+            StringBuilder buf = new StringBuilder(readLengths.get(index));
+            for (int b = from; b < to; b++) {
+                int baseOffset = blockBaseOffsets.get(b);
+                if (baseOffset >= 0) {
+                    buf.append(new String(bases.copyOfRange(baseOffset, blockLengths.get(b))));
+                }
+            }
+            return buf.toString();
+        }
+
+        public String getChr() {
+            return chr;
+        }
+
+        public String getContig() {
+            return chr;
+        }
+
+        public int getStart() {
+            return starts.get(index);
+        }
+
+        public int getEnd() {
+            return ends.get(index);
+        }
+
+        public void setStart(int start) {
+            starts.set(index, start);
+        }
+
+        public void setEnd(int end) {
+            ends.set(index, end);
+        }
+
+        public int getAlignmentStart() {
+            return alignmentStarts.get(index);
+        }
+
+        public int getAlignmentEnd() {
+            return alignmentEnds.get(index);
+        }
+
+        public boolean contains(double location) {
+            return location >= getStart() && location < getEnd();
+        }
+
+        public AlignmentBlock[] getAlignmentBlocks() {
+            return getBlocks().alignmentBlocks;
+        }
+
+        public AlignmentBlock[] getInsertions() {
+            return getBlocks().insertions;
+        }
+
+        @Override
+        public AlignmentBlock getInsertionAt(int position) {
+            for (AlignmentBlock block : getInsertions()) {
+                if (block.getStart() == position) return block;
+                if (block.getStart() > position) return null;
+            }
+            return null;
+        }
+
+        public String getCigarString() {
+            return cigarTable.get(cigars.get(index));
+        }
+
+        public List<Gap> getGaps() {
+            return getBlocks().gaps;
+        }
+
+        public int getInferredInsertSize() {
+            return insertSizes.get(index);
+        }
+
+        public int getMappingQuality() {
+            return mappingQualities.get(index);
+        }
+
+        public ReadMate getMate() {
+            int mateChr = mateChrs.get(index);
+            if (mateChr < 0) {
+                return null;
+            }
+            String mateChrName = chrTable.get(mateChr);
+            return new ReadMate(mateChrName == null ? "*" : mateChrName, mateStarts.get(index),
+                    flag(MATE_NEGATIVE_STRAND) != 0, flag(MATE_MAPPED) == 0);
+        }
+
+        public Strand getReadStrand() {
+            return isNegativeStrand() ? Strand.NEGATIVE : Strand.POSITIVE;
+        }
+
+        public boolean isProperPair() {
+            return flag(PROPER_PAIR) != 0;
+        }
+
+        public boolean isMapped() {
+            return flag(MAPPED) != 0;
+        }
+
+        public boolean isPaired() {
+            return flag(PAIRED) != 0;
+        }
+
+        public boolean isFirstOfPair() {
+            return flag(FIRST_OF_PAIR) != 0;
+        }
+
+        public boolean isSecondOfPair() {
+            return flag(SECOND_OF_PAIR) != 0;
+        }
+
+        public boolean isNegativeStrand() {
+            return flag(NEGATIVE_STRAND) != 0;
+        }
+
+        public boolean isDuplicate() {
+            return flag(DUPLICATE) != 0;
+        }
+
+        public boolean isPrimary() {
+            return flag(PRIMARY) != 0;
+        }
+
+        public boolean isSupplementary() {
+            return flag(SUPPLEMENTARY) != 0;
+        }
+
+        public boolean isVendorFailedRead() {
+            return flag(VENDOR_FAILED) != 0;
+        }
+
+        public byte getBase(double position) {
+            int basePosition = (int) position;
+            for (AlignmentBlock block : getAlignmentBlocks()) {
+                if (block.contains(basePosition)) {
+                    return block.getBase(basePosition - block.getStart());
+                }
+            }
+            return 0;
+        }
+
+        public byte getPhred(double position) {
+            int basePosition = (int) position;
+            for (AlignmentBlock block : getAlignmentBlocks()) {
+                if (block.contains(basePosition)) {
+                    return block.getQuality(basePosition - block.getStart());
+                }
+            }
+            return 0;
+        }
+
+        public Object getAttribute(String key) {
+            // SAM alignment tag keys must be of length 2
+            if (key.length() != 2) {
+                return key.equals("TEMPLATE_ORIENTATION") ? getPairOrientation() : null;
+            }
+            SAMBinaryTagAndValue attributes = getTags();
+            if (attributes == null) {
+                return null;
+            }
+            SAMBinaryTagAndValue attribute = attributes.find(SAMTagUtil.getSingleton().makeBinaryTag(key));
+            return attribute == null ? null : attribute.value;
+        }
+
+        /**
+         * Return the decoded tags,  or null if there are none.  Tags are decoded once and held with the blocks,  as
+         * the renderer reads them for every paint.
+         */
+        private synchronized SAMBinaryTagAndValue getTags() {
+            Blocks blocks = getBlocks();
+            if (!blocks.tagsDecoded) {
+                int from = tagOffsets.get(index);
+                int to = tagOffsets.get(index + 1);
+                blocks.tags = to == from ? null :
+                        BinaryTagCodec.readTags(tags.elements, from, to - from, ValidationStringency.SILENT);
+                blocks.tagsDecoded = true;
+            }
+            return blocks.tags;
+        }
+
+        public void setMateSequence(String sequence) {
+            ColumnarAlignmentStore.this.setMateSequence(index, sequence);
+        }
+
+        public String getPairOrientation() {
+            String po = pairOrientationTable.get(pairOrientations.get(index));
+            return po == null ? "" : po;
+        }
+
+        public Strand getFirstOfPairStrand() {
+            return STRANDS[(flags.get(index) >> FOP_STRAND_SHIFT) & 0x3];
+        }
+
+        public Strand getSecondOfPairStrand() {
+            return STRANDS[(flags.get(index) >> SOP_STRAND_SHIFT) & 0x3];
+        }
+
+        public Color getYcColor() {
+            return colorTable.get(ycColors.get(index));
+        }
+
+        private ReadGroupInfo getReadGroupInfo() {
+            return readGroupTable.get(readGroups.get(index));
+        }
+
+        public String getSample() {
+            return getReadGroupInfo().sample;
+        }
+
+        public String getReadGroup() {
+            return getReadGroupInfo().readGroup;
+        }
+
+        public String getLibrary() {
+            return getReadGroupInfo().library;
+        }
+
+        public float getScore() {
+            return getMappingQuality();
+        }
+
+        public LocusScore copy() {
+            return this;
+        }
+
+        public void finish() {
+        }
+
+        public String getClipboardString(double location, int mouseX) {
+            return getValueString(location, mouseX, null);
+        }
+
+        public String getValueString(double position, int mouseX, WindowFunction ignored) {
+
+            int basePosition = (int) position;
+            StringBuffer buf = new StringBuffer();
+
+            for (AlignmentBlock block : getInsertions()) {
+                if (block.containsPixel(mouseX)) {
+                    buf.append("Insertion: " + block.getLength() + " bases");
+                    return buf.toString();
+                }
+            }
+
+            buf.append("Read name = " + getReadName() + "<br>");
+            String sample = getSample();
+            if (sample != null) {
+                buf.append("Sample = " + sample + "<br>");
+            }
+            String library = getLibrary();
+            if (library != null) {
+                buf.append("Library = " + library + "<br>");
+            }
+            String readGroup = getReadGroup();
+            if (readGroup != null) {
+                buf.append("Read group = " + readGroup + "<br>");
+            }
+            buf.append("Read length = " + Globals.DECIMAL_FORMAT.format(readLengths.get(index)) + "bp<br>");
+            buf.append("----------------------" + "<br>");
+            buf.append("Mapping = " + (isPrimary() ? (isSupplementary() ? "Supplementary" : "Primary") : "Secondary") +
+                    (isDuplicate() ? " Duplicate" : "") + (isVendorFailedRead() ? " Failed QC" : "") +
+                    " @ MAPQ " + Globals.DECIMAL_FORMAT.format(getMappingQuality()) + "<br>");
+            buf.append("Reference span = " + getChr() + ":" + Globals.DECIMAL_FORMAT.format(getAlignmentStart() + 1) + "-" +
+                    Globals.DECIMAL_FORMAT.format(getAlignmentEnd()) + " (" + (isNegativeStrand() ? "-" : "+") + ")" +
+                    " = " + Globals.DECIMAL_FORMAT.format(getAlignmentEnd() - getAlignmentStart()) + "bp<br>");
+            buf.append("Cigar = " + getCigarString() + "<br>");
+
+            if (isPaired()) {
+                ReadMate mate = getMate();
+                buf.append("----------------------<br>");
+                buf.append("Mate is mapped = " + (mate != null && mate.isMapped() ? "yes" : "no") + "<br>");
+                if (mate != null && mate.isMapped()) {
+                    buf.append("Mate start = " + mate.positionString() + "<br>");
+                    if (getChr().equals(mate.getChr())) {
+                        buf.append("Insert size = " + getInferredInsertSize() + "<br>");
+                    }
+                }
+                if (isFirstOfPair()) {
+                    buf.append("First in pair<br>");
+                }
+                if (isSecondOfPair()) {
+                    buf.append("Second in pair<br>");
+                }
+                if (getPairOrientation().length() > 0) {
+                    buf.append("Pair orientation = " + getPairOrientation() + "<br>");
+                }
+            }
+
+            String mateSequence = getMateSequence(index);
+            if (mateSequence != null) {
+                buf.append("----------------------<br>");
+                buf.append("Mate sequence: " + mateSequence);
+            }
+
+            for (AlignmentBlock block : getAlignmentBlocks()) {
+                if (block.contains(basePosition)) {
+                    int offset = basePosition - block.getStart();
+                    buf.append("<hr>");
+                    buf.append("Location = " + getChr() + ":" + Globals.DECIMAL_FORMAT.format(1 + (long) position) + "<br>");
+                    buf.append("Base = " + (char) block.getBase(offset) + " @ QV " +
+                            Globals.DECIMAL_FORMAT.format(block.getQuality(offset)) + "<br>");
+                    break;
+                }
+            }
+
+            return buf.toString();
+        }
+
+    }
+
+    /**
+     * Sample, library, and read group of an alignment.  These typically take few distinct values per file.
+     */
+    private static class ReadGroupInfo {
+        final String sample;
+        final String library;
+        final String readGroup;
+
+        ReadGroupInfo(String sample, String library, String readGroup) {
+            this.sample = sample;
+            this.library = library;
+            this.readGroup = readGroup;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ReadGroupInfo)) return false;
+            ReadGroupInfo that = (ReadGroupInfo) o;
+            return Objects.equals(sample, that.sample) &&
+                    Objects.equals(library, that.library) &&
+                    Objects.equals(readGroup, that.readGroup);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sample, library, readGroup);
+        }
+    }
+
+    /**
+     * Maps values to integer indexes.  Null values are represented by index -1.
+     */
+    private static class InternTable<T> {
+
+        private HashMap<T, Integer> indexes = new HashMap<T, Integer>();
+        private ArrayList<T> values = new ArrayList<T>();
+        private long charCount = 0;
+
+        int intern(T value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer idx = indexes.get(value);
+            if (idx == null) {
+                idx = values.size();
+                values.add(value);
+                indexes.put(value, idx);
+                if (value instanceof String) {
+                    charCount += ((String) value).length();
+                }
+            }
+            return idx;
+        }
+
+        T get(int idx) {
+            return idx < 0 ? null : values.get(idx);
+        }
+
+        long memoryEstimate() {
+            return 2 * charCount + 80L * values.size();
+        }
+    }
+
+    /**
+     * Minimal growable byte array.
+     */
+    private static class ByteBuffer {
+
+        private byte[] elements;
+        private int size = 0;
+
+        ByteBuffer(int initialCapacity) {
+            elements = new byte[Math.max(16, initialCapacity)];
+        }
+
+        void add(byte b) {
+            ensureCapacity(size + 1);
+            elements[size++] = b;
+        }
+
+        void addAll(byte[] src, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(src, 0, elements, size, length);
+            size += length;
+        }
+
+        byte get(int idx) {
+            return elements[idx];
+        }
+
+        byte[] copyOfRange(int offset, int length) {
+            return Arrays.copyOfRange(elements, offset, offset + length);
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void ensureCapacity(int minCapacity) {
+            if (minCapacity > elements.length) {
+                int newCapacity = Math.max(minCapacity, (int) Math.min(Integer.MAX_VALUE - 8, elements.length * 3L / 2));
+                elements = Arrays.copyOf(elements, newCapacity);
+            }
+        }
+    }
+}
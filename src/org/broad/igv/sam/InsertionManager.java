@@ -21,7 +21,6 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  *
- *
  */
 
 package org.broad.igv.sam;
@@ -31,6 +30,7 @@ import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.prefs.PreferencesManager;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.broad.igv.prefs.Constants.SAM_HIDE_SMALL_INDEL;
 import static org.broad.igv.prefs.Constants.SAM_SMALL_INDEL_BP_THRESHOLD;
@@ -39,88 +39,157 @@ import static org.broad.igv.prefs.Constants.SAM_SMALL_INDEL_BP_THRESHOLD;
  * Created by jrobinso on 12/22/16.
  * <p>
  * Experimental class to test strategies for drawing insertions
+ * <p>
+ * Insertions are contributed by cached {@link AlignmentInterval}s and withdrawn when the interval is evicted, so
+ * the markers held are bounded by the alignment cache.  The contributions for each chromosome are merged into an
+ * immutable, position-sorted {@link Insertions} snapshot which is replaced on every change.  Paint threads read the
+ * current snapshot without locking.
  */
 public class InsertionManager {
 
     private static InsertionManager theInstance = new InsertionManager();
 
-    private Map<String, Map<Integer, InsertionMarker>> insertionMaps;
-    private Map<String, List<Integer>> positionsMap;
-    private Map<String, Integer> selectedInsertions;
+    private Map<String, Map<AlignmentInterval, Insertions>> contributions;
+    private Map<String, Insertions> snapshots;
+    private Map<String, InsertionMarker> selectedInsertions;
 
     public static synchronized InsertionManager getInstance() {
         return theInstance;
     }
 
-    private InsertionManager() {
-        this.insertionMaps = Collections.synchronizedMap(new HashMap<>(100));
-        this.positionsMap = Collections.synchronizedMap(new HashMap<>(100));
-        this.selectedInsertions = Collections.synchronizedMap(new HashMap<>(100));
+    InsertionManager() {
+        this.contributions = new HashMap<>(100);
+        this.snapshots = new ConcurrentHashMap<>(100);
+        this.selectedInsertions = new ConcurrentHashMap<>(100);
     }
 
-    public void clear() {
-        this.insertionMaps.clear();
-        this.positionsMap.clear();
-        this.selectedInsertions.clear();;
+    public synchronized void clear() {
+        this.contributions.clear();
+        this.snapshots.clear();
+        this.selectedInsertions.clear();
     }
 
-    public synchronized List<InsertionMarker> getInsertions(String chrName, double start, double end) {
+    /**
+     * Return markers for insertions at positions in [start, end],  in position order,  or null if no insertions
+     * are loaded for the chromosome.
+     */
+    public List<InsertionMarker> getInsertions(String chrName, double start, double end) {
 
-
-        Map<Integer, InsertionMarker> insertionMap = insertionMaps.get(chrName);
-        List<Integer> positions = positionsMap.get(chrName);
-        if(insertionMap == null || positions == null) return null;
+        Insertions insertions = snapshots.get(chrName);
+        if (insertions == null) return null;
 
         List<InsertionMarker> insertionMarkers = new ArrayList<>();
-        for (int i = 0; i < positions.size(); i++) {
-            final Integer key = positions.get(i);
-            if (key > end) break;
-            if (key >= start) {
-                final InsertionMarker insertionMarker = insertionMap.get(key);
-                insertionMarkers.add(insertionMarker);
-            }
+        for (int i = insertions.indexOf(start); i < insertions.positions.length; i++) {
+            final int position = insertions.positions[i];
+            if (position > end) break;
+            insertionMarkers.add(new InsertionMarker(position, insertions.sizes[i]));
         }
         return insertionMarkers;
 
     }
 
     public void setSelected(String chrName, int position) {
-        this.selectedInsertions.put(chrName, position);
+        Insertions insertions = snapshots.get(chrName);
+        int size = insertions == null ? 0 : insertions.getSize(position);
+        this.selectedInsertions.put(chrName, new InsertionMarker(position, size));
     }
 
     public void clearSelected() {
         this.selectedInsertions.clear();
     }
 
+    /**
+     * Return the selected insertion,  or null if there is none or the intervals containing it have been evicted.
+     */
     public InsertionMarker getSelectedInsertion(String chrName) {
-        Integer selectedInsertion = selectedInsertions.get(chrName);
-        Map<Integer, InsertionMarker> insertionMap = insertionMaps.get(chrName);
-        return (selectedInsertion == null  || insertionMap == null) ? null : insertionMap.get(selectedInsertion);
+        InsertionMarker selected = selectedInsertions.get(chrName);
+        if (selected == null) return null;
+
+        Insertions insertions = snapshots.get(chrName);
+        int size = insertions == null ? 0 : insertions.getSize(selected.position);
+        if (size == 0) return null;
+        if (size != selected.size) {
+            // Size has grown with newly loaded alignments
+            selected = new InsertionMarker(selected.position, size);
+            selectedInsertions.put(chrName, selected);
+        }
+        return selected;
     }
 
+    /**
+     * Add the insertions of a newly cached interval.
+     */
+    public synchronized void addInterval(AlignmentInterval interval) {
 
-    public void processAlignments(String chr, List<Alignment> alignments) {
+        Insertions insertions = interval.getInsertions();
+        if (insertions == null || insertions.positions.length == 0) return;
 
+        String chr = getCanonicalChrName(interval.getChr());
+        Map<AlignmentInterval, Insertions> chrContributions = contributions.get(chr);
+        if (chrContributions == null) {
+            chrContributions = new IdentityHashMap<>();
+            contributions.put(chr, chrContributions);
+        }
+        chrContributions.put(interval, insertions);
+        updateSnapshot(chr, chrContributions);
+    }
 
-        Genome genome = GenomeManager.getInstance().getCurrentGenome();
-        chr = genome == null ? chr : genome.getCanonicalChrName(chr);
+    /**
+     * Remove the insertions of an interval evicted from the cache.
+     */
+    public synchronized void removeInterval(AlignmentInterval interval) {
 
-        Map<Integer, InsertionMarker> insertionMap = insertionMaps.get(chr);
-        if(insertionMap == null) {
-            insertionMap =  Collections.synchronizedMap(new HashMap<>());
-            insertionMaps.put(chr, insertionMap);
+        String chr = getCanonicalChrName(interval.getChr());
+        Map<AlignmentInterval, Insertions> chrContributions = contributions.get(chr);
+        if (chrContributions == null || chrContributions.remove(interval) == null) return;
+
+        if (chrContributions.isEmpty()) {
+            contributions.remove(chr);
+            snapshots.remove(chr);
+        } else {
+            updateSnapshot(chr, chrContributions);
         }
-        List<Integer> positions = positionsMap.get(chr);
-        if(positions == null) {
-            positions = new ArrayList<>();
-            positionsMap.put(chr, positions);
+    }
+
+    private void updateSnapshot(String chr, Map<AlignmentInterval, Insertions> chrContributions) {
+        if (chrContributions.size() == 1) {
+            snapshots.put(chr, chrContributions.values().iterator().next());
+        } else {
+            int count = 0;
+            for (Insertions i : chrContributions.values()) {
+                count += i.positions.length;
+            }
+            long[] keys = new long[count];
+            int n = 0;
+            for (Insertions i : chrContributions.values()) {
+                for (int k = 0; k < i.positions.length; k++) {
+                    keys[n++] = toKey(i.positions[k], i.sizes[k]);
+                }
+            }
+            snapshots.put(chr, Insertions.fromKeys(keys, count));
         }
+    }
+
+    private static String getCanonicalChrName(String chr) {
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        return genome == null ? chr : genome.getCanonicalChrName(chr);
+    }
+
+    /**
+     * Collect the insertions in a list of alignments,  recording the largest insertion at each position.  Insertions
+     * hidden by the small indel preference are skipped.
+     */
+    static Insertions collectInsertions(List<Alignment> alignments) {
+
+        if (alignments == null) return null;
 
         int minLength = 0;
         if (PreferencesManager.getPreferences().getAsBoolean(SAM_HIDE_SMALL_INDEL)) {
             minLength = PreferencesManager.getPreferences().getAsInt(SAM_SMALL_INDEL_BP_THRESHOLD);
         }
 
+        long[] keys = new long[1024];
+        int count = 0;
         for (Alignment a : alignments) {
             AlignmentBlock[] blocks = a.getInsertions();
             if (blocks != null) {
@@ -128,23 +197,81 @@ public class InsertionManager {
 
                     if (block.getBases().length < minLength) continue;
 
-                    Integer key = block.getStart();
-                    InsertionMarker insertionMarker = insertionMap.get(key);
-                    if (insertionMarker == null) {
-                        insertionMarker = new InsertionMarker(block.getStart(), block.getLength());
-                        insertionMap.put(key, insertionMarker);
-                        positions.add(block.getStart());
-                    } else {
-                        insertionMarker.size = Math.max(insertionMarker.size, block.getLength());
+                    if (count == keys.length) {
+                        keys = Arrays.copyOf(keys, 2 * count);
                     }
+                    keys[count++] = toKey(block.getStart(), block.getLength());
                 }
             }
         }
+        return Insertions.fromKeys(keys, count);
+    }
 
-
-        positions.addAll(insertionMap.keySet());
-        positions.sort((o1, o2) -> o1 - o2);
+    private static long toKey(int position, int size) {
+        return ((long) position << 32) | (size & 0xFFFFFFFFL);
     }
 
 
+    /**
+     * Insertion positions and sizes,  sorted by position with one entry per position.
+     */
+    static final class Insertions {
+
+        final int[] positions;
+        final int[] sizes;
+
+        private Insertions(int[] positions, int[] sizes) {
+            this.positions = positions;
+            this.sizes = sizes;
+        }
+
+        /**
+         * Create from (position << 32 | size) keys,  keeping the largest size at each position.  The first
+         * {@code count} keys are sorted in place.
+         */
+        static Insertions fromKeys(long[] keys, int count) {
+            Arrays.sort(keys, 0, count);
+            int[] positions = new int[count];
+            int[] sizes = new int[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                int position = (int) (keys[i] >>> 32);
+                int size = (int) keys[i];
+                if (n > 0 && positions[n - 1] == position) {
+                    sizes[n - 1] = size;     // Keys are sorted,  so this is the larger size
+                } else {
+                    positions[n] = position;
+                    sizes[n] = size;
+                    n++;
+                }
+            }
+            return n == count ? new Insertions(positions, sizes) :
+                    new Insertions(Arrays.copyOf(positions, n), Arrays.copyOf(sizes, n));
+        }
+
+        /**
+         * @return the index of the first insertion at or after {@code position}
+         */
+        int indexOf(double position) {
+            int low = 0;
+            int high = positions.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (positions[mid] < position) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the size of the insertion at {@code position},  or 0 if there is none
+         */
+        int getSize(int position) {
+            int idx = indexOf(position);
+            return idx < positions.length && positions[idx] == position ? sizes[idx] : 0;
+        }
+    }
 }
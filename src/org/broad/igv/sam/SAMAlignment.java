@@ -750,6 +750,13 @@ public abstract class SAMAlignment implements Alignment {
         this.mateSequence = sequence;
     }
 
+    /**
+     * @return the sequence of the unmapped mate,  if it was found when the alignment was loaded,  otherwise null
+     */
+    public String getMateSequence() {
+        return mateSequence;
+    }
+
     /**
      * Return the strand of the read marked "first-in-pair" for a paired alignment. This method can return
      * Strand.NONE if the end marked first is unmapped.
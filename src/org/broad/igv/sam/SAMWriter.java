@@ -255,7 +255,10 @@ public class SAMWriter {
 
         Range range = new Range(sequence, start, end);
         AlignmentInterval interval = dataManager.getLoadedInterval(frame);
-        if (interval != null) {
+        if (interval != null && interval.isColumnar()) {
+            // Columnar alignments do not retain the records,  read them from the file
+            return writeAlignmentFilePicard(inlocator, outFile.getAbsolutePath(), sequence, start, end);
+        } else if (interval != null) {
             List<Alignment> alignments = new ArrayList(interval.getAlignments());
 
             // We need to sort if soft-clipping is on, so just sort always.  Its cheap.
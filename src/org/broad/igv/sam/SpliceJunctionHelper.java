@@ -26,8 +26,6 @@
 
 package org.broad.igv.sam;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import org.apache.log4j.Logger;
 import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.SpliceJunctionFeature;
@@ -37,7 +35,9 @@ import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A helper class for computing splice junctions from alignments.
@@ -51,12 +51,13 @@ public class SpliceJunctionHelper {
 
     static Logger log = Logger.getLogger(SpliceJunctionHelper.class);
 
-    List<SpliceJunctionFeature> allSpliceJunctionFeatures = new ArrayList<SpliceJunctionFeature>();
-    //  List<SpliceJunctionFeature> filteredSpliceJunctionFeatures = null;
-    List<SpliceJunctionFeature> filteredCombinedFeatures = null;
+    private String chr;
+    SpliceJunctionMap posJunctions = new SpliceJunctionMap();
+    SpliceJunctionMap negJunctions = new SpliceJunctionMap();
 
-    Table<Integer, Integer, SpliceJunctionFeature> posStartEndJunctionsMap = HashBasedTable.create();
-    Table<Integer, Integer, SpliceJunctionFeature> negStartEndJunctionsMap = HashBasedTable.create();
+    // Features are created on demand and cached until more junctions are added
+    private Map<SpliceJunctionTrack.StrandOption, List<SpliceJunctionFeature>> featureCache =
+            new EnumMap<>(SpliceJunctionTrack.StrandOption.class);
 
     private LoadOptions loadOptions;
 
@@ -64,30 +65,29 @@ public class SpliceJunctionHelper {
         this.loadOptions = loadOptions;
     }
 
-    public List<SpliceJunctionFeature> getFilteredJunctions(SpliceJunctionTrack.StrandOption strandOption) {
-
-        List<SpliceJunctionFeature> junctions;
-
-        switch (strandOption) {
-            case FORWARD:
-                junctions = new ArrayList<SpliceJunctionFeature>(posStartEndJunctionsMap.values());
-                break;
-            case REVERSE:
-                junctions = new ArrayList<SpliceJunctionFeature>(negStartEndJunctionsMap.values());
-                break;
-            case BOTH:
-                junctions = new ArrayList<SpliceJunctionFeature>(posStartEndJunctionsMap.values());
-                junctions.addAll(negStartEndJunctionsMap.values());
-                break;
-            default:
-                junctions = combineStrandJunctionsMaps();
+    public synchronized List<SpliceJunctionFeature> getFilteredJunctions(SpliceJunctionTrack.StrandOption strandOption) {
+
+        List<SpliceJunctionFeature> junctions = featureCache.get(strandOption);
+        if (junctions == null) {
+            switch (strandOption) {
+                case FORWARD:
+                    junctions = posJunctions.createFeatures(chr, Strand.POSITIVE);
+                    break;
+                case REVERSE:
+                    junctions = negJunctions.createFeatures(chr, Strand.NEGATIVE);
+                    break;
+                case BOTH:
+                    junctions = posJunctions.createFeatures(chr, Strand.POSITIVE);
+                    junctions.addAll(negJunctions.createFeatures(chr, Strand.NEGATIVE));
+                    break;
+                default:
+                    junctions = combineStrandJunctionsMaps();
+            }
+            FeatureUtils.sortFeatureList(junctions);
+            featureCache.put(strandOption, junctions);
         }
 
-        List<SpliceJunctionFeature> filteredJunctions = filterJunctionList(this.loadOptions, junctions);
-
-        FeatureUtils.sortFeatureList(filteredJunctions);
-
-        return filteredJunctions;
+        return filterJunctionList(this.loadOptions, junctions);
 
     }
 
@@ -111,41 +111,45 @@ public class SpliceJunctionHelper {
             }
         }
 
-        Table<Integer, Integer, SpliceJunctionFeature> startEndJunctionsTableThisStrand =
-                isNegativeStrand ? negStartEndJunctionsMap : posStartEndJunctionsMap;
+        SpliceJunctionMap junctionsThisStrand = isNegativeStrand ? negJunctions : posJunctions;
 
 
-        //for each skipped region, create or add evidence to a splice junction
+        //for each skipped region, add evidence to a splice junction
         List<Gap> gaps = alignment.getGaps();
         if (gaps != null) {
-            //  for (AlignmentBlock block : blocks) {
-            for (Gap gap : gaps) {
-                if (gap instanceof SpliceGap) {
-                    SpliceGap spliceGap = (SpliceGap) gap;
-                    //only proceed if the flanking regions are both bigger than the minimum
-                    if (loadOptions.minReadFlankingWidth == 0 ||
-                            (spliceGap.getFlankingLeft() >= loadOptions.minReadFlankingWidth &&
-                                    spliceGap.getFlankingRight() >= loadOptions.minReadFlankingWidth)) {
-
-                        int junctionStart = spliceGap.getStart();
-                        int junctionEnd = junctionStart + spliceGap.getnBases();
-                        int flankingStart = junctionStart - spliceGap.getFlankingLeft();
-                        int flankingEnd = junctionEnd + spliceGap.getFlankingRight();
-                        SpliceJunctionFeature junction = startEndJunctionsTableThisStrand.get(junctionStart, junctionEnd);
-                        if (junction == null) {
-                            junction = new SpliceJunctionFeature(alignment.getChr(), junctionStart, junctionEnd,
-                                    isNegativeStrand ? Strand.NEGATIVE : Strand.POSITIVE);
-                            startEndJunctionsTableThisStrand.put(junctionStart, junctionEnd, junction);
-                            allSpliceJunctionFeatures.add(junction);
+            synchronized (this) {
+                for (Gap gap : gaps) {
+                    if (gap instanceof SpliceGap) {
+                        SpliceGap spliceGap = (SpliceGap) gap;
+                        //only proceed if the flanking regions are both bigger than the minimum
+                        if (loadOptions.minReadFlankingWidth == 0 ||
+                                (spliceGap.getFlankingLeft() >= loadOptions.minReadFlankingWidth &&
+                                        spliceGap.getFlankingRight() >= loadOptions.minReadFlankingWidth)) {
+
+                            int junctionStart = spliceGap.getStart();
+                            int junctionEnd = junctionStart + spliceGap.getnBases();
+                            if (chr == null) chr = alignment.getChr();
+                            junctionsThisStrand.addRead(junctionStart, junctionEnd,
+                                    spliceGap.getFlankingLeft(), spliceGap.getFlankingRight());
+                            featureCache.clear();
                         }
-                        junction.addRead(flankingStart, flankingEnd);
                     }
-
                 }
             }
         }
     }
 
+    /**
+     * Add the junctions of a precomputed junction index,  in place of counting them from alignments
+     */
+    synchronized void addJunction(String chr, boolean isNegativeStrand, int junctionStart, int junctionEnd, int depth,
+                                  int[] startFlankCounts, int[] endFlankCounts) {
+        if (this.chr == null) this.chr = chr;
+        (isNegativeStrand ? negJunctions : posJunctions).addCounts(junctionStart, junctionEnd, depth,
+                startFlankCounts, endFlankCounts);
+        featureCache.clear();
+    }
+
     private static List<SpliceJunctionFeature> filterJunctionList(LoadOptions loadOptions, List<SpliceJunctionFeature> unfiltered) {
 
         if (loadOptions.minJunctionCoverage > 1) {
@@ -157,39 +161,28 @@ public class SpliceJunctionHelper {
             }
             return coveredFeatures;
         } else {
-            return unfiltered;
+            return new ArrayList<SpliceJunctionFeature>(unfiltered);
         }
     }
 
 
     /**
-     * Combine junctions from both strands.  Used for Sashimi plot.
-     * Note: Flanking depth arrays are not combined.
+     * Combine junctions from both strands.  Used for Sashimi plot.  Depths and flanking depths are summed,  junctions
+     * with reads on the + strand are reported as + junctions.
      */
     private List<SpliceJunctionFeature> combineStrandJunctionsMaps() {
 
-        // Start with all + junctions
-        Table<Integer, Integer, SpliceJunctionFeature> combinedStartEndJunctionsMap = HashBasedTable.create(posStartEndJunctionsMap);
-
-        // Merge in - junctions
-        for (Table.Cell<Integer, Integer, SpliceJunctionFeature> negJunctionCell : negStartEndJunctionsMap.cellSet()) {
-
-            int junctionStart = negJunctionCell.getRowKey();
-            int junctionEnd = negJunctionCell.getColumnKey();
-            SpliceJunctionFeature negFeat = negJunctionCell.getValue();
-
-            SpliceJunctionFeature junction = combinedStartEndJunctionsMap.get(junctionStart, junctionEnd);
+        SpliceJunctionMap combined = new SpliceJunctionMap();
+        combined.addAll(posJunctions);
+        combined.addAll(negJunctions);
 
-            if (junction == null) {
-                // No existing (+) junction here, just add the (-) one\
-                combinedStartEndJunctionsMap.put(junctionStart, junctionEnd, negFeat);
-            } else {
-                int newJunctionDepth = junction.getJunctionDepth() + negFeat.getJunctionDepth();
-                junction.setJunctionDepth(newJunctionDepth);
-            }
+        List<SpliceJunctionFeature> junctions = new ArrayList<SpliceJunctionFeature>(combined.size());
+        for (int slot : combined.getSlots()) {
+            long key = combined.getKey(slot);
+            boolean pos = posJunctions.contains(SpliceJunctionMap.junctionStart(key), SpliceJunctionMap.junctionEnd(key));
+            junctions.add(combined.createFeature(slot, chr, pos ? Strand.POSITIVE : Strand.NEGATIVE));
         }
-
-        return new ArrayList<SpliceJunctionFeature>(combinedStartEndJunctionsMap.values());
+        return junctions;
     }
 
 
@@ -0,0 +1,442 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.tribble.util.LittleEndianInputStream;
+import htsjdk.tribble.util.LittleEndianOutputStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.prefs.IGVPreferences;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.sam.reader.ReadGroupFilter;
+import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+
+import java.io.*;
+import java.util.*;
+
+import static org.broad.igv.prefs.Constants.*;
+
+/**
+ * A precomputed,  strand-aware table of the splice junctions of an alignment file.  The index is created by
+ * "igvtools junctions" and stored next to the alignment file with the extension ".sji".  When present junctions are
+ * read from the index rather than counted from alignments as they are loaded.
+ * <p/>
+ * File layout (little endian):
+ * <pre>
+ *     header     magic, version, min flanking width, filter flags, mapping quality threshold
+ *     blocks     one per sequence,  junction records sorted by start of the leftmost flank
+ *     directory  sequence count,  bin size,  and per sequence: name, block start and end, bin offsets
+ *     footer     offset of the directory
+ * </pre>
+ * A junction record is the junction start and end,  strand,  depth,  and the counts of reads by start and end flank
+ * length.  Bin offsets point to the first record that might overlap the bin.
+ * <p/>
+ * The index is only used if it was computed with the current junction and alignment filter settings.
+ */
+public class SpliceJunctionIndex {
+
+    private static Logger log = Logger.getLogger(SpliceJunctionIndex.class);
+
+    public static final String EXTENSION = ".sji";
+
+    static final int MAGIC = 0x494a5053;   // "SPJI"
+    static final int VERSION = 1;
+    static final int BIN_SIZE = 16384;
+
+    static final int FILTER_DUPLICATES = 1;
+    static final int FILTER_FAILED_READS = 2;
+    static final int FILTER_SECONDARY = 4;
+    static final int FILTER_SUPPLEMENTARY = 8;
+
+    private final String path;
+    private final int minFlankingWidth;
+    private final int filterFlags;
+    private final int qualityThreshold;
+    private final Map<String, SequenceBlock> blocks;
+
+    private SpliceJunctionIndex(String path, int minFlankingWidth, int filterFlags, int qualityThreshold,
+                                Map<String, SequenceBlock> blocks) {
+        this.path = path;
+        this.minFlankingWidth = minFlankingWidth;
+        this.filterFlags = filterFlags;
+        this.qualityThreshold = qualityThreshold;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Open the junction index of an alignment file,  if there is one.  Checking for the index of a remote file costs
+     * a request on every load,  usually for a missing file,  so remote files are only checked when
+     * {@code SAM.REMOTE_JUNCTION_INDEX} is set.
+     *
+     * @param alignmentPath
+     * @return the index,  or null if the file has no index,  or the index is out of date or unreadable
+     */
+    public static SpliceJunctionIndex open(String alignmentPath) {
+
+        if (FileUtils.isRemote(alignmentPath) &&
+                !PreferencesManager.getPreferences().getAsBoolean(SAM_REMOTE_JUNCTION_INDEX)) {
+            return null;
+        }
+
+        String indexPath = getIndexPath(alignmentPath);
+        try {
+            if (!FileUtils.resourceExists(indexPath)) {
+                return null;
+            }
+            if (!FileUtils.isRemote(alignmentPath) &&
+                    new File(indexPath).lastModified() < new File(alignmentPath).lastModified()) {
+                log.info("Junction index is older than " + alignmentPath + ",  ignoring it");
+                return null;
+            }
+            return read(indexPath);
+        } catch (IOException e) {
+            log.error("Error reading junction index " + indexPath, e);
+            return null;
+        }
+    }
+
+    /**
+     * Return the path of the junction index of an alignment file.  For URLs the extension is inserted before any
+     * query string.
+     */
+    static String getIndexPath(String alignmentPath) {
+        int q = FileUtils.isRemote(alignmentPath) ? alignmentPath.indexOf('?') : -1;
+        return q < 0 ? alignmentPath + EXTENSION :
+                alignmentPath.substring(0, q) + EXTENSION + alignmentPath.substring(q);
+    }
+
+    static SpliceJunctionIndex read(String indexPath) throws IOException {
+
+        try (SeekableStream ss = IGVSeekableStreamFactory.getInstance().getBufferedStream(
+                IGVSeekableStreamFactory.getInstance().getStreamFor(indexPath))) {
+
+            LittleEndianInputStream in = new LittleEndianInputStream(ss);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a junction index: " + indexPath);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported junction index version: " + version);
+            }
+            int minFlankingWidth = in.readInt();
+            int filterFlags = in.readInt();
+            int qualityThreshold = in.readInt();
+
+            ss.seek(ss.length() - 8);
+            long directoryOffset = in.readLong();
+
+            ss.seek(directoryOffset);
+            int nSequences = in.readInt();
+            Map<String, SequenceBlock> blocks = new HashMap<>(nSequences * 2);
+            for (int i = 0; i < nSequences; i++) {
+                String name = in.readString();
+                long end = in.readLong();
+                int nBins = in.readInt();
+                long[] binOffsets = new long[nBins];
+                for (int b = 0; b < nBins; b++) {
+                    binOffsets[b] = in.readLong();
+                }
+                blocks.put(name, new SequenceBlock(end, binOffsets));
+            }
+            return new SpliceJunctionIndex(indexPath, minFlankingWidth, filterFlags, qualityThreshold, blocks);
+        }
+    }
+
+    /**
+     * @return true if the index was computed with the given junction options and the current alignment filters
+     */
+    public boolean isCompatible(SpliceJunctionHelper.LoadOptions loadOptions) {
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        return loadOptions.minReadFlankingWidth == minFlankingWidth &&
+                getFilterFlags(prefs) == filterFlags &&
+                prefs.getAsInt(SAM_QUALITY_THRESHOLD) == qualityThreshold &&
+                ReadGroupFilter.getFilter() == null;
+    }
+
+    /**
+     * Add the junctions overlapping the interval to the helper.
+     *
+     * @param chr   sequence name,  as used in the alignment file
+     * @param start
+     * @param end
+     * @param helper
+     * @throws IOException
+     */
+    public void load(String chr, int start, int end, SpliceJunctionHelper helper) throws IOException {
+
+        SequenceBlock block = blocks.get(chr);
+        if (block == null || block.binOffsets.length == 0) return;
+
+        int bin = Math.max(0, start / BIN_SIZE);
+        if (bin >= block.binOffsets.length) return;
+        long offset = block.binOffsets[bin];
+
+        try (SeekableStream ss = IGVSeekableStreamFactory.getInstance().getBufferedStream(
+                IGVSeekableStreamFactory.getInstance().getStreamFor(path))) {
+
+            ss.seek(offset);
+            LittleEndianInputStream in = new LittleEndianInputStream(ss);
+            while (offset < block.end) {
+                int junctionStart = in.readInt();
+                int junctionEnd = in.readInt();
+                boolean negative = in.readByte() != 0;
+                int depth = in.readInt();
+                int[] startCounts = readCounts(in);
+                int[] endCounts = readCounts(in);
+                offset += 21 + 4 * (startCounts.length + endCounts.length);
+
+                int flankStart = junctionStart - startCounts.length;
+                int flankEnd = junctionEnd + endCounts.length;
+                if (flankStart >= end) break;
+                if (flankEnd > start) {
+                    helper.addJunction(chr, negative, junctionStart, junctionEnd, depth, startCounts, endCounts);
+                }
+            }
+        }
+    }
+
+    private static int[] readCounts(LittleEndianInputStream in) throws IOException {
+        int n = in.readInt();
+        int[] counts = new int[n];
+        for (int i = 0; i < n; i++) {
+            counts[i] = in.readInt();
+        }
+        return counts;
+    }
+
+    static int getFilterFlags(IGVPreferences prefs) {
+        boolean showDuplicates = prefs.getAsBoolean(SAM_SHOW_DUPLICATES) || !prefs.getAsBoolean(SAM_FILTER_DUPLICATES);
+        return (showDuplicates ? 0 : FILTER_DUPLICATES) |
+                (prefs.getAsBoolean(SAM_FILTER_FAILED_READS) ? FILTER_FAILED_READS : 0) |
+                (prefs.getAsBoolean(SAM_FILTER_SECONDARY_ALIGNMENTS) ? FILTER_SECONDARY : 0) |
+                (prefs.getAsBoolean(SAM_FILTER_SUPPLEMENTARY_ALIGNMENTS) ? FILTER_SUPPLEMENTARY : 0);
+    }
+
+    /**
+     * Count the splice junctions of a coordinate sorted alignment file and write the index.  Alignments are filtered
+     * as they are by IGV with the current preferences.
+     *
+     * @param alignmentPath
+     * @param indexPath        output file,  by convention the alignment path with extension ".sji"
+     * @param minFlankingWidth minimum flanking width of reads counted for a junction
+     * @throws IOException
+     */
+    public static void create(String alignmentPath, String indexPath, int minFlankingWidth) throws IOException {
+
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        int filterFlags = getFilterFlags(prefs);
+        int qualityThreshold = prefs.getAsInt(SAM_QUALITY_THRESHOLD);
+
+        SpliceJunctionHelper.LoadOptions loadOptions = new SpliceJunctionHelper.LoadOptions(0, minFlankingWidth);
+
+        AlignmentReader reader = null;
+        CloseableIterator<Alignment> iter = null;
+        try (Writer writer = new Writer(indexPath, minFlankingWidth, filterFlags, qualityThreshold)) {
+
+            reader = AlignmentReaderFactory.getReader(alignmentPath, false);
+            iter = reader.iterator();
+
+            String chr = null;
+            SpliceJunctionHelper helper = null;
+            while (iter.hasNext()) {
+                Alignment a = iter.next();
+                if (!a.isMapped() ||
+                        ((filterFlags & FILTER_DUPLICATES) != 0 && a.isDuplicate()) ||
+                        ((filterFlags & FILTER_FAILED_READS) != 0 && a.isVendorFailedRead()) ||
+                        ((filterFlags & FILTER_SECONDARY) != 0 && !a.isPrimary()) ||
+                        ((filterFlags & FILTER_SUPPLEMENTARY) != 0 && a.isSupplementary()) ||
+                        a.getMappingQuality() < qualityThreshold) {
+                    continue;
+                }
+                if (!a.getChr().equals(chr)) {
+                    if (helper != null) {
+                        writer.addSequence(chr, helper);
+                    }
+                    chr = a.getChr();
+                    if (writer.contains(chr)) {
+                        throw new IOException("Alignment file is not sorted by position: " + alignmentPath);
+                    }
+                    helper = new SpliceJunctionHelper(loadOptions);
+                }
+                helper.addAlignment(a);
+            }
+            if (helper != null) {
+                writer.addSequence(chr, helper);
+            }
+
+        } finally {
+            if (iter != null) iter.close();
+            if (reader != null) reader.close();
+        }
+    }
+
+    /**
+     * Writes an index one sequence at a time
+     */
+    static class Writer implements Closeable {
+
+        private final LittleEndianOutputStream out;
+        private final LinkedHashMap<String, long[]> directory = new LinkedHashMap<>();
+
+        Writer(String indexPath, int minFlankingWidth, int filterFlags, int qualityThreshold) throws IOException {
+            out = new LittleEndianOutputStream(new BufferedOutputStream(new FileOutputStream(indexPath)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(minFlankingWidth);
+            out.writeInt(filterFlags);
+            out.writeInt(qualityThreshold);
+        }
+
+        boolean contains(String chr) {
+            return directory.containsKey(chr);
+        }
+
+        void addSequence(String chr, SpliceJunctionHelper helper) throws IOException {
+            directory.put(chr, writeBlock(helper, out));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                long directoryOffset = out.getWrittenCount();
+                out.writeInt(directory.size());
+                for (Map.Entry<String, long[]> entry : directory.entrySet()) {
+                    long[] d = entry.getValue();
+                    out.writeString(entry.getKey());
+                    out.writeLong(d[0]);
+                    out.writeInt(d.length - 1);
+                    for (int i = 1; i < d.length; i++) {
+                        out.writeLong(d[i]);
+                    }
+                }
+                out.writeLong(directoryOffset);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Write the junctions of one sequence.
+     *
+     * @return the end of the block followed by the bin offsets
+     */
+    private static long[] writeBlock(SpliceJunctionHelper helper, LittleEndianOutputStream out) throws IOException {
+
+        // Order junctions of both strands by the start of their leftmost flank
+        List<Record> records = new ArrayList<>();
+        for (SpliceJunctionMap map : new SpliceJunctionMap[]{helper.posJunctions, helper.negJunctions}) {
+            for (int slot : map.getSlots()) {
+                records.add(new Record(map, slot, map == helper.negJunctions));
+            }
+        }
+        records.sort(Comparator.comparingInt(r -> r.flankStart));
+
+        int maxEnd = 0;
+        for (Record r : records) {
+            maxEnd = Math.max(maxEnd, r.flankEnd);
+        }
+        long[] binOffsets = new long[records.isEmpty() ? 0 : maxEnd / BIN_SIZE + 1];
+        Arrays.fill(binOffsets, -1);
+
+        for (Record r : records) {
+            long offset = out.getWrittenCount();
+            int firstBin = Math.max(0, r.flankStart / BIN_SIZE);
+            int lastBin = Math.max(0, (r.flankEnd - 1) / BIN_SIZE);
+            for (int b = firstBin; b <= lastBin; b++) {
+                if (binOffsets[b] < 0) binOffsets[b] = offset;
+            }
+
+            long key = r.map.getKey(r.slot);
+            int[] startCounts = r.map.getStartFlankCounts(r.slot);
+            int[] endCounts = r.map.getEndFlankCounts(r.slot);
+            out.writeInt(SpliceJunctionMap.junctionStart(key));
+            out.writeInt(SpliceJunctionMap.junctionEnd(key));
+            out.writeByte(r.negative ? 1 : 0);
+            out.writeInt(r.map.getDepth(r.slot));
+            writeCounts(startCounts, out);
+            writeCounts(endCounts, out);
+        }
+        long end = out.getWrittenCount();
+
+        // Bins without junctions start at the next junction
+        long next = end;
+        for (int b = binOffsets.length - 1; b >= 0; b--) {
+            if (binOffsets[b] < 0) {
+                binOffsets[b] = next;
+            } else {
+                next = binOffsets[b];
+            }
+        }
+
+        long[] result = new long[binOffsets.length + 1];
+        result[0] = end;
+        System.arraycopy(binOffsets, 0, result, 1, binOffsets.length);
+        return result;
+    }
+
+    private static void writeCounts(int[] counts, LittleEndianOutputStream out) throws IOException {
+        if (counts == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(counts.length);
+            for (int c : counts) {
+                out.writeInt(c);
+            }
+        }
+    }
+
+    private static class Record {
+        final SpliceJunctionMap map;
+        final int slot;
+        final boolean negative;
+        final int flankStart;
+        final int flankEnd;
+
+        Record(SpliceJunctionMap map, int slot, boolean negative) {
+            this.map = map;
+            this.slot = slot;
+            this.negative = negative;
+            long key = map.getKey(slot);
+            this.flankStart = SpliceJunctionMap.junctionStart(key) - map.getMaxStartFlank(slot);
+            this.flankEnd = SpliceJunctionMap.junctionEnd(key) + map.getMaxEndFlank(slot);
+        }
+    }
+
+    private static class SequenceBlock {
+        final long end;
+        final long[] binOffsets;
+
+        SequenceBlock(long end, long[] binOffsets) {
+            this.end = end;
+            this.binOffsets = binOffsets;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.Strand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splice junction counts for one strand,  keyed by junction start and end packed into a long.  Junctions are kept
+ * in an open addressing table with primitive depth counters.  Flanking coverage is recorded as histograms of flank
+ * lengths,  which cost O(1) per read,  and converted to the depth arrays of {@link SpliceJunctionFeature} when
+ * features are requested.
+ */
+class SpliceJunctionMap {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] depths;
+    private int[][] startFlankCounts;   // Count of reads by start flank length - 1
+    private int[][] endFlankCounts;     // Count of reads by end flank length - 1
+    private int[] maxStartFlanks;
+    private int[] maxEndFlanks;
+    private int size;
+
+    SpliceJunctionMap() {
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        depths = new int[capacity];
+        startFlankCounts = new int[capacity][];
+        endFlankCounts = new int[capacity][];
+        maxStartFlanks = new int[capacity];
+        maxEndFlanks = new int[capacity];
+    }
+
+    static long key(int junctionStart, int junctionEnd) {
+        return ((long) junctionStart << 32) | (junctionEnd & 0xffffffffL);
+    }
+
+    static int junctionStart(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int junctionEnd(long key) {
+        return (int) key;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Return the slot of the key,  or -(insertion point + 1) if it is not present
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) return slot;
+            if (k == EMPTY) return -(slot + 1);
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int findOrInsert(long key) {
+        int slot = find(key);
+        if (slot >= 0) return slot;
+        if (2 * (size + 1) > keys.length) {
+            rehash(keys.length * 2);
+            slot = find(key);
+        }
+        slot = -slot - 1;
+        keys[slot] = key;
+        size++;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldDepths = depths;
+        int[][] oldStartCounts = startFlankCounts;
+        int[][] oldEndCounts = endFlankCounts;
+        int[] oldMaxStart = maxStartFlanks;
+        int[] oldMaxEnd = maxEndFlanks;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = -find(oldKeys[i]) - 1;
+                keys[slot] = oldKeys[i];
+                depths[slot] = oldDepths[i];
+                startFlankCounts[slot] = oldStartCounts[i];
+                endFlankCounts[slot] = oldEndCounts[i];
+                maxStartFlanks[slot] = oldMaxStart[i];
+                maxEndFlanks[slot] = oldMaxEnd[i];
+            }
+        }
+    }
+
+    /**
+     * Record a read spanning the junction
+     *
+     * @param junctionStart
+     * @param junctionEnd
+     * @param startFlank    length of the read's aligned block ending at the junction start
+     * @param endFlank      length of the read's aligned block starting at the junction end
+     */
+    void addRead(int junctionStart, int junctionEnd, int startFlank, int endFlank) {
+        int slot = findOrInsert(key(junctionStart, junctionEnd));
+        depths[slot]++;
+        if (startFlank > 0) {
+            startFlankCounts[slot] = increment(startFlankCounts[slot], startFlank - 1);
+            maxStartFlanks[slot] = Math.max(maxStartFlanks[slot], startFlank);
+        }
+        if (endFlank > 0) {
+            endFlankCounts[slot] = increment(endFlankCounts[slot], endFlank - 1);
+            maxEndFlanks[slot] = Math.max(maxEndFlanks[slot], endFlank);
+        }
+    }
+
+    private static int[] increment(int[] counts, int index) {
+        if (counts == null) {
+            counts = new int[Math.max(index + 1, 16)];
+        } else if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, 2 * counts.length));
+        }
+        counts[index]++;
+        return counts;
+    }
+
+    /**
+     * Add precomputed counts for a junction,  as stored in a {@link SpliceJunctionIndex}
+     *
+     * @param startCounts count of reads by start flank length - 1,  can be null
+     * @param endCounts   count of reads by end flank length - 1,  can be null
+     */
+    void addCounts(int junctionStart, int junctionEnd, int depth, int[] startCounts, int[] endCounts) {
+        int slot = findOrInsert(key(junctionStart, junctionEnd));
+        depths[slot] += depth;
+        startFlankCounts[slot] = addCounts(startFlankCounts[slot], startCounts);
+        endFlankCounts[slot] = addCounts(endFlankCounts[slot], endCounts);
+        maxStartFlanks[slot] = Math.max(maxStartFlanks[slot], startCounts == null ? 0 : startCounts.length);
+        maxEndFlanks[slot] = Math.max(maxEndFlanks[slot], endCounts == null ? 0 : endCounts.length);
+    }
+
+    private static int[] addCounts(int[] counts, int[] added) {
+        if (added == null || added.length == 0) return counts;
+        if (counts == null) return added.clone();
+        if (added.length > counts.length) counts = Arrays.copyOf(counts, added.length);
+        for (int i = 0; i < added.length; i++) counts[i] += added[i];
+        return counts;
+    }
+
+    /**
+     * Add all junctions of another map to this one
+     */
+    void addAll(SpliceJunctionMap other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            long key = other.keys[i];
+            if (key != EMPTY) {
+                addCounts(junctionStart(key), junctionEnd(key), other.depths[i],
+                        other.getStartFlankCounts(i), other.getEndFlankCounts(i));
+            }
+        }
+    }
+
+    boolean contains(int junctionStart, int junctionEnd) {
+        return find(key(junctionStart, junctionEnd)) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the slots of the table holding a junction.  Use with the slot accessors below.
+     */
+    int[] getSlots() {
+        int[] slots = new int[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) slots[n++] = i;
+        }
+        return slots;
+    }
+
+    long getKey(int slot) {
+        return keys[slot];
+    }
+
+    int getDepth(int slot) {
+        return depths[slot];
+    }
+
+    int getMaxStartFlank(int slot) {
+        return maxStartFlanks[slot];
+    }
+
+    int getMaxEndFlank(int slot) {
+        return maxEndFlanks[slot];
+    }
+
+    /**
+     * @return count of reads by start flank length - 1,  trimmed to the longest flank,  or null
+     */
+    int[] getStartFlankCounts(int slot) {
+        int[] counts = startFlankCounts[slot];
+        return counts == null ? null : Arrays.copyOf(counts, maxStartFlanks[slot]);
+    }
+
+    int[] getEndFlankCounts(int slot) {
+        int[] counts = endFlankCounts[slot];
+        return counts == null ? null : Arrays.copyOf(counts, maxEndFlanks[slot]);
+    }
+
+    /**
+     * Create a feature for the junction.  The feature spans the junction and its longest flanks,  the flanking depth
+     * at each position is the number of reads whose flank reaches it.
+     */
+    SpliceJunctionFeature createFeature(int slot, String chr, Strand strand) {
+
+        long key = keys[slot];
+        int junctionStart = junctionStart(key);
+        int junctionEnd = junctionEnd(key);
+        int maxStart = maxStartFlanks[slot];
+        int maxEnd = maxEndFlanks[slot];
+
+        SpliceJunctionFeature feature = new SpliceJunctionFeature(chr, junctionStart, junctionEnd, strand);
+        feature.setJunctionDepth(depths[slot]);
+        feature.setStart(junctionStart - maxStart);
+        feature.setEnd(junctionEnd + maxEnd);
+
+        if (maxStart > 0) {
+            // Position i is junctionStart - maxStart + i,  covered by reads with a start flank >= maxStart - i
+            int[] counts = startFlankCounts[slot];
+            int[] depth = new int[maxStart];
+            int sum = 0;
+            for (int i = 0; i < maxStart; i++) {
+                sum += counts[maxStart - 1 - i];
+                depth[i] = sum;
+            }
+            feature.setStartFlankingRegionDepthArray(depth);
+        }
+        if (maxEnd > 0) {
+            // Position i is junctionEnd + i,  covered by reads with an end flank > i
+            int[] counts = endFlankCounts[slot];
+            int[] depth = new int[maxEnd];
+            int sum = 0;
+            for (int i = maxEnd - 1; i >= 0; i--) {
+                sum += counts[i];
+                depth[i] = sum;
+            }
+            feature.setEndFlankingRegionDepthArray(depth);
+        }
+        return feature;
+    }
+
+    List<SpliceJunctionFeature> createFeatures(String chr, Strand strand) {
+        List<SpliceJunctionFeature> features = new ArrayList<>(size);
+        for (int slot : getSlots()) {
+            features.add(createFeature(slot, chr, strand));
+        }
+        return features;
+    }
+}
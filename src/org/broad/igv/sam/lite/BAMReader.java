@@ -19,8 +19,11 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Created by jrobinso on 3/9/17.
@@ -52,7 +55,21 @@ public class BAMReader implements AlignmentReader<Alignment> {
     int DEFAULT_SAMPLING_DEPTH = 50;
     int MAXIMUM_SAMPLING_DEPTH = 2500;
 
+    /**
+     * Minimum number of records decoded by a single task in parallel mode
+     */
+    static final int MIN_RECORDS_PER_TASK = 1000;
+
+    private static ExecutorService decodeExecutor;
+
+    /**
+     * Read buffer size for streaming queries
+     */
+    static final int STREAM_BUFFER_SIZE = 4 * BGUnzip.MAX_BLOCK_SIZE;
+
     BAMIndex bamIndex = null;
+    boolean parallel = false;
+    boolean verifyCrc = false;
 
     Genome genome;
     Map<String, Integer> chrToIndex;
@@ -131,9 +148,39 @@ public class BAMReader implements AlignmentReader<Alignment> {
     }
 
 
+    /**
+     * In parallel mode queries fetch, inflate,  and decode all chunks concurrently on a shared worker pool.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * If true the CRC32 of each bgzip block is verified when streaming.  Off by default.
+     */
+    public void setVerifyCrc(boolean verifyCrc) {
+        this.verifyCrc = verifyCrc;
+    }
+
     @Override
     public CloseableIterator<Alignment> query(String chr, int start, int end, boolean contained) throws IOException {
-        return new CIterator(chr, start, end);
+        if (parallel) {
+            final Iterator<Alignment> iter = readAlignmentsParallel(chr, start, end).iterator();
+            return new CloseableIterator<Alignment>() {
+                public void close() {
+                }
+
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                public Alignment next() {
+                    return iter.next();
+                }
+            };
+        } else {
+            return new CIterator(chr, start, end);
+        }
     }
 
 
@@ -210,30 +257,21 @@ public class BAMReader implements AlignmentReader<Alignment> {
         }
     }
 
+    /**
+     * Read alignments in the chunk overlapping start-end.  Blocks are inflated as records are decoded,  so memory
+     * use is bounded by a few blocks rather than the size of the chunk.
+     */
     public List<Alignment> readAlignments(BAMIndex.Chunk c, int chrId, int start, int end) throws IOException {
 
         List<Alignment> alignmentContainer = new ArrayList<>(10000);
 
-        long fetchMin = c.start.block;
-        long fetchMax = c.end.block + 65000; // Make sure we get the whole block.
-
         SeekableStream ss = IGVSeekableStreamFactory.getInstance().getStreamFor(this.path);
+        ss = IGVSeekableStreamFactory.getInstance().getBufferedStream(ss, STREAM_BUFFER_SIZE);
 
-        ss.seek(fetchMin);
-
-        byte[] buffer = new byte[(int) (fetchMax - fetchMin + 1)];
-
-        try {
-            ss.readFully(buffer);
-        } catch (EOFException e) {
-            // Can happen with small files
+        try (BGZFStream bgzf = new BGZFStream(ss, c.start.block, c.start.offset, c.end.block, c.end.offset, verifyCrc)) {
+            decodeBamRecords(bgzf, alignmentContainer, start, end, chrId);
         }
 
-        byte[] unc = BGUnzip.blockUnzip(buffer);
-
-        decodeBamRecords(unc, c.start.offset, alignmentContainer, start, end, chrId); //, self.filter);
-
-
         return alignmentContainer;
     }
 
@@ -261,158 +299,360 @@ public class BAMReader implements AlignmentReader<Alignment> {
             }
 
             for (BAMIndex.Chunk c : chunks) {
+                alignmentContainer.addAll(readAlignments(c, chrId, bpStart, bpEnd));
+            }
+            return alignmentContainer;
+        }
+    }
 
-                long fetchMin = c.start.block;
-                long fetchMax = c.end.block + 65000; // Make sure we get the whole block.
+    /**
+     * Read alignments overlapping the range,  fetching and inflating the bgzip blocks of all chunks concurrently.
+     * Records in each chunk are decoded in parallel segments and results are concatenated in file order, which
+     * for a coordinate sorted file is coordinate order.  As in {@link #readAlignments(String, int, int)},
+     * decoding stops at each chunk's end,  so records are not duplicated when chunks are adjacent.
+     */
+    public List<Alignment> readAlignmentsParallel(String chr, int bpStart, int bpEnd) throws IOException {
+
+        if (chrToIndex == null) {
+            readHeader();
+        }
 
-                SeekableStream ss = IGVSeekableStreamFactory.getInstance().getStreamFor(this.path);
+        Integer chrId = chrToIndex.get(chr);
+        if (chrId == null) {
+            return new ArrayList<>();
+        }
 
-                ss.seek(fetchMin);
+        List<BAMIndex.Chunk> chunks = bamIndex.chunksForRange(chrId, bpStart, bpEnd);
+        if (chunks == null || chunks.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-                byte[] buffer = new byte[(int) (fetchMax - fetchMin + 1)];
+        final ExecutorService executor = getDecodeExecutor();
+        List<CompletableFuture<List<Alignment>>> chunkFutures = new ArrayList<>(chunks.size());
+        for (BAMIndex.Chunk c : chunks) {
+            chunkFutures.add(CompletableFuture
+                    .supplyAsync(() -> fetchChunk(c), executor)
+                    .thenCompose(compressed -> inflateChunk(c, compressed, executor))
+                    .thenCompose(unc -> decodeChunk(unc, c.start.offset, chrId, bpStart, bpEnd, executor)));
+        }
 
+        List<Alignment> alignmentContainer = new ArrayList<>(10000);
+        try {
+            for (CompletableFuture<List<Alignment>> f : chunkFutures) {
+                alignmentContainer.addAll(f.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        return alignmentContainer;
+    }
+
+    private static synchronized ExecutorService getDecodeExecutor() {
+        if (decodeExecutor == null) {
+            int nThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            decodeExecutor = Executors.newFixedThreadPool(nThreads, r -> {
+                Thread t = new Thread(r, "BAM decode");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return decodeExecutor;
+    }
+
+    /**
+     * Fetch the compressed bytes for a chunk,  extended to include the entire last block.
+     */
+    private byte[] fetchChunk(BAMIndex.Chunk c) {
+
+        long fetchMin = c.start.block;
+        long fetchMax = c.end.block + 65000; // Make sure we get the whole block.
+
+        byte[] buffer = new byte[(int) (fetchMax - fetchMin + 1)];
+        SeekableStream ss = null;
+        try {
+            ss = IGVSeekableStreamFactory.getInstance().getStreamFor(this.path);
+            ss.seek(fetchMin);
+            ss.readFully(buffer);
+        } catch (EOFException e) {
+            // Can happen with small files
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (ss != null) {
                 try {
-                    ss.readFully(buffer);
-                } catch (EOFException e) {
-                    // Can happen with small files
+                    ss.close();
+                } catch (IOException e) {
+                    log.error("Error closing stream", e);
                 }
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Inflate the blocks of a chunk concurrently,  then concatenate them.
+     */
+    private CompletableFuture<UncompressedChunk> inflateChunk(BAMIndex.Chunk c, byte[] compressed, ExecutorService executor) {
 
-                byte[] unc = BGUnzip.blockUnzip(buffer);
+        final List<Integer> blockOffsets = BGUnzip.blockOffsets(compressed);
+        final List<CompletableFuture<byte[]>> blockFutures = new ArrayList<>(blockOffsets.size());
+        for (Integer ptr : blockOffsets) {
+            blockFutures.add(CompletableFuture.supplyAsync(() -> inflateBlock(compressed, ptr), executor));
+        }
 
-                decodeBamRecords(unc, c.start.offset, alignmentContainer, bpStart, bpEnd, chrId); //, self.filter);
+        return CompletableFuture.allOf(blockFutures.toArray(new CompletableFuture[blockFutures.size()]))
+                .thenApply(ignored -> {
 
+                    int totalSize = 0;
+                    for (Integer ptr : blockOffsets) {
+                        totalSize += BGUnzip.uncompressedSize(compressed, ptr);
+                    }
 
-            }
-            return alignmentContainer;
+                    byte[] data = new byte[totalSize];
+                    int limit = totalSize;
+                    int endBlock = (int) (c.end.block - c.start.block);
+                    int pos = 0;
+                    for (int i = 0; i < blockOffsets.size(); i++) {
+                        int ptr = blockOffsets.get(i);
+                        if (ptr == endBlock) {
+                            limit = Math.min(totalSize, pos + c.end.offset);
+                        }
+                        int size = BGUnzip.uncompressedSize(compressed, ptr);
+                        byte[] block = blockFutures.get(i).join();
+                        System.arraycopy(block, 0, data, pos, size);
+                        BGUnzip.releaseBuffer(block);
+                        pos += size;
+                    }
+                    return new UncompressedChunk(data, limit);
+                });
+    }
+
+    private static byte[] inflateBlock(byte[] compressed, int ptr) {
+        byte[] output = BGUnzip.acquireBuffer();
+        Inflater inflater = BGUnzip.acquireInflater();
+        try {
+            BGUnzip.inflateBlock(compressed, ptr, inflater, output);
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Error inflating block at " + ptr, e));
+        } finally {
+            BGUnzip.releaseInflater(inflater);
+        }
+        return output;
+    }
+
+    /**
+     * Locate record boundaries in the chunk,  then decode segments of records concurrently.
+     */
+    private CompletableFuture<List<Alignment>> decodeChunk(UncompressedChunk chunk, int startOffset, int chrId,
+                                                          int min, int max, ExecutorService executor) {
+
+        byte[] ba = chunk.data;
+        int limit = chunk.limit;
+
+        int nThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        List<Integer> recordOffsets = new ArrayList<>();
+        int offset = startOffset;
+        while (offset + 4 <= ba.length && offset < limit) {
+            int blockEnd = offset + readInt(ba, offset) + 4;
+            if (blockEnd > ba.length) break;
+            recordOffsets.add(offset);
+            offset = blockEnd;
+        }
+        int segmentEnd = offset;
+
+        int recordsPerSegment = Math.max(MIN_RECORDS_PER_TASK, recordOffsets.size() / nThreads + 1);
+        List<CompletableFuture<List<Alignment>>> segmentFutures = new ArrayList<>();
+        for (int i = 0; i < recordOffsets.size(); i += recordsPerSegment) {
+            final int from = recordOffsets.get(i);
+            final int to = i + recordsPerSegment < recordOffsets.size() ? recordOffsets.get(i + recordsPerSegment) : segmentEnd;
+            segmentFutures.add(CompletableFuture.supplyAsync(() -> {
+                List<Alignment> alignments = new ArrayList<>();
+                decodeBamRecords(ba, from, to, alignments, min, max, chrId);
+                return alignments;
+            }, executor));
+        }
+
+        return CompletableFuture.allOf(segmentFutures.toArray(new CompletableFuture[segmentFutures.size()]))
+                .thenApply(ignored -> {
+                    List<Alignment> alignments = new ArrayList<>();
+                    for (CompletableFuture<List<Alignment>> f : segmentFutures) {
+                        alignments.addAll(f.join());
+                    }
+                    return alignments;
+                });
+    }
+
+    private static class UncompressedChunk {
+        final byte[] data;
+        final int limit;    // Offset of the chunk end.  Records starting at or beyond this belong to another chunk
+
+        UncompressedChunk(byte[] data, int limit) {
+            this.data = data;
+            this.limit = limit;
         }
     }
 
     void decodeBamRecords(byte[] ba, int offset, List<Alignment> alignmentContainer, int min, int max, int chrId) {  //, filter){
+        decodeBamRecords(ba, offset, ba.length, alignmentContainer, min, max, chrId);
+    }
+
+    /**
+     * Decode records starting at offset,  up to but not including any record starting at or beyond limit.
+     */
+    void decodeBamRecords(byte[] ba, int offset, int limit, List<Alignment> alignmentContainer, int min, int max, int chrId) {
 
+        while (offset + 4 <= ba.length && offset < limit) {
 
-        while (true) {
+            int blockEnd = offset + readInt(ba, offset) + 4;
 
-            if (offset >= ba.length) {
+            if (blockEnd > ba.length || !decodeRecord(ba, offset, blockEnd, alignmentContainer, min, max, chrId)) {
                 return;
             }
 
-            int blockSize = readInt(ba, offset);
-            int blockEnd = offset + blockSize + 4;
+            offset = blockEnd;
+        }
+    }
+
+    /**
+     * Decode records from a stream of blocks,  inflating blocks as they are needed.
+     */
+    void decodeBamRecords(BGZFStream bgzf, List<Alignment> alignmentContainer, int min, int max, int chrId) throws IOException {
+
+        while (bgzf.ensure(4) && !bgzf.atLimit()) {
+
+            int recordSize = readInt(bgzf.buffer(), bgzf.position()) + 4;
 
-            if (blockEnd > ba.length) {
+            if (!bgzf.ensure(recordSize)) {
                 return;
             }
 
-            int refID = readInt(ba, offset + 4);
-            int pos = readInt(ba, offset + 8);
-
-            if (refID < 0) {
-                return;   // unmapped reads
-            } else if (refID > chrId || pos > max) {
-                return;    // off right edge, we're done
-            } else if (refID < chrId) {
-                continue;   // to left of start, not sure this is possible
+            int offset = bgzf.position();
+            if (!decodeRecord(bgzf.buffer(), offset, offset + recordSize, alignmentContainer, min, max, chrId)) {
+                return;
             }
 
-            int bmn = readInt(ba, offset + 12);
-            int bin = (bmn & 0xffff0000) >> 16;
-            int mq = (bmn & 0xff00) >> 8;
-            int nl = bmn & 0xff;
+            bgzf.skip(recordSize);
+        }
+    }
 
-            int flag_nc = readInt(ba, offset + 16);
-            int flag = (flag_nc & 0xffff0000) >> 16;
-            int nc = flag_nc & 0xffff;
+    /**
+     * Decode the record at offset,  adding it to alignmentContainer if it overlaps min-max.
+     *
+     * @return false if there are no further records of interest (unmapped reads, or past max)
+     */
+    private boolean decodeRecord(byte[] ba, int offset, int blockEnd, List<Alignment> alignmentContainer, int min, int max, int chrId) {
 
+        int refID = readInt(ba, offset + 4);
+        int pos = readInt(ba, offset + 8);
 
-            int lseq = readInt(ba, offset + 20);
+        if (refID < 0) {
+            return false;   // unmapped reads
+        } else if (refID > chrId || pos > max) {
+            return false;    // off right edge, we're done
+        } else if (refID < chrId) {
+            return true;   // to left of start, not sure this is possible
+        }
 
-            int mateRefID = readInt(ba, offset + 24);
-            int matePos = readInt(ba, offset + 28);
+        int bmn = readInt(ba, offset + 12);
+        int bin = (bmn & 0xffff0000) >> 16;
+        int mq = (bmn & 0xff00) >> 8;
+        int nl = bmn & 0xff;
 
+        int flag_nc = readInt(ba, offset + 16);
+        int flag = (flag_nc & 0xffff0000) >> 16;
+        int nc = flag_nc & 0xffff;
 
-            byte[] readNameBytes = Arrays.copyOfRange(ba, offset + 36, offset + 36 + nl);
-            String readName = new String(readNameBytes);
 
-            int p = offset + 36 + nl;
-            byte[] cigarBytes = Arrays.copyOfRange(ba, p, p + 4 * nc);
-            p += 4 * nc;
+        int lseq = readInt(ba, offset + 20);
 
-            CigarOperator[] cigarArray = new CigarOperator[nc];
-            int lengthOnRef = 0;
-            for (int c = 0; c < nc; ++c) {
-                int cigop = readInt(cigarBytes, c);
-                int opLen = (cigop >> 4);
-                char opLtr = CIGAR_DECODER[cigop & 0xf];
-                if (opLtr == 'M' || opLtr == 'X' || opLtr == 'D' || opLtr == 'N' || opLtr == '=')
-                    lengthOnRef += opLen;
-                cigarArray[c] = new CigarOperator(opLen, opLtr);
-            }
+        int mateRefID = readInt(ba, offset + 24);
+        int matePos = readInt(ba, offset + 28);
 
 
-            if (pos + lengthOnRef < min) {
-                offset = blockEnd;
-                continue;  // Record out-of-range "to the left", skip to next one
-            }
+        byte[] readNameBytes = Arrays.copyOfRange(ba, offset + 36, offset + 36 + nl);
+        String readName = new String(readNameBytes);
 
-            int seqSize = (lseq + 1) >> 1;
-            byte[] seqBytes = Arrays.copyOfRange(ba, p, p + seqSize);
-            byte[] sequence = new byte[lseq];
+        int p = offset + 36 + nl;
+        byte[] cigarBytes = Arrays.copyOfRange(ba, p, p + 4 * nc);
+        p += 4 * nc;
 
-            for (int j = 0; j < seqSize; ++j) {
-                byte sb = seqBytes[j];
-                sequence[2 * j] = (byte) (SECRET_DECODER[(sb & 0xf0) >> 4]);
-                if ((2 * j + 1) < lseq) sequence[2 * j + 1] += SECRET_DECODER[(sb & 0x0f)];
-            }
+        CigarOperator[] cigarArray = new CigarOperator[nc];
+        int lengthOnRef = 0;
+        for (int c = 0; c < nc; ++c) {
+            int cigop = readInt(cigarBytes, 4 * c);
+            int opLen = (cigop >> 4);
+            char opLtr = CIGAR_DECODER[cigop & 0xf];
+            if (opLtr == 'M' || opLtr == 'X' || opLtr == 'D' || opLtr == 'N' || opLtr == '=')
+                lengthOnRef += opLen;
+            cigarArray[c] = new CigarOperator(opLen, opLtr);
+        }
 
 
-            p += seqSize;
+        if (pos + lengthOnRef < min) {
+            return true;  // Record out-of-range "to the left", skip to next one
+        }
 
+        int seqSize = (lseq + 1) >> 1;
+        byte[] seqBytes = Arrays.copyOfRange(ba, p, p + seqSize);
+        byte[] sequence = new byte[lseq];
 
-            byte[] qualities;
-            if (lseq == 1 && sequence[0] == '*') {
-                qualities = new byte[]{Byte.MAX_VALUE}; // TODO == how to represent this?
-            } else {
-                qualities = Arrays.copyOfRange(ba, p, p + lseq);
-            }
-            p += lseq;
+        for (int j = 0; j < seqSize; ++j) {
+            byte sb = seqBytes[j];
+            sequence[2 * j] = (byte) (SECRET_DECODER[(sb & 0xf0) >> 4]);
+            if ((2 * j + 1) < lseq) sequence[2 * j + 1] += SECRET_DECODER[(sb & 0x0f)];
+        }
 
 
-            ReadMate mate = null;
-            boolean isPaired = (flag & PAIRED_FLAG) != 0;
-            if (isPaired) {
-                boolean mateIsMapped = (flag & MATE_IS_MAPPED_FLAG) != 0;
-                String mateChr = mateRefID > 0 ? this.indexToChr[mateRefID] : "";
-                boolean mateIsNegativeStrand = ((flag & MATE_STRAND_FLAG) != 0);
-                mate = new ReadMate(mateChr, matePos, mateIsNegativeStrand, mateIsMapped);
-            }
+        p += seqSize;
 
 
-            byte[] tagBytes = Arrays.copyOfRange(ba, p, blockEnd);
+        byte[] qualities;
+        if (lseq == 1 && sequence[0] == '*') {
+            qualities = new byte[]{Byte.MAX_VALUE}; // TODO == how to represent this?
+        } else {
+            qualities = Arrays.copyOfRange(ba, p, p + lseq);
+        }
+        p += lseq;
 
 
-            if (pos + lengthOnRef >= min && pos <= max) {   // && pass filter
+        ReadMate mate = null;
+        boolean isPaired = (flag & PAIRED_FLAG) != 0;
+        if (isPaired) {
+            boolean mateIsMapped = (flag & MATE_IS_MAPPED_FLAG) != 0;
+            String mateChr = mateRefID > 0 ? this.indexToChr[mateRefID] : "";
+            boolean mateIsNegativeStrand = ((flag & MATE_STRAND_FLAG) != 0);
+            mate = new ReadMate(mateChr, matePos, mateIsNegativeStrand, mateIsMapped);
+        }
 
-                BAMAlignment alignment = new BAMAlignment();
-                alignment.start = pos;
-                alignment.flags = flag;
-                alignment.fragmentLength = readInt(ba, offset + 32);
-                alignment.cigarBytes = cigarBytes;
-                alignment.lengthOnRef = lengthOnRef;
-                alignment.sequence = sequence;
-                alignment.mq = mq;
-                alignment.readName = readName;
-                alignment.chr = this.indexToChr[refID];
-                alignment.qualities = qualities;
-                alignment.mate = mate;
-                alignment.tagBytes = tagBytes;   // Decode these on demand
 
-                makeBlocks(cigarArray, alignment);
+        byte[] tagBytes = Arrays.copyOfRange(ba, p, blockEnd);
 
-                alignmentContainer.add(alignment);
-            }
 
-            offset = blockEnd;
+        if (pos + lengthOnRef >= min && pos <= max) {   // && pass filter
+
+            BAMAlignment alignment = new BAMAlignment();
+            alignment.start = pos;
+            alignment.flags = flag;
+            alignment.fragmentLength = readInt(ba, offset + 32);
+            alignment.cigarBytes = cigarBytes;
+            alignment.lengthOnRef = lengthOnRef;
+            alignment.sequence = sequence;
+            alignment.mq = mq;
+            alignment.readName = readName;
+            alignment.chr = this.indexToChr[refID];
+            alignment.qualities = qualities;
+            alignment.mate = mate;
+            alignment.tagBytes = tagBytes;   // Decode these on demand
+
+            makeBlocks(cigarArray, alignment);
+
+            alignmentContainer.add(alignment);
         }
+
+        return true;
     }
 
 
@@ -2,6 +2,9 @@ package org.broad.igv.sam.lite;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
@@ -10,6 +13,15 @@ import java.util.zip.Inflater;
  */
 public class BGUnzip {
     public static final int BGZIP_HEADER_LENGTH = 18;
+    public static final int MAX_BLOCK_SIZE = 65536;
+
+    /**
+     * Maximum number of idle inflaters and buffers retained by the pools
+     */
+    private static final int MAX_POOL_SIZE = 32;
+
+    private static final ConcurrentLinkedQueue<Inflater> inflaterPool = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<byte[]> bufferPool = new ConcurrentLinkedQueue<>();
 
     // Uncompress data,  assumed to be series of bgzipped blocks
 
@@ -57,13 +69,102 @@ public class BGUnzip {
         return outputStream.toByteArray();
     }
 
-    private static int unpackInt16(final byte[] buffer, final int offset) {
+    /**
+     * Return the offsets of the complete bgzipped blocks contained in data,  which is assumed to begin
+     * at a block boundary.
+     */
+    public static List<Integer> blockOffsets(byte[] data) {
+
+        List<Integer> offsets = new ArrayList<>();
+        int ptr = 0;
+        int lim = data.length - BGZIP_HEADER_LENGTH;
+        while (ptr < lim) {
+            if ((data[ptr] & 0xFF) != 31 || (data[ptr + 1] & 0xFF) != 139) break;   // Not a gzip block, e.g. past end of file
+            int bsize = blockSize(data, ptr);
+            if (data.length - (BGZIP_HEADER_LENGTH + ptr) < (bsize + 8)) break;
+            offsets.add(ptr);
+            ptr += bsize;
+        }
+        return offsets;
+    }
+
+    /**
+     * Return the total size of the bgzipped block beginning at ptr,  including header and footer.
+     */
+    public static int blockSize(byte[] data, int ptr) {
+        return unpackInt16(data, ptr + 16) + 1;
+    }
+
+    /**
+     * Return the uncompressed size of the bgzipped block beginning at ptr.
+     */
+    public static int uncompressedSize(byte[] data, int ptr) {
+        return unpackInt32(data, ptr + blockSize(data, ptr) - 4);
+    }
+
+    /**
+     * Inflate a single block into output.  The inflater must be a "nowrap" inflater, it is reset before use.
+     *
+     * @return the number of bytes inflated
+     */
+    public static int inflateBlock(byte[] data, int ptr, Inflater inflater, byte[] output) throws DataFormatException {
+        int start = BGZIP_HEADER_LENGTH + ptr;
+        int cdataLength = blockSize(data, ptr) - BGZIP_HEADER_LENGTH - 8;
+        inflater.reset();
+        inflater.setInput(data, start, cdataLength);
+        return inflater.inflate(output, 0, uncompressedSize(data, ptr));
+    }
+
+    /**
+     * Return a "nowrap" inflater from the pool,  creating one if the pool is empty.
+     */
+    public static Inflater acquireInflater() {
+        Inflater inflater = inflaterPool.poll();
+        return inflater == null ? new Inflater(true) : inflater;
+    }
+
+    public static void releaseInflater(Inflater inflater) {
+        if (inflaterPool.size() < MAX_POOL_SIZE) {
+            inflater.reset();
+            inflaterPool.offer(inflater);
+        } else {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Return a buffer of at least {@link #MAX_BLOCK_SIZE} bytes from the pool,  large enough for a compressed or
+     * uncompressed block.
+     */
+    public static byte[] acquireBuffer() {
+        return acquireBuffer(MAX_BLOCK_SIZE);
+    }
+
+    /**
+     * Return a buffer of at least minSize bytes,  from the pool if a large enough buffer is available.
+     */
+    public static byte[] acquireBuffer(int minSize) {
+        byte[] buffer = bufferPool.poll();
+        if (buffer == null || buffer.length < minSize) {
+            if (buffer != null) bufferPool.offer(buffer);
+            buffer = new byte[Math.max(minSize, MAX_BLOCK_SIZE)];
+        }
+        return buffer;
+    }
+
+    public static void releaseBuffer(byte[] buffer) {
+        if (buffer.length >= MAX_BLOCK_SIZE && buffer.length <= 4 * MAX_BLOCK_SIZE && bufferPool.size() < MAX_POOL_SIZE) {
+            bufferPool.offer(buffer);
+        }
+    }
+
+    static int unpackInt16(final byte[] buffer, final int offset) {
         return ((buffer[offset] & 0xFF) |
                 ((buffer[offset+1] & 0xFF) << 8));
     }
 
 
-    private static int unpackInt32(final byte[] buffer, final int offset) {
+    static int unpackInt32(final byte[] buffer, final int offset) {
         return ((buffer[offset] & 0xFF) |
                 ((buffer[offset + 1] & 0xFF) << 8) |
                 ((buffer[offset + 2] & 0xFF) << 16) |
@@ -0,0 +1,178 @@
+package org.broad.igv.sam.lite;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streams the uncompressed contents of a range of bgzipped blocks,  specified by start and end virtual offsets.
+ * Blocks are read and inflated one at a time as the consumer asks for bytes,  so only the unconsumed tail of the
+ * previous block and the current block are held in memory regardless of the size of the range.  The inflater and
+ * buffers are borrowed from the pools in {@link BGUnzip} and returned by {@link #close()}.
+ * <p>
+ * Usage:  call {@link #ensure(int)} before reading,  then read from {@link #buffer()} starting at
+ * {@link #position()} and {@link #skip(int)} past the bytes consumed.  {@code ensure} may move or reallocate the
+ * buffer,  so neither the buffer nor the position should be held across calls.
+ */
+public class BGZFStream implements Closeable {
+
+    private final SeekableStream stream;
+    private final long endBlock;
+    private final int endOffset;
+    private final boolean verifyCrc;
+
+    private Inflater inflater;
+    private CRC32 crc;
+    private byte[] compressed;
+    private byte[] window;
+    private int pos;                    // Next unconsumed byte in window
+    private int len;                    // End of valid data in window
+    private int limit = Integer.MAX_VALUE;     // Position of the end virtual offset,  once its block has been read
+    private long blockAddress;          // File offset of the next block to read
+    private boolean eof;
+
+    /**
+     * @param stream      stream positioned anywhere,  it is closed with this object
+     * @param startBlock  file offset of the first block
+     * @param startOffset offset of the first byte within the uncompressed first block
+     * @param endBlock    file offset of the block containing the end virtual offset
+     * @param endOffset   offset of the end (exclusive) within the uncompressed end block
+     * @param verifyCrc   if true check the CRC32 of each block,  throwing an IOException on mismatch
+     */
+    public BGZFStream(SeekableStream stream, long startBlock, int startOffset, long endBlock, int endOffset,
+                      boolean verifyCrc) throws IOException {
+        this.stream = stream;
+        this.endBlock = endBlock;
+        this.endOffset = endOffset;
+        this.verifyCrc = verifyCrc;
+        this.inflater = BGUnzip.acquireInflater();
+        this.compressed = BGUnzip.acquireBuffer();
+        this.window = BGUnzip.acquireBuffer(2 * BGUnzip.MAX_BLOCK_SIZE);
+        if (verifyCrc) {
+            crc = new CRC32();
+        }
+
+        blockAddress = startBlock;
+        stream.seek(startBlock);
+        if (ensure(startOffset)) {
+            pos = startOffset;
+        } else {
+            pos = len;
+        }
+    }
+
+    /**
+     * Make at least n unconsumed bytes available in the buffer,  reading more blocks if needed.
+     *
+     * @return false if the end of the range or file was reached first
+     */
+    public boolean ensure(int n) throws IOException {
+        while (len - pos < n) {
+            if (eof || !readBlock()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the position is at or beyond the end virtual offset
+     */
+    public boolean atLimit() {
+        return pos >= limit;
+    }
+
+    public byte[] buffer() {
+        return window;
+    }
+
+    public int position() {
+        return pos;
+    }
+
+    public void skip(int n) {
+        pos += n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            BGUnzip.releaseInflater(inflater);
+            BGUnzip.releaseBuffer(compressed);
+            BGUnzip.releaseBuffer(window);
+            inflater = null;
+            compressed = null;
+            window = null;
+        }
+        stream.close();
+    }
+
+    private boolean readBlock() throws IOException {
+
+        if (blockAddress > endBlock || !readFully(0, BGUnzip.BGZIP_HEADER_LENGTH)) {
+            eof = true;
+            return false;
+        }
+        if ((compressed[0] & 0xFF) != 31 || (compressed[1] & 0xFF) != 139) {
+            throw new IOException("Invalid bgzip block at " + blockAddress);
+        }
+
+        int bsize = BGUnzip.blockSize(compressed, 0);
+        if (!readFully(BGUnzip.BGZIP_HEADER_LENGTH, bsize - BGUnzip.BGZIP_HEADER_LENGTH)) {
+            eof = true;
+            return false;
+        }
+        int isize = BGUnzip.unpackInt32(compressed, bsize - 4);
+
+        // Discard consumed bytes,  then grow the window if the unconsumed tail and new block don't fit
+        if (pos > 0) {
+            System.arraycopy(window, pos, window, 0, len - pos);
+            len -= pos;
+            if (limit != Integer.MAX_VALUE) limit -= pos;
+            pos = 0;
+        }
+        if (len + isize > window.length) {
+            byte[] tmp = new byte[Math.max(2 * window.length, len + isize)];
+            System.arraycopy(window, 0, tmp, 0, len);
+            window = tmp;
+        }
+
+        try {
+            inflater.reset();
+            inflater.setInput(compressed, BGUnzip.BGZIP_HEADER_LENGTH, bsize - BGUnzip.BGZIP_HEADER_LENGTH - 8);
+            int n = inflater.inflate(window, len, isize);
+            if (n != isize) {
+                throw new IOException("Truncated bgzip block at " + blockAddress);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Error inflating bgzip block at " + blockAddress, e);
+        }
+
+        if (verifyCrc) {
+            crc.reset();
+            crc.update(window, len, isize);
+            if ((int) crc.getValue() != BGUnzip.unpackInt32(compressed, bsize - 8)) {
+                throw new IOException("CRC mismatch in bgzip block at " + blockAddress);
+            }
+        }
+
+        if (blockAddress == endBlock) {
+            limit = len + endOffset;
+        }
+        len += isize;
+        blockAddress += bsize;
+        return true;
+    }
+
+    private boolean readFully(int offset, int n) throws IOException {
+        int total = 0;
+        while (total < n) {
+            int count = stream.read(compressed, offset + total, n - total);
+            if (count < 0) return false;
+            total += count;
+        }
+        return true;
+    }
+}
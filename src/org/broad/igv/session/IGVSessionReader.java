@@ -36,6 +36,8 @@ import org.broad.igv.ui.commandbar.GenomeListManager;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.lists.GeneList;
 import org.broad.igv.lists.GeneListManager;
+import org.broad.igv.prefs.IGVPreferences;
+import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.renderer.ColorScale;
 import org.broad.igv.renderer.ColorScaleFactory;
 import org.broad.igv.renderer.ContinuousColorScale;
@@ -69,6 +71,9 @@ import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.List;
 
+import static org.broad.igv.prefs.Constants.SESSION_LOAD_HOST_THREADS;
+import static org.broad.igv.prefs.Constants.SESSION_LOAD_THREADS;
+
 /**
  * Class to parse an IGV session file
  */
@@ -122,6 +127,13 @@ public class IGVSessionReader implements SessionReader {
     private Track seqTrack = null;
     private boolean hasTrackElments;
 
+    /**
+     * Ids of visible tracks,  in session order.  Resources are loaded in the order their tracks appear.
+     */
+    private List<String> visibleTrackIds = new ArrayList<>();
+
+    private SessionLoadScheduler loadScheduler;
+
     //Temporary holder for generating tracks
     protected static AbstractTrack nextTrack;
 
@@ -326,7 +338,16 @@ public class IGVSessionReader implements SessionReader {
 
         this.rootPath = sessionPath;
 
-        processRootNode(session, nodes.item(0), additionalInformation, sessionPath);
+        // Start checking remote resources while the genome loads
+        visibleTrackIds = getVisibleTrackIds(tracks, sessionPath);
+        loadScheduler = createLoadScheduler();
+        try {
+            prefetchResources(document, sessionPath);
+            processRootNode(session, nodes.item(0), additionalInformation, sessionPath);
+        } finally {
+            loadScheduler.shutdown();
+            loadScheduler = null;
+        }
 
         // Add tracks not explicitly allocated to panels.  It is legal to define sessions with the Resources
         // section only (no Panel or Track elements).
@@ -347,6 +368,58 @@ public class IGVSessionReader implements SessionReader {
     }
 
 
+    private static SessionLoadScheduler createLoadScheduler() {
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        return new SessionLoadScheduler(prefs.getAsInt(SESSION_LOAD_THREADS), prefs.getAsInt(SESSION_LOAD_HOST_THREADS));
+    }
+
+    private List<String> getVisibleTrackIds(NodeList tracks, String rootPath) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < tracks.getLength(); i++) {
+            Element track = (Element) tracks.item(i);
+            String id = getAttribute(track, SessionAttribute.ID.getText());
+            if (id != null && !"false".equalsIgnoreCase(getAttribute(track, SessionAttribute.VISIBLE.getText()))) {
+                ids.add(id);
+                if (!FileUtils.isRemote(id)) {
+                    ids.add(getAbsolutePath(id, rootPath));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Return the load priority of a resource,  the position of its first visible track.  Resources without visible
+     * tracks are loaded last.
+     */
+    private int getLoadPriority(String path) {
+        for (int i = 0; i < visibleTrackIds.size(); i++) {
+            if (visibleTrackIds.get(i).startsWith(path)) {
+                return i;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Check the existence of remote resources and their indexes in the background
+     */
+    private void prefetchResources(Document document, String rootPath) {
+        NodeList resources = document.getElementsByTagName(SessionElement.RESOURCE.getText());
+        for (int i = 0; i < resources.getLength(); i++) {
+            Element element = (Element) resources.item(i);
+            String path = getAttribute(element, SessionAttribute.PATH.getText());
+            String type = getAttribute(element, SessionAttribute.TYPE.getText());
+            if (path == null || "ga4gh".equals(type) ||
+                    getAttribute(element, SessionAttribute.SERVER_URL.getText()) != null) {
+                continue;
+            }
+            String absolutePath = getAbsolutePath(path, rootPath);
+            loadScheduler.prefetch(absolutePath, getAttribute(element, SessionAttribute.INDEX.getText()),
+                    getLoadPriority(absolutePath));
+        }
+    }
+
     private void processRootNode(Session session, Node node, HashMap additionalInformation, String rootPath) {
 
         if ((node == null) || (session == null)) {
@@ -608,83 +681,69 @@ public class IGVSessionReader implements SessionReader {
         }
         if (dataFiles.size() > 0) {
 
-            final List<String> errors = new ArrayList<String>();
+            final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
 
-            // Load files concurrently -- TODO, put a limit on # of threads?
-            List<Thread> threads = new ArrayList(dataFiles.size());
+            // Load files concurrently on a bounded pool,  resources of visible tracks first.  Concurrent authentication
+            // challenges are serialized by the authenticator,  which prompts once per host.  Batch scripts depend on
+            // the load order,  in batch mode files are loaded serially in resource order.
+            final List<ResourceLocator> locators = new ArrayList<>(dataFiles);
+            final List<Track>[] loadedTracks = new List[locators.size()];
+            SessionLoadScheduler scheduler = loadScheduler != null ? loadScheduler : createLoadScheduler();
             long t0 = System.currentTimeMillis();
-            int i = 0;
-            List<Runnable> synchronousLoads = new ArrayList<Runnable>();
-            for (final ResourceLocator locator : dataFiles) {
-
-                final String suppliedPath = locator.getPath();
-                final String relPath = fullToRelPathMap.get(suppliedPath);
-
-                Runnable runnable = new Runnable() {
-                    public void run() {
-                        List<Track> tracks = null;
-                        try {
-                            tracks = igv.load(locator);
-                            for (Track track : tracks) {
-                                if (track == null) {
-                                    log.info("Null track for resource " + locator.getPath());
-                                    continue;
-                                }
-
-                                String id = track.getId();
-                                if (id == null) {
-                                    log.info("Null track id for resource " + locator.getPath());
-                                    continue;
-                                }
-
-                                // if (relPath != null) {
-                                //     id = id.replace(suppliedPath, relPath);
-                                // }
-
-                                List<Track> trackList = leftoverTrackDictionary.get(id);
-                                if (trackList == null) {
-                                    trackList = new ArrayList();
-                                    leftoverTrackDictionary.put(id, trackList);
-                                    allTracks.put(id, trackList);
-                                }
-                                trackList.add(track);
-                            }
-                        } catch (Exception e) {
-                            log.error("Error loading resource " + locator.getPath(), e);
-                            String ms = "<b>" + locator.getPath() + "</b><br>&nbsp;&nbsp;" + e.toString() + "<br>";
-                            errors.add(ms);
-                        }
+            for (int i = 0; i < locators.size(); i++) {
+                final ResourceLocator locator = locators.get(i);
+                final int idx = i;
+                Runnable runnable = () -> {
+                    try {
+                        loadedTracks[idx] = igv.load(locator);
+                    } catch (Exception e) {
+                        log.error("Error loading resource " + locator.getPath(), e);
+                        String ms = "<b>" + locator.getPath() + "</b><br>&nbsp;&nbsp;" + e.toString() + "<br>";
+                        errors.add(ms);
                     }
                 };
-
-                boolean isAlignment = locator.getPath().endsWith(".bam") || locator.getPath().endsWith(".entries") ||
-                        locator.getPath().endsWith(".sam");
-
-
-                // Run synchronously if in batch mode or if there are no "track" elments, or if this is an alignment file
-                // EVERYTHING IS RUN SYNCHRONOUSLY FOR NOW UNTIL WE CAN FIGURE OUT WHAT TO DO TO PREVENT MULTIPLE
-                // AUTHENTICATION DIALOGS
-                if (isAlignment || Globals.isBatch() || !hasTrackElments) {
-                    synchronousLoads.add(runnable);
+                if (Globals.isBatch()) {
+                    runnable.run();
                 } else {
-                    Thread t = new Thread(runnable);
-                    threads.add(t);
-                    t.start();
+                    scheduler.submit(locator.getPath(), getLoadPriority(locator.getPath()), runnable);
                 }
-                i++;
             }
-            // Wait for all threads to complete
-            for (Thread t : threads) {
-                try {
-                    t.join();
-                } catch (InterruptedException ignore) {
+
+            try {
+                scheduler.awaitCompletion();
+            } catch (InterruptedException e) {
+                log.error("Interrupted loading session resources", e);
+                Thread.currentThread().interrupt();
+            } finally {
+                if (scheduler != loadScheduler) {
+                    scheduler.shutdown();
                 }
             }
 
+            // Register tracks in resource order,  which is the order "leftover" tracks are added
+            for (int i = 0; i < locators.size(); i++) {
+                if (loadedTracks[i] == null) continue;
+                ResourceLocator locator = locators.get(i);
+                for (Track track : loadedTracks[i]) {
+                    if (track == null) {
+                        log.info("Null track for resource " + locator.getPath());
+                        continue;
+                    }
+
+                    String id = track.getId();
+                    if (id == null) {
+                        log.info("Null track id for resource " + locator.getPath());
+                        continue;
+                    }
 
-            // Now load data that must be loaded synchronously
-            for (Runnable runnable : synchronousLoads) {
-                runnable.run();
+                    List<Track> trackList = leftoverTrackDictionary.get(id);
+                    if (trackList == null) {
+                        trackList = new ArrayList();
+                        leftoverTrackDictionary.put(id, trackList);
+                        allTracks.put(id, trackList);
+                    }
+                    trackList.add(track);
+                }
             }
 
             long dt = System.currentTimeMillis() - t0;
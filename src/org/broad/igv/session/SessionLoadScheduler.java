@@ -0,0 +1,212 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.session;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.util.FileUtils;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Schedules the loading of a session's resources on a bounded pool.  At most {@code maxThreads} tasks run at once,
+ * and at most {@code maxPerHost} against any one server.  Pending tasks are started in priority order (lowest value
+ * first,  then in the order submitted),  skipping tasks whose server is at its limit.
+ * <p/>
+ * Prefetch tasks check the existence of remote files and their indexes while the genome is loading,  so the results
+ * are cached by the time the files are loaded.  A prefetch is dropped if the load of its file is submitted before it
+ * has started.
+ */
+class SessionLoadScheduler {
+
+    private static Logger log = Logger.getLogger(SessionLoadScheduler.class);
+
+    private final int maxThreads;
+    private final int maxPerHost;
+    private final ExecutorService executor;
+    private final TreeSet<Task> pending = new TreeSet<>();
+    private final Map<String, Integer> hostCounts = new HashMap<>();
+    private int running = 0;
+    private long sequence = 0;
+
+    SessionLoadScheduler(int maxThreads, int maxPerHost) {
+        this.maxThreads = Math.max(1, maxThreads);
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.executor = Executors.newFixedThreadPool(this.maxThreads, r -> {
+            Thread t = new Thread(r, "Session load");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Check the existence of a remote file and the index paths the loader will probe.  Local paths are ignored.
+     *
+     * @param path
+     * @param indexPath explicit index path,  or null
+     * @param priority
+     */
+    synchronized void prefetch(String path, String indexPath, int priority) {
+        if (!FileUtils.isRemote(path)) return;
+        List<String> paths = new ArrayList<>();
+        paths.add(path);
+        paths.add(indexPath != null ? indexPath : getDefaultIndexPath(path));
+        pending.add(new Task(path, priority, true, () -> {
+            for (String p : paths) {
+                if (p != null) FileUtils.resourceExists(p);
+            }
+        }));
+        dispatch();
+    }
+
+    /**
+     * Queue the load of a resource
+     *
+     * @param path
+     * @param priority
+     * @param runnable
+     */
+    synchronized void submit(String path, int priority, Runnable runnable) {
+        pending.removeIf(t -> t.prefetch && t.path.equals(path));
+        pending.add(new Task(path, priority, false, runnable));
+        dispatch();
+    }
+
+    /**
+     * Wait until all submitted tasks,  including prefetches,  have completed
+     */
+    synchronized void awaitCompletion() throws InterruptedException {
+        while (!pending.isEmpty() || running > 0) {
+            wait();
+        }
+    }
+
+    void shutdown() {
+        synchronized (this) {
+            pending.clear();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Start pending tasks while there are free threads
+     */
+    private synchronized void dispatch() {
+        while (running < maxThreads) {
+            Task next = null;
+            for (Task t : pending) {
+                if (t.host == null || hostCounts.getOrDefault(t.host, 0) < maxPerHost) {
+                    next = t;
+                    break;
+                }
+            }
+            if (next == null) return;
+
+            pending.remove(next);
+            running++;
+            if (next.host != null) hostCounts.merge(next.host, 1, Integer::sum);
+
+            final Task task = next;
+            executor.execute(() -> {
+                try {
+                    task.runnable.run();
+                } catch (Exception e) {
+                    log.error("Error loading " + task.path, e);
+                } finally {
+                    finished(task);
+                }
+            });
+        }
+    }
+
+    private synchronized void finished(Task task) {
+        running--;
+        if (task.host != null) hostCounts.merge(task.host, -1, Integer::sum);
+        dispatch();
+        notifyAll();
+    }
+
+    /**
+     * The index the loader will look for first,  based on the file extension
+     */
+    static String getDefaultIndexPath(String path) {
+        String p = path.toLowerCase();
+        int q = p.indexOf('?');
+        if (q > 0) p = p.substring(0, q);
+        if (p.endsWith(".bam")) return insertSuffix(path, ".bai");
+        if (p.endsWith(".cram")) return insertSuffix(path, ".crai");
+        if (p.endsWith(".gz") || p.endsWith(".bgz")) return insertSuffix(path, ".tbi");
+        if (p.endsWith(".bw") || p.endsWith(".bigwig") || p.endsWith(".bb") || p.endsWith(".bigbed") ||
+                p.endsWith(".tdf") || p.endsWith(".seg") || p.endsWith(".gct")) {
+            return null;   // Self indexed or not indexed
+        }
+        return insertSuffix(path, ".idx");
+    }
+
+    /**
+     * Append the suffix to the path,  before any query string
+     */
+    private static String insertSuffix(String path, String suffix) {
+        int q = path.indexOf('?');
+        return q < 0 ? path + suffix : path.substring(0, q) + suffix + path.substring(q);
+    }
+
+    /**
+     * Return the server of a remote path,  or null for a local path
+     */
+    static String getHost(String path) {
+        if (!FileUtils.isRemote(path)) return null;
+        int start = path.indexOf("://") + 3;
+        int end = path.indexOf('/', start);
+        return (end < 0 ? path.substring(start) : path.substring(start, end)).toLowerCase();
+    }
+
+    private class Task implements Comparable<Task> {
+
+        final String path;
+        final String host;
+        final int priority;
+        final boolean prefetch;
+        final long order;
+        final Runnable runnable;
+
+        Task(String path, int priority, boolean prefetch, Runnable runnable) {
+            this.path = path;
+            this.host = getHost(path);
+            this.priority = priority;
+            this.prefetch = prefetch;
+            this.order = sequence++;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            int cmp = Integer.compare(priority, o.priority);
+            return cmp != 0 ? cmp : Long.compare(order, o.order);
+        }
+    }
+}
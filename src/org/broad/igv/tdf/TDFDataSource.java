@@ -42,6 +42,7 @@ import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.collections.LRUCache;
 
 import java.util.*;
 
@@ -56,7 +57,9 @@ public class TDFDataSource implements CoverageDataSource {
     int maxPrecomputedZoom = 6;
     private int trackNumber = 0;
     String trackName;
-    Map<String, List<LocusScore>> summaryScoreCache = Collections.synchronizedMap(new HashMap<>());
+    // Scores computed from raw data,  for zoom levels beyond the precomputed ones.  Precomputed tiles are cached
+    // by TDFTileCache.
+    LRUCache<String, List<LocusScore>> summaryScoreCache = new LRUCache<>(50);
     Genome genome;
     WindowFunction windowFunction = WindowFunction.mean;
     List<WindowFunction> availableFunctions;
@@ -165,14 +168,18 @@ public class TDFDataSource implements CoverageDataSource {
 
     private List<LocusScore> getCachedSummaryScores(String querySeq, int zoom, int tileNumber, double tileWidth) {
 
+        int startLocation = (int) (tileNumber * tileWidth);
+        int endLocation = (int) ((tileNumber + 1) * tileWidth);
+
+        if (zoom <= this.maxPrecomputedZoom && windowFunction != WindowFunction.none) {
+            return getSummaryScores(querySeq, startLocation, endLocation, zoom);
+        }
+
         String key = querySeq + "_" + zoom + "_" + tileNumber + "_" + windowFunction;
 
         List<LocusScore> scores = summaryScoreCache.get(key);
         if (scores == null) {
 
-            int startLocation = (int) (tileNumber * tileWidth);
-            int endLocation = (int) ((tileNumber + 1) * tileWidth);
-
             scores = getSummaryScores(querySeq, startLocation, endLocation, zoom);
 
             summaryScoreCache.put(key, scores);
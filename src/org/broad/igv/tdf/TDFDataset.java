@@ -30,7 +30,6 @@
 package org.broad.igv.tdf;
 
 import org.broad.igv.util.StringUtils;
-import org.broad.igv.util.collections.LRUCache;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -55,7 +54,6 @@ public class TDFDataset extends TDFEntity {
     long[] tilePositions;  // File position in TDF file
     int[] tileSizes;       // Tile size in bytes
     int nTiles;
-    LRUCache<String, TDFTile> cache = new LRUCache(20);
     // TODO -- refactor this dependency out
     TDFReader reader;
 
@@ -147,21 +145,12 @@ public class TDFDataset extends TDFEntity {
     }
 
     // TDFTile computeTile(TDFDataset ds, int t, List<LocusScore> scores, String chr)
-    synchronized TDFTile getTile(int t) {
-        String key = getName() + "_" + t;
-
-        TDFTile tile = null;
-        if (!cache.containsKey(key)) {
-            tile = reader.readTile(this, t);
-            cache.put(key, tile);
-        } else {
-            tile = cache.get(key);
-        }
-        return tile;
+    TDFTile getTile(int t) {
+        return TDFTileCache.getInstance().getTile(this, t);
     }
 
     public void clearCache() {
-        cache.clear();
+        TDFTileCache.getInstance().remove(this);
     }
 
 
@@ -37,16 +37,23 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.util.CompressionUtils;
+import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.StringUtils;
 import org.broad.igv.util.collections.LRUCache;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.broad.igv.util.stream.SeekableMappedStream;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * @author jrobinso
@@ -56,7 +63,18 @@ public class TDFReader {
     static final Logger log = Logger.getLogger(TDFReader.class);
     public static final int GZIP_FLAG = 0x1;
 
-    private SeekableStream seekableStream = null;
+    /**
+     * Maximum number of idle streams retained for reading remote files
+     */
+    static final int MAX_IDLE_STREAMS = 4;
+
+    // Local files are read with positional reads on a single channel,  or from a memory map if enabled,  remote
+    // files with a pool of streams.  Either way concurrent reads (e.g. tiles for different tracks) do not block
+    // each other.
+    private FileChannel fileChannel = null;
+    private SeekableMappedStream mappedStream = null;
+    private final ConcurrentLinkedQueue<SeekableStream> streamPool = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<CompressionUtils> compressionUtils = ThreadLocal.withInitial(CompressionUtils::new);
     private int version;
     private Map<String, IndexEntry> datasetIndex;
     private Map<String, IndexEntry> groupIndex;
@@ -75,7 +93,6 @@ public class TDFReader {
     boolean compressed = false;
 
     Set<String> chrNames;
-    private final CompressionUtils compressionUtils;
 
     //private String path;
 
@@ -91,8 +108,16 @@ public class TDFReader {
         //this.path = path;
         this.locator = locator;
         try {
-            log.debug("Getting stream");
-            seekableStream = IGVSeekableStreamFactory.getInstance().getStreamFor(locator.getPath());
+            String path = locator.getPath();
+            if (!FileUtils.isRemote(path) && !path.endsWith(".list")) {
+                SeekableStream ss = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+                if (ss instanceof SeekableMappedStream) {
+                    mappedStream = (SeekableMappedStream) ss;
+                } else {
+                    ss.close();
+                    fileChannel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+                }
+            }
             log.debug("Reading header");
             readHeader();
             log.debug("Done reading header");
@@ -101,12 +126,18 @@ public class TDFReader {
             log.error("Error loading file: " + locator.getPath(), ex);
             throw new DataLoadException("Error loading file: " + ex.toString(), locator.getPath());
         }
-        compressionUtils = new CompressionUtils();
     }
 
     public void close() {
+        TDFTileCache.getInstance().remove(getPath());
         try {
-            seekableStream.close();
+            if (fileChannel != null) {
+                fileChannel.close();
+            }
+            SeekableStream ss;
+            while ((ss = streamPool.poll()) != null) {
+                ss.close();
+            }
         } catch (IOException e) {
             log.error("Error closing reader for: " + getPath(), e);
         }
@@ -122,14 +153,14 @@ public class TDFReader {
         // byte count + header byte count  (4 + 4 + 8 + 4 + 4)
         //byte[] buffer = new byte[24];
         //readFully(buffer);
-        byte[] buffer = readBytes(0, 24);
-        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
-        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer byteBuffer = readByteBuffer(0, 24);
+
+        byte[] magicBytes = new byte[4];
+        byteBuffer.get(magicBytes);
+        byteBuffer.rewind();
 
         int magicNumber = byteBuffer.getInt();
 
-        byte[] magicBytes = new byte[4];
-        System.arraycopy(buffer, 0, magicBytes, 0, 4);
         String magicString = new String(magicBytes);
 
         if (!(magicString.startsWith("TDF") || magicString.startsWith("IBF"))) {
@@ -142,9 +173,7 @@ public class TDFReader {
         int idxByteCount = byteBuffer.getInt();
         int nHeaderBytes = byteBuffer.getInt();
 
-        byte[] bytes = readBytes(24, nHeaderBytes);
-        byteBuffer = ByteBuffer.wrap(bytes);
-        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        byteBuffer = readByteBuffer(24, nHeaderBytes);
 
         if (version >= 2) {
             int nWFs = byteBuffer.getInt();
@@ -201,9 +230,7 @@ public class TDFReader {
 //fis.seek(idxPosition);
             //byte[] bytes = new byte[nBytes];
             //readFully(bytes);
-            byte[] bytes = readBytes(idxPosition, nBytes);
-            ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-            byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer byteBuffer = readByteBuffer(idxPosition, nBytes);
 
             int nDatasets = byteBuffer.getInt();
 
@@ -258,9 +285,7 @@ public class TDFReader {
                 //fis.seek(position);
                 //byte[] buffer = new byte[nBytes];
                 //readFully(buffer);
-                byte[] buffer = readBytes(position, nBytes);
-                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
-                byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+                ByteBuffer byteBuffer = readByteBuffer(position, nBytes);
 
                 TDFDataset ds = new TDFDataset(name, byteBuffer, this);
                 datasetCache.put(name, ds);
@@ -297,9 +322,7 @@ public class TDFReader {
             //fis.seek(position);
             //byte[] buffer = new byte[nBytes];
             //readFully(buffer);
-            byte[] buffer = readBytes(position, nBytes);
-            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
-            byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer byteBuffer = readByteBuffer(position, nBytes);
 
             TDFGroup group = new TDFGroup(name, byteBuffer);
 
@@ -337,7 +360,7 @@ public class TDFReader {
             //readFully(buffer);
             byte[] buffer = readBytes(position, nBytes);
             if (compressed) {
-                buffer = compressionUtils.decompress(buffer);
+                buffer = compressionUtils.get().decompress(buffer);
 
             }
 
@@ -432,10 +455,58 @@ public class TDFReader {
     }
 
 
-    public synchronized byte[] readBytes(long position, int nBytes) throws IOException {
-        seekableStream.seek(position);
+    /**
+     * Return a little-endian buffer of nBytes starting at position.  For memory-mapped files this is a view of the
+     * mapped memory,  otherwise the bytes are read.
+     */
+    ByteBuffer readByteBuffer(long position, int nBytes) throws IOException {
+        ByteBuffer byteBuffer;
+        if (mappedStream != null) {
+            byteBuffer = mappedStream.slice(position, (int) Math.min(nBytes, mappedStream.length() - position));
+        } else {
+            byteBuffer = ByteBuffer.wrap(readBytes(position, nBytes));
+        }
+        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        return byteBuffer;
+    }
+
+    /**
+     * Read nBytes starting at position.  This method is thread safe and does not block concurrent reads.
+     */
+    public byte[] readBytes(long position, int nBytes) throws IOException {
+
         byte[] buffer = new byte[nBytes];
-        int read = seekableStream.read(buffer, 0, nBytes);
+
+        if (mappedStream != null) {
+            int n = (int) Math.min(nBytes, mappedStream.length() - position);
+            mappedStream.slice(position, n).get(buffer, 0, n);
+        } else if (fileChannel != null) {
+            ByteBuffer bb = ByteBuffer.wrap(buffer);
+            while (bb.hasRemaining()) {
+                int n = fileChannel.read(bb, position + bb.position());
+                if (n < 0) break;
+            }
+        } else {
+            SeekableStream ss = streamPool.poll();
+            if (ss == null) {
+                ss = IGVSeekableStreamFactory.getInstance().getStreamFor(locator.getPath());
+            }
+            boolean reusable = false;
+            try {
+                ss.seek(position);
+                ss.readFully(buffer);
+                reusable = true;
+            } catch (EOFException e) {
+                // Can happen reading the last entity of a file
+                reusable = true;
+            } finally {
+                if (reusable && streamPool.size() < MAX_IDLE_STREAMS) {
+                    streamPool.offer(ss);
+                } else {
+                    ss.close();
+                }
+            }
+        }
         return buffer;
     }
 
@@ -510,7 +581,7 @@ public class TDFReader {
             double binSize = (genome.getNominalLength() / 1000) / binCount;
             Accumulator[][] accumulators = new Accumulator[nTracks][binCount];
 
-            for (String chrName : genome.getLongChromosomeNames()) {
+            for (String chrName : genome.getWholeGenomeSummaryChromosomeNames()) {
 
                 TDFDataset chrDataset = getDataset(chrName, 0, wf);
                 if(chrDataset == null) continue;
@@ -0,0 +1,222 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.tdf;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of decoded tiles shared by all TDF readers,  keyed by file, dataset, and tile number.  Tiles hold their data
+ * in primitive arrays;  the cache is bounded by an estimate of the memory used by those arrays rather than by a
+ * tile count,  so a session with many tracks does not multiply the footprint.  Least-recently used tiles are evicted
+ * first.
+ */
+public class TDFTileCache {
+
+    private static final double DEFAULT_MEMORY_FRACTION = 0.1;
+
+    /**
+     * Estimated cost of a cache entry, excluding tile data
+     */
+    private static final int ENTRY_OVERHEAD = 100;
+
+    private static TDFTileCache instance;
+
+    private long maxMemory;
+    private long currentMemory = 0;
+    private final LinkedHashMap<TileKey, Entry> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public static synchronized TDFTileCache getInstance() {
+        if (instance == null) {
+            instance = new TDFTileCache((long) (DEFAULT_MEMORY_FRACTION * Runtime.getRuntime().maxMemory()));
+        }
+        return instance;
+    }
+
+    TDFTileCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    public synchronized void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+        evict();
+    }
+
+    /**
+     * Return tile t of the dataset,  reading and decoding it if it is not cached.  May return null for
+     * empty tiles.
+     *
+     * @param ds
+     * @param t
+     * @return
+     */
+    public TDFTile getTile(TDFDataset ds, int t) {
+
+        TileKey key = new TileKey(ds.reader.getPath(), ds.getName(), t);
+
+        synchronized (this) {
+            Entry entry = tiles.get(key);
+            if (entry != null) {
+                hitCount++;
+                return entry.tile;
+            }
+            missCount++;
+        }
+
+        // Read outside the lock so tiles for different datasets and files load concurrently
+        TDFTile tile = ds.reader.readTile(ds, t);
+        long cost = estimateSize(tile, ds.reader.getTrackNames().length);
+
+        synchronized (this) {
+            Entry previous = tiles.put(key, new Entry(tile, cost));
+            if (previous != null) {
+                currentMemory -= previous.cost;
+            }
+            currentMemory += cost;
+            evict();
+        }
+        return tile;
+    }
+
+    /**
+     * Remove all tiles of the dataset
+     */
+    public synchronized void remove(TDFDataset ds) {
+        String path = ds.reader.getPath();
+        String name = ds.getName();
+        Iterator<Map.Entry<TileKey, Entry>> iter = tiles.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<TileKey, Entry> e = iter.next();
+            if (e.getKey().path.equals(path) && e.getKey().dataset.equals(name)) {
+                currentMemory -= e.getValue().cost;
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all tiles of the file
+     */
+    public synchronized void remove(String path) {
+        Iterator<Map.Entry<TileKey, Entry>> iter = tiles.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<TileKey, Entry> e = iter.next();
+            if (e.getKey().path.equals(path)) {
+                currentMemory -= e.getValue().cost;
+                iter.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+        currentMemory = 0;
+    }
+
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    public synchronized long getMemoryEstimate() {
+        return currentMemory;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private void evict() {
+        // Iteration order is least-recently accessed first.  Always keep the most recent tile.
+        Iterator<Map.Entry<TileKey, Entry>> iter = tiles.entrySet().iterator();
+        while (currentMemory > maxMemory && tiles.size() > 1 && iter.hasNext()) {
+            Map.Entry<TileKey, Entry> e = iter.next();
+            currentMemory -= e.getValue().cost;
+            iter.remove();
+        }
+    }
+
+    /**
+     * Estimate the memory used by a tile's arrays:  start and end positions,  one float per track per position,  and
+     * names if present.
+     */
+    static long estimateSize(TDFTile tile, int nTracks) {
+        if (tile == null) {
+            return ENTRY_OVERHEAD;
+        }
+        long size = tile.getSize();
+        long bytes = ENTRY_OVERHEAD + size * (8 + 4L * nTracks);
+        if (tile.getNames() != null) {
+            bytes += size * 50;
+        }
+        return bytes;
+    }
+
+    private static class Entry {
+        final TDFTile tile;
+        final long cost;
+
+        Entry(TDFTile tile, long cost) {
+            this.tile = tile;
+            this.cost = cost;
+        }
+    }
+
+    private static class TileKey {
+        final String path;
+        final String dataset;
+        final int tileNumber;
+
+        TileKey(String path, String dataset, int tileNumber) {
+            this.path = path;
+            this.dataset = dataset;
+            this.tileNumber = tileNumber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TileKey tileKey = (TileKey) o;
+            return tileNumber == tileKey.tileNumber &&
+                    path.equals(tileKey.path) &&
+                    dataset.equals(tileKey.dataset);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, dataset, tileNumber);
+        }
+    }
+}
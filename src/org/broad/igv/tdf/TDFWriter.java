@@ -66,7 +66,7 @@ public class TDFWriter {
     Map<String, IndexEntry> groupIndex = new LinkedHashMap();
     long indexPositionPosition;
     boolean compressed;
-    private final CompressionUtils compressionUtils;
+    private static final ThreadLocal<CompressionUtils> compressionUtils = ThreadLocal.withInitial(CompressionUtils::new);
 
     public TDFWriter(File f,
                      String genomeId,
@@ -101,8 +101,6 @@ public class TDFWriter {
             log.error("Error opening output stream to file: " + file, ex);
             throw new DataLoadException("Error creating file", "" + file);
         }
-
-        compressionUtils = new CompressionUtils();
     }
 
     private void writeHeader(String genomeId,
@@ -238,6 +236,31 @@ public class TDFWriter {
     // Tile layout
 
     public void writeTile(String dsId, int tileNumber, TDFTile tile) throws IOException {
+        writeEncodedTile(dsId, tileNumber, encodeTile(tile));
+    }
+
+    /**
+     * Serialize the tile,  and compress it if this file is compressed.  This does not touch the output stream and
+     * is safe to call from any thread,  so tiles can be encoded in parallel and written in order
+     * with {@link #writeEncodedTile(String, int, byte[])}.
+     *
+     * @param tile
+     * @return the tile bytes as they will appear in the file
+     */
+    public byte[] encodeTile(TDFTile tile) throws IOException {
+        BufferedByteWriter buffer = new BufferedByteWriter();
+        tile.writeTo(buffer);
+        byte[] bytes = buffer.getBytes();
+        if (compressed) {
+            bytes = compressionUtils.get().compress(bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Write a tile previously encoded with {@link #encodeTile(TDFTile)}.
+     */
+    public void writeEncodedTile(String dsId, int tileNumber, byte[] bytes) throws IOException {
 
         TDFDataset dataset = datasetCache.get(dsId);
         if (dataset == null) {
@@ -248,22 +271,8 @@ public class TDFWriter {
 
         if (tileNumber < dataset.tilePositions.length) {
             dataset.tilePositions[tileNumber] = pos;
-
-            // Write the tile contents to a byte buffer first,  so we can optionally gzip it
-
-
-            BufferedByteWriter buffer = new BufferedByteWriter();
-            tile.writeTo(buffer);
-
-            byte[] bytes = buffer.getBytes();
-            if (compressed) {
-                bytes = compressionUtils.compress(bytes);
-            }
-
             write(bytes);
-            int nBytes = bytes.length;
-
-            dataset.tileSizes[tileNumber] = nBytes;
+            dataset.tileSizes[tileNumber] = bytes.length;
         } else {
             // The occasional tile number == tile array size is expected, but tile
             // numbers larger than that are not
@@ -38,10 +38,14 @@ import org.broad.igv.tools.parsers.DataConsumer;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Class to compute coverage on an alignment or feature file.  This class is designed to be instantiated and executed
- * from a single thread.
+ * from a single thread,  which may count indexed files using a pool of worker threads.
  */
 public class CoverageCounter {
 
@@ -152,7 +156,6 @@ public class CoverageCounter {
      */
     private float[] buffer;
 
-    private final static Set<Byte> nucleotidesKeep = new HashSet<Byte>();
     public static final byte DEL = 126;
     public static final byte INS = 127;
     private final static byte[] nucleotides = new byte[]{'A', 'C', 'G', 'T', 'N', DEL, INS};
@@ -162,12 +165,23 @@ public class CoverageCounter {
      */
     private boolean writeStdOut;
 
+    /**
+     * Index of each nucleotide in {@code nucleotides},  -1 for bytes that are not counted
+     */
+    private final static int[] nucleotideIndex = new int[256];
+
     static {
-        for (byte b : nucleotides) {
-            nucleotidesKeep.add(b);
+        Arrays.fill(nucleotideIndex, -1);
+        for (int i = 0; i < nucleotides.length; i++) {
+            nucleotideIndex[nucleotides[i] & 0xFF] = i;
         }
     }
 
+    /**
+     * Number of threads used to count indexed files
+     */
+    private int nThreads = Runtime.getRuntime().availableProcessors();
+
     /**
      * @param alignmentFile - path to the file to count
      * @param consumer      - the data consumer, in this case a TDF preprocessor
@@ -272,6 +286,10 @@ public class CoverageCounter {
     /**
      * Parse and "count" the alignment file.  The main method.
      * <p/>
+     * If the file is indexed and no query interval is specified chromosomes are counted concurrently,  each on its
+     * own reader,  and results are passed to the consumer in file order.  Output is identical to counting
+     * sequentially.
+     * <p/>
      * This method is not thread safe due to the use of the member variable "buffer".
      *
      * @throws IOException
@@ -283,16 +301,63 @@ public class CoverageCounter {
         int tolerance = (int) (windowSize * (Math.floor(maxExtFactor / windowSize) + 2));
         consumer.setSortTolerance(tolerance);
 
+        WigWriter wigWriter = null;
+        if (wigFile != null || writeStdOut) {
+            wigWriter = new WigWriter(wigFile, windowSize);
+        }
+        final WigWriter wig = wigWriter;
+        WindowSink sink = (chr, start, end, data) -> {
+            consumer.addData(chr, start, end, data, null);
+            if (wig != null) {
+                wig.addData(chr, start, end, data);
+            }
+        };
+
+        try {
+
+            List<String> sequenceNames = null;
+            if (queryInterval == null && nThreads > 1) {
+                AlignmentReader reader = AlignmentReaderFactory.getReader(alignmentFile, false);
+                try {
+                    if (reader.hasIndex()) {
+                        sequenceNames = reader.getSequenceNames();
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+
+            if (sequenceNames != null) {
+                totalCount = countParallel(sequenceNames, tolerance, sink);
+            } else {
+                totalCount = countSequential(tolerance, sink);
+            }
+
+            consumer.setAttribute("totalCount", String.valueOf(totalCount));
+            consumer.parsingComplete();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (wigWriter != null) {
+                wigWriter.close();
+            }
+        }
+    }
+
+    /**
+     * Count the file,  or query interval,  from a single iterator.
+     *
+     * @return the number of alignments counted
+     */
+    private int countSequential(int tolerance, WindowSink sink) throws IOException {
+
         AlignmentReader reader = null;
         CloseableIterator<Alignment> iter = null;
 
         String lastChr = "";
         ReadCounter counter = null;
-
-        WigWriter wigWriter = null;
-        if (wigFile != null || writeStdOut) {
-            wigWriter = new WigWriter(wigFile, windowSize);
-        }
+        int count = 0;
 
         try {
 
@@ -306,179 +371,230 @@ public class CoverageCounter {
 
             while (iter != null && iter.hasNext()) {
                 Alignment alignment = iter.next();
-                if (passFilter(alignment)) {
-                    //Sort into the read strand or first-in-pair strand,
-                    //depending on input flag. Note that this can
-                    //be very unreliable depending on data
-                    Strand strand;
-                    if (firstInPair) {
-                        strand = alignment.getFirstOfPairStrand();
-                    } else if (secondInPair) {
-                        strand = alignment.getSecondOfPairStrand();
-                    } else {
-                        strand = alignment.getReadStrand();
+                Strand strand = getCountStrand(alignment);
+                if (strand == null) {
+                    continue;
+                }
+
+                count++;
+
+                String alignmentChr = alignment.getChr();
+
+                // Close all counters with position < alignment.getStart()
+                if (alignmentChr.equals(lastChr)) {
+                    if (counter != null) {
+                        counter.closeBucketsBefore(alignment.getAlignmentStart() - tolerance);
                     }
-                    if (strand.equals(Strand.NONE)) {
-                        //TODO move this into passFilter, or move passFilter here
-                        continue;
+                } else {  // New chromosome
+                    if (counter != null) {
+                        counter.closeBucketsBefore(Integer.MAX_VALUE);
                     }
-                    boolean readNegStrand = alignment.isNegativeStrand();
+                    counter = new ReadCounter(alignmentChr, sink);
+                    lastChr = alignmentChr;
+                }
 
-                    totalCount++;
+                countAlignment(alignment, strand, counter);
+            }
 
-                    String alignmentChr = alignment.getChr();
+        } finally {
 
-                    // Close all counters with position < alignment.getStart()
-                    if (alignmentChr.equals(lastChr)) {
-                        if (counter != null) {
-                            counter.closeBucketsBefore(alignment.getAlignmentStart() - tolerance, wigWriter);
-                        }
-                    } else {  // New chromosome
-                        if (counter != null) {
-                            counter.closeBucketsBefore(Integer.MAX_VALUE, wigWriter);
-                        }
-                        counter = new ReadCounter(alignmentChr);
-                        lastChr = alignmentChr;
-                    }
+            if (counter != null) {
+                counter.closeBucketsBefore(Integer.MAX_VALUE);
+            }
+            if (iter != null) {
+                iter.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        return count;
+    }
 
-                    AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
-
-                    if (blocks != null && !pairedCoverage) {
-                        for (AlignmentBlock block : blocks) {
-
-                            if (!block.isSoftClipped()) {
-
-                                int blockStart = block.getStart();
-                                int blockEnd = block.getEnd();
-
-
-                                int adjustedStart = block.getStart();
-                                int adjustedEnd = block.getEnd();
-
-
-                                if (preExtFactor > 0) {
-                                    if (readNegStrand) {
-                                        adjustedEnd = blockEnd + preExtFactor;
-                                    } else {
-                                        adjustedStart = Math.max(0, blockStart - preExtFactor);
-                                    }
-                                }
-
-                                // If both postExtFactor and extFactor are specified, postExtFactor takes precedence
-                                if (postExtFactor > 0) {
-                                    if (readNegStrand) {
-                                        adjustedStart = Math.max(0, blockEnd - postExtFactor);
-                                    } else {
-                                        adjustedEnd = blockStart + postExtFactor;
-                                    }
-
-                                } else if (extFactor > 0) {
-                                    // Standard extension option -- extend read on 3' end
-                                    if (readNegStrand) {
-                                        adjustedStart = Math.max(0, adjustedStart - extFactor);
-                                    } else {
-                                        adjustedEnd += extFactor;
-                                    }
-                                }
-
-
-                                if (queryInterval != null) {
-                                    adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
-                                    adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
-                                }
-
-                                byte[] bases = block.getBases();
-                                for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
-                                    byte base = 0;
-                                    int baseIdx = pos - blockStart;
-                                    if (bases != null && baseIdx >= 0 && baseIdx < bases.length) {
-                                        base = bases[baseIdx];
-                                    }
-                                    //int idx = pos - blockStart;
-                                    //byte quality = (idx >= 0 && idx < block.qualities.length) ?
-                                    //block.qualities[pos - blockStart] : (byte) 0;
-                                    counter.incrementCount(pos, base, strand);
-                                }
-                            }
-                        }
+    /**
+     * Count each chromosome on a separate thread.  Counted windows are passed back in batches through a bounded queue
+     * per chromosome,  which are drained in order.  Chromosomes are submitted in order to a FIFO pool,  so the
+     * chromosome being drained is always running and the bounded queues cannot deadlock.
+     *
+     * @return the number of alignments counted
+     */
+    private int countParallel(List<String> sequenceNames, int tolerance, WindowSink sink) throws Exception {
 
-                        final AlignmentBlock[] insertions = alignment.getInsertions();
-                        if (insertions != null) {
-                            for (AlignmentBlock insBlock : insertions) {
-                                int pos = insBlock.getStart();
-                                if (queryInterval == null || (pos >= queryInterval.getStart() && pos <= queryInterval.getEnd()))
-                                    counter.incrementInsertion(pos, strand);
-                            }
-                        }
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads, r -> {
+            Thread t = new Thread(r, "Coverage counter");
+            t.setDaemon(true);
+            return t;
+        });
 
-                        // Count deletions
-                        List<Gap> gaps = alignment.getGaps();
-                        if (gaps != null) {
-                            for (Gap gap : gaps) {
-                                if (gap.getType() == SAMAlignment.DELETION) {
-                                    int adjustedStart = gap.getStart();
-                                    int adjustedEnd = gap.getStart() + gap.getnBases();
-                                    if (queryInterval != null) {
-                                        adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
-                                        adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
-                                    }
-                                    for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
-                                        counter.incrementDeletion(pos, strand);
-                                    }
-                                }
-                            }
-                        }
+        int count = 0;
+        try {
+            List<ChromosomeTask> tasks = new ArrayList<>(sequenceNames.size());
+            for (String chr : sequenceNames) {
+                ChromosomeTask task = new ChromosomeTask(chr, tolerance);
+                tasks.add(task);
+                executor.execute(task);
+            }
 
+            for (ChromosomeTask task : tasks) {
+                WindowBatch batch;
+                while ((batch = task.queue.take()) != WindowBatch.END) {
+                    batch.drainTo(sink, buffer);
+                }
+                if (task.error != null) {
+                    throw task.error;
+                }
+                count += task.count;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return count;
+    }
 
-                    } else {
-                        int adjustedStart = alignment.getAlignmentStart();
-                        int adjustedEnd = pairedCoverage ?
-                                adjustedStart + Math.abs(alignment.getInferredInsertSize()) :
-                                alignment.getAlignmentEnd();
+    /**
+     * Return the strand to count the alignment on,  or null if the alignment is filtered.
+     */
+    private Strand getCountStrand(Alignment alignment) {
+
+        if (!passFilter(alignment)) {
+            return null;
+        }
+
+        //Sort into the read strand or first-in-pair strand,
+        //depending on input flag. Note that this can
+        //be very unreliable depending on data
+        Strand strand;
+        if (firstInPair) {
+            strand = alignment.getFirstOfPairStrand();
+        } else if (secondInPair) {
+            strand = alignment.getSecondOfPairStrand();
+        } else {
+            strand = alignment.getReadStrand();
+        }
+        return strand.equals(Strand.NONE) ? null : strand;
+    }
+
+    private void countAlignment(Alignment alignment, Strand strand, ReadCounter counter) {
+
+        boolean readNegStrand = alignment.isNegativeStrand();
+
+        AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
 
+        if (blocks != null && !pairedCoverage) {
+            for (AlignmentBlock block : blocks) {
+
+                if (!block.isSoftClipped()) {
+
+                    int blockStart = block.getStart();
+                    int blockEnd = block.getEnd();
+
+
+                    int adjustedStart = block.getStart();
+                    int adjustedEnd = block.getEnd();
+
+
+                    if (preExtFactor > 0) {
+                        if (readNegStrand) {
+                            adjustedEnd = blockEnd + preExtFactor;
+                        } else {
+                            adjustedStart = Math.max(0, blockStart - preExtFactor);
+                        }
+                    }
+
+                    // If both postExtFactor and extFactor are specified, postExtFactor takes precedence
+                    if (postExtFactor > 0) {
+                        if (readNegStrand) {
+                            adjustedStart = Math.max(0, blockEnd - postExtFactor);
+                        } else {
+                            adjustedEnd = blockStart + postExtFactor;
+                        }
+
+                    } else if (extFactor > 0) {
+                        // Standard extension option -- extend read on 3' end
                         if (readNegStrand) {
                             adjustedStart = Math.max(0, adjustedStart - extFactor);
                         } else {
                             adjustedEnd += extFactor;
                         }
+                    }
+
+
+                    if (queryInterval != null) {
+                        adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
+                        adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
+                    }
+
+                    byte[] bases = block.getBases();
+                    for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
+                        byte base = 0;
+                        int baseIdx = pos - blockStart;
+                        if (bases != null && baseIdx >= 0 && baseIdx < bases.length) {
+                            base = bases[baseIdx];
+                        }
+                        //int idx = pos - blockStart;
+                        //byte quality = (idx >= 0 && idx < block.qualities.length) ?
+                        //block.qualities[pos - blockStart] : (byte) 0;
+                        counter.incrementCount(pos, base, strand);
+                    }
+                }
+            }
 
+            final AlignmentBlock[] insertions = alignment.getInsertions();
+            if (insertions != null) {
+                for (AlignmentBlock insBlock : insertions) {
+                    int pos = insBlock.getStart();
+                    if (queryInterval == null || (pos >= queryInterval.getStart() && pos <= queryInterval.getEnd()))
+                        counter.incrementInsertion(pos, strand);
+                }
+            }
+
+            // Count deletions
+            List<Gap> gaps = alignment.getGaps();
+            if (gaps != null) {
+                for (Gap gap : gaps) {
+                    if (gap.getType() == SAMAlignment.DELETION) {
+                        int adjustedStart = gap.getStart();
+                        int adjustedEnd = gap.getStart() + gap.getnBases();
                         if (queryInterval != null) {
                             adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
                             adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
                         }
-
-
                         for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
-                            counter.incrementCount(pos, (byte) 'N', strand);
+                            counter.incrementDeletion(pos, strand);
                         }
                     }
-
                 }
-
             }
-            consumer.setAttribute("totalCount", String.valueOf(totalCount));
-            consumer.parsingComplete();
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
 
-            if (counter != null) {
-                counter.closeBucketsBefore(Integer.MAX_VALUE, wigWriter);
-            }
-            if (iter != null) {
-                iter.close();
-            }
-            if (reader != null) {
-                reader.close();
+        } else {
+            int adjustedStart = alignment.getAlignmentStart();
+            int adjustedEnd = pairedCoverage ?
+                    adjustedStart + Math.abs(alignment.getInferredInsertSize()) :
+                    alignment.getAlignmentEnd();
+
+            if (readNegStrand) {
+                adjustedStart = Math.max(0, adjustedStart - extFactor);
+            } else {
+                adjustedEnd += extFactor;
             }
-            if (wigWriter != null) {
-                wigWriter.close();
+
+            if (queryInterval != null) {
+                adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
+                adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
             }
 
+
+            for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
+                counter.incrementCount(pos, (byte) 'N', strand);
+            }
         }
     }
 
+    public void setThreads(int nThreads) {
+        this.nThreads = nThreads;
+    }
+
 
     /**
      * The names of tracks which will be created by this parser
@@ -520,16 +636,65 @@ public class CoverageCounter {
         this.writeStdOut = writeStdOut;
     }
 
+    /**
+     * Receives counted windows.  The data array is reused between calls.
+     */
+    interface WindowSink {
+        void addData(String chr, int start, int end, float[] data);
+    }
+
+    /**
+     * Counts for the open windows of a chromosome.  Windows are held in a ring of primitive arrays indexed by window
+     * number,  starting at the first window not yet closed.  The ring grows if alignments span more windows than
+     * it holds,  which is bounded by the sort tolerance plus the read length.
+     */
     class ReadCounter {
 
         String chr;
+        WindowSink sink;
+        float[] data;
+        int chrLength = -1;
+
+        int capacity;
+        int mask;
+        int firstWindow = 0;    // Lowest open window
+        int lastWindow = -1;    // Highest touched window,  < firstWindow if none are open
+
+        boolean[] touched;
+        int[] totalCounts;
+        int[] strandCounts;     // capacity * NUM_STRANDS
+        int[] baseCounts;       // capacity * NUM_STRANDS * nucleotides.length
+
         /**
-         * Map of window index -> counter
+         * Windows touched after they were closed.  Should not happen if the tolerance is correct,  but are
+         * retained and output at the next close as before.
          */
-        TreeMap<Integer, Counter> counts = new TreeMap<Integer, Counter>();
+        TreeMap<Integer, Counter> lateCounts;
 
-        ReadCounter(String chr) {
+        ReadCounter(String chr, WindowSink sink) {
             this.chr = chr;
+            this.sink = sink;
+            this.data = new float[buffer.length];
+            if (genome != null) {
+                Chromosome chromosome = genome.getChromosome(chr);
+                if (chromosome != null) {
+                    chrLength = chromosome.getLength();
+                }
+            }
+            allocate(64);
+        }
+
+        private void allocate(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            touched = new boolean[capacity];
+            totalCounts = new int[capacity];
+            if (outputSeparate) {
+                strandCounts = new int[capacity * NUM_STRANDS];
+            }
+            if (outputBases) {
+                baseCounts = new int[capacity * NUM_STRANDS * nucleotides.length];
+            }
         }
 
         /**
@@ -538,40 +703,109 @@ public class CoverageCounter {
          * @param strand   - which strand to increment count. Should be POSITIVE or NEGATIVE
          */
         void incrementCount(int position, byte base, Strand strand) {
-            final Counter counter = getCounterForPosition(position);
+            int window = position / windowSize;
             int strandNum = strand.equals(Strand.POSITIVE) ? 0 : 1;
-            counter.increment(base, strandNum);
+            if (window < firstWindow && lastWindow >= firstWindow) {
+                getLateCounter(window).increment(base, strandNum);
+                return;
+            }
+            int slot = getSlot(window);
+            if (outputBases) {
+                incrementNucleotide(slot, base, strandNum);
+            }
+            if (outputSeparate) {
+                strandCounts[slot * NUM_STRANDS + strandNum]++;
+            }
+            totalCounts[slot]++;
         }
 
         void incrementDeletion(int position, Strand strand) {
-            final Counter counter = getCounterForPosition(position);
-            int strandNum = strand.equals(Strand.POSITIVE) ? 0 : 1;
-            if (outputBases) {
-                counter.incrementNucleotide(DEL, strandNum);
-            }
+            incrementNucleotide(position, DEL, strand);
         }
 
         void incrementInsertion(int position, Strand strand) {
             // Insertions are between 2 bases, we increment the counter for the position preceding the insertion
-            final Counter counter = getCounterForPosition(position-1);
+            incrementNucleotide(position - 1, INS, strand);
+        }
+
+        private void incrementNucleotide(int position, byte base, Strand strand) {
+            int window = position / windowSize;
             int strandNum = strand.equals(Strand.POSITIVE) ? 0 : 1;
+            if (window < firstWindow && lastWindow >= firstWindow) {
+                Counter counter = getLateCounter(window);
+                if (outputBases) {
+                    counter.incrementNucleotide(base, strandNum);
+                }
+                return;
+            }
+            int slot = getSlot(window);
             if (outputBases) {
-                counter.incrementNucleotide(INS, strandNum);
+                incrementNucleotide(slot, base, strandNum);
             }
+        }
 
+        private void incrementNucleotide(int slot, byte base, int strandNum) {
+            int baseIdx = nucleotideIndex[base & 0xFF];
+            if (baseIdx >= 0) {
+                baseCounts[(slot * NUM_STRANDS + strandNum) * nucleotides.length + baseIdx]++;
+            }
         }
 
+        private Counter getLateCounter(int window) {
+            if (lateCounts == null) {
+                lateCounts = new TreeMap<>();
+            }
+            Counter counter = lateCounts.get(window);
+            if (counter == null) {
+                counter = new Counter();
+                lateCounts.put(window, counter);
+            }
+            return counter;
+        }
 
-        private Counter getCounterForPosition(int position) {
-            int idx = position / windowSize;
-            return getCounter(idx);
+        /**
+         * Return the ring slot for the window,  marking it touched.
+         */
+        private int getSlot(int window) {
+            if (lastWindow < firstWindow) {
+                // No open windows,  start the ring here
+                firstWindow = window;
+                lastWindow = window;
+            } else if (window >= firstWindow + capacity) {
+                grow(window - firstWindow + 1);
+            }
+            if (window > lastWindow) {
+                lastWindow = window;
+            }
+            int slot = window & mask;
+            touched[slot] = true;
+            return slot;
         }
 
-        private Counter getCounter(int idx) {
-            if (!counts.containsKey(idx)) {
-                counts.put(idx, new Counter());
+        private void grow(int minCapacity) {
+            int newCapacity = capacity;
+            while (newCapacity < minCapacity) newCapacity *= 2;
+
+            boolean[] oldTouched = touched;
+            int[] oldTotals = totalCounts;
+            int[] oldStrands = strandCounts;
+            int[] oldBases = baseCounts;
+            int oldMask = mask;
+            allocate(newCapacity);
+
+            int nb = nucleotides.length;
+            for (int w = firstWindow; w <= lastWindow; w++) {
+                int from = w & oldMask;
+                int to = w & mask;
+                touched[to] = oldTouched[from];
+                totalCounts[to] = oldTotals[from];
+                if (outputSeparate) {
+                    System.arraycopy(oldStrands, from * NUM_STRANDS, strandCounts, to * NUM_STRANDS, NUM_STRANDS);
+                }
+                if (outputBases) {
+                    System.arraycopy(oldBases, from * NUM_STRANDS * nb, baseCounts, to * NUM_STRANDS * nb, NUM_STRANDS * nb);
+                }
             }
-            return counts.get(idx);
         }
 
 
@@ -581,132 +815,108 @@ public class CoverageCounter {
          *
          * @param position - genomic position
          */
-        void closeBucketsBefore(int position, WigWriter wigWriter) {
-            List<Integer> bucketsToClose = new ArrayList<Integer>();
+        void closeBucketsBefore(int position) {
 
             int bucket = position / windowSize;
-            for (Map.Entry<Integer, Counter> entry : counts.entrySet()) {
-                if (entry.getKey() < bucket) {
-
-                    // Divide total count by window size.  This is the average count per
-                    // base over the window,  so for example 30x coverage remains 30x irrespective of window size.
-                    int bucketStartPosition = entry.getKey() * windowSize;
-                    int bucketEndPosition = bucketStartPosition + windowSize;
-
-                    if (genome != null) {
-                        Chromosome chromosome = genome.getChromosome(chr);
-                        if (chromosome != null) {
-                            bucketEndPosition = Math.min(bucketEndPosition, chromosome.getLength());
-                        }
-                    }
-                    int bucketSize = bucketEndPosition - bucketStartPosition;
-
-                    final Counter counter = entry.getValue();
 
-                    int col = 0;
-
-                    //Not outputting base info, just totals
-                    if (!outputBases) {
-                        if (outputSeparate) {
-                            //Output strand specific information, if applicable
-                            for (int strandNum : output_strands) {
-                                buffer[col] = ((float) counter.getCount(strandNum)) / bucketSize;
-                                col++;
-                            }
+            if (lateCounts != null) {
+                Iterator<Map.Entry<Integer, Counter>> iter = lateCounts.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<Integer, Counter> entry = iter.next();
+                    if (entry.getKey() >= bucket) break;
+                    Counter c = entry.getValue();
+                    output(entry.getKey(), c.totalCount, c.strandCount, 0, c.baseCounts, 0);
+                    iter.remove();
+                }
+            }
 
-                        } else {
-                            buffer[col] = ((float) counter.getTotalCounts()) / bucketSize;
-                            col++;
-                        }
+            if (lastWindow < firstWindow || bucket <= firstWindow) {
+                return;
+            }
 
-                        //Output counts of each base
-                    } else {
-                        if (outputSeparate) {
-                            for (int strandNum : output_strands) {
-                                for (byte base : nucleotides) {
-                                    buffer[col] = ((float) counter.getBaseCount(base, strandNum)) / bucketSize;
-                                    col++;
-                                }
-                            }
-                        } else {
-                            for (byte base : nucleotides) {
-                                buffer[col] = ((float) counter.getBaseCount(base)) / bucketSize;
-                                col++;
-                            }
-                        }
+            int nb = nucleotides.length;
+            int end = Math.min(bucket, lastWindow + 1);
+            for (int w = firstWindow; w < end; w++) {
+                int slot = w & mask;
+                if (touched[slot]) {
+                    output(w, totalCounts[slot], strandCounts, slot * NUM_STRANDS, baseCounts, slot * NUM_STRANDS * nb);
+                    touched[slot] = false;
+                    totalCounts[slot] = 0;
+                    if (outputSeparate) {
+                        Arrays.fill(strandCounts, slot * NUM_STRANDS, (slot + 1) * NUM_STRANDS, 0);
                     }
+                    if (outputBases) {
+                        Arrays.fill(baseCounts, slot * NUM_STRANDS * nb, (slot + 1) * NUM_STRANDS * nb, 0);
+                    }
+                }
+            }
+            firstWindow = end;
+        }
 
+        private void output(int window, int total, int[] strands, int strandOffset, int[] bases, int baseOffset) {
 
-                    consumer.addData(chr, bucketStartPosition, bucketEndPosition, buffer, null);
-
-                    if (wigWriter != null) {
-                        wigWriter.addData(chr, bucketStartPosition, bucketEndPosition, buffer);
+            // Divide total count by window size.  This is the average count per
+            // base over the window,  so for example 30x coverage remains 30x irrespective of window size.
+            int bucketStartPosition = window * windowSize;
+            int bucketEndPosition = bucketStartPosition + windowSize;
+            if (chrLength >= 0) {
+                bucketEndPosition = Math.min(bucketEndPosition, chrLength);
+            }
+            int bucketSize = bucketEndPosition - bucketStartPosition;
+
+            int nb = nucleotides.length;
+            int col = 0;
+
+            //Not outputting base info, just totals
+            if (!outputBases) {
+                if (outputSeparate) {
+                    //Output strand specific information, if applicable
+                    for (int strandNum : output_strands) {
+                        data[col] = ((float) strands[strandOffset + strandNum]) / bucketSize;
+                        col++;
                     }
 
-
-                    bucketsToClose.add(entry.getKey());
+                } else {
+                    data[col] = ((float) total) / bucketSize;
+                    col++;
                 }
-            }
 
-            for (Integer key : bucketsToClose) {
-                counts.remove(key);
+                //Output counts of each base
+            } else {
+                if (outputSeparate) {
+                    for (int strandNum : output_strands) {
+                        for (int b = 0; b < nb; b++) {
+                            data[col] = ((float) bases[baseOffset + strandNum * nb + b]) / bucketSize;
+                            col++;
+                        }
+                    }
+                } else {
+                    for (int b = 0; b < nb; b++) {
+                        int count = 0;
+                        for (int strandNum = 0; strandNum < NUM_STRANDS; strandNum++) {
+                            count += bases[baseOffset + strandNum * nb + b];
+                        }
+                        data[col] = ((float) count) / bucketSize;
+                        col++;
+                    }
+                }
             }
 
-
+            sink.addData(chr, bucketStartPosition, bucketEndPosition, data);
         }
 
     }
 
 
     /**
-     * Class for counting nucleotides and strands over an interval.
+     * Class for counting nucleotides and strands over a single window.
      */
 
     class Counter {
-        /**
-         * The total number of counts on this Counter. Will
-         * be the sum of baseCount over the second index.
-         */
-        int[] strandCount;
-        int totalCount = 0;
-        //int qualityCount = 0;
 
-        //String chr;
-        //int start;
-        //int end;
-        //byte[] ref;
-        /**
-         * The number of times a particular base has been encountered (ie # of reads of that base)
-         */
-        //int[][] baseCount = new int[NUM_STRANDS][];
-
-        private Map<Byte, Integer>[] baseTypeCounts;
-
-        Counter() {
-            //this.chr = chr;
-            //this.start = start;
-            //this.end = end;
-
-            if (outputBases) {
-                baseTypeCounts = new HashMap[NUM_STRANDS];
-                for (int ii = 0; ii < NUM_STRANDS; ii++) {
-                    baseTypeCounts[ii] = new HashMap<Byte, Integer>();
-                }
-            }
-
-            if (outputSeparate) {
-                strandCount = new int[NUM_STRANDS];
-            }
-        }
-
-
-        int getCount(int strand) {
-            return strandCount[strand];
-        }
-
-        public int getTotalCounts() {
-            return totalCount;
-        }
+        int totalCount = 0;
+        int[] strandCount = new int[NUM_STRANDS];
+        int[] baseCounts = new int[NUM_STRANDS * nucleotides.length];
 
         void increment(byte base, int strand) {
 
@@ -726,32 +936,167 @@ public class CoverageCounter {
          *
          * @param base   65, 67, 71, 84, 78, 126, 127
          *               aka A, C, G, T, N, deletion, insertion.
-         *               Anything else is stored as 0
+         *               Anything else is ignored
          * @param strand index of strand, 0 for positive and 1 for negative
          */
-        private void incrementNucleotide(byte base, int strand) {
-            Map<Byte, Integer> btc = baseTypeCounts[strand];
-            if (!nucleotidesKeep.contains(base)) {
-                base = 0;
+        void incrementNucleotide(byte base, int strand) {
+            int baseIdx = nucleotideIndex[base & 0xFF];
+            if (baseIdx >= 0) {
+                baseCounts[strand * nucleotides.length + baseIdx]++;
             }
+        }
+    }
+
+
+    /**
+     * A batch of counted windows for one chromosome,  passed from a counting thread to the thread writing output.
+     */
+    static class WindowBatch {
+
+        static final int SIZE = 4096;
+        static final WindowBatch END = new WindowBatch(null, 0);
+
+        final String chr;
+        final int[] starts;
+        final int[] ends;
+        final float[] data;
+        final int nCols;
+        int size = 0;
+
+        WindowBatch(String chr, int nCols) {
+            this.chr = chr;
+            this.nCols = nCols;
+            this.starts = chr == null ? null : new int[SIZE];
+            this.ends = chr == null ? null : new int[SIZE];
+            this.data = chr == null ? null : new float[SIZE * nCols];
+        }
+
+        boolean isFull() {
+            return size == SIZE;
+        }
+
+        void add(int start, int end, float[] values) {
+            starts[size] = start;
+            ends[size] = end;
+            System.arraycopy(values, 0, data, size * nCols, nCols);
+            size++;
+        }
+
+        void drainTo(WindowSink sink, float[] buffer) {
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(data, i * nCols, buffer, 0, nCols);
+                sink.addData(chr, starts[i], ends[i], buffer);
+            }
+        }
+    }
+
 
-            int orig = 0;
-            if (btc.containsKey(base)) {
-                orig = btc.get(base);
+    /**
+     * Counts the alignments of one chromosome on its own reader,  queueing counted windows in batches.
+     */
+    class ChromosomeTask implements Runnable, WindowSink {
+
+        /**
+         * Maximum number of batches queued per chromosome
+         */
+        static final int MAX_QUEUED_BATCHES = 16;
+
+        final String chr;
+        final int tolerance;
+        final BlockingQueue<WindowBatch> queue = new ArrayBlockingQueue<>(MAX_QUEUED_BATCHES);
+        WindowBatch batch;
+        volatile int count = 0;
+        volatile Exception error;
+
+        ChromosomeTask(String chr, int tolerance) {
+            this.chr = chr;
+            this.tolerance = tolerance;
+        }
+
+        public void run() {
+
+            AlignmentReader reader = null;
+            CloseableIterator<Alignment> iter = null;
+            ReadCounter counter = null;
+
+            try {
+                reader = AlignmentReaderFactory.getReader(alignmentFile, true);
+                iter = reader.query(chr, 0, Integer.MAX_VALUE, false);
+
+                int n = 0;
+                while (iter != null && iter.hasNext()) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException();
+                    }
+                    Alignment alignment = iter.next();
+                    Strand strand = getCountStrand(alignment);
+                    if (strand == null) {
+                        continue;
+                    }
+
+                    n++;
+
+                    String alignmentChr = alignment.getChr();
+                    if (counter != null && alignmentChr.equals(counter.chr)) {
+                        counter.closeBucketsBefore(alignment.getAlignmentStart() - tolerance);
+                    } else {
+                        if (counter != null) {
+                            counter.closeBucketsBefore(Integer.MAX_VALUE);
+                        }
+                        counter = new ReadCounter(alignmentChr, this);
+                    }
+
+                    countAlignment(alignment, strand, counter);
+                }
+
+                if (counter != null) {
+                    counter.closeBucketsBefore(Integer.MAX_VALUE);
+                }
+                if (batch != null && batch.size > 0) {
+                    queue.put(batch);
+                }
+                count = n;
+
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                if (iter != null) {
+                    iter.close();
+                }
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        log.error("Error closing reader", e);
+                    }
+                }
+                try {
+                    queue.put(WindowBatch.END);
+                } catch (InterruptedException e) {
+                    // Output has been abandoned
+                }
             }
-            btc.put(base, orig + 1);
         }
 
-        public int getBaseCount(byte base, int strand) {
-            return baseTypeCounts[strand].containsKey(base) ? baseTypeCounts[strand].get(base) : 0;
+        public void addData(String chr, int start, int end, float[] data) {
+            if (batch == null || !batch.chr.equals(chr)) {
+                putBatch();
+                batch = new WindowBatch(chr, data.length);
+            } else if (batch.isFull()) {
+                putBatch();
+                batch = new WindowBatch(chr, data.length);
+            }
+            batch.add(start, end, data);
         }
 
-        public int getBaseCount(byte base) {
-            int count = 0;
-            for (int strand = 0; strand < NUM_STRANDS; strand++) {
-                count += getBaseCount(base, strand);
+        private void putBatch() {
+            if (batch != null && batch.size > 0) {
+                try {
+                    queue.put(batch);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
             }
-            return count;
         }
     }
 
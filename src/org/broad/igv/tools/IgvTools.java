@@ -49,6 +49,8 @@ import org.broad.igv.feature.tribble.GFFCodec;
 import org.broad.igv.feature.tribble.IGVBEDCodec;
 import org.broad.igv.feature.tribble.MUTCodec;
 import org.broad.igv.maf.MAFtoSAM;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.sam.SpliceJunctionIndex;
 import org.broad.igv.sam.reader.AlignmentIndexer;
 import org.broad.igv.tdf.TDFUtils;
 import org.broad.igv.tools.converters.BamToBed;
@@ -76,6 +78,8 @@ import htsjdk.tribble.util.LittleEndianOutputStream;
 import java.io.*;
 import java.util.*;
 
+import static org.broad.igv.prefs.Constants.SAM_JUNCTION_MIN_FLANKING_WIDTH;
+
 /**
  * Command accessories for IGV.
  *
@@ -104,6 +108,7 @@ public class IgvTools {
     static final String CMD_DISCORDANT = "discordant";
     static final String CMD_MAFTOSAM = "maftosam";
     static final String CMD_SUMWIGS = "sumwigs";
+    static final String CMD_JUNCTIONS = "junctions";
 
     /**
      * Stream for writing messages to the user, which we
@@ -130,6 +135,7 @@ public class IgvTools {
             "index   index an alignment file",
             "toTDF    convert an input file (cn, gct, wig) to tiled data format (tdf)",
             "count   compute coverage density for an alignment file",
+            "junctions  compute a splice junction index for an alignment file",
             "formatexp  center, scale, and log2 normalize an expression file",
             "gui      Start the gui",
             "help <command>     display this help message, or help on a specific command",
@@ -176,6 +182,9 @@ public class IgvTools {
     private static CmdLineParser.Option binSizeOption = null;
     private static CmdLineParser.Option outputDirOption = null;
 
+    // options for junctions
+    private static CmdLineParser.Option minFlankingWidthOption = null;
+
     // MAF to SAM
     private static CmdLineParser.Option noSATag = null;
     private static CmdLineParser.Option combineAlignments = null;
@@ -391,6 +400,11 @@ public class IgvTools {
                 int binSize = (Integer) parser.getOptionValue(binSizeOption, defaultBinSize);
                 String outputDir = (String) parser.getOptionValue(outputDirOption, null);
                 doIndex(ifile, typeString, outputDir, indexType, binSize);
+            } else if (command.equals(CMD_JUNCTIONS)) {
+                String ofile = nonOptionArgs.length > 2 ? nonOptionArgs[2] : ifile + SpliceJunctionIndex.EXTENSION;
+                int minFlankingWidth = (Integer) parser.getOptionValue(minFlankingWidthOption,
+                        PreferencesManager.getPreferences().getAsInt(SAM_JUNCTION_MIN_FLANKING_WIDTH));
+                doJunctions(ifile, ofile, minFlankingWidth);
             } else if (command.equals(CMD_FORMATEXP)) {
                 validateArgsLength(nonOptionArgs, 3, basic_syntax);
                 File inputFile = new File(nonOptionArgs[1]);
@@ -598,6 +612,10 @@ public class IgvTools {
             outputDirOption = parser.addStringOption("outputDir");
         }
 
+        if (command.equals(CMD_JUNCTIONS)) {
+            minFlankingWidthOption = parser.addIntegerOption("minFlankingWidth");
+        }
+
         if (command.equals(CMD_MAFTOSAM)) {
             // MAF to SAM
             noSATag = parser.addBooleanOption("noSATag");
@@ -1022,6 +1040,30 @@ public class IgvTools {
         indexer.finish();
     }
 
+    /**
+     * Count the splice junctions of an alignment file and write a junction index,  which IGV reads in place of
+     * counting junctions as alignments are loaded.
+     *
+     * @param ifile            coordinate sorted alignment file
+     * @param ofile            output file,  by convention the input file with extension ".sji"
+     * @param minFlankingWidth
+     */
+    public void doJunctions(String ifile, String ofile, int minFlankingWidth) throws IOException {
+
+        userMessageWriter.println("Computing splice junctions for " + ifile);
+        File outputFile = new File(ofile);
+        try {
+            SpliceJunctionIndex.create(ifile, ofile, minFlankingWidth);
+        } catch (IOException | RuntimeException e) {
+            // Delete output file as it is probably corrupt
+            if (outputFile.exists()) {
+                outputFile.delete();
+            }
+            throw e;
+        }
+        userMessageWriter.println("Wrote " + outputFile.getAbsolutePath());
+    }
+
 
     public static void writeTribbleIndex(Index idx, String idxFile) throws IOException {
         LittleEndianOutputStream stream = null;
@@ -43,6 +43,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * @author jrobinso
@@ -51,6 +54,11 @@ public class Preprocessor implements DataConsumer {
 
     private static Logger log = Logger.getLogger(Preprocessor.class);
 
+    /**
+     * Number of data points passed to the zoom levels at a time when zoom levels are computed in parallel
+     */
+    static final int BATCH_SIZE = 4096;
+
     boolean compressed = true;
     private boolean skipZeroes = false;
     private int nZoom = 7;
@@ -75,6 +83,10 @@ public class Preprocessor implements DataConsumer {
     List<String> chromosomes = new ArrayList();
     Set<String> visitedChromosomes = new HashSet();
     Map<String, String> attributes = new HashMap();
+    private int nThreads = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool pool;
+    private ZoomBatch batch;
+    private List<Future<?>> pendingTasks = new ArrayList<>();
 
     List<WindowFunction> allDataFunctions = Arrays.asList(
             WindowFunction.mean,
@@ -129,6 +141,11 @@ public class Preprocessor implements DataConsumer {
             writer = new TDFWriter(outputFile, genome.getId(), trackType, trackLine, trackNames, windowFunctions, compressed);
             nTracks = trackNames.length;
 
+            if (nThreads > 1) {
+                pool = new ForkJoinPool(nThreads);
+                batch = new ZoomBatch();
+            }
+
             // Convert genome coordinates from bp to kbp
             if (computeWholeGenome) {
                 int genomeLength = (int) (genome.getNominalLength() / 1000);
@@ -205,20 +222,30 @@ public class Preprocessor implements DataConsumer {
         // Add to raw data
         rawData.addData(start, end, data, name);
 
-        // Zoom levels
-        for (Zoom zl : zoomLevels) {
-            zl.addData(start, end, data);
-        }
-
         // Whole genome
         long offset = genome.getCumulativeOffset(chr);
         int gStart = (int) ((offset + start) / 1000);
         int gEnd = Math.max(gStart + 1, (int) ((offset + end) / 1000));
 
-
         // Don't include "chrM" in the whole genome view or stats
-        if (genomeZoom != null && !(chr.equals("chrM") || chr.equals("M") || chr.equals("MT"))) {
-            genomeZoom.addData(gStart, gEnd, data);
+        boolean includeInGenome = genomeZoom != null && !(chr.equals("chrM") || chr.equals("M") || chr.equals("MT"));
+
+        // Zoom levels
+        if (pool == null) {
+            for (Zoom zl : zoomLevels) {
+                zl.addData(start, end, data);
+            }
+            if (includeInGenome) {
+                genomeZoom.addData(gStart, gEnd, data);
+            }
+        } else {
+            batch.add(start, end, includeInGenome ? gStart : -1, gEnd, data);
+            if (batch.size == BATCH_SIZE) {
+                submitBatch();
+            }
+        }
+
+        if (includeInGenome) {
             for (int i = 0; i < data.length; i++) {
                 allDataStats.add(gEnd - gStart, data[i]);
             }
@@ -254,9 +281,7 @@ public class Preprocessor implements DataConsumer {
 
             log.info("Processing chromosome " + chr);
             if (zoomLevels != null) {
-                for (Zoom zl : zoomLevels) {
-                    zl.close();
-                }
+                closeZoomLevels(false);
             }
             if (rawData != null) {
                 rawData.close();
@@ -313,14 +338,17 @@ public class Preprocessor implements DataConsumer {
             writer.getRootGroup().setAttribute(entry.getKey(), entry.getValue());
         }
 
-        if (zoomLevels != null) {
-            for (Zoom zl : zoomLevels) {
-                zl.close();
+        try {
+            if (zoomLevels != null) {
+                closeZoomLevels(true);
+            } else if (genomeZoom != null) {
+                genomeZoom.close();
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
             }
-        }
-
-        if (genomeZoom != null) {
-            genomeZoom.close();
         }
 
         if (rawData == null) {
@@ -345,6 +373,87 @@ public class Preprocessor implements DataConsumer {
     }
 
 
+    /**
+     * Close the current chromosome's zoom levels, and optionally the whole genome zoom level, writing their
+     * remaining tiles.
+     */
+    private void closeZoomLevels(boolean includeGenome) {
+        if (pool == null) {
+            for (Zoom zl : zoomLevels) {
+                zl.close();
+            }
+            if (includeGenome && genomeZoom != null) {
+                genomeZoom.close();
+            }
+        } else {
+            submitBatch();
+            awaitZoomLevels();
+            for (Zoom zl : zoomLevels) {
+                pendingTasks.add(pool.submit(zl::close));
+            }
+            if (includeGenome && genomeZoom != null) {
+                pendingTasks.add(pool.submit(genomeZoom::close));
+            }
+            awaitZoomLevels();
+        }
+    }
+
+    /**
+     * Hand the current batch of data to the zoom levels,  one task per zoom level.  The previous batch is finished
+     * first,  so each zoom level sees its data in order,  while the parser fills the next batch.
+     */
+    private void submitBatch() {
+        awaitZoomLevels();
+        if (batch.size == 0) {
+            return;
+        }
+        final ZoomBatch b = batch;
+        batch = new ZoomBatch();
+        for (Zoom zl : zoomLevels) {
+            pendingTasks.add(pool.submit(() -> b.addTo(zl)));
+        }
+        if (genomeZoom != null) {
+            pendingTasks.add(pool.submit(() -> b.addToGenome(genomeZoom)));
+        }
+    }
+
+    /**
+     * Wait for outstanding zoom level tasks,  then write the tiles they encoded.  Tiles are written from this
+     * thread in zoom level order,  so the output does not depend on thread scheduling.
+     */
+    private void awaitZoomLevels() {
+        if (pendingTasks.isEmpty()) {
+            return;
+        }
+        try {
+            for (Future<?> f : pendingTasks) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            throw new PreprocessingException("Preprocessing interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new PreprocessingException(cause.getMessage());
+        } finally {
+            pendingTasks.clear();
+        }
+
+        try {
+            for (Zoom zl : zoomLevels) {
+                zl.writeEncodedTiles();
+            }
+            if (genomeZoom != null) {
+                genomeZoom.writeEncodedTiles();
+            }
+        } catch (IOException exc) {
+            log.error("Error writing tiles", exc);
+            throw new PreprocessingException(exc.getMessage());
+        }
+    }
+
     public void setType(String type) {
         //this.type = type;
     }
@@ -376,6 +485,14 @@ public class Preprocessor implements DataConsumer {
         this.nZoom = nZoom;
     }
 
+    /**
+     * Set the number of threads used to compute zoom levels.  Must be called before {@link #setTrackParameters}.
+     * With a single thread zoom levels are computed serially as data is added.
+     */
+    public void setThreads(int nThreads) {
+        this.nThreads = nThreads;
+    }
+
 
     /**
      * Class representing a tile of raw (as opposed to summarized) data.
@@ -544,6 +661,7 @@ public class Preprocessor implements DataConsumer {
         int tileWidth;
         LinkedHashMap<Integer, Tile> activeTiles = new LinkedHashMap();
         Map<WindowFunction, TDFDataset> datasets = new HashMap();
+        List<EncodedTile> encodedTiles;
 
 
         Zoom(String chr, int level, int chrLength) {
@@ -556,6 +674,11 @@ public class Preprocessor implements DataConsumer {
                 String dsName = "/" + chr + "/z" + level + "/" + wf.toString();
                 datasets.put(wf, writer.createDataset(dsName, TDFDataset.DataType.FLOAT, tileWidth, nTiles));
             }
+
+            // When computed on the pool, tiles are held until they can be written in order
+            if (pool != null) {
+                encodedTiles = new ArrayList<>();
+            }
         }
 
         public void addData(int start, int end, float[] data) {
@@ -580,7 +703,7 @@ public class Preprocessor implements DataConsumer {
             for (int i = startTile; i <= endTile; i++) {
                 Tile t = activeTiles.get(i);
                 if (t == null) {
-                    t = new Tile(datasets, level, i, 700, tileWidth);
+                    t = new Tile(this, i, 700, tileWidth);
                     activeTiles.put(i, t);
                 }
                 t.addData(start, end, data);
@@ -593,6 +716,81 @@ public class Preprocessor implements DataConsumer {
                 t.close();
             }
         }
+
+        /**
+         * Encode a closed tile.  Encoding, including compression, is done on the calling thread;  the write is
+         * deferred if this zoom level is computed on the pool.
+         */
+        void writeTile(String dsName, int tileNumber, TDFTile tile) {
+            try {
+                byte[] bytes = writer.encodeTile(tile);
+                if (encodedTiles == null) {
+                    writer.writeEncodedTile(dsName, tileNumber, bytes);
+                } else {
+                    encodedTiles.add(new EncodedTile(dsName, tileNumber, bytes));
+                }
+            } catch (IOException exc) {
+                log.error("Error writing tile: " + dsName + " [" + tileNumber + "]", exc);
+                throw new PreprocessingException(exc.getMessage());
+            }
+        }
+
+        void writeEncodedTiles() throws IOException {
+            if (encodedTiles != null) {
+                for (EncodedTile t : encodedTiles) {
+                    writer.writeEncodedTile(t.dsName, t.tileNumber, t.bytes);
+                }
+                encodedTiles.clear();
+            }
+        }
+    }
+
+    static class EncodedTile {
+        final String dsName;
+        final int tileNumber;
+        final byte[] bytes;
+
+        EncodedTile(String dsName, int tileNumber, byte[] bytes) {
+            this.dsName = dsName;
+            this.tileNumber = tileNumber;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * A batch of data points waiting to be added to the zoom levels.  Data arrays are copied,  as parsers may
+     * reuse them.  A genome start of -1 marks a point excluded from the whole genome zoom level.
+     */
+    class ZoomBatch {
+        int size = 0;
+        int[] starts = new int[BATCH_SIZE];
+        int[] ends = new int[BATCH_SIZE];
+        int[] genomeStarts = new int[BATCH_SIZE];
+        int[] genomeEnds = new int[BATCH_SIZE];
+        float[][] data = new float[BATCH_SIZE][];
+
+        void add(int start, int end, int gStart, int gEnd, float[] values) {
+            starts[size] = start;
+            ends[size] = end;
+            genomeStarts[size] = gStart;
+            genomeEnds[size] = gEnd;
+            data[size] = values.clone();
+            size++;
+        }
+
+        void addTo(Zoom zoom) {
+            for (int i = 0; i < size; i++) {
+                zoom.addData(starts[i], ends[i], data[i]);
+            }
+        }
+
+        void addToGenome(Zoom zoom) {
+            for (int i = 0; i < size; i++) {
+                if (genomeStarts[i] >= 0) {
+                    zoom.addData(genomeStarts[i], genomeEnds[i], data[i]);
+                }
+            }
+        }
     }
 
     /**
@@ -609,11 +807,13 @@ public class Preprocessor implements DataConsumer {
         int nonEmptyBins;
         ListAccumulator[][] accumulators;
         Map<WindowFunction, TDFDataset> datasets;
+        Zoom zoom;
 
-        Tile(Map<WindowFunction, TDFDataset> datasets, int zoomLevel, int tileNumber, int nBins, int tileWidth) {
+        Tile(Zoom zoom, int tileNumber, int nBins, int tileWidth) {
             this.totalCount = 0;
-            this.datasets = datasets;
-            this.zoomLevel = zoomLevel;
+            this.zoom = zoom;
+            this.datasets = zoom.datasets;
+            this.zoomLevel = zoom.level;
             this.tileNumber = tileNumber;
             this.tileStart = tileNumber * tileWidth;
             this.nBins = nBins;
@@ -708,13 +908,7 @@ public class Preprocessor implements DataConsumer {
                     tile = new TDFFixedTile(tileStart, tileStart, binWidth, data);
                 }
 
-                String dsName = datasets.get(wf).getName();
-                try {
-                    writer.writeTile(dsName, tileNumber, tile);
-                } catch (IOException exc) {
-                    log.error("Error writing tile: " + dsName + " [" + tileNumber + "]", exc);
-                    throw new PreprocessingException(exc.getMessage());
-                }
+                zoom.writeTile(datasets.get(wf).getName(), tileNumber, tile);
             }
         }
     }
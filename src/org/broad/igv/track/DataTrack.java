@@ -42,6 +42,7 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.renderer.DataRange;
 import org.broad.igv.renderer.DataRenderer;
 import org.broad.igv.renderer.GraphicUtils;
 import org.broad.igv.renderer.Renderer;
@@ -69,7 +70,7 @@ import java.util.List;
  * @author jrobinso
  */
 @XmlType(factoryMethod = "getNextTrack")
-public abstract class DataTrack extends AbstractTrack implements ScalableTrack, IGVEventObserver {
+public abstract class DataTrack extends AbstractTrack implements ScalableTrack, TileRenderable, IGVEventObserver {
 
     private static Logger log = Logger.getLogger(DataTrack.class);
 
@@ -174,6 +175,46 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
     }
 
 
+    /**
+     * Tiles are supported for the xy plot renderers, whose score rendering is independent of the tile position.
+     * The loaded interval is part of the key, so reloading data invalidates the tiles.  Autoscaled tracks are not
+     * tiled,  their data range follows the view and would invalidate the tiles on every pan.
+     */
+    public Object getTileKey(ReferenceFrame frame) {
+
+        DataRenderer renderer = getRenderer();
+        DataRange dataRange = getDataRange();
+        LoadedDataInterval<List<LocusScore>> interval = loadedIntervalCache.get(frame.getName());
+        if (interval == null || dataRange == null || getAutoScale() || !(renderer instanceof XYPlotRenderer) ||
+                Globals.CHR_ALL.equals(frame.getChrName())) {
+            return null;
+        }
+        return Arrays.asList(interval, renderer.getClass(), getColor(), getAltColor(), getHeight(),
+                dataRange.getMinimum(), dataRange.getBaseline(), dataRange.getMaximum(), dataRange.isLog());
+    }
+
+
+    public void renderTile(RenderContext context, Rectangle rect) {
+
+        List<LocusScore> inViewScores = getInViewScores(context.getReferenceFrame());
+        if (inViewScores != null && inViewScores.size() > 0) {
+            synchronized (inViewScores) {
+                getRenderer().renderScores(this, inViewScores, context, rect);
+            }
+        }
+    }
+
+
+    public void renderDecorations(RenderContext context, Rectangle rect) {
+
+        DataRenderer renderer = getRenderer();
+        if (context.isMerged() == false) {
+            renderer.renderAxis(this, context, rect);
+        }
+        renderer.renderBorder(this, context, rect);
+    }
+
+
     public List<LocusScore> getInViewScores(ReferenceFrame referenceFrame) {
 
         LoadedDataInterval<List<LocusScore>> interval = loadedIntervalCache.get(referenceFrame.getName());
@@ -161,7 +161,7 @@ public class FeatureCollectionSource implements FeatureSource {
         List<Feature> chrAllFeatures = new ArrayList(1000);
         int sampleLength = (int) ((double) genome.getNominalLength() / (1000 * 700));
         int lastFeaturePosition = -1;
-        for (String chr : genome.getLongChromosomeNames()) {
+        for (String chr : genome.getWholeGenomeSummaryChromosomeNames()) {
             List<Feature> features = getFeatures(chr);
             if (features != null) {
                 long offset = genome.getCumulativeOffset(chr);
@@ -139,6 +139,11 @@ public class MergedTracks extends DataTrack implements ScalableTrack {
     }
 
 
+    @Override
+    public Object getTileKey(ReferenceFrame frame) {
+        return null;
+    }
+
     @Override
     public void render(RenderContext context, Rectangle rect) {
 
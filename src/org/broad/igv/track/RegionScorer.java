@@ -0,0 +1,357 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.track;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.event.IGVEventBus;
+import org.broad.igv.event.IGVEventObserver;
+import org.broad.igv.event.StopEvent;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.ui.util.ProgressMonitor;
+import org.broad.igv.util.ResourceLocator;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes region scores for sorting and export.  Each track-by-region score is computed exactly once,  in parallel
+ * on a bounded pool,  and the results are sorted as primitives rather than by calling {@link Track#getRegionScore}
+ * from a comparator.
+ * <p/>
+ * Track data sources are not thread safe,  and tracks loaded from the same resource (e.g. the samples of a seg file)
+ * share one.  Tracks are therefore grouped by resource locator,  and the tracks of a group are scored sequentially
+ * on a single thread.
+ * <p/>
+ * A scorer caches the scores it computes,  so sorting samples and then each panel's groups by the same region
+ * computes each score once.  Create a new scorer for each sort or export so that scores reflect the current data.
+ * A {@link StopEvent} cancels scoring in progress,  and an optional {@link ProgressMonitor} receives the percentage of
+ * tracks scored.
+ */
+public class RegionScorer {
+
+    private static Logger log = Logger.getLogger(RegionScorer.class);
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(8, Math.max(2, Runtime.getRuntime().availableProcessors())), r -> {
+                Thread t = new Thread(r, "Region scorer");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * Scoring tasks in progress,  for all scorers
+     */
+    private static final Set<Future<?>> running = ConcurrentHashMap.newKeySet();
+
+    private static final IGVEventObserver stopObserver = event -> {
+        if (event instanceof StopEvent) {
+            cancelAll();
+        }
+    };
+
+    static {
+        IGVEventBus.getInstance().subscribe(StopEvent.class, stopObserver);
+    }
+
+    private final Map<RegionKey, Map<Track, Float>> cache = new HashMap<>();
+
+    public RegionScorer() {
+    }
+
+    /**
+     * Return the score of each track over the region,  in track order.  Null tracks score
+     * {@code Float.NEGATIVE_INFINITY}.
+     *
+     * @param monitor optional,  receives the percentage of tracks scored
+     * @throws CancellationException if scoring is cancelled
+     */
+    public float[] scoreTracks(List<? extends Track> tracks, Region region, RegionScoreType type,
+                               ProgressMonitor monitor) {
+        float[][] trackScores = score(tracks, Collections.singletonList(region), type, null, monitor);
+        float[] scores = new float[trackScores.length];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = trackScores[i][0];
+        }
+        return scores;
+    }
+
+    /**
+     * Return the score of each track over each region,  indexed by track and then region.  Scores that fail are
+     * reported as {@code -Float.MAX_VALUE},  the value of tracks that do not support the score type.
+     *
+     * @param tracks
+     * @param regions
+     * @param type
+     * @param overlayTracks tracks passed to {@link Track#getRegionScore} for scores computed from other tracks.
+     *                      May be null.  Scores computed with overlay tracks are not cached.
+     * @param monitor       optional,  receives the percentage of tracks scored as each track completes.  Tracks
+     *                      with cached scores count as complete from the start.
+     * @return
+     * @throws CancellationException if scoring is cancelled
+     */
+    public float[][] score(List<? extends Track> tracks,
+                           List<Region> regions,
+                           RegionScoreType type,
+                           List<Track> overlayTracks,
+                           ProgressMonitor monitor) {
+
+        final int nTracks = tracks.size();
+        final boolean useCache = overlayTracks == null;
+        float[][] scores = new float[nTracks][];
+
+        // Group tracks to be scored by the resource they were loaded from
+        Map<Object, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < nTracks; i++) {
+            Track track = tracks.get(i);
+            if (track == null) {
+                scores[i] = new float[regions.size()];
+                Arrays.fill(scores[i], Float.NEGATIVE_INFINITY);
+                continue;
+            }
+            scores[i] = useCache ? getCached(track, regions, type) : null;
+            if (scores[i] == null) {
+                ResourceLocator locator = track.getResourceLocator();
+                Object key = locator == null ? track : locator;
+                List<Integer> group = groups.get(key);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    groups.put(key, group);
+                }
+                group.add(i);
+            }
+        }
+
+        int toScore = 0;
+        for (List<Integer> group : groups.values()) {
+            toScore += group.size();
+        }
+        final AtomicInteger completed = new AtomicInteger(nTracks - toScore);
+        if (toScore > 0) {
+            fireProgress(monitor, completed.get(), nTracks);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups.values()) {
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                for (int i : group) {
+                    scores[i] = scoreTrack(tracks.get(i), regions, type, overlayTracks);
+                    if (useCache) {
+                        putCached(tracks.get(i), regions, type, scores[i]);
+                    }
+                    fireProgress(monitor, completed.incrementAndGet(), nTracks);
+                }
+                return null;
+            });
+            // Register the task before it starts,  so a cancel issued once scoring has begun always reaches it
+            futures.add(task);
+            running.add(task);
+            executor.execute(task);
+        }
+
+        try {
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        throw (CancellationException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } finally {
+            for (Future<?> f : futures) {
+                f.cancel(true);
+            }
+            running.removeAll(futures);
+        }
+        return scores;
+    }
+
+    /**
+     * Score one track over each region.  A failure is logged and scores {@code -Float.MAX_VALUE} for every region.
+     */
+    private static float[] scoreTrack(Track track, List<Region> regions, RegionScoreType type,
+                                      List<Track> overlayTracks) {
+        float[] s = new float[regions.size()];
+        try {
+            for (int r = 0; r < s.length; r++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException();
+                }
+                Region region = regions.get(r);
+                s[r] = track.getRegionScore(region.chr, region.start, region.end, region.zoom, type,
+                        region.frameName, overlayTracks);
+            }
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error computing region score for " + track.getName(), e);
+            Arrays.fill(s, -Float.MAX_VALUE);
+        }
+        return s;
+    }
+
+    private static void fireProgress(ProgressMonitor monitor, int completed, int total) {
+        if (monitor != null) {
+            // Scoring threads report concurrently,  the monitor is not thread safe
+            synchronized (monitor) {
+                monitor.fireProgress((int) (100L * completed / total));
+            }
+        }
+    }
+
+    /**
+     * Cancel scoring in progress,  for all scorers
+     */
+    public static void cancelAll() {
+        for (Future<?> f : running) {
+            f.cancel(true);
+        }
+    }
+
+    private synchronized float[] getCached(Track track, List<Region> regions, RegionScoreType type) {
+        float[] scores = new float[regions.size()];
+        for (int r = 0; r < scores.length; r++) {
+            Map<Track, Float> regionScores = cache.get(new RegionKey(regions.get(r), type));
+            Float score = regionScores == null ? null : regionScores.get(track);
+            if (score == null) return null;
+            scores[r] = score;
+        }
+        return scores;
+    }
+
+    private synchronized void putCached(Track track, List<Region> regions, RegionScoreType type, float[] scores) {
+        for (int r = 0; r < scores.length; r++) {
+            RegionKey key = new RegionKey(regions.get(r), type);
+            Map<Track, Float> regionScores = cache.get(key);
+            if (regionScores == null) {
+                // Tracks do not override equals,  so the map is keyed by identity
+                regionScores = new HashMap<>();
+                cache.put(key, regionScores);
+            }
+            regionScores.put(track, scores[r]);
+        }
+    }
+
+    /**
+     * Sort the items in descending order of score,  using the ordering of {@link Float#compare}.  The sort is
+     * stable.  Scores are packed with the item index into primitive keys, so no comparator or boxing is involved.
+     *
+     * @param items
+     * @param scores score of each item,  in item order
+     */
+    public static <T> void sortDescending(List<T> items, float[] scores) {
+
+        if (items.size() != scores.length) {
+            throw new IllegalArgumentException("Expected " + items.size() + " scores, found " + scores.length);
+        }
+
+        int n = scores.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            // Map the float to an int with the same ordering as Float.compare,  then invert it for descending order
+            int bits = Float.floatToIntBits(scores[i]);
+            int sortable = bits ^ ((bits >> 31) & 0x7fffffff);
+            keys[i] = ((long) ~sortable << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        List<T> copy = new ArrayList<>(items);
+        for (int i = 0; i < n; i++) {
+            items.set(i, copy.get((int) keys[i]));
+        }
+    }
+
+    /**
+     * A genomic region at a zoom level,  optionally associated with a reference frame
+     */
+    public static class Region {
+
+        final String chr;
+        final int start;
+        final int end;
+        final int zoom;
+        final String frameName;
+
+        public Region(String chr, int start, int end, int zoom, String frameName) {
+            this.chr = chr;
+            this.start = start;
+            this.end = end;
+            this.zoom = zoom;
+            this.frameName = frameName;
+        }
+
+        public static Region fromFrame(ReferenceFrame frame) {
+            return new Region(frame.getChrName(), (int) frame.getOrigin(), (int) frame.getEnd(), frame.getZoom(),
+                    frame.getName());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Region region = (Region) o;
+            return start == region.start &&
+                    end == region.end &&
+                    zoom == region.zoom &&
+                    Objects.equals(chr, region.chr) &&
+                    Objects.equals(frameName, region.frameName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(chr, start, end, zoom, frameName);
+        }
+    }
+
+    private static class RegionKey {
+        final Region region;
+        final RegionScoreType type;
+
+        RegionKey(Region region, RegionScoreType type) {
+            this.region = region;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            RegionKey that = (RegionKey) o;
+            return type == that.type && region.equals(that.region);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * region.hashCode() + type.hashCode();
+        }
+    }
+}
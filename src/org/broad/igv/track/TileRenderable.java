@@ -0,0 +1,51 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.ui.panel.ReferenceFrame;
+
+import java.awt.*;
+
+/**
+ * A track whose data can be rendered in independent horizontal tiles,  which the data panel caches as images.
+ * Tile content must depend only on the genomic interval of the tile and the state identified by the tile key.
+ * Decorations anchored to the panel,  such as axes and borders,  are drawn separately on every paint.
+ */
+public interface TileRenderable {
+
+    /**
+     * Return an object identifying everything, other than the genomic interval, that tile content depends on,
+     * or null if the track cannot currently be tiled in this frame.  Cached tiles are discarded when the key changes.
+     *
+     * @param frame
+     * @return
+     */
+    Object getTileKey(ReferenceFrame frame);
+
+    void renderTile(RenderContext context, Rectangle rect);
+
+    void renderDecorations(RenderContext context, Rectangle rect);
+}
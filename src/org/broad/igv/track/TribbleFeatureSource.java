@@ -33,9 +33,7 @@ import org.broad.igv.feature.BasicFeature;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.tribble.*;
-import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.panel.ReferenceFrame;
-import org.broad.igv.ui.util.IndexCreatorDialog;
 import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.RuntimeUtils;
@@ -43,6 +41,7 @@ import org.broad.igv.util.collections.CollUtils;
 import org.broad.igv.variant.VariantTrack;
 import htsjdk.tribble.*;
 import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -75,50 +74,52 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
         FeatureCodec codec = CodecFactory.getCodec(locator, genome);
         String idxPath = ResourceLocator.indexFile(locator);
         boolean indexExists = FileUtils.resourceExists(idxPath);
+        if (!indexExists && locator.isLocal()) {
+            String sidecarPath = FeatureFileIndexer.findSidecarIndex(locator.getPath());
+            if (sidecarPath != null) {
+                idxPath = sidecarPath;
+                indexExists = true;
+            }
+        }
 
-        // Optionally let the user create an index.
         final int hundredMB = 100000000;
         final int oneGB = 1000000000;
         long size = FileUtils.getLength(locator.getPath());
-        final boolean indexRequired =  size > oneGB;
-        if (!Globals.isHeadless() && locator.isLocal() && !locator.getPath().endsWith(".gz") && !indexExists) {
-            if (size > hundredMB) {
-                createIndex(locator, indexRequired);   // Note, might return null.
+        final boolean indexRequired = size > oneGB;
+
+        // Large local files are indexed automatically on first load,  rather than reading all features into memory.
+        // Index files are not written in headless mode.  Tribble indexes are loaded here,  rather than by the reader,
+        // to recover the genome coverage stored with them.
+        Index index = null;
+        if (locator.isLocal()) {
+            if (!Globals.isHeadless() && !indexExists && !locator.getPath().endsWith(".gz") && size > hundredMB) {
+                index = FeatureFileIndexer.createIndex(locator.getPath(), codec, genome);
+                if (index != null) {
+                    FeatureFileIndexer.writeIndex(index, locator.getPath());
+                }
+            } else if (indexExists && idxPath.endsWith(Tribble.STANDARD_INDEX_EXTENSION)) {
+                index = IndexFactory.loadIndex(idxPath);
             }
         }
 
+        if (index != null) {
+            AbstractFeatureReader basicReader = AbstractFeatureReader.getFeatureReader(locator.getPath(), codec, index);
+            List<LocusScore> genomeCoverage = FeatureFileIndexer.getGenomeCoverage(index, genome);
+            return new IndexedFeatureSource(basicReader, codec, locator, genome, useCache, genomeCoverage);
+        }
+
         //We make sure to require and index if one exists, so it gets loaded
         //TODO Temporary, shouldn't be necessary pending a tribble update
         AbstractFeatureReader basicReader = AbstractFeatureReader.getFeatureReader(locator.getPath(), idxPath, codec, indexRequired || indexExists);
 
         if (basicReader.hasIndex()) {
-            return new IndexedFeatureSource(basicReader, codec, locator, genome, useCache);
+            return new IndexedFeatureSource(basicReader, codec, locator, genome, useCache, null);
         } else {
             return new NonIndexedFeatureSource(basicReader, codec, locator, genome);
         }
     }
 
 
-    /**
-     * Present a dialog for the user to create an index.  This method can return null if the user cancels, or there
-     * is an error while creating the index.
-     *
-     * @param locator
-     * @param indexRequired
-     * @return
-     */
-    private static Index createIndex(ResourceLocator locator, boolean indexRequired) {
-        File baseFile = new File(locator.getPath());
-        File newIdxFile = new File(locator.getPath() + ".idx");
-        String messageText = "An index file for " + baseFile.getAbsolutePath() + " could not " +
-                "be located. An index is " + (indexRequired ? "required" : "recommended") +
-                " to view files of this size.   Click \"Go\" to create one now or \"Cancel" +
-                " to proceed without an index.";
-        IndexCreatorDialog dialog = IndexCreatorDialog.createShowDialog(IGV.getMainFrame(), baseFile, newIdxFile, messageText);
-        return (Index) dialog.getIndex();
-    }
-
-
     private TribbleFeatureSource(ResourceLocator locator, AbstractFeatureReader reader, FeatureCodec codec, Genome genome, boolean useCache) throws IOException {
 
         this.genome = genome;
@@ -158,10 +159,15 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
 
     static class IndexedFeatureSource extends TribbleFeatureSource {
 
+        /**
+         * Whole-genome coverage computed when the file was indexed,  may be null
+         */
+        List<LocusScore> genomeCoverage;
 
         private IndexedFeatureSource(AbstractFeatureReader basicReader, FeatureCodec codec, ResourceLocator locator,
-                                     Genome genome, boolean useCache) throws IOException {
+                                     Genome genome, boolean useCache, List<LocusScore> genomeCoverage) throws IOException {
             super(locator, basicReader, codec, genome, useCache);
+            this.genomeCoverage = genomeCoverage;
 
 
             if (genome != null) {
@@ -193,8 +199,8 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
         }
 
         /**
-         * Return coverage values overlapping the query interval.   At this time Tribble sources do not provide
-         * coverage values
+         * Return coverage values overlapping the query interval.   Tribble sources provide coverage only for the
+         * whole genome view,  and only if it was computed when the file was indexed.
          *
          * @param chr
          * @param start
@@ -204,7 +210,7 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
          */
         @Override
         public List<LocusScore> getCoverageScores(String chr, int start, int end, int zoom) {
-            return null;
+            return Globals.CHR_ALL.equals(chr) ? genomeCoverage : null;
         }
 
 
@@ -294,6 +300,10 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
             featureMap = new HashMap<String, List<Feature>>(25);
             Iterator<Feature> iter = null;
 
+            String path = locator.getPath();
+            File sourceFile = FileUtils.isRemote(path) ? null : new File(path);
+            FeatureDB.beginNameIndex(genome == null ? path : genome.getId() + "_" + path, sourceFile);
+            boolean loaded = false;
             try {
                 iter = reader.iterator();
                 while (iter.hasNext()) {
@@ -311,10 +321,12 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
                     featureList.add(f);
                     if (f instanceof NamedFeature) FeatureDB.addFeature((NamedFeature) f, genome);
                 }
+                loaded = true;
             } finally {
                 if (iter instanceof CloseableTribbleIterator) {
                     ((CloseableTribbleIterator) iter).close();
                 }
+                FeatureDB.endNameIndex(loaded ? this : null);
             }
 
             for (List<Feature> featureList : featureMap.values()) {
@@ -331,11 +343,7 @@ abstract public class TribbleFeatureSource implements org.broad.igv.track.Featur
         @Override
         public void dispose() {
             super.dispose();
-            for(List<Feature> featureList : featureMap.values()) {
-                for(Feature f : featureList) {
-                    if(f instanceof NamedFeature) FeatureDB.removeFeature((NamedFeature) f, genome);
-                }
-            }
+            FeatureDB.removeNameIndex(this);
         }
 
         @Override
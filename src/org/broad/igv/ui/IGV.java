@@ -79,6 +79,7 @@ import java.net.URL;
 import java.net.URLDecoder;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.Future;
 import java.util.prefs.Preferences;
 
@@ -1949,13 +1950,40 @@ public class IGV implements IGVEventObserver {
         final RegionOfInterest r = region == null ? new RegionOfInterest(frame.getChrName(), (int) frame.getOrigin(),
                 (int) frame.getEnd() + 1, frame.getName()) : region;
 
-        // Create a rank order of samples.  This is done globally so sorting is consistent across groups and panels.
-        final List<String> sortedSamples = sortSamplesByRegionScore(r, type, frame);
+        Runnable runnable = () -> {
 
-        for (TrackPanel trackPanel : getTrackPanels()) {
-            trackPanel.sortByRegionsScore(r, type, frame, sortedSamples);
+            ProgressMonitor monitor = null;
+            ProgressBar.ProgressDialog progressDialog = null;
+            if (!Globals.isHeadless() && !Globals.isBatch()) {
+                monitor = new ProgressMonitor();
+                progressDialog = ProgressBar.showProgressDialog(mainFrame, "Sorting tracks...", monitor, true);
+            }
+
+            try {
+                // Tracks are scored once for the sample order and the group order of every panel
+                final RegionScorer scorer = new RegionScorer();
+
+                // Create a rank order of samples.  This is done globally so sorting is consistent across groups and panels.
+                final List<String> sortedSamples = sortSamplesByRegionScore(r, type, frame, scorer, monitor);
+
+                for (TrackPanel trackPanel : getTrackPanels()) {
+                    trackPanel.sortByRegionsScore(r, type, frame, sortedSamples, scorer, monitor);
+                }
+            } finally {
+                if (progressDialog != null) {
+                    final ProgressBar.ProgressDialog dialog = progressDialog;
+                    UIUtilities.invokeOnEventThread(() -> dialog.setVisible(false));
+                }
+            }
+            revalidateTrackPanels();
+        };
+
+        // Scoring can take several seconds,  if we're on the dispatch thread spawn a worker so progress is shown
+        if (SwingUtilities.isEventDispatchThread()) {
+            LongRunningTask.submit(runnable);
+        } else {
+            runnable.run();
         }
-        revalidateTrackPanels();
     }
 
 
@@ -1968,7 +1996,9 @@ public class IGV implements IGVEventObserver {
      */
     private List<String> sortSamplesByRegionScore(final RegionOfInterest region,
                                                   final RegionScoreType type,
-                                                  final ReferenceFrame frame) {
+                                                  final ReferenceFrame frame,
+                                                  final RegionScorer scorer,
+                                                  final ProgressMonitor monitor) {
 
         // Get the sortable tracks for this score (data) type
         final List<Track> allTracks = getAllTracks();
@@ -1980,7 +2010,7 @@ public class IGV implements IGVEventObserver {
         }
 
         // Sort the "sortable" tracks
-        sortByRegionScore(tracksWithScore, region, type, frame);
+        sortByRegionScore(tracksWithScore, region, type, frame, scorer, monitor);
 
         // Now get sample order from sorted tracks, use to sort (tracks which do not implement the selected "sort by" score)
         List<String> sortedSamples = new ArrayList(tracksWithScore.size());
@@ -1998,7 +2028,9 @@ public class IGV implements IGVEventObserver {
     static void sortByRegionScore(List<Track> tracks,
                                   final RegionOfInterest region,
                                   final RegionScoreType type,
-                                  ReferenceFrame frame) {
+                                  ReferenceFrame frame,
+                                  RegionScorer scorer,
+                                  ProgressMonitor monitor) {
         if ((tracks != null) && (region != null) && !tracks.isEmpty()) {
             final String frameName = frame != null ? frame.getName() : null;
             int tmpzoom = frame != null ? frame.getZoom() : 0;
@@ -2007,29 +2039,13 @@ public class IGV implements IGVEventObserver {
             final int start = region.getStart();
             final int end = region.getEnd();
 
-            Comparator<Track> c = new Comparator<Track>() {
-
-                public int compare(Track t1, Track t2) {
-                    try {
-                        if (t1 == null && t2 == null) return 0;
-                        if (t1 == null) return 1;
-                        if (t2 == null) return -1;
-
-
-                        float s1 = t1.getRegionScore(chr, start, end, zoom, type, frameName);
-                        float s2 = t2.getRegionScore(chr, start, end, zoom, type, frameName);
-
-                        return Float.compare(s2, s1);
-
-
-                    } catch (Exception e) {
-                        log.error("Error sorting tracks. Sort might not be accurate.", e);
-                        return 0;
-                    }
-
-                }
-            };
-            Collections.sort(tracks, c);
+            try {
+                RegionScorer.Region r = new RegionScorer.Region(chr, start, end, zoom, frameName);
+                float[] scores = scorer.scoreTracks(tracks, r, type, monitor);
+                RegionScorer.sortDescending(tracks, scores);
+            } catch (CancellationException e) {
+                log.info("Sort cancelled");
+            }
 
         }
     }
@@ -27,6 +27,7 @@ package org.broad.igv.ui.action;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.track.RegionScoreType;
+import org.broad.igv.track.RegionScorer;
 import org.broad.igv.track.Track;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.ui.IGV;
@@ -34,6 +35,10 @@ import org.broad.igv.ui.UIConstants;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.ui.util.ProgressBar;
+import org.broad.igv.ui.util.ProgressMonitor;
+import org.broad.igv.ui.util.UIUtilities;
+import org.broad.igv.util.LongRunningTask;
 
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -41,7 +46,9 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 /**
  * @author jrobinso
@@ -71,7 +78,17 @@ public class ExportTrackNamesMenuAction extends MenuAction {
             return;
         }
 
-        File outputFile = new File(fd.getDirectory(), fname);
+        final File outputFile = new File(fd.getDirectory(), fname);
+
+        // Scoring can take several seconds,  export on a worker so progress is shown
+        LongRunningTask.submit(() -> exportTrackNames(outputFile));
+    }
+
+    private void exportTrackNames(File outputFile) {
+
+        ProgressMonitor monitor = new ProgressMonitor();
+        ProgressBar.ProgressDialog progressDialog = ProgressBar.showProgressDialog(igv.getMainFrame(),
+                "Exporting track names...", monitor, true);
 
         PrintWriter pw = null;
         try {
@@ -86,26 +103,34 @@ public class ExportTrackNamesMenuAction extends MenuAction {
                 pw.println();
             }
 
+            List<Track> cnTracks = new ArrayList<>();
             for (Track t : igv.getAllTracks()) {
                 if (t.getTrackType() == TrackType.COPY_NUMBER || t.getTrackType() == TrackType.CNV) {
-                    pw.print(t.getName());
-                    for (ReferenceFrame frame : referenceFrames) {
-                        //track.getRegionScore(chr, start, end, zoom, type, frame));
-                        String chr = frame.getChrName();
-                        int start = (int) frame.getOrigin();
-                        int end = (int) frame.getEnd();
-                        float score = t.getRegionScore(chr, start, end, frame.getZoom(), RegionScoreType.SCORE, frame.getName());
-                        pw.print("\t" + score);
-                    }
-                    pw.println();
+                    cnTracks.add(t);
                 }
             }
+            List<RegionScorer.Region> regions = new ArrayList<>(referenceFrames.size());
+            for (ReferenceFrame frame : referenceFrames) {
+                regions.add(RegionScorer.Region.fromFrame(frame));
+            }
+
+            float[][] scores = new RegionScorer().score(cnTracks, regions, RegionScoreType.SCORE, null, monitor);
+            for (int i = 0; i < cnTracks.size(); i++) {
+                pw.print(cnTracks.get(i).getName());
+                for (float score : scores[i]) {
+                    pw.print("\t" + score);
+                }
+                pw.println();
+            }
         } catch (IOException ex) {
             MessageUtils.showMessage("IO Error: " + ex.getMessage());
+        } catch (CancellationException ex) {
+            log.info("Export cancelled");
         } finally {
             if (pw != null) {
                 pw.close();
             }
+            UIUtilities.invokeOnEventThread(() -> progressDialog.setVisible(false));
         }
 
     }
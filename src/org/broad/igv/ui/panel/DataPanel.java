@@ -172,7 +172,9 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
 
             computeMousableRegions(groups, trackWidth);
 
-            painter.paint(groups, context, trackWidth, getBackground(), damageRect);
+            TrackTileCache tileCache = PreferencesManager.getPreferences().getAsBoolean(Constants.CACHE_TRACK_TILES) ?
+                    TrackTileCache.getInstance() : null;
+            painter.paint(groups, context, trackWidth, getBackground(), damageRect, tileCache, this::repaint);
 
             // If there is a partial ROI in progress draw it first
             if (currentTool instanceof RegionOfInterestTool) {
@@ -55,6 +55,20 @@ public class DataPanelPainter {
                                    int width,
                                    Color background,
                                    Rectangle visibleRect) {
+        paint(groups, context, width, background, visibleRect, null, null);
+    }
+
+    /**
+     * Paint the track groups.  If a tile cache is supplied tracks that support tiles are drawn from cached images.
+     * Missing tiles are rendered in the background,  and {@code onTilesRendered} is run when they are complete.
+     */
+    public synchronized void paint(Collection<TrackGroup> groups,
+                                   RenderContext context,
+                                   int width,
+                                   Color background,
+                                   Rectangle visibleRect,
+                                   TrackTileCache tileCache,
+                                   Runnable onTilesRendered) {
 
 
         //
@@ -99,7 +113,7 @@ public class DataPanelPainter {
                 referenceFrame.origin = start;
             }
         } else {
-            paintFrame(groups, context, width, visibleRect);
+            paintFrame(groups, context, width, visibleRect, tileCache, onTilesRendered);
         }
 
     }
@@ -114,15 +128,20 @@ public class DataPanelPainter {
         dG.setClip(dRect);
         context.translateX = px;
 
-        paintFrame(groups, context, w, dRect);
+        paintFrame(groups, context, w, dRect, null, null);
 
     }
 
 
-    private void paintFrame(Collection<TrackGroup> groups, RenderContext dContext, int width, Rectangle dRect) {
+    private void paintFrame(Collection<TrackGroup> groups, RenderContext dContext, int width, Rectangle dRect,
+                            TrackTileCache tileCache, Runnable onTilesRendered) {
         int trackX = 0;
         int trackY = 0;
 
+        Map<Track, TrackTileCache.TrackTiles> tiles = (tileCache == null || dRect == null) ? Collections.emptyMap() :
+                tileCache.renderTiles(getTileRenderableTracks(groups, dRect), dContext.getReferenceFrame(), width,
+                        onTilesRendered);
+
         for (Iterator<TrackGroup> groupIter = groups.iterator(); groupIter.hasNext(); ) {
             TrackGroup group = groupIter.next();
 
@@ -162,7 +181,7 @@ public class DataPanelPainter {
 
                         if (track.isVisible()) {
                             Rectangle rect = new Rectangle(trackX, trackY, width, trackHeight);
-                            draw(track, rect, dContext);
+                            draw(track, rect, dContext, tiles.get(track));
                             trackY += trackHeight;
                         }
                     }
@@ -224,9 +243,48 @@ public class DataPanelPainter {
     }
 
 
-    final private void draw(Track track, Rectangle rect, RenderContext context) {
+    /**
+     * Return the visible tracks intersecting the rectangle that support tiled rendering
+     */
+    private List<Track> getTileRenderableTracks(Collection<TrackGroup> groups, Rectangle dRect) {
+
+        List<Track> tracks = new ArrayList<>();
+        int trackY = 0;
+        for (TrackGroup group : groups) {
+            if (trackY > dRect.y + dRect.height) {
+                break;
+            }
+            if (group.isVisible()) {
+                if (groups.size() > 1) {
+                    trackY += UIConstants.groupGap;
+                }
+                List<Track> trackList = group.getVisibleTracks();
+                synchronized (trackList) {
+                    for (Track track : trackList) {
+                        if (track == null || !track.isVisible()) continue;
+                        if (trackY > dRect.y + dRect.height) {
+                            break;
+                        }
+                        int trackHeight = track.getHeight();
+                        if (trackY + trackHeight >= dRect.y && track instanceof TileRenderable) {
+                            tracks.add(track);
+                        }
+                        trackY += trackHeight;
+                    }
+                }
+            }
+        }
+        return tracks;
+    }
+
+
+    final private void draw(Track track, Rectangle rect, RenderContext context, TrackTileCache.TrackTiles tiles) {
 
-        track.render(context, rect);
+        if (tiles != null && tiles.paint(context.getGraphics(), context.getReferenceFrame(), rect)) {
+            ((TileRenderable) track).renderDecorations(context, rect);
+        } else {
+            track.render(context, rect);
+        }
 
         // Get overlays
 
@@ -25,12 +25,14 @@
 
 package org.broad.igv.ui.panel;
 
+import org.apache.log4j.Logger;
 import org.broad.igv.feature.Locus;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.lists.GeneList;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.RegionScoreType;
+import org.broad.igv.track.RegionScorer;
 import org.broad.igv.track.Track;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.action.SearchCommand;
@@ -41,8 +43,8 @@ import org.broad.igv.ui.util.MessageUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 /**
  * @author jrobinso
@@ -50,6 +52,8 @@ import java.util.List;
  */
 public class FrameManager implements IGVEventObserver {
 
+    private static Logger log = Logger.getLogger(FrameManager.class);
+
     private static List<ReferenceFrame> frames = new ArrayList();
     private static ReferenceFrame defaultFrame;
 
@@ -228,16 +232,25 @@ public class FrameManager implements IGVEventObserver {
 
     public static void sortFrames(final Track t) {
 
-        Collections.sort(frames, new Comparator<ReferenceFrame>() {
-            @Override
-            public int compare(ReferenceFrame o1, ReferenceFrame o2) {
-                float s1 = t.getRegionScore(o1.getChromosome().getName(), (int) o1.getOrigin(), (int) o1.getEnd(),
-                        o1.getZoom(), RegionScoreType.SCORE, o1.getName());
-                float s2 = t.getRegionScore(o2.getChromosome().getName(), (int) o2.getOrigin(), (int) o2.getEnd(),
-                        o2.getZoom(), RegionScoreType.SCORE, o2.getName());
-                return (s1 == s2 ? 0 : (s1 > s2) ? -1 : 1);
+        List<RegionScorer.Region> regions = new ArrayList<>(frames.size());
+        for (ReferenceFrame frame : frames) {
+            regions.add(RegionScorer.Region.fromFrame(frame));
+        }
+        try {
+            float[] scores = new RegionScorer().score(Collections.singletonList(t), regions,
+                    RegionScoreType.SCORE, null, null)[0];
+            // Frames are compared numerically,  so -0 and 0 tie.  NaN scores,  which have no numeric order,  sort last.
+            for (int i = 0; i < scores.length; i++) {
+                if (scores[i] == 0) {
+                    scores[i] = 0;
+                } else if (Float.isNaN(scores[i])) {
+                    scores[i] = Float.NEGATIVE_INFINITY;
+                }
             }
-        });
+            RegionScorer.sortDescending(frames, scores);
+        } catch (CancellationException e) {
+            log.info("Sort cancelled");
+        }
 
     }
 
@@ -35,8 +35,8 @@ package org.broad.igv.ui.panel;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
-import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.genome.ChromosomeCoordinate;
+import org.broad.igv.feature.genome.ContigTable;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.prefs.PreferencesManager;
@@ -239,30 +239,16 @@ public class RulerPanel extends JPanel {
         }
 
         boolean even = true;
-        long offset = 0;
         chromosomeRects.clear();
-        List<String> chrNames = genome.getLongChromosomeNames();
-        if (chrNames == null) {
-            log.info("No chromosomes found for genome: " + PreferencesManager.getPreferences().getDefaultGenome());
-            PreferencesManager.getPreferences().remove(DEFAULT_GENOME);
-        }
-        if (chrNames.size() > 500) {
-            return;
-        }
+        List<ContigTable.Bin> bins = genome.getWholeGenomeBins();
 
         final FontMetrics fontMetrics = g.getFontMetrics();
-        for (String chrName : chrNames) {
-            Chromosome c = genome.getChromosome(chrName);
-            if (c == null) {
-                log.info("Chromosome '" + chrName + "' not found");
-                continue;
-            }
-            int chrLength = c.getLength();
+        for (ContigTable.Bin bin : bins) {
+            String chrName = bin.getFirstContig();
 
             double scale = frame.getScale();
-            int gStart = genome.getGenomeCoordinate(chrName, 0);
-            int x = (int) (gStart / scale);
-            int dw = (int) (chrLength / (locationUnit * scale));
+            int x = (int) (bin.getOffset() / (locationUnit * scale));
+            int dw = (int) (bin.getLength() / (locationUnit * scale));
 
 
             g.drawLine(x, getHeight() - 10, x, getHeight() - 2);
@@ -271,13 +257,17 @@ public class RulerPanel extends JPanel {
             if (dw > 5) {
                 int center = x + dw / 2;
 
-                String displayName = null;
-                if (chrName.startsWith("gi|")) {
-                    displayName = Genome.getNCBIName(chrName);
-                } else {
-                    displayName = chrName.replace("chr", "");
+                String displayName = getDisplayName(chrName);
+                String tooltipText = "Jump to chromosome: " + chrName;
+                if (bin.getContigCount() > 1) {
+                    // A run of small contigs
+                    displayName = displayName + "+" + (bin.getContigCount() - 1);
+                    tooltipText = "Jump to chromosome: " + chrName + " (first of " + bin.getContigCount() + " contigs)";
                 }
                 int strWidth = fontMetrics.stringWidth(displayName);
+                if (strWidth > dw && bin.getContigCount() > 1) {
+                    continue;
+                }
                 int strPosition = center - strWidth / 2;
 
 
@@ -285,14 +275,19 @@ public class RulerPanel extends JPanel {
                 g.drawString(displayName, strPosition, y);
                 int sw = (int) fontMetrics.getStringBounds(displayName, g).getWidth();
                 Rectangle clickRect = new Rectangle(strPosition, y - 15, sw, 15);
-                String tooltipText = "Jump to chromosome: " + chrName;
                 chromosomeRects.add(new ClickLink(clickRect, chrName, tooltipText));
 
                 even = !even;
 
             }
+        }
+    }
 
-            offset += chrLength;
+    private static String getDisplayName(String chrName) {
+        if (chrName.startsWith("gi|")) {
+            return Genome.getNCBIName(chrName);
+        } else {
+            return chrName.replace("chr", "");
         }
     }
 
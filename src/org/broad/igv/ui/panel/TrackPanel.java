@@ -31,14 +31,17 @@ import org.broad.igv.feature.RegionOfInterest;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.track.RegionScoreType;
+import org.broad.igv.track.RegionScorer;
 import org.broad.igv.track.Track;
 import org.broad.igv.track.TrackGroup;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.ui.UIConstants;
+import org.broad.igv.ui.util.ProgressMonitor;
 
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 /**
  * @author eflakes
@@ -294,11 +297,14 @@ public class TrackPanel extends IGVPanel {
      *
      * @param region
      * @param type
+     * @param scorer scorer shared by all panels sorted in the same operation
+     * @param monitor optional,  receives the percentage of tracks scored
      */
     public void sortByRegionsScore(final RegionOfInterest region, final RegionScoreType type,
-                                   final ReferenceFrame frame, List<String> sortedSamples) {
+                                   final ReferenceFrame frame, List<String> sortedSamples, RegionScorer scorer,
+                                   ProgressMonitor monitor) {
 
-        sortGroupsByRegionScore(trackGroups, region, type, frame.getZoom(), frame.getName());
+        sortGroupsByRegionScore(trackGroups, region, type, frame.getZoom(), frame.getName(), scorer, monitor);
 
         for (TrackGroup group : trackGroups) {
             // If there is a non-null linking attribute
@@ -315,31 +321,44 @@ public class TrackPanel extends IGVPanel {
      * @param type
      * @param inzoom
      * @param frameName
+     * @param scorer
+     * @param monitor
      */
     private void sortGroupsByRegionScore(List<TrackGroup> groups,
                                          final RegionOfInterest region,
                                          final RegionScoreType type,
                                          int inzoom,
-                                         final String frameName) {
+                                         final String frameName,
+                                         final RegionScorer scorer,
+                                         final ProgressMonitor monitor) {
         if ((groups != null) && (region != null) && !groups.isEmpty()) {
             final int zoom = Math.max(0, inzoom);
             final String chr = region.getChr();
             final int start = region.getStart();
             final int end = region.getEnd();
-            Comparator<TrackGroup> c = new Comparator<TrackGroup>() {
-
-                public int compare(TrackGroup group1, TrackGroup group2) {
-                    float s1 = group1.getRegionScore(chr, start, end, zoom, type, frameName);
-                    float s2 = group2.getRegionScore(chr, start, end, zoom, type, frameName);
-
-                    // Use the Float comparator as it handles NaN.  Need to flip the order to make it descending
-                    return Float.compare(s2, s1);
-
+            // Score each visible track once,  the group score is the maximum of its track scores
+            List<Track> tracks = new ArrayList<>();
+            int[] groupEnd = new int[groups.size()];
+            for (int g = 0; g < groups.size(); g++) {
+                tracks.addAll(groups.get(g).getVisibleTracks());
+                groupEnd[g] = tracks.size();
+            }
 
+            try {
+                RegionScorer.Region r = new RegionScorer.Region(chr, start, end, zoom, frameName);
+                float[] trackScores = scorer.scoreTracks(tracks, r, type, monitor);
+                float[] groupScores = new float[groups.size()];
+                for (int g = 0, t = 0; g < groups.size(); g++) {
+                    float score = -Float.MAX_VALUE;
+                    for (; t < groupEnd[g]; t++) {
+                        score = Math.max(score, trackScores[t]);
+                    }
+                    groupScores[g] = score;
                 }
-            };
-
-            Collections.sort(groups, c);
+                RegionScorer.sortDescending(groups, groupScores);
+            } catch (CancellationException e) {
+                log.info("Sort cancelled");
+            }
         }
 
     }
@@ -0,0 +1,460 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.event.GenomeChangeEvent;
+import org.broad.igv.event.IGVEventBus;
+import org.broad.igv.event.IGVEventObserver;
+import org.broad.igv.event.RefreshEvent;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.TileRenderable;
+import org.broad.igv.track.Track;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Cache of rendered track tiles shared by all data panels.  Tracks implementing {@link TileRenderable} are rendered
+ * in images {@link #TILE_WIDTH} pixels wide,  aligned to the chromosome,  so a tile rendered once is reused as the
+ * frame pans.  Missing tiles are rendered in the background,  one task per track so that tracks render concurrently.
+ * Until a track's tiles are complete the panel paints the track directly,  and it is repainted when they are.
+ * <p/>
+ * Tiles are keyed by track, frame, and tile number.  A change of chromosome, scale, height, or tile key discards the
+ * track's tiles in that frame.  The cache is bounded by the memory used by the images;  least-recently used tiles
+ * are evicted first.  Tracks are held weakly,  the tiles of a track that has been removed and collected are
+ * discarded the next time the cache is used.
+ */
+public class TrackTileCache implements IGVEventObserver {
+
+    private static Logger log = Logger.getLogger(TrackTileCache.class);
+
+    static final int TILE_WIDTH = 256;
+
+    private static final double DEFAULT_MEMORY_FRACTION = 0.05;
+
+    private static final long MAX_DEFAULT_MEMORY = 256 * 1024 * 1024;
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "Track tile renderer");
+                t.setDaemon(true);
+                return t;
+            });
+
+    private static TrackTileCache instance;
+
+    private long maxMemory;
+    private long currentMemory = 0;
+    private final LinkedHashMap<TileKey, BufferedImage> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<StateKey, TileState> states = new HashMap<>();
+    private final Map<TileKey, TileState> pending = new HashMap<>();
+    private final ReferenceQueue<Track> collectedTracks = new ReferenceQueue<>();
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public static synchronized TrackTileCache getInstance() {
+        if (instance == null) {
+            long maxMemory = Math.min(MAX_DEFAULT_MEMORY, (long) (DEFAULT_MEMORY_FRACTION * Runtime.getRuntime().maxMemory()));
+            instance = new TrackTileCache(maxMemory);
+            IGVEventBus.getInstance().subscribe(RefreshEvent.class, instance);
+            IGVEventBus.getInstance().subscribe(GenomeChangeEvent.class, instance);
+        }
+        return instance;
+    }
+
+    TrackTileCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    public synchronized void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+        evict();
+    }
+
+    /**
+     * Return the tiles covering pixels 0 - width of the frame for each of the tracks.  Missing tiles are rendered
+     * in the background and {@code onRendered} is run as each track's tiles complete,  typically to repaint the
+     * panel.  Tracks that cannot be tiled,  whose tiles extend beyond the loaded data,  or whose tiles are not yet
+     * rendered are omitted from the result and should be rendered directly.
+     *
+     * @param tracks
+     * @param frame
+     * @param width
+     * @param onRendered run on a rendering thread when missing tiles are complete,  may be null
+     * @return
+     */
+    public Map<Track, TrackTiles> renderTiles(List<Track> tracks, ReferenceFrame frame, int width, Runnable onRendered) {
+
+        String chr = frame.getChrName();
+        double scale = frame.getScale();
+        double pixelOrigin = frame.getOrigin() / scale;
+        long firstTile = (long) Math.floor(pixelOrigin / TILE_WIDTH);
+        long lastTile = (long) Math.floor((pixelOrigin + width - 1) / TILE_WIDTH);
+        int nTiles = (int) (lastTile - firstTile + 1);
+        boolean antialias = PreferencesManager.getPreferences().getAsBoolean(Constants.ENABLE_ANTIALISING);
+
+        Map<Track, TrackTiles> result = new HashMap<>();
+
+        for (Track track : tracks) {
+
+            Object tileKey = (track instanceof TileRenderable) ? ((TileRenderable) track).getTileKey(frame) : null;
+            int height = track.getHeight();
+            StateKey stateKey = new StateKey(track, frame.getName(), collectedTracks);
+            TileState state = new TileState(chr, scale, height, antialias, tileKey);
+
+            BufferedImage[] images = new BufferedImage[nTiles];
+            List<Integer> missing = new ArrayList<>();
+            final TileState current;
+            synchronized (this) {
+                expungeCollectedTracks();
+                if (!state.equals(states.get(stateKey))) {
+                    remove(stateKey);
+                }
+                if (tileKey == null || height <= 0 || nTiles <= 0) {
+                    continue;
+                }
+                states.putIfAbsent(stateKey, state);
+                current = states.get(stateKey);
+                for (int i = 0; i < nTiles; i++) {
+                    images[i] = tiles.get(new TileKey(stateKey, firstTile + i));
+                    if (images[i] == null) {
+                        missing.add(i);
+                        missCount++;
+                    } else {
+                        hitCount++;
+                    }
+                }
+            }
+
+            if (missing.isEmpty()) {
+                result.put(track, new TrackTiles(firstTile, images));
+                continue;
+            }
+
+            // Tiles extending beyond the loaded data would be incomplete,  the track is painted directly instead
+            List<TileKey> keys = new ArrayList<>();
+            List<ReferenceFrame> tileFrames = new ArrayList<>();
+            boolean ready = true;
+            for (int i : missing) {
+                ReferenceFrame tileFrame = getTileFrame(frame, firstTile + i);
+                if (!track.isReadyToPaint(getLoadedFrame(frame, tileFrame))) {
+                    ready = false;
+                    break;
+                }
+                keys.add(new TileKey(stateKey, firstTile + i));
+                tileFrames.add(tileFrame);
+            }
+            if (!ready) continue;
+
+            synchronized (this) {
+                // Tiles already being rendered for an earlier paint are not submitted again
+                for (int i = keys.size() - 1; i >= 0; i--) {
+                    if (pending.get(keys.get(i)) == current) {
+                        keys.remove(i);
+                        tileFrames.remove(i);
+                    } else {
+                        pending.put(keys.get(i), current);
+                    }
+                }
+            }
+            if (keys.isEmpty()) continue;
+
+            executor.execute(() -> {
+                try {
+                    for (int i = 0; i < keys.size(); i++) {
+                        put(keys.get(i), current, renderTile((TileRenderable) track, tileFrames.get(i), height));
+                    }
+                } catch (Exception e) {
+                    // Tracks with incomplete tiles are painted directly
+                    log.error("Error rendering track tiles", e);
+                } finally {
+                    synchronized (TrackTileCache.this) {
+                        for (TileKey key : keys) {
+                            pending.remove(key, current);
+                        }
+                    }
+                }
+                if (onRendered != null) {
+                    onRendered.run();
+                }
+            });
+        }
+
+        return result;
+    }
+
+    public synchronized void clear() {
+        tiles.clear();
+        states.clear();
+        currentMemory = 0;
+    }
+
+    public synchronized int size() {
+        expungeCollectedTracks();
+        return tiles.size();
+    }
+
+    public synchronized long getMemoryEstimate() {
+        return currentMemory;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public void receiveEvent(Object event) {
+        clear();
+    }
+
+    private synchronized void put(TileKey key, TileState state, BufferedImage image) {
+        // Tiles of a superseded state are dropped.  States are compared by identity,  a state removed and
+        // registered again,  for example after a refresh,  does not accept tiles rendered before the removal.
+        if (states.get(key.state) == state) {
+            BufferedImage previous = tiles.put(key, image);
+            if (previous != null) {
+                currentMemory -= estimateSize(previous);
+            }
+            currentMemory += estimateSize(image);
+            evict();
+        }
+    }
+
+    private void remove(StateKey stateKey) {
+        Iterator<Map.Entry<TileKey, BufferedImage>> iter = tiles.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<TileKey, BufferedImage> e = iter.next();
+            if (e.getKey().state.equals(stateKey)) {
+                currentMemory -= estimateSize(e.getValue());
+                iter.remove();
+            }
+        }
+        states.remove(stateKey);
+    }
+
+    /**
+     * Discard the states and tiles of tracks that have been garbage collected
+     */
+    private void expungeCollectedTracks() {
+        Set<StateKey> collected = null;
+        StateKey key;
+        while ((key = (StateKey) collectedTracks.poll()) != null) {
+            if (collected == null) collected = Collections.newSetFromMap(new IdentityHashMap<>());
+            collected.add(key);
+        }
+        if (collected == null) return;
+
+        Iterator<Map.Entry<TileKey, BufferedImage>> iter = tiles.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<TileKey, BufferedImage> e = iter.next();
+            if (collected.contains(e.getKey().state)) {
+                currentMemory -= estimateSize(e.getValue());
+                iter.remove();
+            }
+        }
+        states.keySet().removeAll(collected);
+    }
+
+    private void evict() {
+        // Iteration order is least-recently accessed first.  Always keep the most recent tile.
+        Iterator<Map.Entry<TileKey, BufferedImage>> iter = tiles.entrySet().iterator();
+        while (currentMemory > maxMemory && tiles.size() > 1 && iter.hasNext()) {
+            Map.Entry<TileKey, BufferedImage> e = iter.next();
+            currentMemory -= estimateSize(e.getValue());
+            iter.remove();
+        }
+    }
+
+    private static long estimateSize(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * Return the part of the tile frame that must be loaded to render the tile.  Data is never loaded beyond the
+     * chromosome end,  so the last tile of a chromosome is only required to extend to the end of the chromosome,
+     * or to the end of the frame if that is greater.
+     */
+    static ReferenceFrame getLoadedFrame(ReferenceFrame frame, ReferenceFrame tileFrame) {
+        double limit = Math.max(frame.getEnd(), frame.getChromosomeLength());
+        if (tileFrame.getEnd() <= limit) {
+            return tileFrame;
+        }
+        ReferenceFrame loadedFrame = new ReferenceFrame(tileFrame);
+        loadedFrame.widthInPixels = (int) Math.max(0, Math.floor((limit - tileFrame.getOrigin()) / tileFrame.getScale()));
+        return loadedFrame;
+    }
+
+    /**
+     * Return a copy of the frame spanning the given tile
+     */
+    static ReferenceFrame getTileFrame(ReferenceFrame frame, long tile) {
+        ReferenceFrame tileFrame = new ReferenceFrame(frame);
+        tileFrame.widthInPixels = TILE_WIDTH;
+        tileFrame.origin = tile * TILE_WIDTH * frame.getScale();
+        return tileFrame;
+    }
+
+    private static BufferedImage renderTile(TileRenderable track, ReferenceFrame tileFrame, int height) {
+        BufferedImage image = new BufferedImage(TILE_WIDTH, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        Rectangle rect = new Rectangle(0, 0, TILE_WIDTH, height);
+        RenderContext context = new RenderContext(null, g, tileFrame, rect);
+        try {
+            track.renderTile(context, rect);
+        } finally {
+            context.dispose();
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Tiles of one track covering a frame
+     */
+    public static class TrackTiles {
+
+        final long firstTile;
+        final BufferedImage[] images;
+
+        TrackTiles(long firstTile, BufferedImage[] images) {
+            this.firstTile = firstTile;
+            this.images = images;
+        }
+
+        /**
+         * Draw the tiles in the track rectangle.  Returns false,  drawing nothing,  if any tile is missing.
+         */
+        boolean paint(Graphics2D g, ReferenceFrame frame, Rectangle rect) {
+            for (BufferedImage image : images) {
+                if (image == null) return false;
+            }
+            double pixelOrigin = frame.getOrigin() / frame.getScale();
+            for (int i = 0; i < images.length; i++) {
+                int x = rect.x + (int) Math.round((firstTile + i) * TILE_WIDTH - pixelOrigin);
+                g.drawImage(images[i], x, rect.y, null);
+            }
+            return true;
+        }
+    }
+
+    private static class TileState {
+        final String chr;
+        final double scale;
+        final int height;
+        final boolean antialias;
+        final Object tileKey;
+
+        TileState(String chr, double scale, int height, boolean antialias, Object tileKey) {
+            this.chr = chr;
+            this.scale = scale;
+            this.height = height;
+            this.antialias = antialias;
+            this.tileKey = tileKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TileState that = (TileState) o;
+            return scale == that.scale &&
+                    height == that.height &&
+                    antialias == that.antialias &&
+                    Objects.equals(chr, that.chr) &&
+                    Objects.equals(tileKey, that.tileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(chr, scale, height, antialias, tileKey);
+        }
+    }
+
+    /**
+     * Track and frame.  Tracks are weakly referenced and compared by identity,  a key whose track has been
+     * collected is equal only to itself.
+     */
+    private static class StateKey extends WeakReference<Track> {
+        final String frameName;
+        final int hash;
+
+        StateKey(Track track, String frameName, ReferenceQueue<Track> queue) {
+            super(track, queue);
+            this.frameName = frameName;
+            this.hash = 31 * System.identityHashCode(track) + Objects.hashCode(frameName);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            StateKey stateKey = (StateKey) o;
+            Track track = get();
+            return track != null && track == stateKey.get() && Objects.equals(frameName, stateKey.frameName);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class TileKey {
+        final StateKey state;
+        final long tileNumber;
+
+        TileKey(StateKey state, long tileNumber) {
+            this.state = state;
+            this.tileNumber = tileNumber;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TileKey tileKey = (TileKey) o;
+            return tileNumber == tileKey.tileNumber && state.equals(tileKey.state);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(state, tileNumber);
+        }
+    }
+}
@@ -85,7 +85,15 @@ public class HttpUtils {
 
     // static provided to support unit testing
     private static boolean BYTE_RANGE_DISABLED = false;
-    private Map<URL, Boolean> headURLCache = new HashMap<URL, Boolean>();
+    private Map<URL, Boolean> headURLCache = Collections.synchronizedMap(new HashMap<URL, Boolean>());
+
+    /**
+     * Times of recent positive results of resourceAvailable, keyed by url string.  Loading a session probes each file
+     * and its index paths,  often more than once and ahead of the load,  so results are kept for a short time.
+     * Negative results are not cached,  a resource may appear at any time (e.g. an index being created).
+     */
+    private Map<String, Long> availableCache = Collections.synchronizedMap(new HashMap<String, Long>());
+    private static final long AVAILABLE_CACHE_TIME = 60000;
 
     /**
      * @return the single instance
@@ -252,11 +260,21 @@ public class HttpUtils {
         if (url.getProtocol().toLowerCase().equals("ftp")) {
             return FTPUtils.resourceAvailable(url);
         } else {
+            String key = url.toExternalForm();
+            Long cached = availableCache.get(key);
+            if (cached != null && System.currentTimeMillis() - cached < AVAILABLE_CACHE_TIME) {
+                return true;
+            }
+
             HttpURLConnection conn = null;
             try {
                 conn = openConnectionHeadOrGet(url);
                 int code = conn.getResponseCode();
-                return code >= 200 && code < 300;
+                boolean available = code >= 200 && code < 300;
+                if (available) {
+                    availableCache.put(key, System.currentTimeMillis());
+                }
+                return available;
             } catch (Exception e) {
                 if (conn != null)
                     try {
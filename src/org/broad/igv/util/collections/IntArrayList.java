@@ -113,6 +113,16 @@ public class IntArrayList {
         return elements;
     }
 
+    /**
+     * Return the elements in a new array.  Unlike toArray() the list's storage is not handed out,  so the list can be
+     * cleared and reused.
+     */
+    public int[] copyToArray() {
+        int[] tmp = new int[size];
+        System.arraycopy(elements, 0, tmp, 0, size);
+        return tmp;
+    }
+
 
     private void trimToSize() {
         int oldCapacity = elements.length;
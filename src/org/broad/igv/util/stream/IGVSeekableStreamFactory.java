@@ -28,17 +28,23 @@ package org.broad.igv.util.stream;
 import htsjdk.samtools.seekablestream.ISeekableStreamFactory;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.util.HttpUtils;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 
+import static org.broad.igv.prefs.Constants.MEMORY_MAP_LOCAL_FILES;
+
 /**
  * @author Jim Robinson
  */
 public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
 
+    private static Logger log = Logger.getLogger(IGVSeekableStreamFactory.class);
+
     private static IGVSeekableStreamFactory instance;
     static{
         instance = new IGVSeekableStreamFactory();
@@ -73,7 +79,7 @@ public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
                 final URL url = new URL(path);
                 is = new IGVSeekableFTPStream(url);
             } else {
-                is = new SeekableFileStream(new File(path));
+                is = getLocalStream(new File(path));
             }
             return is;
         }
@@ -84,7 +90,25 @@ public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
     }
 
     public SeekableStream getBufferedStream(SeekableStream stream, int bufferSize){
+        if (stream instanceof SeekableMappedStream) {
+            return stream;   // Already backed by memory,  buffering would only add a copy
+        }
         return new IGVSeekableBufferedStream(stream, bufferSize);
     }
 
+    /**
+     * Return a memory-mapped stream for the file if enabled by preference,  falling back to a file stream if
+     * mapping fails.
+     */
+    private SeekableStream getLocalStream(File file) throws IOException {
+        if (PreferencesManager.getPreferences().getAsBoolean(MEMORY_MAP_LOCAL_FILES)) {
+            try {
+                return new SeekableMappedStream(file);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not memory-map " + file.getAbsolutePath() + ",  using file stream", e);
+            }
+        }
+        return new SeekableFileStream(file);
+    }
+
 }
@@ -0,0 +1,221 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A SeekableStream over a memory-mapped local file.  Reads copy directly from the page cache,  without the
+ * intermediate buffer of {@link IGVSeekableBufferedStream},  and {@link #slice(long, int)} gives readers that can
+ * work with a ByteBuffer zero-copy access.
+ * <p/>
+ * A single mapping is limited to 2 GB,  so larger files are mapped as a series of segments.  Segments overlap by
+ * {@link #SEGMENT_OVERLAP} bytes,  so any range up to that size lies entirely within one segment.  Mappings are
+ * shared by all streams open on the same file.
+ */
+public class SeekableMappedStream extends SeekableStream {
+
+    static final long SEGMENT_SIZE = 1L << 30;
+    static final int SEGMENT_OVERLAP = 1 << 26;
+
+    /**
+     * Maximum number of files whose mappings are retained for reuse by new streams
+     */
+    private static final int MAX_CACHED_MAPPINGS = 50;
+
+    private static final Map<String, Mapping> mappingCache = new LinkedHashMap<String, Mapping>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Mapping> eldest) {
+            return size() > MAX_CACHED_MAPPINGS;
+        }
+    };
+
+    private final File file;
+    private final long length;
+    private final MappedByteBuffer[] segments;
+    private final long segmentSize;
+    private long position = 0;
+
+    public SeekableMappedStream(File file) throws IOException {
+        this.file = file;
+        Mapping mapping = getMapping(file);
+        this.length = mapping.length;
+        this.segments = mapping.segments;
+        this.segmentSize = mapping.segmentSize;
+    }
+
+    SeekableMappedStream(File file, long segmentSize, int segmentOverlap) throws IOException {
+        this.file = file;
+        Mapping mapping = new Mapping(file, segmentSize, segmentOverlap);
+        this.length = mapping.length;
+        this.segments = mapping.segments;
+        this.segmentSize = mapping.segmentSize;
+    }
+
+    /**
+     * Streams are typically opened per query,  so reuse the mapping of a file unless it has changed.
+     */
+    private static Mapping getMapping(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        synchronized (mappingCache) {
+            Mapping mapping = mappingCache.get(key);
+            if (mapping == null || mapping.lastModified != file.lastModified() || mapping.length != file.length()) {
+                mapping = new Mapping(file, SEGMENT_SIZE, SEGMENT_OVERLAP);
+                mappingCache.put(key, mapping);
+            }
+            return mapping;
+        }
+    }
+
+    /**
+     * Return a read-only view of nBytes starting at position.  The view shares the mapped memory unless the range
+     * spans segments,  in which case it is copied.  The returned buffer is independent of this stream's position
+     * and may be used concurrently with other slices.
+     *
+     * @param position
+     * @param nBytes
+     * @return
+     */
+    public ByteBuffer slice(long position, int nBytes) throws IOException {
+
+        if (position < 0 || position + nBytes > length) {
+            throw new IOException("Range " + position + "-" + (position + nBytes) + " is outside file " + getSource());
+        }
+
+        int idx = (int) (position / segmentSize);
+        MappedByteBuffer segment = segments[idx];
+        int offset = (int) (position - idx * segmentSize);
+        if (offset + nBytes <= segment.capacity()) {
+            ByteBuffer dup = segment.duplicate();
+            dup.position(offset);
+            dup.limit(offset + nBytes);
+            return dup.slice();
+        } else {
+            byte[] bytes = new byte[nBytes];
+            read(position, bytes, 0, nBytes);
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long position() throws IOException {
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= length) return -1;
+        int idx = (int) (position / segmentSize);
+        int b = segments[idx].get((int) (position - idx * segmentSize));
+        position++;
+        return b & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (position >= this.length) return -1;
+        int n = read(position, buffer, offset, (int) Math.min(length, this.length - position));
+        position += n;
+        return n;
+    }
+
+    /**
+     * Copy n bytes starting at file position pos.  Does not change the stream position.
+     */
+    private int read(long pos, byte[] buffer, int offset, int n) {
+        int total = 0;
+        while (total < n) {
+            int idx = (int) (pos / segmentSize);
+            ByteBuffer dup = segments[idx].duplicate();
+            int segOffset = (int) (pos - idx * segmentSize);
+            int count = Math.min(n - total, dup.capacity() - segOffset);
+            dup.position(segOffset);
+            dup.get(buffer, offset + total, count);
+            total += count;
+            pos += count;
+        }
+        return total;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        return position >= length;
+    }
+
+    @Override
+    public String getSource() {
+        return file.getAbsolutePath();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Mapped buffers are released when garbage collected
+    }
+
+    private static class Mapping {
+
+        final long length;
+        final long lastModified;
+        final long segmentSize;
+        final MappedByteBuffer[] segments;
+
+        Mapping(File file, long segmentSize, int segmentOverlap) throws IOException {
+            this.segmentSize = segmentSize;
+            this.lastModified = file.lastModified();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                this.length = channel.size();
+                int nSegments = (int) Math.max(1, (length + segmentSize - 1) / segmentSize);
+                segments = new MappedByteBuffer[nSegments];
+                for (int i = 0; i < nSegments; i++) {
+                    long start = i * segmentSize;
+                    long size = Math.min(length - start, segmentSize + segmentOverlap);
+                    segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                }
+            }
+            // The mapping remains valid after the channel is closed
+        }
+    }
+}
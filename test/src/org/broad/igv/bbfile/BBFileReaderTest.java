@@ -26,9 +26,16 @@
 package org.broad.igv.bbfile;
 
 import org.broad.igv.util.TestUtils;
+import org.broad.igv.util.collections.FloatArrayList;
+import org.broad.igv.util.collections.IntArrayList;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -72,5 +79,116 @@ public class BBFileReaderTest {
 
     }
 
+    @Test
+    public void testBlockCache() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "wig/test_fixedStep.bigwig";
+        BBFileReader bbReader = new BBFileReader(path);
+        assertTrue(bbReader.isBigWigFile());
+        String chr = bbReader.getChromosomeNames().get(0);
+
+        int expectedCount = countWigItems(bbReader, chr);
+        assertTrue(expectedCount > 0);
+
+        BBDataBlockCache cache = bbReader.getBlockCache();
+        long misses = cache.getMissCount();
+        assertTrue(misses > 0);
+        assertEquals(misses, cache.size());
+
+        // A second pass is served from the cache
+        assertEquals(expectedCount, countWigItems(bbReader, chr));
+        assertEquals(misses, cache.getMissCount());
+        assertEquals(misses, cache.getHitCount());
+
+        // Concurrent iterators see the same data
+        cache.clear();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> counts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            counts.add(executor.submit(() -> countWigItems(bbReader, chr)));
+        }
+        for (Future<Integer> f : counts) {
+            assertEquals(expectedCount, f.get().intValue());
+        }
+        executor.shutdown();
 
+        // Evicting down to a single block
+        cache.setMaxMemory(1);
+        assertEquals(1, cache.size());
+
+        bbReader.close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testReadBigWigData() throws Exception {
+        for (String file : new String[]{"wig/test_fixedStep.bigwig", "wig/dummy_var_sample.bigwig"}) {
+            BBFileReader bbReader = new BBFileReader(TestUtils.DATA_DIR + file);
+            for (String chr : bbReader.getChromosomeNames()) {
+
+                IntArrayList starts = new IntArrayList();
+                IntArrayList ends = new IntArrayList();
+                FloatArrayList values = new FloatArrayList();
+                int n = bbReader.readBigWigData(chr, 0, Integer.MAX_VALUE, false, starts, ends, values);
+                assertEquals(n, starts.size());
+
+                BigWigIterator iter = bbReader.getBigWigIterator(chr, 0, chr, Integer.MAX_VALUE, false);
+                int i = 0;
+                while (iter.hasNext()) {
+                    WigItem item = iter.next();
+                    assertEquals(item.getStartBase(), starts.get(i));
+                    assertEquals(item.getEndBase(), ends.get(i));
+                    assertEquals(item.getWigValue(), values.get(i), 0);
+                    i++;
+                }
+                assertEquals(i, n);
+            }
+            bbReader.close();
+        }
+    }
+
+    @Test
+    public void testReadZoomData() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "bb/chr21.refseq.bb";
+        BBFileReader bbReader = new BBFileReader(path);
+        String chr = "chr21";
+        int start = 26490012;
+        int end = 42182827;
+
+        for (BBZoomLevelHeader header : bbReader.getZoomLevels().getZoomLevelHeaders()) {
+            int zoomLevel = header.getZoomLevel();
+
+            IntArrayList starts = new IntArrayList();
+            IntArrayList ends = new IntArrayList();
+            FloatArrayList mins = new FloatArrayList();
+            FloatArrayList maxs = new FloatArrayList();
+            FloatArrayList means = new FloatArrayList();
+            int n = bbReader.readZoomData(zoomLevel, chr, start, end, false, starts, ends, mins, maxs, means);
+
+            ZoomLevelIterator zlIter = bbReader.getZoomLevelIterator(zoomLevel, chr, start, chr, end, false);
+            int i = 0;
+            while (zlIter.hasNext()) {
+                ZoomDataRecord rec = zlIter.next();
+                assertEquals(rec.getChromStart(), starts.get(i));
+                assertEquals(rec.getChromEnd(), ends.get(i));
+                assertEquals(rec.getMinVal(), mins.get(i), 0);
+                assertEquals(rec.getMaxVal(), maxs.get(i), 0);
+                assertEquals(rec.getMeanVal(), means.get(i), 0);
+                i++;
+            }
+            assertEquals(i, n);
+        }
+        bbReader.close();
+    }
+
+    private static int countWigItems(BBFileReader reader, String chr) {
+        BigWigIterator iter = reader.getBigWigIterator(chr, 0, chr, Integer.MAX_VALUE, false);
+        int count = 0;
+        while (iter.hasNext()) {
+            assertNotNull(iter.next());
+            count++;
+        }
+        return count;
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.feature.LocusScore;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class CompactScoreListTest {
+
+    @Test
+    public void testGet() {
+        CompactScoreList scores = new CompactScoreList(new int[]{0, 10, 20}, new int[]{5, 15, 25}, new float[]{1, 2, 3});
+
+        assertEquals(3, scores.size());
+        LocusScore score = scores.get(1);
+        assertEquals(10, score.getStart());
+        assertEquals(15, score.getEnd());
+        assertEquals(2, score.getScore(), 0);
+
+        // Repeated access to the same index reuses the score
+        assertSame(score, scores.get(1));
+
+        LocusScore other = scores.get(2);
+        assertNotSame(score, other);
+        assertEquals(20, other.getStart());
+        assertEquals(25, other.getEnd());
+        assertEquals(3, other.getScore(), 0);
+        assertEquals(10, scores.get(1).getStart());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data.seg;
+
+import org.broad.igv.feature.LocusScore;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class SegmentStoreTest {
+
+    @Test
+    public void testSegments() throws Exception {
+
+        SegmentStore store = createStore();
+
+        assertEquals(2, store.getSamples().size());
+        assertEquals(5, store.getSegmentCount());
+        assertEquals(-1.5f, store.getDataMin());
+        assertEquals(2.0f, store.getDataMax());
+
+        // Segments are sorted by start within a sample
+        List<LocusScore> segments = store.getSegments("s1", "chr1");
+        assertEquals(3, segments.size());
+        assertEquals(100, segments.get(0).getStart());
+        assertEquals(200, segments.get(0).getEnd());
+        assertEquals(0.5f, segments.get(0).getScore());
+        assertEquals(300, segments.get(1).getStart());
+        assertEquals(1000, segments.get(2).getStart());
+        assertEquals("<br>a: 1", ((Segment) segments.get(1)).getDescription());
+        assertNull(((Segment) segments.get(0)).getDescription());
+
+        segments = store.getSegments("s2", "chr1");
+        assertEquals(1, segments.size());
+        assertEquals(-1.5f, segments.get(0).getScore());
+        assertEquals("<br>a: 1", ((Segment) segments.get(0)).getDescription());
+
+        assertNull(store.getSegments("s2", "chr2"));
+        assertNull(store.getSegments("s3", "chr1"));
+
+        // Segments added after the columns are built are merged,  and their descriptions still interned
+        String description = ((Segment) segments.get(0)).getDescription();
+        store.add("s3", "chr2", 5, 10, 1, new String(description));
+        store.add("s1", "chr1", 0, 50, 1, null);
+        assertEquals(4, store.getSegments("s1", "chr1").size());
+        assertEquals(0, store.getSegments("s1", "chr1").get(0).getStart());
+        assertEquals(1, store.getSegments("s3", "chr2").size());
+        assertSame(description, ((Segment) store.getSegments("s3", "chr2").get(0)).getDescription());
+        assertEquals(1, store.getSegments("s1", "chr2").size());
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+
+        SegmentStore store = createStore();
+        File file = File.createTempFile("segments", SegmentStore.EXTENSION);
+        file.deleteOnExit();
+        store.write(file, "hg19");
+
+        assertNull(SegmentStore.read(file, "hg18"));
+
+        SegmentStore copy = SegmentStore.read(file, "hg19");
+        assertEquals(store.getSamples(), copy.getSamples());
+        assertEquals(store.getChromosomes(), copy.getChromosomes());
+        assertEquals(store.getSegmentCount(), copy.getSegmentCount());
+        assertEquals(store.getDataMin(), copy.getDataMin());
+        assertEquals(store.getDataMax(), copy.getDataMax());
+
+        for (String sample : store.getSamples()) {
+            for (String chr : store.getChromosomes()) {
+                List<LocusScore> expected = store.getSegments(sample, chr);
+                List<LocusScore> actual = copy.getSegments(sample, chr);
+                if (expected == null) {
+                    assertNull(actual);
+                    continue;
+                }
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Segment e = (Segment) expected.get(i);
+                    Segment a = (Segment) actual.get(i);
+                    assertEquals(e.getStart(), a.getStart());
+                    assertEquals(e.getEnd(), a.getEnd());
+                    assertEquals(e.getScore(), a.getScore());
+                    assertEquals(e.getDescription(), a.getDescription());
+                }
+            }
+        }
+    }
+
+    private static SegmentStore createStore() {
+        SegmentStore store = new SegmentStore();
+        store.add("s1", "chr1", 1000, 2000, 1.0f, null);
+        store.add("s1", "chr1", 100, 200, 0.5f, null);
+        store.add("s2", "chr1", 100, 500, -1.5f, "<br>a: 1");
+        store.add("s1", "chr1", 300, 400, 2.0f, "<br>a: 1");
+        store.add("s1", "chr2", 10, 20, 0.0f, "<br>a: 2");
+        store.finish();
+        return store;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FeatureNameIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FeatureNameIndex.Builder createBuilder() {
+        FeatureNameIndex.Builder builder = new FeatureNameIndex.Builder(3);
+        builder.add("EGFR", "chr7", 55086724, 55275031);
+        builder.add("EGFLAM", "chr5", 38258510, 38465057);
+        builder.add("EGFLAM", "chr5", 38439399, 38465057);
+        builder.add("EGFLAM", "chr5_random", 100, 100000000);
+        builder.add("EGFLAM", "chr5", 38258510, 38465057);   // duplicate
+        builder.add("EGF", "chr4", 110834039, 110933422);
+        builder.add("KRAS", "chr12", 25249446, 25295121);
+        for (int i = 0; i < 5; i++) {
+            builder.add("MANY", "chr1", i * 100, i * 100 + 10 + i);
+        }
+        return builder;
+    }
+
+    @Test
+    public void testEntries() throws Exception {
+
+        FeatureNameIndex index = createBuilder().build(null, null);
+        assertEquals(5, index.getNameCount());
+
+        List<FeatureNameIndex.Entry> entries = index.getEntries("EGFLAM");
+        assertEquals(3, entries.size());
+        // Shortest chromosome name, then longest feature, first
+        assertEquals("chr5", entries.get(0).getChr());
+        assertEquals(38258510, entries.get(0).getStart());
+        assertEquals(38439399, entries.get(1).getStart());
+        assertEquals("chr5_random", entries.get(2).getChr());
+
+        // Limited to the 3 longest
+        entries = index.getEntries("MANY");
+        assertEquals(3, entries.size());
+        assertEquals(400, entries.get(0).getStart());
+
+        assertEquals(0, index.getEntries("EGFL").size());
+        assertEquals(0, index.getEntries("ZZZ").size());
+    }
+
+    @Test
+    public void testNames() throws Exception {
+
+        FeatureNameIndex index = createBuilder().build(null, null);
+
+        List<String> names = new ArrayList<>();
+        index.getNames("EG", 10, names);
+        assertEquals(3, names.size());
+        assertEquals("EGF", names.get(0));
+        assertEquals("EGFLAM", names.get(1));
+        assertEquals("EGFR", names.get(2));
+
+        names.clear();
+        index.getNames("EG", 2, names);
+        assertEquals(2, names.size());
+
+        names.clear();
+        index.getNames("X", 10, names);
+        assertEquals(0, names.size());
+    }
+
+    @Test
+    public void testPersist() throws Exception {
+
+        File sourceFile = folder.newFile("genes.bed");
+        File indexFile = new File(folder.getRoot(), "genes.names");
+
+        FeatureNameIndex index = createBuilder().build(indexFile, sourceFile);
+        assertTrue(indexFile.exists());
+        assertEquals(1, index.getEntries("KRAS").size());
+
+        FeatureNameIndex loaded = FeatureNameIndex.load(indexFile, sourceFile);
+        assertNotNull(loaded);
+        assertEquals(index.size(), loaded.size());
+        FeatureNameIndex.Entry entry = loaded.getEntries("KRAS").get(0);
+        assertEquals("chr12", entry.getChr());
+        assertEquals(25249446, entry.getStart());
+        assertEquals(25295121, entry.getEnd());
+
+        // A changed source file invalidates the index
+        try (FileWriter writer = new FileWriter(sourceFile)) {
+            writer.write("chr1\t0\t100\tNEW\n");
+        }
+        assertNull(FeatureNameIndex.load(indexFile, sourceFile));
+    }
+}
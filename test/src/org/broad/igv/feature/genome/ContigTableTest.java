@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.genome;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class ContigTableTest {
+
+    @Test
+    public void testLookup() {
+        int n = 100000;
+        List<String> names = new ArrayList<>(n);
+        int[] lengths = new int[n];
+        for (int i = 0; i < n; i++) {
+            names.add("scaffold_" + i);
+            lengths[i] = 1000 + (i % 17) * 100;
+        }
+        ContigTable table = new ContigTable(names, lengths);
+
+        assertEquals(n, table.size());
+        assertEquals(-1, table.indexOf("scaffold_" + n));
+        assertEquals(-1, table.indexOf(null));
+
+        // All contigs are small,  but together they are the genome.  All are kept in the whole genome view.
+        assertEquals(n, table.getWholeGenomeNames().size());
+        assertEquals(table.getTotalLength(), table.getWholeGenomeLength());
+
+        long offset = 0;
+        for (int i = 0; i < n; i++) {
+            String name = "scaffold_" + i;
+            assertEquals(i, table.indexOf(name));
+            assertEquals(offset, table.getOffset(name));
+            assertEquals(i, table.getWholeGenomePosition(offset));
+            assertEquals(i, table.getWholeGenomePosition(offset + lengths[i] - 1));
+            offset += lengths[i];
+        }
+        assertEquals(n - 1, table.getWholeGenomePosition(offset + 1000));
+    }
+
+    @Test
+    public void testBins() {
+        int n = 500000;
+        List<String> names = new ArrayList<>(n);
+        int[] lengths = new int[n];
+        for (int i = 0; i < n; i++) {
+            names.add("scaffold_" + i);
+            lengths[i] = i < 10 ? 50000000 : 500 + i % 1000;
+        }
+        ContigTable table = new ContigTable(names, lengths);
+
+        List<ContigTable.Bin> bins = table.getBins();
+        assertTrue(bins.size() < 2 * ContigTable.BIN_COUNT);
+
+        // Bins are contiguous and cover every contig
+        long offset = 0;
+        int count = 0;
+        for (ContigTable.Bin bin : bins) {
+            assertEquals(offset, bin.getOffset());
+            assertEquals(table.getOffset(bin.getFirstContig()), bin.getOffset());
+            offset += bin.getLength();
+            count += bin.getContigCount();
+        }
+        assertEquals(table.getWholeGenomeLength(), offset);
+        assertEquals(n, count);
+
+        // Large contigs are a bin of their own
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, bins.get(i).getContigCount());
+            assertEquals("scaffold_" + i, bins.get(i).getFirstContig());
+        }
+    }
+
+    @Test
+    public void testDropSmallContigs() {
+        List<String> names = Arrays.asList("chr1", "chr2", "chrM", "chrUn_1", "chr3");
+        int[] lengths = {200000000, 150000000, 16571, 40000, 100000000};
+        ContigTable table = new ContigTable(names, lengths);
+
+        assertEquals(Arrays.asList("chr1", "chr2", "chr3"), new ArrayList<>(table.getWholeGenomeNames()));
+        assertEquals(450000000L, table.getWholeGenomeLength());
+        assertEquals(350000000L, table.getOffset("chr3"));
+        assertFalse(table.isInWholeGenome("chrM"));
+        assertEquals(table.getWholeGenomeLength(), table.getOffset("chrM"));
+        assertEquals(3, table.getBins().size());
+        assertEquals(2, table.getWholeGenomePosition(350000000L));
+        assertEquals(table.getWholeGenomeNames(), table.getSummaryNames());
+    }
+
+    @Test
+    public void testSummaryNames() {
+        int n = 3 * ContigTable.MAX_SUMMARY_CONTIGS;
+        List<String> names = new ArrayList<>(n);
+        int[] lengths = new int[n];
+        for (int i = 0; i < n; i++) {
+            names.add("scaffold_" + i);
+            lengths[i] = 1000 + (i % 3) * 100;
+        }
+        ContigTable table = new ContigTable(names, lengths);
+        assertEquals(n, table.getWholeGenomeNames().size());
+
+        // The longest contigs,  in whole genome order
+        List<String> summaryNames = table.getSummaryNames();
+        assertEquals(ContigTable.MAX_SUMMARY_CONTIGS, summaryNames.size());
+        for (int i = 0; i < summaryNames.size(); i++) {
+            assertEquals("scaffold_" + (3 * i + 2), summaryNames.get(i));
+        }
+
+        // Ties at the shortest length kept are taken in order
+        lengths = new int[n];
+        Arrays.fill(lengths, 1000);
+        lengths[n - 1] = 2000;
+        table = new ContigTable(names, lengths);
+        summaryNames = table.getSummaryNames();
+        assertEquals(ContigTable.MAX_SUMMARY_CONTIGS, summaryNames.size());
+        assertEquals("scaffold_0", summaryNames.get(0));
+        assertEquals("scaffold_" + (ContigTable.MAX_SUMMARY_CONTIGS - 2), summaryNames.get(summaryNames.size() - 2));
+        assertEquals("scaffold_" + (n - 1), summaryNames.get(summaryNames.size() - 1));
+    }
+}
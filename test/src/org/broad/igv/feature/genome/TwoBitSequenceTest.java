@@ -0,0 +1,172 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.genome;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TwoBitSequenceTest extends AbstractHeadlessTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // chr1 has an N block at 4-8 and is masked at 10-13
+    static final String CHR1 = "ACGTNNNNACgtaGGTTCCAAT";
+    static final String CHR2 = "TTTTGGGGCCCCAAAAC";
+
+    @Test
+    public void testLittleEndian() throws Exception {
+        checkSequence(writeTwoBit(true));
+    }
+
+    @Test
+    public void testBigEndian() throws Exception {
+        checkSequence(writeTwoBit(false));
+    }
+
+    private void checkSequence(File file) throws Exception {
+
+        TwoBitSequence sequence = new TwoBitSequence(file.getAbsolutePath());
+
+        assertEquals(2, sequence.getChromosomeNames().size());
+        assertEquals("chr1", sequence.getChromosomeNames().get(0));
+        assertEquals(CHR1.length(), sequence.getChromosomeLength("chr1"));
+        assertEquals(CHR2.length(), sequence.getChromosomeLength("chr2"));
+        assertEquals(-1, sequence.getChromosomeLength("chrX"));
+
+        assertEquals(CHR1, new String(sequence.getSequence("chr1", 0, CHR1.length(), false)));
+        assertEquals(CHR2, new String(sequence.getSequence("chr2", 0, CHR2.length(), false)));
+
+        // Every sub interval, to exercise unaligned starts and ends and partial blocks
+        for (int start = 0; start < CHR1.length(); start++) {
+            for (int end = start + 1; end <= CHR1.length(); end++) {
+                assertEquals(CHR1.substring(start, end), new String(sequence.getSequence("chr1", start, end, false)));
+            }
+        }
+
+        // Out of bounds queries are clipped
+        assertEquals(CHR2.substring(10), new String(sequence.getSequence("chr2", 10, 1000, false)));
+        assertNull(sequence.getSequence("chr2", 100, 200, false));
+        assertNull(sequence.getSequence("chrX", 0, 10, false));
+
+        assertEquals('g', sequence.getBase("chr1", 10));
+        assertEquals('C', sequence.getBase("chr2", 16));
+    }
+
+    /**
+     * Write CHR1 and CHR2 to a version 0 2bit file
+     */
+    private File writeTwoBit(boolean littleEndian) throws IOException {
+
+        File file = folder.newFile(littleEndian ? "le.2bit" : "be.2bit");
+        String[] names = {"chr1", "chr2"};
+        String[] seqs = {CHR1, CHR2};
+
+        try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(file))) {
+
+            writeInt(dos, TwoBitSequence.SIGNATURE_LE, littleEndian);
+            writeInt(dos, 0, littleEndian);
+            writeInt(dos, names.length, littleEndian);
+            writeInt(dos, 0, littleEndian);
+
+            int offset = 16;
+            for (String name : names) offset += 1 + name.length() + 4;
+
+            for (int i = 0; i < names.length; i++) {
+                dos.writeByte(names[i].length());
+                dos.writeBytes(names[i]);
+                writeInt(dos, offset, littleEndian);
+                offset += recordSize(seqs[i]);
+            }
+
+            for (String seq : seqs) {
+                int[][] nBlocks = blocks(seq, false);
+                int[][] maskBlocks = blocks(seq, true);
+                writeInt(dos, seq.length(), littleEndian);
+                writeBlocks(dos, nBlocks, littleEndian);
+                writeBlocks(dos, maskBlocks, littleEndian);
+                writeInt(dos, 0, littleEndian);
+                byte[] packed = new byte[(seq.length() + 3) / 4];
+                for (int i = 0; i < seq.length(); i++) {
+                    int code = "TCAG".indexOf(Character.toUpperCase(seq.charAt(i)));
+                    if (code < 0) code = 0;  // N
+                    packed[i / 4] |= code << (6 - 2 * (i % 4));
+                }
+                dos.write(packed);
+            }
+        }
+        return file;
+    }
+
+    private static int recordSize(String seq) {
+        return 4 + 4 + 8 * blocks(seq, false)[0].length + 4 + 8 * blocks(seq, true)[0].length + 4 + (seq.length() + 3) / 4;
+    }
+
+    /**
+     * Starts and sizes of runs of N,  or of lower case bases if mask is true
+     */
+    private static int[][] blocks(String seq, boolean mask) {
+        int count = 0;
+        int[] s = new int[seq.length()];
+        int[] l = new int[seq.length()];
+        for (int i = 0; i < seq.length(); i++) {
+            char c = seq.charAt(i);
+            boolean in = mask ? Character.isLowerCase(c) : c == 'N';
+            if (in) {
+                if (count > 0 && s[count - 1] + l[count - 1] == i) {
+                    l[count - 1]++;
+                } else {
+                    s[count] = i;
+                    l[count] = 1;
+                    count++;
+                }
+            }
+        }
+        int[][] result = new int[2][count];
+        System.arraycopy(s, 0, result[0], 0, count);
+        System.arraycopy(l, 0, result[1], 0, count);
+        return result;
+    }
+
+    private static void writeBlocks(DataOutputStream dos, int[][] blocks, boolean littleEndian) throws IOException {
+        writeInt(dos, blocks[0].length, littleEndian);
+        for (int v : blocks[0]) writeInt(dos, v, littleEndian);
+        for (int v : blocks[1]) writeInt(dos, v, littleEndian);
+    }
+
+    private static void writeInt(DataOutputStream dos, int value, boolean littleEndian) throws IOException {
+        dos.writeInt(littleEndian ? Integer.reverseBytes(value) : value);
+    }
+}
@@ -30,11 +30,17 @@ import org.broad.igv.feature.genome.Sequence;
 import org.broad.igv.feature.genome.SequenceWrapper;
 import org.broad.igv.feature.genome.fasta.FastaIndexedSequence;
 import org.broad.igv.feature.genome.fasta.FastaUtils;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.util.TestUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 
 import static org.junit.Assert.assertEquals;
 
@@ -143,4 +149,82 @@ public class FastaIndexedSequenceTest {
         }
 
     }
+
+    @Test
+    public void testCopyBases() throws Exception {
+
+        byte[] bytes = "ACGTA\r\nCGTAC\r\nGT".getBytes();
+
+        // Start at the 4th base of the first line
+        byte[] dest = new byte[8];
+        int n = FastaIndexedSequence.copyBases(ByteBuffer.wrap(bytes, 3, bytes.length - 3), 3, 5, 7, dest);
+        assertEquals(8, n);
+        assertEquals("TACGTACG", new String(dest));
+
+        // The buffer ends before dest is full
+        dest = new byte[10];
+        n = FastaIndexedSequence.copyBases(ByteBuffer.wrap(bytes, 0, 11), 0, 5, 7, dest);
+        assertEquals(9, n);
+        assertEquals("ACGTACGTA", new String(dest, 0, n));
+    }
+
+    @Test
+    public void testLineTerminators() throws Exception {
+        boolean memoryMap = PreferencesManager.getPreferences().getAsBoolean(Constants.MEMORY_MAP_LOCAL_FILES);
+        try {
+            for (boolean mapped : new boolean[]{false, true}) {
+                PreferencesManager.getPreferences().put(Constants.MEMORY_MAP_LOCAL_FILES, mapped);
+                for (String terminator : new String[]{"\n", "\r\n"}) {
+                    FastaIndexedSequence sequence = createSequence(terminator, 0);
+                    assertEquals("ACGTA", new String(sequence.getSequence("chr1", 0, 5, false)));
+                    assertEquals("TACGTACGT", new String(sequence.getSequence("chr1", 3, 12, false)));
+                    assertEquals("GTACGTACGTAC", new String(sequence.getSequence("chr1", 6, 100, false)));
+                }
+            }
+        } finally {
+            PreferencesManager.getPreferences().put(Constants.MEMORY_MAP_LOCAL_FILES, memoryMap);
+        }
+    }
+
+    /**
+     * The index claims more bases than the file contains,  the bases present are returned
+     */
+    @Test
+    public void testTruncatedFile() throws Exception {
+        boolean memoryMap = PreferencesManager.getPreferences().getAsBoolean(Constants.MEMORY_MAP_LOCAL_FILES);
+        try {
+            for (boolean mapped : new boolean[]{false, true}) {
+                PreferencesManager.getPreferences().put(Constants.MEMORY_MAP_LOCAL_FILES, mapped);
+                FastaIndexedSequence sequence = createSequence("\n", 10);
+                assertEquals("ACGTACGTACGTACGTAC", new String(sequence.getSequence("chr1", 0, 28, false)));
+                assertEquals("CGTAC", new String(sequence.getSequence("chr1", 13, 28, false)));
+            }
+        } finally {
+            PreferencesManager.getPreferences().put(Constants.MEMORY_MAP_LOCAL_FILES, memoryMap);
+        }
+    }
+
+    /**
+     * Create a fasta file with a single 18 base sequence,  5 bases per line.
+     *
+     * @param terminator line terminator
+     * @param extraBases bases claimed by the index in excess of those in the file
+     */
+    private static FastaIndexedSequence createSequence(String terminator, int extraBases) throws IOException {
+
+        File fasta = File.createTempFile("test", ".fa");
+        fasta.deleteOnExit();
+        File index = new File(fasta.getAbsolutePath() + ".fai");
+        index.deleteOnExit();
+
+        String header = ">chr1" + terminator;
+        try (Writer writer = new FileWriter(fasta)) {
+            writer.write(header);
+            writer.write("ACGTA" + terminator + "CGTAC" + terminator + "GTACG" + terminator + "TAC" + terminator);
+        }
+        try (Writer writer = new FileWriter(index)) {
+            writer.write("chr1\t" + (18 + extraBases) + "\t" + header.length() + "\t5\t" + (5 + terminator.length()) + "\n");
+        }
+        return new FastaIndexedSequence(fasta.getAbsolutePath());
+    }
 }
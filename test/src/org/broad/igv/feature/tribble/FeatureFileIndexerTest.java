@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.tribble;
+
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.CloseableTribbleIterator;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.FeatureCodec;
+import htsjdk.tribble.index.Index;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FeatureFileIndexerTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testCreateIndex() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "bed/Unigene.sample.sorted.bed";
+        FeatureCodec codec = CodecFactory.getCodec(path, genome);
+        Index index = FeatureFileIndexer.createIndex(path, codec, genome);
+        assertNotNull(index);
+        assertTrue(index.containsChromosome("chr2"));
+
+        // Queries against the new index must match those against the index in the test data
+        String chr = "chr2";
+        int start = 178700000;
+        int end = 179000000;
+        List<Feature> expected = query(AbstractFeatureReader.getFeatureReader(path, path + ".idx", codec, true), chr, start, end);
+        List<Feature> features = query(AbstractFeatureReader.getFeatureReader(path, codec, index), chr, start, end);
+        assertTrue(expected.size() > 0);
+        assertEquals(expected.size(), features.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStart(), features.get(i).getStart());
+            assertEquals(expected.get(i).getEnd(), features.get(i).getEnd());
+        }
+
+        List<LocusScore> coverage = FeatureFileIndexer.getGenomeCoverage(index, genome);
+        assertNotNull(coverage);
+        assertTrue(coverage.size() > 0);
+    }
+
+    @Test
+    public void testUnsorted() throws Exception {
+        String path = TestUtils.DATA_DIR + "bed/Unigene.unsorted.bed";
+        FeatureCodec codec = CodecFactory.getCodec(path, genome);
+        assertNull(FeatureFileIndexer.createIndex(path, codec, genome));
+    }
+
+    private static List<Feature> query(AbstractFeatureReader reader, String chr, int start, int end) throws Exception {
+        List<Feature> features = new ArrayList<>();
+        CloseableTribbleIterator<Feature> iter = reader.query(chr, start, end);
+        try {
+            while (iter.hasNext()) {
+                features.add(iter.next());
+            }
+        } finally {
+            iter.close();
+            reader.close();
+        }
+        return features;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.broad.igv.gwas;
+
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.util.ResourceLocator;
+import org.junit.Test;
+
+import java.io.*;
+
+import static junit.framework.Assert.*;
+
+public class GWASOffsetIndexTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testPlainText() throws Exception {
+        File file = File.createTempFile("offsets", ".gwas");
+        file.deleteOnExit();
+        try (OutputStream os = new FileOutputStream(file)) {
+            writeData(os);
+        }
+        checkDescriptions(file);
+    }
+
+    @Test
+    public void testBlockCompressed() throws Exception {
+        File file = File.createTempFile("offsets", ".gwas.gz");
+        file.deleteOnExit();
+        try (OutputStream os = new BlockCompressedOutputStream(file)) {
+            writeData(os);
+        }
+        checkDescriptions(file);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File file = File.createTempFile("offsets", ".gwas");
+        file.deleteOnExit();
+        File indexFile = new File(file.getPath() + GWASOffsetIndex.EXTENSION);
+        indexFile.deleteOnExit();
+
+        GWASOffsetIndex.Builder builder = new GWASOffsetIndex.Builder(file.getPath(), false);
+        for (int i = 0; i < 250; i++) {
+            builder.add("chr1", 10 * i);
+        }
+        builder.add("chr2", 5000);
+        builder.build().write(indexFile.getPath());
+
+        GWASOffsetIndex index = GWASOffsetIndex.load(file.getPath(), false);
+        assertEquals(0, index.getOffset("chr1", 99));
+        assertEquals(1000, index.getOffset("chr1", 100));
+        assertEquals(2000, index.getOffset("chr1", 249));
+        assertEquals(-1, index.getOffset("chr1", 250));
+        assertEquals(5000, index.getOffset("chr2", 0));
+        assertEquals(-1, index.getOffset("chr3", 0));
+
+        // An index of a bgzipped file is not used for a plain one
+        assertNull(GWASOffsetIndex.load(file.getPath(), true));
+    }
+
+    /**
+     * 350 rows on chr1 and 50 on chr2.  Every 7th row has no p-value and is not a data point.
+     */
+    private void writeData(OutputStream os) throws IOException {
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(os));
+        pw.println("CHR\tSNP\tBP\tP");
+        for (int i = 0; i < 400; i++) {
+            String chr = i < 350 ? "chr1" : "chr2";
+            String p = i % 7 == 0 ? "NA" : String.valueOf((i + 1) / 1000.0);
+            pw.println(chr + "\trs" + i + "\t" + (100 * i) + "\t" + p);
+        }
+        pw.flush();
+    }
+
+    private void checkDescriptions(File file) throws Exception {
+
+        GWASParser parser = new GWASParser(new ResourceLocator(file.getPath()), genome);
+        GWASData gData = parser.parse();
+        assertTrue(parser.isIndexed());
+
+        String[] chrs = {"chr1", "chr1", "chr1", "chr2"};
+        int[] indexes = {0, 150, 299, 40};
+        for (int i = 0; i < chrs.length; i++) {
+            String chr = chrs[i];
+            int index = indexes[i];
+            int location = gData.getLocations().get(chr).get(index);
+            double value = gData.getValues().get(chr).get(index);
+
+            gData.getDescriptionCache().clear();
+            gData.getDescriptionCache().setMaxSize(20);
+            parser.parseDescriptions(gData, chr, index);
+
+            String description = gData.getDescriptionCache().getDescription(chr, location, value);
+            assertNotNull(description);
+            assertTrue(description.startsWith(chr + "\trs" + (location / 100) + "\t"));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.broad.igv.gwas;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.*;
+
+public class GWASSummaryTest {
+
+    @Test
+    public void testLevels() throws Exception {
+
+        int binSize = GWASSummary.MIN_BIN_SIZE;
+        int[] locations = {10, 20, binSize + 5, 5 * binSize, 5 * binSize + 1, 40 * binSize};
+        double[] values = {1, 8, 2, 4, Double.NaN, 6.5};
+        GWASSummary summary = new GWASSummary(locations, values, locations.length, 8);
+
+        assertNull(summary.getLevel(binSize - 1));
+
+        GWASSummary.Level level = summary.getLevel(binSize);
+        assertEquals(binSize, level.binSize);
+        assertEquals(4, level.bins.length);
+        assertEquals(0, level.bins[0]);
+        assertEquals(8f, level.max[0]);
+        assertEquals(5, level.bins[2]);
+        assertEquals(4f, level.max[2]);
+
+        // Value bands are 1/8 wide
+        assertEquals((1L << 8) | (1L << 63), level.bands[0]);
+
+        level = summary.getLevel(4.5 * binSize);
+        assertEquals(4 * binSize, level.binSize);
+        assertEquals(3, level.bins.length);
+        assertEquals(8f, level.max[0]);
+        assertEquals(1, level.bins[1]);
+        assertEquals(10, level.bins[2]);
+
+        assertEquals(0, level.indexOf(0));
+        assertEquals(1, level.indexOf(4 * binSize));
+        assertEquals(2, level.indexOf(8 * binSize));
+        assertEquals(3, level.indexOf(44 * binSize));
+
+        // The coarsest level has a single bin
+        level = summary.getLevel(Integer.MAX_VALUE);
+        assertEquals(1, level.bins.length);
+        assertEquals(8f, level.max[0]);
+    }
+
+    @Test
+    public void testStartIndex() throws Exception {
+        int[] locations = {5, 10, 10, 20};
+        assertEquals(0, GWASData.getStartIndex(locations, 0));
+        assertEquals(1, GWASData.getStartIndex(locations, 10));
+        assertEquals(3, GWASData.getStartIndex(locations, 10.5));
+        assertEquals(4, GWASData.getStartIndex(locations, 21));
+    }
+}
@@ -32,6 +32,7 @@ import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.sam.reader.AlignmentReader;
 import org.broad.igv.sam.reader.AlignmentReaderFactory;
 import org.broad.igv.sam.reader.ReadGroupFilter;
+import org.broad.igv.track.Track;
 import org.broad.igv.ui.panel.ReferenceFrame;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.TestUtils;
@@ -368,6 +369,79 @@ public class AlignmentDataManagerTest extends AbstractHeadlessTest {
         }
     }
 
+    @Test
+    public void testIntervalCacheEviction() throws Exception {
+
+        // Each interval costs 80 bytes per position for counts,  budget allows two 1kb intervals
+        AlignmentDataManager.IntervalCache cache = new AlignmentDataManager.IntervalCache(2 * 80 * 1000);
+
+        AlignmentInterval i1 = createEmptyInterval("chr1", 0, 1000);
+        AlignmentInterval i2 = createEmptyInterval("chr1", 5000, 6000);
+        AlignmentInterval i3 = createEmptyInterval("chr1", 10000, 11000);
+
+        cache.add(i1, null);
+        cache.add(i2, null);
+        Assert.assertEquals(2, cache.size());
+
+        // Touch i1, making i2 the least recently used
+        Assert.assertSame(i1, cache.getIntervalForRange(new org.broad.igv.feature.Range("chr1", 100, 200)));
+
+        cache.add(i3, null);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertNull(cache.getIntervalForRange(new org.broad.igv.feature.Range("chr1", 5100, 5200)));
+        Assert.assertSame(i1, cache.getIntervalForRange(new org.broad.igv.feature.Range("chr1", 100, 200)));
+
+        // An interval covering cached intervals replaces them
+        AlignmentInterval i4 = createEmptyInterval("chr1", 0, 11000);
+        cache.add(i4, null);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getEvictionCount());
+    }
+
+    /**
+     * Caches created with the default budget share it equally
+     */
+    @Test
+    public void testSharedBudget() throws Exception {
+
+        AlignmentDataManager.IntervalCache c1 = new AlignmentDataManager.IntervalCache();
+        long alone = c1.getMaxMemory();
+        AlignmentDataManager.IntervalCache c2 = new AlignmentDataManager.IntervalCache();
+        long shared = c1.getMaxMemory();
+        Assert.assertTrue(shared < alone);
+        Assert.assertEquals(shared, c2.getMaxMemory());
+
+        c2.release();
+        Assert.assertTrue(c1.getMaxMemory() > shared);
+        c1.release();
+    }
+
+    @Test
+    public void testUnsubscribeReleasesInsertions() throws Exception {
+
+        ResourceLocator locator = new ResourceLocator(TestUtils.DATA_DIR + "bam/gstt1_sample.bam");
+        AlignmentDataManager manager = new AlignmentDataManager(locator, genome);
+        Track track = new CoverageTrack();
+        manager.subscribe(track);
+
+        long[] keys = {(1000L << 32) | 3};
+        AlignmentInterval interval = new AlignmentInterval("chr1", 0, 5000, new ArrayList<Alignment>(),
+                new DenseAlignmentCounts(0, 5000, null), null, new ArrayList<DownsampledInterval>(),
+                InsertionManager.Insertions.fromKeys(keys, keys.length));
+        manager.addPrefetchedInterval(interval);
+        Assert.assertEquals(1, InsertionManager.getInstance().getInsertions("chr1", 0, 5000).size());
+
+        manager.unsubscribe(track);
+        Assert.assertEquals(0, manager.getIntervalCache().size());
+        Assert.assertNull(InsertionManager.getInstance().getInsertions("chr1", 0, 5000));
+    }
+
+    private static AlignmentInterval createEmptyInterval(String chr, int start, int end) {
+        return new AlignmentInterval(chr, start, end, new ArrayList<Alignment>(),
+                new DenseAlignmentCounts(start, end, null), null, new ArrayList<DownsampledInterval>());
+    }
+
     /**
      * Load alignment interval. Here for other tests, so we don't need to expose
      * {@link AlignmentDataManager#loadInterval(String, int, int, AlignmentTrack.RenderOptions)}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.Globals;
+import org.broad.igv.feature.Range;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.*;
+
+public class AlignmentPrefetcherTest {
+
+    private static final String BAM = TestUtils.DATA_DIR + "bam/gstt1_sample.bam";
+
+    private static final Range TARGET = new Range("chr22", 24370000, 24400000);
+
+    @BeforeClass
+    public static void setUpClass() {
+        Globals.setHeadless(true);
+    }
+
+    @Before
+    public void setUp() {
+        // Downsampling is random,  so would make alignment counts differ between loads
+        PreferencesManager.getPreferences().put(Constants.SAM_DOWNSAMPLE_READS, false);
+    }
+
+    @After
+    public void tearDown() {
+        PreferencesManager.getPreferences().remove(Constants.SAM_DOWNSAMPLE_READS);
+    }
+
+    /**
+     * A prefetch waits for the load lock,  and a foreground load of a range it covers waits for the prefetch.
+     */
+    @Test
+    public void testLoadLock() throws Exception {
+
+        AlignmentDataManager manager = new AlignmentDataManager(new ResourceLocator(BAM), null);
+        AlignmentPrefetcher prefetcher = new AlignmentPrefetcher(manager);
+
+        AlignmentPrefetcher.PrefetchTask task;
+        synchronized (manager.getLoadLock()) {
+            task = prefetcher.prefetch(new Range[]{TARGET}, new AlignmentTrack.RenderOptions());
+            Thread.sleep(200);
+            assertFalse(task.isDone());
+            assertFalse(manager.isLoaded(TARGET));
+        }
+
+        prefetcher.awaitOrCancel(new Range("chr22", 24380000, 24390000));
+        assertTrue(task.isDone());
+        assertTrue(manager.isLoaded(TARGET));
+    }
+
+    /**
+     * A cancelled prefetch caches nothing,  and does not affect other loads from the same reader.
+     */
+    @Test
+    public void testCancel() throws Exception {
+
+        AlignmentDataManager manager = new AlignmentDataManager(new ResourceLocator(BAM), null);
+        AlignmentPrefetcher prefetcher = new AlignmentPrefetcher(manager);
+
+        int expectedCount = countAlignments(manager.loadInterval(TARGET.getChr(), TARGET.getStart(), TARGET.getEnd(), null));
+        assertTrue(expectedCount > 0);
+
+        AlignmentPrefetcher.PrefetchTask task;
+        synchronized (manager.getLoadLock()) {
+            task = prefetcher.prefetch(new Range[]{TARGET}, new AlignmentTrack.RenderOptions());
+            task.cancel();
+        }
+        task.future.get(10, TimeUnit.SECONDS);
+        assertFalse(manager.isLoaded(TARGET));
+
+        AlignmentInterval interval = manager.loadInterval(TARGET.getChr(), TARGET.getStart(), TARGET.getEnd(), null);
+        assertEquals(expectedCount, countAlignments(interval));
+    }
+
+    /**
+     * A foreground load outside the prefetched range cancels the prefetch and waits for it to stop
+     */
+    @Test
+    public void testAwaitOrCancel() throws Exception {
+
+        AlignmentDataManager manager = new AlignmentDataManager(new ResourceLocator(BAM), null);
+        AlignmentPrefetcher prefetcher = new AlignmentPrefetcher(manager);
+
+        AlignmentPrefetcher.PrefetchTask task;
+        Thread foreground = new Thread(() -> prefetcher.awaitOrCancel(new Range("chr22", 10000000, 10010000)));
+        synchronized (manager.getLoadLock()) {
+            task = prefetcher.prefetch(new Range[]{TARGET}, new AlignmentTrack.RenderOptions());
+            foreground.start();
+            Thread.sleep(200);
+            assertTrue(task.cancelled.get());
+        }
+        foreground.join(10000);
+        assertFalse(foreground.isAlive());
+        assertTrue(task.isDone());
+        assertFalse(manager.isLoaded(TARGET));
+    }
+
+    private static int countAlignments(AlignmentInterval interval) {
+        int count = 0;
+        for (Alignment a : interval.getAlignments()) {
+            if (a != null) count++;
+        }
+        return count;
+    }
+}
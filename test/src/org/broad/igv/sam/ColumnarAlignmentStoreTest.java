@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ColumnarAlignmentStoreTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testCopy() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "bam/gstt1_sample.bam";
+        AlignmentReader reader = AlignmentReaderFactory.getReader(new ResourceLocator(path));
+
+        List<Alignment> alignments = new ArrayList<Alignment>();
+        CloseableIterator<Alignment> iter = reader.iterator();
+        while (iter.hasNext() && alignments.size() < 1000) {
+            Alignment a = iter.next();
+            if (a.isMapped()) {
+                alignments.add(a);
+            }
+        }
+        iter.close();
+        reader.close();
+
+        ColumnarAlignmentStore store = ColumnarAlignmentStore.copyOf(alignments);
+        assertEquals(alignments.size(), store.size());
+
+        for (int i = 0; i < alignments.size(); i++) {
+            Alignment expected = alignments.get(i);
+            Alignment actual = store.get(i);
+
+            assertEquals(expected.getReadName(), actual.getReadName());
+            assertEquals(expected.getChr(), actual.getChr());
+            assertEquals(expected.getStart(), actual.getStart());
+            assertEquals(expected.getEnd(), actual.getEnd());
+            assertEquals(expected.getAlignmentStart(), actual.getAlignmentStart());
+            assertEquals(expected.getAlignmentEnd(), actual.getAlignmentEnd());
+            assertEquals(expected.getCigarString(), actual.getCigarString());
+            assertEquals(expected.getMappingQuality(), actual.getMappingQuality());
+            assertEquals(expected.isNegativeStrand(), actual.isNegativeStrand());
+            assertEquals(expected.isPaired(), actual.isPaired());
+            assertEquals(expected.isProperPair(), actual.isProperPair());
+            assertEquals(expected.isDuplicate(), actual.isDuplicate());
+            assertEquals(expected.getFirstOfPairStrand(), actual.getFirstOfPairStrand());
+            assertEquals(expected.getPairOrientation(), actual.getPairOrientation());
+            assertEquals(expected.getSample(), actual.getSample());
+
+            if (expected.getMate() != null) {
+                assertEquals(expected.getMate().getStart(), actual.getMate().getStart());
+                assertEquals(expected.getMate().isMapped(), actual.getMate().isMapped());
+            }
+
+            AlignmentBlock[] expectedBlocks = expected.getAlignmentBlocks();
+            AlignmentBlock[] actualBlocks = actual.getAlignmentBlocks();
+            assertEquals(expectedBlocks.length, actualBlocks.length);
+            for (int b = 0; b < expectedBlocks.length; b++) {
+                assertEquals(expectedBlocks[b].getStart(), actualBlocks[b].getStart());
+                assertEquals(expectedBlocks[b].getLength(), actualBlocks[b].getLength());
+                assertEquals(expectedBlocks[b].isSoftClipped(), actualBlocks[b].isSoftClipped());
+                assertArrayEquals(expectedBlocks[b].getBases(), actualBlocks[b].getBases());
+                assertArrayEquals(expectedBlocks[b].getQualities(), actualBlocks[b].getQualities());
+            }
+            assertEquals(expected.getInsertions().length, actual.getInsertions().length);
+
+            int pos = expected.getAlignmentStart() + 1;
+            assertEquals(expected.getBase(pos), actual.getBase(pos));
+
+            // Tags
+            for (SAMRecord.SAMTagAndValue attribute : ((PicardAlignment) expected).getRecord().getAttributes()) {
+                Object expectedValue = expected.getAttribute(attribute.tag);
+                Object actualValue = actual.getAttribute(attribute.tag);
+                assertTrue(attribute.tag, Arrays.deepEquals(new Object[]{expectedValue}, new Object[]{actualValue}));
+            }
+            assertNull(actual.getAttribute("ZZ"));
+            assertEquals(expected.getAttribute("TEMPLATE_ORIENTATION"), actual.getAttribute("TEMPLATE_ORIENTATION"));
+        }
+
+        // Views are created once per row
+        assertSame(store.get(0), store.get(0));
+        assertNotSame(store.get(0), store.get(1));
+    }
+
+    /**
+     * Alignments which do not expose their tags are retained as is
+     */
+    @Test
+    public void testRetainedAlignment() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "bam/gstt1_sample.bam";
+        AlignmentReader reader = AlignmentReaderFactory.getReader(new ResourceLocator(path));
+        CloseableIterator<Alignment> iter = reader.iterator();
+        Alignment first = iter.next();
+        Alignment second = iter.next();
+        iter.close();
+        reader.close();
+
+        PairedAlignment paired = new PairedAlignment(second);
+        ColumnarAlignmentStore store = ColumnarAlignmentStore.copyOf(Arrays.asList(first, paired));
+
+        assertEquals(2, store.size());
+        assertSame(paired, store.get(1));
+        assertNotSame(first, store.get(0));
+        assertEquals(first.getReadName(), store.get(0).getReadName());
+    }
+
+    /**
+     * Mate sequences are kept whether they are set before the alignment is added,  after,  or on the view
+     */
+    @Test
+    public void testMateSequence() throws Exception {
+
+        PicardAlignment before = mateUnmapped("before");
+        before.setMateSequence("AAAA");
+        PicardAlignment after = mateUnmapped("after");
+        PicardAlignment view = mateUnmapped("view");
+
+        ColumnarAlignmentStore store = ColumnarAlignmentStore.copyOf(Arrays.<Alignment>asList(before, after, view));
+        after.setMateSequence("CCCC");
+        store.get(2).setMateSequence("GGGG");
+        store.resolveMateSequences();
+        after.setMateSequence("TTTT");   // Too late,  the store has released the alignment
+
+        assertTrue(store.get(0).getValueString(100, 0, null).contains("Mate sequence: AAAA"));
+        assertTrue(store.get(1).getValueString(100, 0, null).contains("Mate sequence: CCCC"));
+        assertTrue(store.get(2).getValueString(100, 0, null).contains("Mate sequence: GGGG"));
+
+        // Tags are decoded once
+        assertEquals("x", store.get(0).getAttribute("RG"));
+        assertSame(store.get(0).getAttribute("RG"), store.get(0).getAttribute("RG"));
+    }
+
+    private static PicardAlignment mateUnmapped(String readName) {
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence(new SAMSequenceRecord("chr1", 10000));
+        SAMRecord record = new SAMRecord(header);
+        record.setReadName(readName);
+        record.setReferenceName("chr1");
+        record.setAlignmentStart(100);
+        record.setCigarString("4M");
+        record.setReadString("ACGT");
+        record.setBaseQualityString("IIII");
+        record.setReadPairedFlag(true);
+        record.setFirstOfPairFlag(true);
+        record.setMateUnmappedFlag(true);
+        record.setMateReferenceName("chr1");
+        record.setMateAlignmentStart(100);
+        record.setAttribute("RG", "x");
+        return new PicardAlignment(record);
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.broad.igv.sam;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class InsertionManagerTest {
+
+    @Test
+    public void testFromKeys() throws Exception {
+
+        InsertionManager.Insertions insertions = insertions(30, 2, 10, 5, 30, 7, 20, 1, 10, 3);
+
+        assertEquals(3, insertions.positions.length);
+        assertEquals(10, insertions.positions[0]);
+        assertEquals(5, insertions.sizes[0]);
+        assertEquals(20, insertions.positions[1]);
+        assertEquals(1, insertions.sizes[1]);
+        assertEquals(30, insertions.positions[2]);
+        assertEquals(7, insertions.sizes[2]);
+
+        assertEquals(0, insertions.indexOf(0));
+        assertEquals(1, insertions.indexOf(10.5));
+        assertEquals(3, insertions.indexOf(31));
+        assertEquals(7, insertions.getSize(30));
+        assertEquals(0, insertions.getSize(25));
+    }
+
+    @Test
+    public void testIntervalLifetime() throws Exception {
+
+        InsertionManager manager = new InsertionManager();
+        AlignmentInterval first = interval(0, 1000, insertions(100, 2, 500, 4));
+        AlignmentInterval second = interval(400, 2000, insertions(500, 9, 1500, 1));
+
+        assertNull(manager.getInsertions("chr1", 0, 2000));
+
+        manager.addInterval(first);
+        manager.addInterval(second);
+
+        List<InsertionMarker> markers = manager.getInsertions("chr1", 0, 2000);
+        assertEquals(3, markers.size());
+        assertEquals(100, markers.get(0).position);
+        assertEquals(500, markers.get(1).position);
+        assertEquals(9, markers.get(1).size);
+        assertEquals(1500, markers.get(2).position);
+
+        markers = manager.getInsertions("chr1", 200, 1499);
+        assertEquals(1, markers.size());
+        assertEquals(500, markers.get(0).position);
+
+        manager.setSelected("chr1", 500);
+        assertEquals(9, manager.getSelectedInsertion("chr1").size);
+
+        manager.removeInterval(second);
+        markers = manager.getInsertions("chr1", 0, 2000);
+        assertEquals(2, markers.size());
+        assertEquals(4, markers.get(1).size);
+        assertEquals(4, manager.getSelectedInsertion("chr1").size);
+
+        manager.removeInterval(first);
+        assertNull(manager.getInsertions("chr1", 0, 2000));
+        assertNull(manager.getSelectedInsertion("chr1"));
+    }
+
+    private static AlignmentInterval interval(int start, int end, InsertionManager.Insertions insertions) {
+        return new AlignmentInterval("chr1", start, end, null, null, null, null, insertions);
+    }
+
+    private static InsertionManager.Insertions insertions(int... positionSizePairs) {
+        long[] keys = new long[positionSizePairs.length / 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) positionSizePairs[2 * i] << 32) | positionSizePairs[2 * i + 1];
+        }
+        return InsertionManager.Insertions.fromKeys(keys, keys.length);
+    }
+}
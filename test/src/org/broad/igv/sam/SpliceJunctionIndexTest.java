@@ -0,0 +1,187 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
+
+public class SpliceJunctionIndexTest {
+
+    private static final int BIN = SpliceJunctionIndex.BIN_SIZE;
+
+    private final SpliceJunctionHelper.LoadOptions loadOptions = new SpliceJunctionHelper.LoadOptions(0, 0);
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        SpliceJunctionHelper chr1 = new SpliceJunctionHelper(loadOptions);
+        addJunction(chr1, false, 1000, 2000, 5, 7);
+        addJunction(chr1, true, 1000, 2000, 3, 2);
+        addJunction(chr1, false, 5 * BIN + 10, 6 * BIN, 20, 1);
+        SpliceJunctionHelper chr2 = new SpliceJunctionHelper(loadOptions);
+        addJunction(chr2, true, 300, 900, 1, 40);
+
+        File file = File.createTempFile("junctions", SpliceJunctionIndex.EXTENSION);
+        file.deleteOnExit();
+        try (SpliceJunctionIndex.Writer writer = new SpliceJunctionIndex.Writer(file.getAbsolutePath(), 4, 3, 10)) {
+            writer.addSequence("chr1", chr1);
+            writer.addSequence("chr2", chr2);
+        }
+        SpliceJunctionIndex index = SpliceJunctionIndex.read(file.getAbsolutePath());
+
+        assertJunctions(chr1, load(index, "chr1", 0, 10 * BIN));
+        assertJunctions(chr2, load(index, "chr2", 0, 10 * BIN));
+        assertEquals(0, load(index, "chr3", 0, 10 * BIN).size());
+
+        // Queries beyond the last bin return nothing
+        assertEquals(0, load(index, "chr1", 100 * BIN, 101 * BIN).size());
+    }
+
+    /**
+     * Junctions are returned if their flanking regions overlap the query,  the query end is exclusive
+     */
+    @Test
+    public void testBinEdges() throws Exception {
+
+        SpliceJunctionHelper helper = new SpliceJunctionHelper(loadOptions);
+        addJunction(helper, false, 100, BIN - 10, 10, 10);              // Feature ends at BIN
+        addJunction(helper, false, BIN + 10, BIN + 500, 10, 10);        // Feature starts at BIN
+        addJunction(helper, false, 2 * BIN + 10, 2 * BIN + 500, 11, 5); // Feature starts at 2 * BIN - 1
+        addJunction(helper, false, 2 * BIN + 10, 2 * BIN + 600, 10, 5); // Feature starts at 2 * BIN
+        SpliceJunctionIndex index = writeIndex(helper);
+
+        List<SpliceJunctionFeature> features = load(index, "chr1", BIN, 2 * BIN);
+        assertEquals(2, features.size());
+        assertEquals(BIN, features.get(0).getStart());
+        assertEquals(2 * BIN - 1, features.get(1).getStart());
+
+        features = load(index, "chr1", BIN - 1, BIN);
+        assertEquals(1, features.size());
+        assertEquals(BIN, features.get(0).getEnd());
+
+        features = load(index, "chr1", 2 * BIN, 2 * BIN + 1);
+        assertEquals(2, features.size());
+    }
+
+    /**
+     * A junction starting in an earlier bin is found when only its flanking region reaches the queried bin
+     */
+    @Test
+    public void testFlankCrossesBin() throws Exception {
+
+        SpliceJunctionHelper helper = new SpliceJunctionHelper(loadOptions);
+        addJunction(helper, false, 100, 2 * BIN - 50, 10, 100);         // End flank reaches into bin 2
+        addJunction(helper, true, 3 * BIN + 20, 3 * BIN + 500, 40, 10); // Start flank reaches into bin 2
+        addJunction(helper, false, 200, 1000, 10, 10);
+        SpliceJunctionIndex index = writeIndex(helper);
+
+        List<SpliceJunctionFeature> features = load(index, "chr1", 2 * BIN, 3 * BIN);
+        assertEquals(2, features.size());
+        for (SpliceJunctionFeature f : features) {
+            assertTrue(f.getEnd() > 2 * BIN && f.getStart() < 3 * BIN);
+        }
+        assertEquals(0, load(index, "chr1", 2 * BIN + 100, 3 * BIN - 100).size());
+    }
+
+    /**
+     * Remote files are not checked for an index unless enabled,  so no request is made here
+     */
+    @Test
+    public void testOpenRemote() {
+        assertNull(SpliceJunctionIndex.open("https://host.invalid/a.bam"));
+    }
+
+    @Test
+    public void testIndexPath() {
+        assertEquals("/data/a.bam.sji", SpliceJunctionIndex.getIndexPath("/data/a.bam"));
+        assertEquals("https://host/a.bam.sji", SpliceJunctionIndex.getIndexPath("https://host/a.bam"));
+        assertEquals("https://host/a.bam.sji?token=x&b=y",
+                SpliceJunctionIndex.getIndexPath("https://host/a.bam?token=x&b=y"));
+    }
+
+    /**
+     * Add a junction with reads of every flank length up to the given lengths
+     */
+    private static void addJunction(SpliceJunctionHelper helper, boolean negative, int start, int end,
+                                    int startFlank, int endFlank) {
+        int[] startCounts = new int[startFlank];
+        int[] endCounts = new int[endFlank];
+        Arrays.fill(startCounts, 1);
+        Arrays.fill(endCounts, 1);
+        helper.addJunction("chr1", negative, start, end, Math.max(startFlank, endFlank), startCounts, endCounts);
+    }
+
+    private static SpliceJunctionIndex writeIndex(SpliceJunctionHelper helper) throws Exception {
+        File file = File.createTempFile("junctions", SpliceJunctionIndex.EXTENSION);
+        file.deleteOnExit();
+        try (SpliceJunctionIndex.Writer writer = new SpliceJunctionIndex.Writer(file.getAbsolutePath(), 0, 0, 0)) {
+            writer.addSequence("chr1", helper);
+        }
+        return SpliceJunctionIndex.read(file.getAbsolutePath());
+    }
+
+    private List<SpliceJunctionFeature> load(SpliceJunctionIndex index, String chr, int start, int end) throws Exception {
+        SpliceJunctionHelper loaded = new SpliceJunctionHelper(loadOptions);
+        index.load(chr, start, end, loaded);
+        return getJunctions(loaded);
+    }
+
+    private static List<SpliceJunctionFeature> getJunctions(SpliceJunctionHelper helper) {
+        List<SpliceJunctionFeature> features = new ArrayList<>();
+        features.addAll(helper.getFilteredJunctions(SpliceJunctionTrack.StrandOption.FORWARD));
+        features.addAll(helper.getFilteredJunctions(SpliceJunctionTrack.StrandOption.REVERSE));
+        features.sort((f1, f2) -> f1.getStart() != f2.getStart() ? Integer.compare(f1.getStart(), f2.getStart()) :
+                Integer.compare(f1.getEnd(), f2.getEnd()));
+        return features;
+    }
+
+    private static void assertJunctions(SpliceJunctionHelper expectedHelper, List<SpliceJunctionFeature> features) {
+        List<SpliceJunctionFeature> expected = getJunctions(expectedHelper);
+        assertEquals(expected.size(), features.size());
+        for (int i = 0; i < expected.size(); i++) {
+            SpliceJunctionFeature e = expected.get(i);
+            SpliceJunctionFeature f = features.get(i);
+            assertEquals(e.getJunctionStart(), f.getJunctionStart());
+            assertEquals(e.getJunctionEnd(), f.getJunctionEnd());
+            assertEquals(e.getStart(), f.getStart());
+            assertEquals(e.getEnd(), f.getEnd());
+            assertEquals(e.getJunctionDepth(), f.getJunctionDepth());
+            assertEquals(e.getStrand(), f.getStrand());
+            assertArrayEquals(e.getStartFlankingRegionDepthArray(), f.getStartFlankingRegionDepthArray());
+            assertArrayEquals(e.getEndFlankingRegionDepthArray(), f.getEndFlankingRegionDepthArray());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.Strand;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static org.junit.Assert.assertArrayEquals;
+
+public class SpliceJunctionMapTest {
+
+    /**
+     * Flanking depths computed from flank length histograms should match those accumulated read by read
+     */
+    @Test
+    public void testFlankingDepths() {
+
+        Random random = new Random(7);
+        SpliceJunctionMap map = new SpliceJunctionMap();
+        SpliceJunctionFeature expected = new SpliceJunctionFeature("chr1", 1000, 2000, Strand.POSITIVE);
+        for (int i = 0; i < 500; i++) {
+            int startFlank = random.nextInt(100);
+            int endFlank = 1 + random.nextInt(100);
+            map.addRead(1000, 2000, startFlank, endFlank);
+            expected.addRead(1000 - startFlank, 2000 + endFlank);
+        }
+
+        assertEquals(1, map.size());
+        SpliceJunctionFeature feature = map.createFeature(map.getSlots()[0], "chr1", Strand.POSITIVE);
+        assertFeatureEquals(expected, feature);
+    }
+
+    @Test
+    public void testManyJunctions() {
+
+        SpliceJunctionMap map = new SpliceJunctionMap();
+        int n = 10000;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i % 3; j++) {
+                map.addRead(i * 10, i * 10 + 500, 20, 30);
+            }
+        }
+        assertEquals(n, map.size());
+        for (int slot : map.getSlots()) {
+            long key = map.getKey(slot);
+            int start = SpliceJunctionMap.junctionStart(key);
+            assertEquals(start + 500, SpliceJunctionMap.junctionEnd(key));
+            assertEquals((start / 10) % 3 + 1, map.getDepth(slot));
+        }
+        assertEquals(false, map.contains(5, 505));
+    }
+
+    @Test
+    public void testNoStartFlank() {
+        SpliceJunctionMap map = new SpliceJunctionMap();
+        map.addRead(100, 200, 0, 10);
+        SpliceJunctionFeature feature = map.createFeature(map.getSlots()[0], "chr1", Strand.NEGATIVE);
+        assertEquals(100, feature.getStart());
+        assertEquals(210, feature.getEnd());
+        assertNull(feature.getStartFlankingRegionDepthArray());
+    }
+
+    @Test
+    public void testIndexRoundTrip() throws Exception {
+
+        Random random = new Random(11);
+        SpliceJunctionHelper.LoadOptions loadOptions = new SpliceJunctionHelper.LoadOptions(0, 0);
+        SpliceJunctionHelper helper = new SpliceJunctionHelper(loadOptions);
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(1000000);
+            int end = start + 50 + random.nextInt(200000);
+            int[] startCounts = randomCounts(random);
+            int[] endCounts = randomCounts(random);
+            int depth = 0;
+            for (int c : startCounts) depth += c;
+            helper.addJunction("chr1", random.nextBoolean(), start, end, depth, startCounts, endCounts);
+        }
+
+        File file = File.createTempFile("junctions", SpliceJunctionIndex.EXTENSION);
+        file.deleteOnExit();
+        try (SpliceJunctionIndex.Writer writer = new SpliceJunctionIndex.Writer(file.getAbsolutePath(), 0, 0, 0)) {
+            writer.addSequence("chr1", helper);
+        }
+        SpliceJunctionIndex index = SpliceJunctionIndex.read(file.getAbsolutePath());
+
+        int start = 400000;
+        int end = 450000;
+        SpliceJunctionHelper loaded = new SpliceJunctionHelper(loadOptions);
+        index.load("chr1", start, end, loaded);
+        index.load("chr2", start, end, loaded);
+
+        for (SpliceJunctionTrack.StrandOption option : new SpliceJunctionTrack.StrandOption[]{
+                SpliceJunctionTrack.StrandOption.FORWARD, SpliceJunctionTrack.StrandOption.REVERSE}) {
+            List<SpliceJunctionFeature> expected = helper.getFilteredJunctions(option);
+            expected.removeIf(f -> f.getEnd() <= start || f.getStart() >= end);
+            List<SpliceJunctionFeature> features = loaded.getFilteredJunctions(option);
+            assertEquals(expected.size(), features.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertFeatureEquals(expected.get(i), features.get(i));
+            }
+        }
+    }
+
+    private static int[] randomCounts(Random random) {
+        int[] counts = new int[1 + random.nextInt(75)];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = random.nextInt(3);
+        }
+        counts[counts.length - 1]++;
+        return counts;
+    }
+
+    private static void assertFeatureEquals(SpliceJunctionFeature expected, SpliceJunctionFeature feature) {
+        assertEquals(expected.getJunctionStart(), feature.getJunctionStart());
+        assertEquals(expected.getJunctionEnd(), feature.getJunctionEnd());
+        assertEquals(expected.getStart(), feature.getStart());
+        assertEquals(expected.getEnd(), feature.getEnd());
+        assertEquals(expected.getJunctionDepth(), feature.getJunctionDepth());
+        assertEquals(expected.getStrand(), feature.getStrand());
+        assertArrayEquals(expected.getStartFlankingRegionDepthArray(), feature.getStartFlankingRegionDepthArray());
+        assertArrayEquals(expected.getEndFlankingRegionDepthArray(), feature.getEndFlankingRegionDepthArray());
+    }
+}
@@ -56,6 +56,40 @@ public class BAMReaderTest {
 
     }
 
+    @Test
+    public void readAlignmentsParallel() throws Exception {
+
+        String bamPath = TestUtils.DATA_DIR + "bam/four.reads.bam";
+        String chr = "13";
+        int beg = 32353128;
+        int end = 32353284;
+
+        BAMReader bamReader = new BAMReader(bamPath);
+
+        List<Alignment> expected = new ArrayList<>();
+        CloseableIterator<Alignment> iter = bamReader.query(chr, beg, end, false);
+        while (iter.hasNext()) {
+            expected.add(iter.next());
+        }
+
+        bamReader.setParallel(true);
+        List<Alignment> alignments = new ArrayList<>();
+        iter = bamReader.query(chr, beg, end, false);
+        while (iter.hasNext()) {
+            alignments.add(iter.next());
+        }
+
+        assertEquals(4, alignments.size());
+        assertEquals(expected.size(), alignments.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Alignment a1 = expected.get(i);
+            Alignment a2 = alignments.get(i);
+            assertEquals(a1.getReadName(), a2.getReadName());
+            assertEquals(a1.getStart(), a2.getStart());
+            assertEquals(a1.getCigarString(), a2.getCigarString());
+        }
+    }
+
     @Test
     public void readHeader() throws Exception {
 
@@ -0,0 +1,40 @@
+package org.broad.igv.sam.lite;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.TestUtils;
+import org.broad.igv.util.stream.IGVSeekableStreamFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BGZFStreamTest {
+
+    @Test
+    public void streamHeader() throws Exception {
+
+        String bamPath = TestUtils.DATA_DIR + "bam/four.reads.bam";
+        SeekableStream ss = IGVSeekableStreamFactory.getInstance().getStreamFor(bamPath);
+
+        try (BGZFStream bgzf = new BGZFStream(ss, 0, 0, Long.MAX_VALUE, 0, true)) {
+
+            assertTrue(bgzf.ensure(4));
+            byte[] ba = bgzf.buffer();
+            int p = bgzf.position();
+            assertEquals('B', ba[p]);
+            assertEquals('A', ba[p + 1]);
+            assertEquals('M', ba[p + 2]);
+            assertEquals(1, ba[p + 3]);
+
+            // Stream the rest of the file a byte at a time,  and compare with the result of inflating all at once
+            byte[] expected = BGUnzip.blockUnzip(FileUtils.readFully(bamPath));
+            int total = 0;
+            while (bgzf.ensure(1)) {
+                assertEquals(expected[total], bgzf.buffer()[bgzf.position()]);
+                bgzf.skip(1);
+                total++;
+            }
+            assertEquals(expected.length, total);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.session;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class SessionLoadSchedulerTest {
+
+    @Test
+    public void testDefaultIndexPath() {
+        assertEquals("http://host/a.bam.bai", SessionLoadScheduler.getDefaultIndexPath("http://host/a.bam"));
+        assertEquals("http://host/a.bam.bai?key=x", SessionLoadScheduler.getDefaultIndexPath("http://host/a.bam?key=x"));
+        assertEquals("http://host/a.cram.crai", SessionLoadScheduler.getDefaultIndexPath("http://host/a.cram"));
+        assertEquals("http://host/a.vcf.gz.tbi", SessionLoadScheduler.getDefaultIndexPath("http://host/a.vcf.gz"));
+        assertEquals("http://host/a.bed.idx", SessionLoadScheduler.getDefaultIndexPath("http://host/a.bed"));
+        assertNull(SessionLoadScheduler.getDefaultIndexPath("http://host/a.bw"));
+        assertNull(SessionLoadScheduler.getDefaultIndexPath("http://host/a.tdf"));
+    }
+
+    @Test
+    public void testGetHost() {
+        assertEquals("data.broadinstitute.org", SessionLoadScheduler.getHost("https://Data.BroadInstitute.org/igv/a.bam"));
+        assertEquals("host:8080", SessionLoadScheduler.getHost("http://host:8080"));
+        assertNull(SessionLoadScheduler.getHost("/local/a.bam"));
+    }
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+
+        SessionLoadScheduler scheduler = new SessionLoadScheduler(1, 1);
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+            // Occupy the single thread until all tasks are queued
+            scheduler.submit("/data/first", 0, () -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            for (int priority : new int[]{5, Integer.MAX_VALUE, 2, 7, 1}) {
+                final int p = priority;
+                scheduler.submit("/data/" + p, p, () -> order.add(p));
+            }
+            latch.countDown();
+            scheduler.awaitCompletion();
+
+            assertEquals(Arrays.asList(1, 2, 5, 7, Integer.MAX_VALUE), order);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testMaxThreads() throws Exception {
+
+        final int maxThreads = 3;
+        SessionLoadScheduler scheduler = new SessionLoadScheduler(maxThreads, 1);
+        try {
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+            for (int i = 0; i < 20; i++) {
+                scheduler.submit("/data/" + i, i, () -> {
+                    int n = running.incrementAndGet();
+                    maxRunning.accumulateAndGet(n, Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+            }
+            scheduler.awaitCompletion();
+
+            assertTrue(maxRunning.get() <= maxThreads);
+            assertEquals(0, running.get());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}
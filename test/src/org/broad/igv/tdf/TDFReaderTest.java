@@ -26,12 +26,19 @@
 package org.broad.igv.tdf;
 
 import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 
 /**
@@ -70,4 +77,47 @@ public class TDFReaderTest {
         assertNotNull(tile);
 
     }
+
+    @Test
+    public void testConcurrentTileReads() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "tdf/NA12878.SLX.egfr.sam.tdf";
+        TDFReader reader = new TDFReader(new ResourceLocator(path));
+
+        List<TDFDataset> datasets = new ArrayList<>();
+        for (String name : reader.getDatasetNames()) {
+            datasets.add(reader.getDataset(name));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TDFTile>> futures = new ArrayList<>();
+            for (TDFDataset ds : datasets) {
+                for (int t = 0; t < ds.tilePositions.length; t++) {
+                    final int tileNumber = t;
+                    futures.add(executor.submit(() -> reader.readTile(ds, tileNumber)));
+                }
+            }
+
+            int i = 0;
+            for (TDFDataset ds : datasets) {
+                for (int t = 0; t < ds.tilePositions.length; t++) {
+                    TDFTile expected = reader.readTile(ds, t);
+                    TDFTile tile = futures.get(i++).get();
+                    if (expected == null) {
+                        assertNull(tile);
+                    } else {
+                        assertEquals(expected.getSize(), tile.getSize());
+                        for (int p = 0; p < expected.getSize(); p++) {
+                            assertEquals(expected.getStartPosition(p), tile.getStartPosition(p));
+                            assertEquals(expected.getValue(0, p), tile.getValue(0, p));
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+            reader.close();
+        }
+    }
 }
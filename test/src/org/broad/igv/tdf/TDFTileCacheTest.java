@@ -0,0 +1,81 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.tdf;
+
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+public class TDFTileCacheTest {
+
+    @Test
+    public void testHitsAndEviction() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "tdf/NA12878.SLX.egfr.sam.tdf";
+        TDFReader reader = new TDFReader(new ResourceLocator(path));
+        TDFDataset ds = null;
+        for (String name : reader.getDatasetNames()) {
+            TDFDataset d = reader.getDataset(name);
+            if (ds == null || d.tilePositions.length > ds.tilePositions.length) {
+                ds = d;
+            }
+        }
+
+        TDFTileCache cache = new TDFTileCache(Long.MAX_VALUE);
+
+        int nTiles = ds.tilePositions.length;
+        TDFTile[] tiles = new TDFTile[nTiles];
+        for (int t = 0; t < nTiles; t++) {
+            tiles[t] = cache.getTile(ds, t);
+        }
+        assertEquals(nTiles, cache.getMissCount());
+        assertEquals(nTiles, cache.size());
+
+        assertTrue(nTiles > 1);
+
+        // Second pass is served entirely from the cache
+        for (int t = 0; t < nTiles; t++) {
+            assertSame(tiles[t], cache.getTile(ds, t));
+        }
+        assertEquals(nTiles, cache.getHitCount());
+
+        // Shrink the budget to a single tile,  the most recently used is retained
+        cache.setMaxMemory(1);
+        assertEquals(1, cache.size());
+        assertSame(tiles[nTiles - 1], cache.getTile(ds, nTiles - 1));
+
+        cache.remove(ds);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMemoryEstimate());
+        assertTrue(cache.getHitCount() > nTiles);
+
+        reader.close();
+    }
+}
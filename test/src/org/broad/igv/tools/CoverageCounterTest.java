@@ -39,10 +39,12 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 
 public class CoverageCounterTest extends AbstractHeadlessTest {
@@ -249,6 +251,44 @@ public class CoverageCounterTest extends AbstractHeadlessTest {
     }
 
 
+    /**
+     * Counting chromosomes in parallel must produce exactly the output of sequential counting
+     */
+    @Test
+    public void testParallelCount() throws Exception {
+
+        String ifile = TestUtils.DATA_DIR + "bam/gstt1_sample.bam";
+        int[] countFlags = new int[]{0, CoverageCounter.STRANDS_BY_READ, CoverageCounter.BASES,
+                CoverageCounter.BASES + CoverageCounter.STRANDS_BY_READ};
+
+        for (int flags : countFlags) {
+            for (int windowSize : new int[]{1, 25}) {
+
+                TestDataConsumer expected = new TestDataConsumer();
+                CoverageCounter cc = new CoverageCounter(ifile, expected, windowSize, 10, null, genome, null, 0, flags);
+                cc.setThreads(1);
+                cc.parse();
+
+                TestDataConsumer dc = new TestDataConsumer();
+                cc = new CoverageCounter(ifile, dc, windowSize, 10, null, genome, null, 0, flags);
+                cc.setThreads(4);
+                cc.parse();
+
+                assertEquals(expected.attributes.get("totalCount"), dc.attributes.get("totalCount"));
+                assertEquals(expected.testDatas.size(), dc.testDatas.size());
+                for (int i = 0; i < expected.testDatas.size(); i++) {
+                    TestData e = expected.testDatas.get(i);
+                    TestData d = dc.testDatas.get(i);
+                    assertEquals(e.chr, d.chr);
+                    assertEquals(e.start, d.start);
+                    assertEquals(e.end, d.end);
+                    assertTrue(Arrays.equals(e.data, d.data));
+                }
+            }
+        }
+    }
+
+
     static class TestDataConsumer implements DataConsumer {
 
         Map<String, String> attributes = new HashMap<String, String>();
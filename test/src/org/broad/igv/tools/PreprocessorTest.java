@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.tools;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.tdf.TDFDataset;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.tdf.TDFTile;
+import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class PreprocessorTest extends AbstractHeadlessTest {
+
+    /**
+     * Zoom levels computed on a pool should produce the same tiles as zoom levels computed serially
+     */
+    @Test
+    public void testParallelZoomLevels() throws Exception {
+
+        String inputFile = TestUtils.DATA_DIR + "wig/phastCons_chr1_small.wig";
+        File serialFile = new File(TestUtils.TMP_OUTPUT_DIR, "serial.tdf");
+        File parallelFile = new File(TestUtils.TMP_OUTPUT_DIR, "parallel.tdf");
+
+        preprocess(inputFile, serialFile, 1);
+        preprocess(inputFile, parallelFile, 4);
+
+        TDFReader serial = new TDFReader(new ResourceLocator(serialFile.getAbsolutePath()));
+        TDFReader parallel = new TDFReader(new ResourceLocator(parallelFile.getAbsolutePath()));
+
+        List<String> names = new ArrayList<>(serial.getDatasetNames());
+        assertEquals(names, new ArrayList<>(parallel.getDatasetNames()));
+        assertTrue(names.size() > 1);
+
+        for (String name : names) {
+            List<TDFTile> expected = serial.getDataset(name).getTiles();
+            List<TDFTile> actual = parallel.getDataset(name).getTiles();
+            assertEquals(name, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                TDFTile e = expected.get(i);
+                TDFTile a = actual.get(i);
+                assertEquals(e.getSize(), a.getSize());
+                assertTrue(Arrays.equals(e.getStart(), a.getStart()));
+                assertTrue(Arrays.equals(e.getData(0), a.getData(0)));
+            }
+        }
+
+        serial.close();
+        parallel.close();
+    }
+
+    private void preprocess(String inputFile, File outputFile, int nThreads) throws Exception {
+        Preprocessor p = new Preprocessor(outputFile, genome,
+                Arrays.asList(WindowFunction.mean, WindowFunction.median), -1, null);
+        p.setThreads(nThreads);
+        p.preprocess(new File(inputFile), 4, null);
+        p.finish();
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.track;
+
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.ui.util.ProgressMonitor;
+import org.broad.igv.util.ResourceLocator;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RegionScorerTest {
+
+    /**
+     * The primitive sort must order items exactly as the comparator it replaces:  descending by Float.compare,
+     * stable for ties.
+     */
+    @Test
+    public void testSortDescending() throws Exception {
+
+        final float[] values = {1.5f, -2, Float.NaN, 0, -0.0f, Float.NEGATIVE_INFINITY, -Float.MAX_VALUE,
+                Float.POSITIVE_INFINITY, 1.5f, 3, -Float.MAX_VALUE, 1e-30f, -1e-30f};
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) expected.add(i);
+        Collections.sort(expected, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return Float.compare(values[o2], values[o1]);
+            }
+        });
+
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) items.add(i);
+        RegionScorer.sortDescending(items, values);
+
+        assertEquals(expected, items);
+    }
+
+    @Test
+    public void testSortDescendingRandom() throws Exception {
+
+        Random random = new Random(1234);
+        final float[] values = new float[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(100) - 50 + random.nextInt(4) / 4.0f;
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) expected.add(i);
+        Collections.sort(expected, (o1, o2) -> Float.compare(values[o2], values[o1]));
+
+        List<Integer> items = new ArrayList<>(expected.size());
+        for (int i = 0; i < values.length; i++) items.add(i);
+        RegionScorer.sortDescending(items, values);
+
+        assertEquals(expected, items);
+    }
+
+    @Test
+    public void testScore() throws Exception {
+
+        List<ScoreTrack> tracks = Arrays.asList(new ScoreTrack(null, 1), new ScoreTrack(null, 2));
+        List<Track> withNull = new ArrayList<>(tracks);
+        withNull.add(null);
+        List<RegionScorer.Region> regions = Arrays.asList(
+                new RegionScorer.Region("chr1", 0, 100, 0, null),
+                new RegionScorer.Region("chr1", 100, 200, 0, null));
+
+        RegionScorer scorer = new RegionScorer();
+        float[][] scores = scorer.score(withNull, regions, RegionScoreType.SCORE, null, null);
+        assertEquals(3, scores.length);
+        assertEquals(1f, scores[0][0], 0);
+        assertEquals(101f, scores[0][1], 0);
+        assertEquals(2f, scores[1][0], 0);
+        assertEquals(Float.NEGATIVE_INFINITY, scores[2][1], 0);
+        assertEquals(2, tracks.get(0).count.get());
+
+        // Scores are cached by the scorer,  but not across scorers
+        float[] regionScores = scorer.scoreTracks(tracks, regions.get(1), RegionScoreType.SCORE, null);
+        assertEquals(102f, regionScores[1], 0);
+        assertEquals(2, tracks.get(1).count.get());
+
+        new RegionScorer().scoreTracks(tracks, regions.get(1), RegionScoreType.SCORE, null);
+        assertEquals(3, tracks.get(1).count.get());
+
+        // A different score type is not cached
+        scorer.scoreTracks(tracks, regions.get(1), RegionScoreType.AMPLIFICATION, null);
+        assertEquals(4, tracks.get(1).count.get());
+    }
+
+    /**
+     * Tracks loaded from the same resource are not scored concurrently
+     */
+    @Test
+    public void testSharedSource() throws Exception {
+
+        ResourceLocator locator = new ResourceLocator("test.seg");
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tracks.add(new ScoreTrack(locator, i) {
+                @Override
+                float computeScore(int start) {
+                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    active.decrementAndGet();
+                    return super.computeScore(start);
+                }
+            });
+        }
+
+        float[] scores = new RegionScorer().scoreTracks(tracks, new RegionScorer.Region("chr1", 0, 1, 0, null),
+                RegionScoreType.SCORE, null);
+        assertEquals(1, maxActive.get());
+        for (int i = 0; i < scores.length; i++) {
+            assertEquals(i, scores[i], 0);
+        }
+    }
+
+    /**
+     * Progress is reported as tracks complete,  tracks with cached scores count as complete
+     */
+    @Test
+    public void testProgress() throws Exception {
+
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tracks.add(new ScoreTrack(null, i));
+        }
+        RegionScorer.Region region = new RegionScorer.Region("chr1", 0, 1, 0, null);
+        RegionScorer scorer = new RegionScorer();
+
+        List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+        ProgressMonitor monitor = new ProgressMonitor();
+        monitor.addPropertyChangeListener(evt -> progress.add((Integer) evt.getNewValue()));
+
+        scorer.scoreTracks(tracks.subList(0, 2), region, RegionScoreType.SCORE, monitor);
+        // The monitor starts at 0,  an initial 0 is not reported
+        assertEquals(Arrays.asList(50, 100), progress);
+
+        progress.clear();
+        scorer.scoreTracks(tracks, region, RegionScoreType.SCORE, monitor);
+        assertEquals(Arrays.asList(50, 75, 100), progress);
+
+        // Nothing to score,  nothing is reported
+        progress.clear();
+        scorer.scoreTracks(tracks, region, RegionScoreType.SCORE, monitor);
+        assertTrue(progress.isEmpty());
+    }
+
+    @Test
+    public void testFailedTrack() throws Exception {
+
+        List<Track> tracks = Arrays.asList(new ScoreTrack(null, 1), new ScoreTrack(null, 2) {
+            @Override
+            float computeScore(int start) {
+                throw new RuntimeException("Test failure");
+            }
+        });
+        float[] scores = new RegionScorer().scoreTracks(tracks, new RegionScorer.Region("chr1", 0, 1, 0, null),
+                RegionScoreType.SCORE, null);
+        assertEquals(1f, scores[0], 0);
+        assertEquals(-Float.MAX_VALUE, scores[1], 0);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+
+        CountDownLatch started = new CountDownLatch(1);
+        List<Track> tracks = Arrays.asList(new ScoreTrack(null, 1) {
+            @Override
+            float computeScore(int start) {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 0;
+            }
+        });
+        List<RegionScorer.Region> regions = Arrays.asList(
+                new RegionScorer.Region("chr1", 0, 100, 0, null),
+                new RegionScorer.Region("chr1", 100, 200, 0, null));
+
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<float[][]> result = caller.submit(() ->
+                    new RegionScorer().score(tracks, regions, RegionScoreType.SCORE, null, null));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            RegionScorer.cancelAll();
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                fail("Expected scoring to be cancelled");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof CancellationException);
+            }
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    /**
+     * Scores start + value,  and counts the scores computed
+     */
+    static class ScoreTrack extends AbstractTrack {
+
+        final float value;
+        final AtomicInteger count = new AtomicInteger();
+
+        ScoreTrack(ResourceLocator locator, float value) {
+            super(locator, "track" + value, "track" + value);
+            this.value = value;
+        }
+
+        float computeScore(int start) {
+            return start + value;
+        }
+
+        @Override
+        public float getRegionScore(String chr, int start, int end, int zoom, RegionScoreType type,
+                                    String frameName, List<Track> tracks) {
+            count.incrementAndGet();
+            return computeScore(start);
+        }
+
+        @Override
+        public boolean isReadyToPaint(ReferenceFrame frame) {
+            return true;
+        }
+
+        @Override
+        public void load(ReferenceFrame frame) {
+        }
+
+        @Override
+        public void render(RenderContext context, Rectangle rect) {
+        }
+    }
+}
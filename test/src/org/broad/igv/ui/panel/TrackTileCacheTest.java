@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.broad.igv.track.AbstractTrack;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.TileRenderable;
+import org.broad.igv.track.Track;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TrackTileCacheTest {
+
+    private static final int WIDTH = 600;
+
+    private ReferenceFrame frame;
+
+    @Before
+    public void setUp() throws Exception {
+        frame = new ReferenceFrame("tiles");
+        frame.chrName = "chr1";
+        frame.origin = 0;
+        frame.scale = 1;
+        frame.widthInPixels = WIDTH;
+    }
+
+    /**
+     * Missing tiles are rendered in the background,  the track is omitted until they are complete
+     */
+    @Test
+    public void testRenderTiles() throws Exception {
+
+        TrackTileCache cache = new TrackTileCache(Long.MAX_VALUE);
+        TileTrack track = new TileTrack(10000);
+        List<Track> tracks = Collections.singletonList(track);
+
+        Semaphore rendered = new Semaphore(0);
+        Map<Track, TrackTileCache.TrackTiles> tiles = cache.renderTiles(tracks, frame, WIDTH, rendered::release);
+        assertTrue(tiles.isEmpty());
+        assertTrue(rendered.tryAcquire(10, TimeUnit.SECONDS));
+
+        // Pixels 0 - 599 are covered by tiles 0, 1, and 2
+        assertEquals(3, track.renderCount.get());
+        assertEquals(3, cache.size());
+        assertEquals(3, cache.getMissCount());
+
+        tiles = cache.renderTiles(tracks, frame, WIDTH, rendered::release);
+        TrackTileCache.TrackTiles trackTiles = tiles.get(track);
+        assertNotNull(trackTiles);
+        assertEquals(0, trackTiles.firstTile);
+        assertEquals(3, trackTiles.images.length);
+        assertEquals(3, cache.getHitCount());
+
+        // Pan by one tile,  only tile 3 is rendered
+        frame.origin = TrackTileCache.TILE_WIDTH;
+        assertTrue(cache.renderTiles(tracks, frame, WIDTH, rendered::release).isEmpty());
+        assertTrue(rendered.tryAcquire(10, TimeUnit.SECONDS));
+        assertEquals(4, track.renderCount.get());
+        trackTiles = cache.renderTiles(tracks, frame, WIDTH, rendered::release).get(track);
+        assertNotNull(trackTiles);
+        assertEquals(1, trackTiles.firstTile);
+    }
+
+    /**
+     * Tiles being rendered are not submitted again by later paints
+     */
+    @Test
+    public void testPendingTiles() throws Exception {
+
+        TrackTileCache cache = new TrackTileCache(Long.MAX_VALUE);
+        TileTrack track = new TileTrack(10000);
+        track.block = new CountDownLatch(1);
+        List<Track> tracks = Collections.singletonList(track);
+
+        AtomicInteger callbacks = new AtomicInteger();
+        CountDownLatch rendered = new CountDownLatch(1);
+        Runnable onRendered = () -> {
+            callbacks.incrementAndGet();
+            rendered.countDown();
+        };
+        assertTrue(cache.renderTiles(tracks, frame, WIDTH, onRendered).isEmpty());
+        assertTrue(cache.renderTiles(tracks, frame, WIDTH, onRendered).isEmpty());
+        track.block.countDown();
+
+        assertTrue(rendered.await(10, TimeUnit.SECONDS));
+        assertNotNull(cache.renderTiles(tracks, frame, WIDTH, onRendered).get(track));
+        assertEquals(3, track.renderCount.get());
+        assertEquals(1, callbacks.get());
+    }
+
+    /**
+     * Tiles rendered for a superseded tile key are dropped,  and the new tiles are submitted without waiting
+     */
+    @Test
+    public void testSupersededTiles() throws Exception {
+
+        TrackTileCache cache = new TrackTileCache(Long.MAX_VALUE);
+        TileTrack track = new TileTrack(10000);
+        track.block = new CountDownLatch(1);
+        List<Track> tracks = Collections.singletonList(track);
+
+        CountDownLatch rendered = new CountDownLatch(2);
+        assertTrue(cache.renderTiles(tracks, frame, WIDTH, rendered::countDown).isEmpty());
+        track.key = "other";
+        assertTrue(cache.renderTiles(tracks, frame, WIDTH, rendered::countDown).isEmpty());
+        track.block.countDown();
+
+        assertTrue(rendered.await(10, TimeUnit.SECONDS));
+        assertEquals(6, track.renderCount.get());
+        assertEquals(3, cache.size());
+        assertNotNull(cache.renderTiles(tracks, frame, WIDTH, null).get(track));
+    }
+
+    /**
+     * A change of tile key or scale discards the track's tiles
+     */
+    @Test
+    public void testInvalidate() throws Exception {
+
+        TrackTileCache cache = new TrackTileCache(Long.MAX_VALUE);
+        TileTrack track = new TileTrack(10000);
+        List<Track> tracks = Collections.singletonList(track);
+
+        render(cache, tracks);
+        assertEquals(3, cache.size());
+
+        track.key = "other";
+        render(cache, tracks);
+        assertEquals(6, track.renderCount.get());
+        assertEquals(3, cache.size());
+
+        frame.scale = 2;
+        render(cache, tracks);
+        assertEquals(9, track.renderCount.get());
+        assertEquals(3, cache.size());
+
+        // Untileable tracks are omitted,  and their tiles discarded
+        track.key = null;
+        assertTrue(cache.renderTiles(tracks, frame, WIDTH, null).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * The last tile of the loaded data extends past its end,  it must still be rendered
+     */
+    @Test
+    public void testLoadedEnd() throws Exception {
+
+        TrackTileCache cache = new TrackTileCache(Long.MAX_VALUE);
+        TileTrack track = new TileTrack(WIDTH);
+        List<Track> tracks = Collections.singletonList(track);
+
+        render(cache, tracks);
+        assertEquals(3, track.renderCount.get());
+
+        // Data is not loaded to the end of the frame,  the track is painted directly
+        TileTrack partial = new TileTrack(WIDTH - 1);
+        assertTrue(cache.renderTiles(Collections.singletonList(partial), frame, WIDTH, null).isEmpty());
+        Thread.sleep(100);
+        assertEquals(0, partial.renderCount.get());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        // Room for 4 tiles 256 x 10
+        long tileSize = 4L * TrackTileCache.TILE_WIDTH * 10;
+        TrackTileCache cache = new TrackTileCache(4 * tileSize);
+        TileTrack track1 = new TileTrack(10000);
+        TileTrack track2 = new TileTrack(10000);
+
+        render(cache, Arrays.asList(track1));
+        render(cache, Arrays.asList(track2));
+        assertEquals(4, cache.size());
+        assertEquals(4 * tileSize, cache.getMemoryEstimate());
+
+        // The least recently used tiles,  of track1,  were evicted
+        assertNotNull(cache.renderTiles(Arrays.asList(track2), frame, WIDTH, null).get(track2));
+        assertNull(cache.renderTiles(Arrays.asList(track1), frame, WIDTH, null).get(track1));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMemoryEstimate());
+    }
+
+    /**
+     * The tiles of a track are discarded once the track is collected
+     */
+    @Test
+    public void testCollectedTrack() throws Exception {
+
+        TrackTileCache cache = new TrackTileCache(Long.MAX_VALUE);
+        render(cache, Collections.singletonList(new TileTrack(10000)));
+        assertEquals(3, cache.size());
+
+        for (int i = 0; i < 100 && cache.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMemoryEstimate());
+    }
+
+    private void render(TrackTileCache cache, List<Track> tracks) throws InterruptedException {
+        CountDownLatch rendered = new CountDownLatch(tracks.size());
+        cache.renderTiles(tracks, frame, WIDTH, rendered::countDown);
+        assertTrue(rendered.await(10, TimeUnit.SECONDS));
+    }
+
+    static class TileTrack extends AbstractTrack implements TileRenderable {
+
+        final int loadedEnd;
+        final AtomicInteger renderCount = new AtomicInteger();
+        volatile Object key = "key";
+        volatile CountDownLatch block;
+
+        TileTrack(int loadedEnd) {
+            super(null, "tiles", "tiles");
+            this.loadedEnd = loadedEnd;
+            setHeight(10);
+        }
+
+        @Override
+        public boolean isReadyToPaint(ReferenceFrame frame) {
+            return frame.getOrigin() >= 0 && frame.getEnd() <= loadedEnd;
+        }
+
+        @Override
+        public void load(ReferenceFrame frame) {
+        }
+
+        @Override
+        public void render(RenderContext context, Rectangle rect) {
+        }
+
+        public Object getTileKey(ReferenceFrame frame) {
+            return key;
+        }
+
+        public void renderTile(RenderContext context, Rectangle rect) {
+            try {
+                if (block != null) block.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            renderCount.incrementAndGet();
+        }
+
+        public void renderDecorations(RenderContext context, Rectangle rect) {
+        }
+    }
+}
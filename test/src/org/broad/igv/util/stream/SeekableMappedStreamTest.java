@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import org.broad.igv.util.FileUtils;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+
+public class SeekableMappedStreamTest {
+
+    private static final String TEST_FILE = TestUtils.DATA_DIR + "bam/four.reads.bam";
+
+    @Test
+    public void testReadAcrossSegments() throws Exception {
+
+        byte[] expected = FileUtils.readFully(TEST_FILE);
+
+        // Use tiny segments so reads and slices cross segment boundaries
+        SeekableMappedStream stream = new SeekableMappedStream(new File(TEST_FILE), 100, 10);
+        assertEquals(expected.length, stream.length());
+
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            int position = random.nextInt(expected.length);
+            int n = Math.min(expected.length - position, 1 + random.nextInt(300));
+
+            stream.seek(position);
+            byte[] bytes = new byte[n];
+            stream.readFully(bytes);
+            for (int j = 0; j < n; j++) {
+                assertEquals(expected[position + j], bytes[j]);
+            }
+
+            ByteBuffer slice = stream.slice(position, n);
+            assertEquals(n, slice.remaining());
+            for (int j = 0; j < n; j++) {
+                assertEquals(expected[position + j], slice.get());
+            }
+        }
+
+        stream.seek(expected.length - 1);
+        assertEquals(expected[expected.length - 1] & 0xFF, stream.read());
+        assertEquals(-1, stream.read());
+    }
+}